@@ -671,6 +671,13 @@ if __name__ == "__main__":
             p.kill()
             sys.exit()
         else:
+            # wait for the warm up of the solvers, the first solves run at the steady speed
+            count = 0
+            while not gateway_server.entry_point.isReady():
+                if count % 5 == 0:
+                    print("Warming up solvers.  Please wait.")
+                time.sleep(1)
+                count += 1
             app = QApplication(sys.argv)
             window = GameSolver15Puzzle(gateway_server)
             window.show()
@@ -1,6 +1,20 @@
 package mwong.myprojects.fifteenpuzzle;
 
-import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.service.DifficultyPredictor;
+import mwong.myprojects.fifteenpuzzle.service.InteractiveSolver;
+import mwong.myprojects.fifteenpuzzle.service.PortfolioSolver;
+import mwong.myprojects.fifteenpuzzle.service.PuzzlePool;
+import mwong.myprojects.fifteenpuzzle.service.SolveResult;
+import mwong.myprojects.fifteenpuzzle.service.SolveService;
+import mwong.myprojects.fifteenpuzzle.service.SolverPool;
+import mwong.myprojects.fifteenpuzzle.service.SolverWarmup;
+import mwong.myprojects.fifteenpuzzle.solver.FileProperties;
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SearchListener;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolutionCache;
+import mwong.myprojects.fifteenpuzzle.solver.SolutionStore;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverMd;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdbWd;
@@ -10,32 +24,29 @@ import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceFactory;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
 import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
-import mwong.myprojects.fifteenpuzzle.solver.components.PatternOptions;
-import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleConstants;
-import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
 import py4j.GatewayServer;
 
 import java.io.IOException;
-import java.rmi.RemoteException;
 
 /**
  * GatewayServerFifteenPuzzle for pyqt5 GUI front end to connect to 15 puzzle solvers.
- * It use standalone reference collection.
+ * It use standalone reference collection.  The methods of the gateway use the default
+ * session for a single front end; concurrent front ends open their own session, the
+ * solvers of all sessions share one copy of the pattern databases.
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
  */
 public class GatewayServerFifteenPuzzle {
     private final ApplicationMode guiMode = ApplicationMode.GUI;
-    private final boolean timeoutOn = SolverConstants.isOnSwitch();
-    private Board board;
-    private SmartSolverMd solverMd;
-    private SmartSolverWd solverWd;
-    private SmartSolverWdMd solverWdMd;
-    private SmartSolverPdbWd solverPdbWd555;
-    private SmartSolverPdbWd solverPdbWd663;
-    private SmartSolverPdb solverPdb78;
     private static ReferenceRemote refConnection;
+    private SolverPool pool;
+    private PuzzlePool puzzles;
+    private DifficultyPredictor predictor;
+    private SolveService solveService;
+    private PortfolioSolver portfolio;
+    private SolverWarmup warmup;
+    private GatewaySession defaultSession;
     private int timeoutLimit;
 
     public GatewayServerFifteenPuzzle() {
@@ -59,146 +70,193 @@ public class GatewayServerFifteenPuzzle {
             }
         }
 
-        boolean messageOff = !SolverConstants.isOnSwitch();
-        solverMd = new SmartSolverMd(refConnection);
-        solverMd.messageSwitch(messageOff);
+        pool = new SolverPool(refConnection, guiMode);
+        // load all heuristics in parallel background threads, the sessions share them;
+        // getBestSolver serves with the strongest one loaded so far
+        pool.preload(HeuristicOptions.values());
+        // run short solves through the solvers as they load, until the jit compiled
+        // searches run at the steady speed or the time budget exhausted
+        warmup = new SolverWarmup(pool, HeuristicOptions.values());
+        warmup.start();
+        puzzles = new PuzzlePool(pool, HeuristicOptions.PD78,
+                SolverProperties.getPuzzlePoolSize(), FileProperties.getFilepathPuzzlePool());
+        predictor = new DifficultyPredictor(pool);
+        puzzles.setPredictor(predictor);
+        puzzles.start();
+        solveService = new SolveService(pool, predictor);
+        portfolio = new PortfolioSolver(pool);
+        defaultSession = new GatewaySession(pool, puzzles, predictor, portfolio, timeoutLimit);
+    }
 
-        solverWd = new SmartSolverWd(refConnection, guiMode);
-        solverWd.messageSwitch(messageOff);
+    public static boolean isConnected() {
+        return true;
+    }
 
-        solverWdMd = new SmartSolverWdMd(refConnection, guiMode);
-        solverWdMd.messageSwitch(messageOff);
+    /**
+     * Returns the boolean represents the warm up of the solvers is done, the first
+     * searches run at the steady speed.  The gateway accepts the connection before it,
+     * so a front end can wait for it without a connection timeout; the GUI waits on it
+     * before its first solve.
+     *
+     * @return boolean represents the gateway is ready
+     */
+    public boolean isReady() {
+        return warmup.isReady();
+    }
 
-        solverPdbWd555 = new SmartSolverPdbWd(PatternOptions.Pattern_555, refConnection, guiMode);
-        solverPdbWd555.messageSwitch(messageOff);
+    /**
+     * Returns a new session with its own board and solvers, the searches of different
+     * sessions run in parallel.  Each front end should open its own session and close
+     * it when done.
+     *
+     * @return GatewaySession object of a new session
+     */
+    public GatewaySession openSession() {
+        return new GatewaySession(pool, puzzles, predictor, portfolio, getTimeoutLimit());
+    }
 
-        solverPdbWd663 = new SmartSolverPdbWd(PatternOptions.Pattern_663, refConnection, guiMode);
-        solverPdbWd663.messageSwitch(messageOff);
-        setTimeoutLimit(timeoutLimit);
+    /**
+     * Close the given session and return its solvers to the pool.
+     *
+     * @param session the given GatewaySession object
+     */
+    public void closeSession(GatewaySession session) {
+        session.close();
+    }
 
-        try {
-            if (refConnection.getSolver() != null) {
-                solverPdb78 = refConnection.getSolver();
-            } else {
-                solverPdb78 = new SmartSolverPdb(PatternOptions.Pattern_78, refConnection, guiMode);
-            }
-        } catch (RemoteException ex) {
-            solverPdb78 = new SmartSolverPdb(PatternOptions.Pattern_78, refConnection, guiMode);
+    /**
+     * Returns the asynchronous solve service, the front ends submit the boards and poll
+     * the jobs without holding a solver.
+     *
+     * @return SolveService object shared by all front ends
+     */
+    public SolveService getSolveService() {
+        return solveService;
+    }
+
+    public String getPoolSummary() {
+        return pool.summary() + "\n" + puzzles.summary() + "\n" + solveService.summary()
+                + "\n" + portfolio.summary() + "\n" + warmup.summary() + "\n"
+                + getCacheSummary();
+    }
+
+    /**
+     * Returns the summary of the solution cache shared by all solvers: the number of
+     * boards, hits, misses, hit ratio and evictions.
+     *
+     * @return String of the summary of the solution cache
+     */
+    public String getCacheSummary() {
+        SolutionCache cache = SolutionCache.getInstance();
+        if (cache == null) {
+            return "Solution cache: off.";
         }
-        solverPdb78.messageSwitch(messageOff);
-        solverPdb78.setTimeoutLimit(1);
-        solverPdb78.timeoutSwitch(!timeoutOn);
+        return cache.summary();
     }
 
-    public static boolean isConnected() {
-        return true;
+    /**
+     * Calibrate the difficulty predictor with the solved boards of the solution store,
+     * up to the given number of boards.  The heuristics loaded so far are used, so it
+     * is best called after all heuristics are ready.
+     *
+     * @param max the given maximum number of boards
+     * @return String of the summary of the difficulty predictor
+     */
+    public String calibratePredictor(int max) {
+        SolutionStore store = SolutionStore.getInstance();
+        if (store != null) {
+            predictor.calibrate(store, max);
+        }
+        return predictor.summary();
+    }
+
+    public SmartSolver getAdaptiveSolver() {
+        return defaultSession.getAdaptiveSolver();
+    }
+
+    public HeuristicOptions getBestHeuristic() {
+        return pool.bestReady();
+    }
+
+    public SmartSolver getBestSolver() {
+        return defaultSession.getBestSolver();
+    }
+
+    public InteractiveSolver getInteractiveSolver() {
+        return defaultSession.getInteractiveSolver();
+    }
+
+    public SolveResult solvePortfolio() {
+        return defaultSession.solvePortfolio();
     }
 
     public Board getGoal() {
-        board = new Board(PuzzleConstants.getGoalTiles());
-        return board;
+        return defaultSession.getGoal();
     }
 
     public Board getRandom() {
-        board = new Board();
-        return board;
+        return defaultSession.getRandom();
     }
 
     public Board getEasy() {
-        board = new Board(PuzzleDifficultyLevel.EASY);
-        solverPdb78.versionSwitch(false);
-        solverPdb78.findOptimalPath(board);
-        
-        int moves = solverPdb78.moves();
-        while (moves > 25) {
-        	board = new Board(PuzzleDifficultyLevel.EASY);
-        	solverPdb78.findOptimalPath(board);
-            moves = solverPdb78.moves();
-        }
-        solverPdb78.findOptimalPath(new Board(PuzzleConstants.getGoalTiles()));
-        return board;
+        return defaultSession.getEasy();
     }
 
     public Board getModerate() {
-        board = new Board(PuzzleDifficultyLevel.MODERATE);
-        solverPdb78.versionSwitch(false);
-        solverPdb78.timeoutSwitch(timeoutOn);      
-        solverPdb78.findOptimalPath(board);
-        
-        int moves = solverPdb78.moves();
-        while (solverPdb78.isSearchTimeout() || moves <= 25 || moves > 50) {
-        	board = new Board(PuzzleDifficultyLevel.MODERATE);
-        	solverPdb78.findOptimalPath(board);
-            moves = solverPdb78.moves();
-        }
-        solverPdb78.findOptimalPath(new Board(PuzzleConstants.getGoalTiles()));
-        solverPdb78.timeoutSwitch(!timeoutOn);      
-        return board;
+        return defaultSession.getModerate();
     }
 
     public Board getHard() {
-        board = new Board(PuzzleDifficultyLevel.HARD);
-        solverPdb78.versionSwitch(false);
-        solverPdb78.timeoutSwitch(timeoutOn);      
-        solverPdb78.findOptimalPath(board);
-        
-        int moves = solverPdb78.moves();
-        while (!solverPdb78.isSearchTimeout() && moves <= 50) {
-        	board = new Board(PuzzleDifficultyLevel.HARD);
-        	solverPdb78.findOptimalPath(board);
-            moves = solverPdb78.moves();
-        }
-        solverPdb78.findOptimalPath(new Board(PuzzleConstants.getGoalTiles()));
-        solverPdb78.timeoutSwitch(!timeoutOn);      
-        return board;
+        return defaultSession.getHard();
     }
 
     public Board getBoard(byte[] block) {
-        board = new Board(block);
-        return board;
+        return defaultSession.getBoard(block);
     }
 
     public SmartSolverPdb getSolver_0() {
-        return solverPdb78;
+        return defaultSession.getSolver_0();
     }
 
     public SmartSolverPdbWd getSolver_1() {
-        return solverPdbWd663;
+        return defaultSession.getSolver_1();
     }
 
     public SmartSolverPdbWd getSolver_2() {
-        return solverPdbWd555;
+        return defaultSession.getSolver_2();
     }
 
     public SmartSolverWdMd getSolver_3() {
-        return solverWdMd;
+        return defaultSession.getSolver_3();
     }
 
     public SmartSolverWd getSolver_4() {
-        return solverWd;
+        return defaultSession.getSolver_4();
     }
 
     public SmartSolverMd getSolver_5() {
-        solverMd.linearConflictSwitch(SolverConstants.isTagLinearConflict());
-        return solverMd;
+        return defaultSession.getSolver_5();
     }
 
     public SmartSolverMd getSolver_6() {
-        solverMd.linearConflictSwitch(SolverConstants.isTagLinearConflict());
-        return solverMd;
+        return defaultSession.getSolver_6();
     }
 
-    public int getTimeoutLimit() {
+    public synchronized int getTimeoutLimit() {
         return timeoutLimit;
     }
 
-    public void setTimeoutLimit(int limit) {
-    	timeoutLimit = limit;
-    	solverMd.setTimeoutLimit(timeoutLimit);
-    	solverWd.setTimeoutLimit(timeoutLimit);
-    	solverWdMd.setTimeoutLimit(timeoutLimit);
-        solverPdbWd555.setTimeoutLimit(timeoutLimit);
-        solverPdbWd663.setTimeoutLimit(timeoutLimit);
+    public synchronized void setTimeoutLimit(int limit) {
+        timeoutLimit = limit;
+        defaultSession.setTimeoutLimit(timeoutLimit);
+    }
+
+    public void setSearchListener(SearchListener listener) {
+        defaultSession.setSearchListener(listener);
+    }
+
+    public void cancelSearch() {
+        defaultSession.cancelSearch();
     }
 
     /**
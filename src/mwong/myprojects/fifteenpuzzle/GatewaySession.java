@@ -0,0 +1,414 @@
+package mwong.myprojects.fifteenpuzzle;
+
+import mwong.myprojects.fifteenpuzzle.service.DifficultyEstimate;
+import mwong.myprojects.fifteenpuzzle.service.DifficultyPredictor;
+import mwong.myprojects.fifteenpuzzle.service.InteractiveSolver;
+import mwong.myprojects.fifteenpuzzle.service.PortfolioSolver;
+import mwong.myprojects.fifteenpuzzle.service.PuzzlePool;
+import mwong.myprojects.fifteenpuzzle.service.SolveResult;
+import mwong.myprojects.fifteenpuzzle.service.SolverPool;
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SearchListener;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverMd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdbWd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverWd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverWdMd;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleConstants;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * GatewaySession is the state of one GUI front end connected to the gateway server: its
+ * board, timeout limit and the solvers it borrowed from the shared SolverPool.  Each
+ * session searches with its own solvers, so the sessions do not interfere each other
+ * and the searches of different sessions run in parallel.  The solvers are returned to
+ * the pool when the session is closed, after their searches in progress ended.
+ *
+ * <p>Dependencies : Board.java, DifficultyEstimate.java, DifficultyPredictor.java,
+ *                   HeuristicOptions.java, InteractiveSolver.java, PortfolioSolver.java,
+ *                   PuzzleConstants.java, PuzzleDifficultyLevel.java, PuzzlePool.java,
+ *                   SearchListener.java, SmartSolver.java, SmartSolverMd.java,
+ *                   SmartSolverPdb.java, SmartSolverPdbWd.java, SmartSolverWd.java,
+ *                   SmartSolverWdMd.java, SolveResult.java, SolverConstants.java,
+ *                   SolverPool.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class GatewaySession {
+    private final boolean timeoutOn = SolverConstants.isOnSwitch();
+    private final SolverPool pool;
+    private final PuzzlePool puzzles;
+    private final DifficultyPredictor predictor;
+    private final PortfolioSolver portfolio;
+    private final EnumMap<HeuristicOptions, SmartSolver> solvers;
+    private final EnumMap<HeuristicOptions, SmartSolver> adaptiveSolvers;
+    private Board board;
+    private SolveResult puzzle;
+    private InteractiveSolver player;
+    private SearchListener searchListener;
+    private Thread racing;
+    private int timeoutLimit;
+    private boolean closed;
+
+    /**
+     * Initializes GatewaySession object with the given solver pool, puzzle pool,
+     * difficulty predictor, portfolio solver and timeout limit.
+     *
+     * @param pool the given SolverPool shared by all sessions
+     * @param puzzles the given PuzzlePool of graded puzzles shared by all sessions
+     * @param predictor the given DifficultyPredictor shared by all sessions
+     * @param portfolio the given PortfolioSolver shared by all sessions
+     * @param timeoutLimit the given timeout limit in seconds
+     */
+    public GatewaySession(SolverPool pool, PuzzlePool puzzles, DifficultyPredictor predictor,
+            PortfolioSolver portfolio, int timeoutLimit) {
+        this.pool = pool;
+        this.puzzles = puzzles;
+        this.predictor = predictor;
+        this.portfolio = portfolio;
+        this.timeoutLimit = timeoutLimit;
+        solvers = new EnumMap<HeuristicOptions, SmartSolver>(HeuristicOptions.class);
+        adaptiveSolvers = new EnumMap<HeuristicOptions, SmartSolver>(HeuristicOptions.class);
+    }
+
+    // returns the solver of the given heuristic of this session, borrow one from the
+    // pool at first use
+    private synchronized SmartSolver solver(HeuristicOptions heuristic) {
+        SmartSolver solver = solvers.get(heuristic);
+        if (solver == null) {
+            solver = borrow(solvers, heuristic);
+            if (heuristic == HeuristicOptions.PD78) {
+                solver.timeoutSwitch(!timeoutOn);
+            } else {
+                solver.timeoutSwitch(timeoutOn);
+                solver.setTimeoutLimit(timeoutLimit);
+            }
+        }
+        return solver;
+    }
+
+    // borrow a solver of the given heuristic from the pool into the given solvers of
+    // this session
+    private SmartSolver borrow(EnumMap<HeuristicOptions, SmartSolver> owner,
+            HeuristicOptions heuristic) {
+        if (closed) {
+            throw new IllegalStateException("Session closed");
+        }
+        SmartSolver solver = pool.acquire(heuristic);
+        solver.versionSwitch(true);
+        solver.setSearchListener(searchListener);
+        owner.put(heuristic, solver);
+        return solver;
+    }
+
+    // returns all solvers borrowed by this session
+    private ArrayList<SmartSolver> borrowed() {
+        ArrayList<SmartSolver> list = new ArrayList<SmartSolver>(solvers.values());
+        list.addAll(adaptiveSolvers.values());
+        return list;
+    }
+
+    public synchronized Board getGoal() {
+        board = new Board(PuzzleConstants.getGoalTiles());
+        player = null;
+        return board;
+    }
+
+    public synchronized Board getRandom() {
+        board = new Board();
+        player = null;
+        return board;
+    }
+
+    public synchronized Board getEasy() {
+        return takePuzzle(PuzzleDifficultyLevel.EASY);
+    }
+
+    public synchronized Board getModerate() {
+        return takePuzzle(PuzzleDifficultyLevel.MODERATE);
+    }
+
+    public synchronized Board getHard() {
+        return takePuzzle(PuzzleDifficultyLevel.HARD);
+    }
+
+    // take a graded puzzle of the given level from the puzzle pool
+    private Board takePuzzle(PuzzleDifficultyLevel level) {
+        puzzle = puzzles.take(level);
+        board = puzzle.getBoard();
+        player = null;
+        return board;
+    }
+
+    /**
+     * Returns the SolveResult of the last puzzle of easy, moderate or hard level of
+     * this session, the optimal solution was found when it was graded; or null if the
+     * board is not one of them.
+     *
+     * @return SolveResult of the last graded puzzle, or null
+     */
+    public synchronized SolveResult getPuzzle() {
+        if (puzzle == null || !puzzle.getBoard().equals(board)) {
+            return null;
+        }
+        return puzzle;
+    }
+
+    public synchronized Board getBoard(byte[] block) {
+        board = new Board(block);
+        player = null;
+        return board;
+    }
+
+    /**
+     * Returns the interactive solver of the player on the last board of this session,
+     * it starts with the known solution of a graded puzzle.  The player moves on it and
+     * gets the remaining solution or a hint after each move without a full search.
+     *
+     * @return InteractiveSolver object of the last board of this session
+     */
+    public synchronized InteractiveSolver getInteractiveSolver() {
+        if (closed) {
+            throw new IllegalStateException("Session closed");
+        }
+        if (board == null) {
+            getGoal();
+        }
+        if (player == null) {
+            player = new InteractiveSolver(pool);
+            player.setTimeoutLimit(timeoutLimit);
+            SolveResult known = getPuzzle();
+            if (known != null && known.isSolved()) {
+                player.start(board, known.getSolution());
+            } else {
+                player.start(board);
+            }
+        }
+        return player;
+    }
+
+    /**
+     * Returns the last board of this session.
+     *
+     * @return Board object of the last board of this session
+     */
+    public synchronized Board getCurrentBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the solver of the strongest heuristic loaded so far, it upgrades to a
+     * stronger solver as its data files complete loading in background.
+     *
+     * @return SmartSolver object of the strongest heuristic ready
+     */
+    public SmartSolver getBestSolver() {
+        return solver(pool.bestReady());
+    }
+
+    /**
+     * Returns the solver of the heuristic predicted to solve the current board of this
+     * session fastest, with the predicted timeout limit.  It is a separate solver of
+     * the heuristic, the prediction is applied on every call and never changes the
+     * setting of the solvers of getSolver_0 to getSolver_6.
+     *
+     * @return SmartSolver object of the predicted heuristic
+     */
+    public synchronized SmartSolver getAdaptiveSolver() {
+        if (board == null || !board.isSolvable()) {
+            return getBestSolver();
+        }
+        DifficultyEstimate estimate = predictor.predict(board);
+        SmartSolver solver = adaptiveSolvers.get(estimate.getHeuristic());
+        if (solver == null) {
+            solver = borrow(adaptiveSolvers, estimate.getHeuristic());
+        }
+        solver.timeoutSwitch(timeoutOn);
+        solver.setTimeoutLimit(Math.max(timeoutLimit, estimate.getTimeoutLimit()));
+        return solver;
+    }
+
+    /**
+     * Returns the prediction of the current board of this session, or null if the
+     * board is not solvable.
+     *
+     * @return DifficultyEstimate of the current board, or null
+     */
+    public synchronized DifficultyEstimate getDifficultyEstimate() {
+        if (board == null || !board.isSolvable()) {
+            return null;
+        }
+        return predictor.predict(board);
+    }
+
+    public SmartSolverPdb getSolver_0() {
+        return (SmartSolverPdb) solver(HeuristicOptions.PD78);
+    }
+
+    public SmartSolverPdbWd getSolver_1() {
+        return (SmartSolverPdbWd) solver(HeuristicOptions.PD663);
+    }
+
+    public SmartSolverPdbWd getSolver_2() {
+        return (SmartSolverPdbWd) solver(HeuristicOptions.PD555);
+    }
+
+    public SmartSolverWdMd getSolver_3() {
+        return (SmartSolverWdMd) solver(HeuristicOptions.WDMD);
+    }
+
+    public SmartSolverWd getSolver_4() {
+        return (SmartSolverWd) solver(HeuristicOptions.WD);
+    }
+
+    public SmartSolverMd getSolver_5() {
+        SmartSolverMd solverMd = (SmartSolverMd) solver(HeuristicOptions.MD);
+        solverMd.linearConflictSwitch(SolverConstants.isTagLinearConflict());
+        return solverMd;
+    }
+
+    public SmartSolverMd getSolver_6() {
+        return getSolver_5();
+    }
+
+    public synchronized int getTimeoutLimit() {
+        return timeoutLimit;
+    }
+
+    public synchronized void setTimeoutLimit(int limit) {
+        timeoutLimit = limit;
+        if (player != null) {
+            player.setTimeoutLimit(limit);
+        }
+        for (Map.Entry<HeuristicOptions, SmartSolver> entry : solvers.entrySet()) {
+            if (entry.getKey() != HeuristicOptions.PD78) {
+                entry.getValue().setTimeoutLimit(timeoutLimit);
+            }
+        }
+    }
+
+    /**
+     * Returns the SolveResult of the last board of this session by racing the solvers
+     * of the heuristics which won the most races of boards of similar difficulty, the
+     * first completed one has the optimal solution.  cancelSearch stops the race.
+     *
+     * @return SolveResult of the winning solver, timeout or cancelled if none completed
+     */
+    public SolveResult solvePortfolio() {
+        Board target;
+        int limit;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Session closed");
+            }
+            if (board == null) {
+                getGoal();
+            }
+            target = board;
+            limit = timeoutLimit;
+            racing = Thread.currentThread();
+        }
+        try {
+            return portfolio.solve(target, limit);
+        } catch (InterruptedException ex) {
+            return SolveResult.cancelled(target, pool.bestReady());
+        } finally {
+            synchronized (this) {
+                racing = null;
+            }
+            // clear an interrupt of cancelSearch arrived after the race completed
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Set the listener to receive the progress of the searches of this session, null
+     * to remove it.  A Python front end implements SearchListener with the py4j
+     * callback server, e.g. to show the progress and cancel a hopeless search.
+     *
+     * @param listener the given SearchListener, or null
+     */
+    public synchronized void setSearchListener(SearchListener listener) {
+        searchListener = listener;
+        for (SmartSolver solver : borrowed()) {
+            solver.setSearchListener(listener);
+        }
+    }
+
+    /**
+     * Cancel the searches in progress of this session.
+     */
+    public synchronized void cancelSearch() {
+        for (SmartSolver solver : borrowed()) {
+            solver.cancelSearch();
+        }
+        if (racing != null) {
+            racing.interrupt();
+        }
+    }
+
+    /**
+     * Close the session and return its solvers to the pool, a search in progress will
+     * be cancelled and its solver returned when the search ends.  The solvers of this
+     * session must not be used after close.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        final ArrayList<SmartSolver> searching = new ArrayList<SmartSolver>();
+        for (SmartSolver solver : borrowed()) {
+            solver.cancelSearch();
+            if (isIdle(solver)) {
+                pool.release(solver);
+            } else {
+                searching.add(solver);
+            }
+        }
+        solvers.clear();
+        adaptiveSolvers.clear();
+        if (searching.isEmpty()) {
+            return;
+        }
+
+        // another borrower must not acquire a solver in the middle of the search, and
+        // a cancel arrived before the search started is cleared by it, cancel again
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (SmartSolver solver : searching) {
+                        while (!solver.awaitSearch(100)) {
+                            solver.cancelSearch();
+                        }
+                        pool.release(solver);
+                    }
+                } catch (InterruptedException ex) {
+                    System.err.println("System error : session solvers not released - "
+                            + ex.getMessage());
+                }
+            }
+        }, "GatewaySession-release");
+        releaser.setDaemon(true);
+        releaser.start();
+    }
+
+    // returns the boolean represents no search in progress of the given solver
+    private boolean isIdle(SmartSolver solver) {
+        try {
+            return solver.awaitSearch(1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
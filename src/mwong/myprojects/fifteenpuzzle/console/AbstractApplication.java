@@ -6,6 +6,7 @@ import mwong.myprojects.fifteenpuzzle.solver.Solver;
 import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceFactory;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceReplica;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
 import mwong.myprojects.fifteenpuzzle.solver.components.PatternOptions;
@@ -81,9 +82,25 @@ public abstract class AbstractApplication {
     }
 
     void loadReferenceConnection() {
+        if (refConnection instanceof ReferenceReplica) {
+            ReferenceReplica replica = (ReferenceReplica) refConnection;
+            if (replica.isConnected()) {
+                connectionType = ReferenceConnectionType.REMOTESERVER;
+            } else {
+                connectionType = ReferenceConnectionType.STANDALONE;
+            }
+            return;
+        }
+
         try {
-            refConnection = (new ReferenceFactory()).getReferenceServer();
-            connectionType = ReferenceConnectionType.REMOTESERVER;
+            ReferenceReplica replica
+                    = (ReferenceReplica) (new ReferenceFactory()).getReferenceReplica();
+            refConnection = replica;
+            if (replica.isConnected()) {
+                connectionType = ReferenceConnectionType.REMOTESERVER;
+            } else {
+                connectionType = ReferenceConnectionType.STANDALONE;
+            }
         } catch (IOException ex) {
             try {
                 refConnection = (new ReferenceFactory()).getReferenceLocal();
@@ -1,6 +1,5 @@
 package mwong.myprojects.fifteenpuzzle.console;
 
-import mwong.myprojects.fifteenpuzzle.solver.SmartSolverExtra;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.PatternOptions;
@@ -16,7 +15,7 @@ import java.rmi.RemoteException;
  * collection.  It will search again to showed the difference after the puzzle added to the
  * reference collection.
  *
- * <p>Dependencies : AdvancedRecord.java, Board.java, PatternOptions.java, SmartSolverExtra.java,
+ * <p>Dependencies : AdvancedRecord.java, Board.java, PatternOptions.java,
  *                   SmartSolverPdbBase.java
  *
  * @author Meisze Wong
@@ -24,7 +23,6 @@ import java.rmi.RemoteException;
  */
 public class DemoSolverPdb78 extends AbstractApplication {
     private SmartSolverPdb solverPdb78;
-    private SmartSolverExtra extra;
 
     /**
      * Initial DemoSolverPdb78 object.
@@ -33,7 +31,6 @@ public class DemoSolverPdb78 extends AbstractApplication {
         super();
         solverPdb78 = new SmartSolverPdb(PatternOptions.Pattern_78, refConnection);
         solverPdb78.timeoutSwitch(timeoutOff);
-        extra = new SmartSolverExtra();
         setSolverVersion();
     }
 
@@ -48,7 +45,7 @@ public class DemoSolverPdb78 extends AbstractApplication {
     // searching time has improved.
     private void solvePuzzle(Board board) {
         try {
-            if (extra.advancedContains(board, false, refConnection.getActiveMap()) == null) {
+            if (refConnection.lookupExact(board) == null) {
                 System.out.println("\t\tThis is NOT a reference board.\n");
             } else {
                 System.out.println("\t\tExists in stored reference collection.\n");
@@ -0,0 +1,89 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+
+/**
+ * ReferenceAdminConsole changes the setting of a running reference server.
+ *
+ * <p>Usage : ReferenceAdminConsole [-port port] status | cutoff seconds | reload |
+ *                                   compact | import file | export file
+ *
+ * <p>The file paths of import and export are on the server, within its data directory;
+ * a relative path is resolved in the data directory.  The default port is 1099,
+ * a shard listens at port 1099 + shard index.
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceAdminConsole {
+    /**
+     * Send the given command to the reference server.
+     *
+     * @param args main function standard argument
+     */
+    public static void main(String[] args) {
+        int remotePort = ReferenceServerProperties.getRemotePort();
+        int index = 0;
+        try {
+            if (args.length >= 2 && args[0].equals("-port")) {
+                remotePort = Integer.parseInt(args[1]);
+                index = 2;
+            }
+        } catch (NumberFormatException ex) {
+            printUsage();
+            return;
+        }
+        if (index >= args.length) {
+            printUsage();
+            return;
+        }
+
+        String lookupString = "rmi://" + ReferenceServerProperties.getRemoteHost() + ":"
+                + remotePort + "/" + ReferenceServerProperties.getAdminServiceName();
+        String command = args[index];
+        String value = null;
+        if (index + 1 < args.length) {
+            value = args[index + 1];
+        }
+
+        try {
+            ReferenceAdminRemote admin = (ReferenceAdminRemote) Naming.lookup(lookupString);
+            if (command.equals("status")) {
+                System.out.println(admin.getStatus());
+            } else if (command.equals("cutoff") && value != null) {
+                if (admin.setCutoffSetting(Integer.parseInt(value))) {
+                    System.out.println("Cutoff archive limit changed to " + value + " seconds.");
+                } else {
+                    System.out.println("Invalid or same cutoff limit - no change.");
+                }
+            } else if (command.equals("reload")) {
+                System.out.println(admin.reloadCollection() + " reference boards reloaded.");
+            } else if (command.equals("compact")) {
+                System.out.println(admin.compactCollection()
+                        + " symmetry reference boards merged.");
+            } else if (command.equals("import") && value != null) {
+                System.out.println(admin.importFile(value) + " reference boards changed.");
+            } else if (command.equals("export") && value != null) {
+                admin.exportFile(value);
+                System.out.println("Reference collection saved to " + value);
+            } else {
+                printUsage();
+            }
+        } catch (NumberFormatException ex) {
+            printUsage();
+        } catch (NotBoundException | MalformedURLException ex) {
+            System.out.println("Reference server is not running at port " + remotePort + ".");
+        } catch (RemoteException ex) {
+            System.out.println("System error : " + ex.getMessage());
+        }
+    }
+
+    // print the usage of the console
+    private static void printUsage() {
+        System.out.println("Usage: ReferenceAdminConsole [-port port] status | cutoff seconds"
+                + " | reload | compact | import file | export file");
+    }
+}
@@ -0,0 +1,97 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import mwong.myprojects.fifteenpuzzle.solver.FileProperties;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceAccumulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * ReferenceAdminImpl implements the remote administration of the ReferenceAccumulator
+ * object of a running reference server.  The files of import and export are restricted
+ * to the data directory of the server, a relative path is resolved in it.
+ *
+ * <p>Dependencies : FileProperties.java, ReferenceAccumulator.java,
+ *                   ReferenceAdminRemote.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceAdminImpl extends UnicastRemoteObject implements ReferenceAdminRemote {
+    private static final long serialVersionUID = 17195273121L;
+    private final ReferenceAccumulator accumulator;
+
+    public ReferenceAdminImpl(ReferenceAccumulator accumulator) throws RemoteException {
+        this.accumulator = accumulator;
+    }
+
+    @Override
+    public String getStatus() throws RemoteException {
+        return accumulator.getStatus();
+    }
+
+    @Override
+    public boolean setCutoffSetting(int cutoff) throws RemoteException {
+        return accumulator.setCutoffArchive(cutoff);
+    }
+
+    @Override
+    public int reloadCollection() throws RemoteException {
+        try {
+            return accumulator.reloadFile();
+        } catch (IOException | IllegalStateException ex) {
+            throw new RemoteException("Reload failed - " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public int compactCollection() throws RemoteException {
+        try {
+            return accumulator.compact();
+        } catch (IllegalStateException ex) {
+            throw new RemoteException("Compact failed - " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public int importFile(String filepath) throws RemoteException {
+        try {
+            return accumulator.importFile(resolve(filepath));
+        } catch (IOException ex) {
+            throw new RemoteException("Import failed - " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void exportFile(String filepath) throws RemoteException {
+        try {
+            accumulator.exportFile(resolve(filepath));
+        } catch (IOException ex) {
+            throw new RemoteException("Export failed - " + ex.getMessage());
+        }
+    }
+
+    // returns the canonical path of the given file path in the data directory, throws
+    // IOException if it is outside, e.g. "../" or a link out of the directory
+    private static String resolve(String filepath) throws IOException {
+        if (filepath == null || filepath.isEmpty()) {
+            throw new IOException("No file path");
+        }
+        File directory = new File(FileProperties.getDirectory()).getCanonicalFile();
+        File file = new File(filepath);
+        if (!file.isAbsolute()) {
+            file = new File(directory, filepath);
+        }
+        file = file.getCanonicalFile();
+        for (File parent = file.getParentFile(); parent != null;
+                parent = parent.getParentFile()) {
+            if (parent.equals(directory)) {
+                return file.getPath();
+            }
+        }
+        throw new IOException(filepath + " is outside the data directory "
+                + directory.getPath());
+    }
+}
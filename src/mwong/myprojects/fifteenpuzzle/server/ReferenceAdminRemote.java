@@ -0,0 +1,61 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * ReferenceAdminRemote is the remote interface of the administration of a running
+ * reference server.  The settings and the collection can be changed without restart
+ * the server, the clients continue to use the server during the change.
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public interface ReferenceAdminRemote extends Remote {
+    /**
+     * Returns the current status of the reference collection of the server.
+     *
+     * @return String of the current status of the reference collection
+     */
+    String getStatus() throws RemoteException;
+
+    /**
+     * Change the cutoff setting with the given integer in second, range from 1 to 10.
+     *
+     * @param cutoff the given cutoff setting in second
+     * @return boolean represents the cutoff setting has been changed
+     */
+    boolean setCutoffSetting(int cutoff) throws RemoteException;
+
+    /**
+     * Reload the reference collection from the data file of the server.
+     *
+     * @return integer of the number of reference boards loaded
+     */
+    int reloadCollection() throws RemoteException;
+
+    /**
+     * Rebuild the reference collection, merge the duplicate symmetry reference boards
+     * and save a compacted data file.
+     *
+     * @return integer of the number of reference boards merged
+     */
+    int compactCollection() throws RemoteException;
+
+    /**
+     * Merge the reference collection file of the given file path on the server, it must
+     * be in the data directory of the server.
+     *
+     * @param filepath the given file path on the server, relative to the data directory
+     * @return integer of the number of reference boards changed
+     */
+    int importFile(String filepath) throws RemoteException;
+
+    /**
+     * Save a compacted copy of the reference collection to the given file path on
+     * the server, it must be in the data directory of the server.
+     *
+     * @param filepath the given file path on the server, relative to the data directory
+     */
+    void exportFile(String filepath) throws RemoteException;
+}
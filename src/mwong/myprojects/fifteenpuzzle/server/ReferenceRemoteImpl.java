@@ -1,11 +1,15 @@
 package mwong.myprojects.fifteenpuzzle.server;
 
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
 import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceAccumulator;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceAdapter;
-import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceBoard;
-import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceMoves;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceDelta;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferencePartition;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceStore;
+import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
 
@@ -13,7 +17,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.HashMap;
 
 /**
  * ReferenceRemoteImpl implements the remote connection with referenceAdapter object.
@@ -23,11 +26,23 @@ import java.util.HashMap;
  */
 public class ReferenceRemoteImpl extends UnicastRemoteObject implements ReferenceRemote {
     private static final long serialVersionUID = 17195273121L;
-    private static ReferenceRemote refObject;
+    private final ReferenceAccumulator accumulator;
+    private final ReferenceRemote refObject;
 
     public ReferenceRemoteImpl()
             throws RemoteException, IOException, FileNotFoundException {
-        refObject = new ReferenceAdapter();
+        this(ReferencePartition.whole());
+    }
+
+    public ReferenceRemoteImpl(ReferencePartition partition)
+            throws RemoteException, IOException, FileNotFoundException {
+        accumulator = new ReferenceAccumulator(ApplicationMode.CONSOLE, partition);
+        refObject = new ReferenceAdapter(accumulator);
+    }
+
+    // returns the ReferenceAccumulator object of the server for administration
+    ReferenceAccumulator getAccumulator() {
+        return accumulator;
     }
 
     @Override
@@ -36,10 +51,35 @@ public class ReferenceRemoteImpl extends UnicastRemoteObject implements Referenc
     }
 
     @Override
-    public HashMap<ReferenceBoard, ReferenceMoves> getActiveMap() throws RemoteException {
+    public ReferenceStore getActiveMap() throws RemoteException {
         return refObject.getActiveMap();
     }
 
+    @Override
+    public long getVersion() throws RemoteException {
+        return refObject.getVersion();
+    }
+
+    @Override
+    public ReferenceDelta getChanges(long sinceVersion) throws RemoteException {
+        return refObject.getChanges(sinceVersion);
+    }
+
+    @Override
+    public AdvancedRecord lookupExact(Board board) throws RemoteException {
+        return refObject.lookupExact(board);
+    }
+
+    @Override
+    public byte advancedEstimate(Board board, byte estimate) throws RemoteException {
+        return refObject.advancedEstimate(board, estimate);
+    }
+
+    @Override
+    public void recordUsage(long[] keys, int[] hits, long[] uplifts) throws RemoteException {
+        refObject.recordUsage(keys, hits, uplifts);
+    }
+
     @Override
     public int getCutoffSetting() throws RemoteException {
         return refObject.getCutoffSetting();
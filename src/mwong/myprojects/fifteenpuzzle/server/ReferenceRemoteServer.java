@@ -1,6 +1,6 @@
 package mwong.myprojects.fifteenpuzzle.server;
 
-import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferencePartition;
 
 import java.io.IOException;
 import java.rmi.Naming;
@@ -8,7 +8,11 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.server.ExportException;
 
 /**
- * ReferenceRemoteServer starts the remote connection server.
+ * ReferenceRemoteServer starts the remote connection server.  To run a sharded
+ * collection, start one server for each shard with arguments shard index and number
+ * of shards, e.g. "0 3", "1 3" and "2 3"; an optional third argument overrides the
+ * default port number (1099 + shard index).  The administration service is bound on
+ * the same port, use ReferenceAdminConsole to change the setting while it is running.
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -19,16 +23,46 @@ public class ReferenceRemoteServer {
      * the location of the data file.
      */
     public static void main(String[] args) {
-        String remoteHost = ReferenceServerProperties.getRemoteHost();
+        ReferencePartition partition = ReferencePartition.whole();
         int remotePort = ReferenceServerProperties.getRemotePort();
+        if (args.length >= 2) {
+            try {
+                int shard = Integer.parseInt(args[0]);
+                int shards = Integer.parseInt(args[1]);
+                if (shards > ReferenceServerProperties.getMaxShards()) {
+                    System.out.println("Maximum " + ReferenceServerProperties.getMaxShards()
+                            + " shards only.");
+                    return;
+                }
+                partition = new ReferencePartition(shard, shards);
+                remotePort = ReferenceServerProperties.getRemotePort(shard);
+                if (args.length >= 3) {
+                    remotePort = Integer.parseInt(args[2]);
+                }
+            } catch (IllegalArgumentException ex) {
+                System.out.println("Usage: ReferenceRemoteServer [shard index] "
+                        + "[number of shards] [port]");
+                return;
+            }
+        }
+
+        String remoteHost = ReferenceServerProperties.getRemoteHost();
         String remoteServiceName = ReferenceServerProperties.getRemoteServiceName();
         String lookupString = "rmi://" + remoteHost + ":" + remotePort + "/" + remoteServiceName;
+        String adminString = "rmi://" + remoteHost + ":" + remotePort + "/"
+                + ReferenceServerProperties.getAdminServiceName();
 
         try {
-            ReferenceRemote refServer = new ReferenceRemoteImpl();
+            ReferenceRemoteImpl refServer = new ReferenceRemoteImpl(partition);
             LocateRegistry.createRegistry(remotePort);
             Naming.rebind(lookupString, refServer);
-            System.out.println("Reference server is running");
+            Naming.rebind(adminString, new ReferenceAdminImpl(refServer.getAccumulator()));
+            if (partition.isWhole()) {
+                System.out.println("Reference server is running");
+            } else {
+                System.out.println("Reference server (" + partition + ") is running at port "
+                        + remotePort);
+            }
         } catch (ExportException ex) {
             System.out.println("Port " + remotePort + " is not available.");
             System.out.println("System maintainence for reference collection.  Try again later.");
@@ -7,6 +7,8 @@ import java.util.Properties;
 
 /**
  * ReferenceServerCreatePropertiesFile save the server properties file for client connection.
+ * For a sharded collection, pass the number of shards as argument, the endpoints of all
+ * shards will be listed in order of shard index.
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -25,12 +27,29 @@ public class ReferenceServerCreatePropertiesFile {
             properties.setProperty("remoteHost", ReferenceServerProperties.getRemoteHost());
             properties.setProperty("remotePort",
                     Integer.toString(ReferenceServerProperties.getRemotePort()));
+            if (args.length > 0) {
+                int shards = Integer.parseInt(args[0]);
+                if (shards < 1 || shards > ReferenceServerProperties.getMaxShards()) {
+                    System.out.println("Number of shards between 1 and "
+                            + ReferenceServerProperties.getMaxShards() + " only.");
+                    return;
+                }
+                StringBuilder endpoints = new StringBuilder();
+                for (int shard = 0; shard < shards; shard++) {
+                    if (shard > 0) {
+                        endpoints.append(',');
+                    }
+                    endpoints.append(ReferenceServerProperties.getRemoteHost()).append(':')
+                            .append(ReferenceServerProperties.getRemotePort(shard));
+                }
+                properties.setProperty("remoteShards", endpoints.toString());
+            }
 
             File file = new File("resources/remote.properties");
             FileOutputStream fileOut = new FileOutputStream(file);
             properties.store(fileOut, "Reference connection settings");
             fileOut.close();
-        } catch (IOException ex) {
+        } catch (IOException | NumberFormatException ex) {
             ex.printStackTrace();
         }
     }
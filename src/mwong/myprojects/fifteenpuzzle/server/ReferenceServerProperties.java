@@ -9,8 +9,12 @@ package mwong.myprojects.fifteenpuzzle.server;
  */
 public class ReferenceServerProperties {
     private static final String REMOTE_SERVICE_NAME = "ReferenceService";
+    private static final String ADMIN_SERVICE_NAME = "ReferenceAdminService";
     private static final String REMOTE_HOST = "localhost";
     private static final int REMOTE_PORT = 1099;
+    private static final int MAX_SHARDS = 16;
+    private static final int SOLVER_PORT = 1299;
+    private static final String SOLVER_HOST = "localhost";
 
     /**
      * Retrieve the service name of the server.
@@ -21,6 +25,15 @@ public class ReferenceServerProperties {
         return REMOTE_SERVICE_NAME;
     }
 
+    /**
+     * Retrieve the administration service name of the server.
+     *
+     * @return A string value of administration service name.
+     */
+    public static String getAdminServiceName() {
+        return ADMIN_SERVICE_NAME;
+    }
+
     /**
      * Retrieve the default host name.
      *
@@ -38,4 +51,43 @@ public class ReferenceServerProperties {
     public static int getRemotePort() {
         return REMOTE_PORT;
     }
+
+    /**
+     * Retrieve the default port number of the given shard, each shard use the
+     * next port number.
+     *
+     * @param shard the given shard index
+     * @return An integer value of the default port number of the given shard.
+     */
+    public static int getRemotePort(int shard) {
+        return REMOTE_PORT + shard;
+    }
+
+    /**
+     * Retrieve the maximum number of shards.
+     *
+     * @return An integer value of the maximum number of shards.
+     */
+    public static int getMaxShards() {
+        return MAX_SHARDS;
+    }
+
+    /**
+     * Retrieve the default port number of the binary solver server.
+     *
+     * @return An integer value of the default port number of the solver server.
+     */
+    public static int getSolverPort() {
+        return SOLVER_PORT;
+    }
+
+    /**
+     * Retrieve the default host name the binary solver server binds to, the loopback
+     * interface only.
+     *
+     * @return A string value of the default host name of the solver server.
+     */
+    public static String getSolverHost() {
+        return SOLVER_HOST;
+    }
 }
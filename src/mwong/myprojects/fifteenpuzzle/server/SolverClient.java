@@ -0,0 +1,339 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import mwong.myprojects.fifteenpuzzle.service.SolveResult;
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * SolverClient is the client of the SolverServer.  The requests are pipelined on one
+ * connection, submit returns a Future at once and a reader thread completes it when the
+ * response arrived.  A request costs 16 bytes and a response up to 42 bytes.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, SolveResult.java,
+ *                   SolverProtocol.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolverClient implements Closeable {
+    private static final int connectTimeout = 5000;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final DataInputStream in;
+    private final HashMap<Integer, Call> pending;
+    private final Thread reader;
+    private int nextId;
+    private IOException failure;
+
+    // a request in progress
+    private final class Call implements Future<SolveResult> {
+        private final int id;
+        private final Board board;
+        private SolveResult result;
+        private Exception error;
+        private boolean done;
+        private boolean cancelled;
+
+        private Call(int id, Board board) {
+            this.id = id;
+            this.board = board;
+        }
+
+        // complete the request with the given result or error
+        private synchronized void complete(SolveResult result, Exception error) {
+            if (done) {
+                return;
+            }
+            this.result = result;
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                cancelled = true;
+                done = true;
+                notifyAll();
+            }
+            synchronized (pending) {
+                pending.remove(id);
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(SolverProtocol.HEADER_SIZE
+                        + SolverProtocol.REQUEST_SIZE);
+                SolverProtocol.putCancel(buffer, id);
+                send(buffer);
+            } catch (IOException ex) {
+                // the connection is lost, nothing to cancel
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public synchronized SolveResult get() throws InterruptedException,
+                ExecutionException {
+            while (!done) {
+                wait();
+            }
+            return report();
+        }
+
+        @Override
+        public synchronized SolveResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return report();
+        }
+
+        // returns the result of a done request, or throws its error
+        private SolveResult report() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (error != null) {
+                throw new ExecutionException(error);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Initializes SolverClient object connected to the solver server of the given host
+     * and port.
+     *
+     * @param host the given host name of the server
+     * @param port the given port number of the server
+     * @throws IOException if unable to connect
+     */
+    public SolverClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), connectTimeout);
+        out = socket.getOutputStream();
+        in = new DataInputStream(socket.getInputStream());
+        pending = new HashMap<Integer, Call>();
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "SolverClient-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Initializes SolverClient object connected to the solver server of the default
+     * host and port.
+     *
+     * @throws IOException if unable to connect
+     */
+    public SolverClient() throws IOException {
+        this(ReferenceServerProperties.getRemoteHost(),
+                ReferenceServerProperties.getSolverPort());
+    }
+
+    /**
+     * Send the request of the given board with the recommended heuristic, returns the
+     * Future of its result at once.
+     *
+     * @param board the given Board object
+     * @return Future of the SolveResult
+     * @throws IOException if the connection is lost
+     */
+    public Future<SolveResult> submit(Board board) throws IOException {
+        return submit(board, null);
+    }
+
+    /**
+     * Send the request of the given board with the given heuristic, returns the Future
+     * of its result at once.  A request rejected by a busy server completes with
+     * RejectedExecutionException as the cause.
+     *
+     * @param board the given Board object
+     * @param heuristic the given HeuristicOptions, or null for the recommended heuristic
+     * @return Future of the SolveResult
+     * @throws IOException if the connection is lost
+     */
+    public Future<SolveResult> submit(Board board, HeuristicOptions heuristic)
+            throws IOException {
+        return call(SolverProtocol.OP_SOLVE, board, heuristic);
+    }
+
+    /**
+     * Returns the SolveResult of the given board with the recommended heuristic, wait
+     * until the response arrived.
+     *
+     * @param board the given Board object
+     * @return SolveResult of the given board
+     * @throws IOException if the connection is lost
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws RejectedExecutionException if the server is busy
+     */
+    public SolveResult solve(Board board) throws IOException, InterruptedException {
+        try {
+            return submit(board).get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw (RuntimeException) ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the round trip time of a ping in seconds.
+     *
+     * @return double value of the round trip time in seconds
+     * @throws IOException if the connection is lost
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public double ping() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            call(SolverProtocol.OP_PING, new Board(), null).get();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        return (System.nanoTime() - start) / 1000000000.0;
+    }
+
+    // send a request of the given operation, returns the pending call
+    private Call call(byte operation, Board board, HeuristicOptions heuristic)
+            throws IOException {
+        Call call;
+        synchronized (pending) {
+            if (failure != null) {
+                throw failure;
+            }
+            call = new Call(nextId++, board);
+            pending.put(call.id, call);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SolverProtocol.HEADER_SIZE
+                + SolverProtocol.REQUEST_SIZE);
+        SolverProtocol.putRequest(buffer, call.id, operation, heuristic, board);
+        try {
+            send(buffer);
+        } catch (IOException ex) {
+            synchronized (pending) {
+                pending.remove(call.id);
+            }
+            throw ex;
+        }
+        return call;
+    }
+
+    // write the given request frame
+    private void send(ByteBuffer buffer) throws IOException {
+        synchronized (out) {
+            out.write(buffer.array(), 0, buffer.position());
+            out.flush();
+        }
+    }
+
+    // read the responses and complete the pending calls until the connection closed,
+    // a broken response closes the connection
+    private void receive() {
+        byte[] payload = new byte[SolverProtocol.MAX_RESPONSE_SIZE];
+        IOException error = null;
+        Call call = null;
+        try {
+            while (true) {
+                int length = in.readUnsignedShort();
+                if (length < SolverProtocol.RESPONSE_SIZE || length > payload.length) {
+                    throw new IOException("Invalid response frame of " + length + " bytes");
+                }
+                in.readFully(payload, 0, length);
+                ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+                int id = buffer.getInt();
+                byte status = buffer.get();
+                synchronized (pending) {
+                    call = pending.remove(id);
+                }
+                if (call == null) {
+                    continue;
+                }
+                if ((status & SolverProtocol.BUSY) != 0) {
+                    call.complete(null, new RejectedExecutionException("Solver server busy"));
+                } else if ((status & SolverProtocol.BAD_REQUEST) != 0) {
+                    call.complete(null, new IllegalArgumentException("Invalid request"));
+                } else {
+                    call.complete(SolverProtocol.getResult(buffer, status, call.board), null);
+                }
+            }
+        } catch (EOFException ex) {
+            error = new IOException("Connection closed by server");
+        } catch (IOException ex) {
+            error = ex;
+        } catch (RuntimeException ex) {
+            error = new IOException("Invalid response - " + ex, ex);
+            try {
+                socket.close();
+            } catch (IOException closeEx) {
+                // already closed
+            }
+        }
+
+        // the call of the broken response has been removed from pending
+        if (call != null) {
+            call.complete(null, error);
+        }
+        ArrayList<Call> lost;
+        synchronized (pending) {
+            failure = error;
+            lost = new ArrayList<Call>(pending.values());
+            pending.clear();
+        }
+        for (Call lostCall : lost) {
+            lostCall.complete(null, error);
+        }
+    }
+
+    /**
+     * Close the connection, the requests in progress fail with IOException.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
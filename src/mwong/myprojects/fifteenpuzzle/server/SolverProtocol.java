@@ -0,0 +1,254 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import mwong.myprojects.fifteenpuzzle.service.SolveResult;
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SolverProtocol is the binary request and response format of the remote solver.  Each
+ * message is a frame of 2 bytes length followed by the payload, all values in network
+ * byte order.  A client may send many requests without waiting, each response carries
+ * the id of its request and may arrive in any order.
+ *
+ * <p>Request payload (14 bytes): int request id, byte operation, byte heuristic ordinal
+ * (-1 for the recommended heuristic), long board packed in 4 bits per tile.  A cancel
+ * request carries the id of the request to cancel and no board.
+ *
+ * <p>Response payload (16 bytes + 8 bytes of each 32 moves): int request id, byte status
+ * flags, byte heuristic ordinal, byte number of moves, byte search depth, int number of
+ * nodes, int search time in microseconds, long array of moves packed in 2 bits per move.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, MoveSequence.java,
+ *                   SolveResult.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public final class SolverProtocol {
+    /**
+     * Operation to solve the board.
+     */
+    public static final byte OP_SOLVE = 1;
+
+    /**
+     * Operation to test the connection, the response has no solution.
+     */
+    public static final byte OP_PING = 2;
+
+    /**
+     * Operation to cancel the request of the given id, no response of its own; the
+     * cancelled request responds with the cancelled status.
+     */
+    public static final byte OP_CANCEL = 3;
+
+    /**
+     * Status flag of a solvable board.
+     */
+    public static final byte SOLVABLE = 0x01;
+
+    /**
+     * Status flag of a search timeout.
+     */
+    public static final byte TIMEOUT = 0x02;
+
+    /**
+     * Status flag of a cancelled search.
+     */
+    public static final byte CANCELLED = 0x04;
+
+    /**
+     * Status flag of a request rejected by a busy server.
+     */
+    public static final byte BUSY = 0x08;
+
+    /**
+     * Status flag of an invalid request.
+     */
+    public static final byte BAD_REQUEST = 0x10;
+
+    /**
+     * Size of the frame header in bytes.
+     */
+    public static final int HEADER_SIZE = 2;
+
+    /**
+     * Size of the request payload in bytes.
+     */
+    public static final int REQUEST_SIZE = 14;
+
+    /**
+     * Size of the response payload without moves in bytes.
+     */
+    public static final int RESPONSE_SIZE = 16;
+
+    /**
+     * Maximum size of the response payload in bytes, up to 96 moves.
+     */
+    public static final int MAX_RESPONSE_SIZE = RESPONSE_SIZE + 3 * 8;
+
+    private static final byte RECOMMENDED = -1;
+    private static final HeuristicOptions[] heuristics = HeuristicOptions.values();
+
+    // no instance
+    private SolverProtocol() {
+    }
+
+    /**
+     * Write the request frame of the given values into the given buffer.
+     *
+     * @param buffer the given ByteBuffer with at least 16 bytes remaining
+     * @param id the given request id
+     * @param operation the given operation, OP_SOLVE or OP_PING
+     * @param heuristic the given HeuristicOptions, or null for the recommended heuristic
+     * @param board the given Board object
+     */
+    public static void putRequest(ByteBuffer buffer, int id, byte operation,
+            HeuristicOptions heuristic, Board board) {
+        buffer.putShort((short) REQUEST_SIZE);
+        buffer.putInt(id);
+        buffer.put(operation);
+        buffer.put(heuristic == null ? RECOMMENDED : (byte) heuristic.ordinal());
+        buffer.putLong(MoveSequence.packTiles(board.getTiles()));
+    }
+
+    /**
+     * Write the cancel request frame of the given request id into the given buffer.
+     *
+     * @param buffer the given ByteBuffer with at least 16 bytes remaining
+     * @param id the given id of the request to cancel
+     */
+    public static void putCancel(ByteBuffer buffer, int id) {
+        buffer.putShort((short) REQUEST_SIZE);
+        buffer.putInt(id);
+        buffer.put(OP_CANCEL);
+        buffer.put(RECOMMENDED);
+        buffer.putLong(0L);
+    }
+
+    /**
+     * Write the response frame of the given request id and result into the given buffer.
+     *
+     * @param buffer the given ByteBuffer with at least 42 bytes remaining
+     * @param id the given request id
+     * @param result the given SolveResult object
+     */
+    public static void putResponse(ByteBuffer buffer, int id, SolveResult result) {
+        byte status = 0;
+        if (result.isSolvable()) {
+            status |= SOLVABLE;
+        }
+        if (result.isTimeout()) {
+            status |= TIMEOUT;
+        }
+        if (result.isCancelled()) {
+            status |= CANCELLED;
+        }
+        long[] moves = new long[0];
+        int length = 0;
+        if (result.isSolved() && result.getSolution() != null) {
+            moves = result.getSolution().getPacked();
+            length = result.getSolution().length();
+        }
+
+        buffer.putShort((short) (RESPONSE_SIZE + moves.length * 8));
+        buffer.putInt(id);
+        buffer.put(status);
+        buffer.put((byte) result.getHeuristic().ordinal());
+        buffer.put((byte) length);
+        buffer.put((byte) result.getSearchDepth());
+        buffer.putInt(result.getSearchNodeCount());
+        buffer.putInt((int) Math.min(Integer.MAX_VALUE,
+                Math.round(result.getSearchTime() * 1000000)));
+        for (long value : moves) {
+            buffer.putLong(value);
+        }
+    }
+
+    /**
+     * Write the response frame of the given request id and status without result into
+     * the given buffer, for a ping, busy or invalid request.
+     *
+     * @param buffer the given ByteBuffer with at least 18 bytes remaining
+     * @param id the given request id
+     * @param status the given status flags
+     */
+    public static void putStatus(ByteBuffer buffer, int id, byte status) {
+        buffer.putShort((short) RESPONSE_SIZE);
+        buffer.putInt(id);
+        buffer.put(status);
+        buffer.put(RECOMMENDED);
+        buffer.put((byte) 0);
+        buffer.put((byte) 0);
+        buffer.putInt(0);
+        buffer.putInt(0);
+    }
+
+    /**
+     * Returns the HeuristicOptions of the given ordinal, null for the recommended
+     * heuristic.
+     *
+     * @param ordinal the given ordinal of the heuristic, -1 for the recommended
+     * @return HeuristicOptions of the given ordinal, or null
+     * @throws IllegalArgumentException if the ordinal is out of range
+     */
+    public static HeuristicOptions toHeuristic(byte ordinal) {
+        if (ordinal == RECOMMENDED) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= heuristics.length) {
+            throw new IllegalArgumentException("Invalid heuristic " + ordinal);
+        }
+        return heuristics[ordinal];
+    }
+
+    /**
+     * Returns the Board object of the given packed tiles.
+     *
+     * @param packedTiles the given board packed in 4 bits per tile
+     * @return Board object of the given packed tiles
+     * @throws IllegalArgumentException if the tiles are not 0 to 15 each once
+     */
+    public static Board toBoard(long packedTiles) {
+        byte[] tiles = MoveSequence.unpackTiles(packedTiles);
+        int seen = 0;
+        for (byte tile : tiles) {
+            seen |= 1 << tile;
+        }
+        if (seen != 0xFFFF) {
+            throw new IllegalArgumentException("Invalid board");
+        }
+        return new Board(tiles);
+    }
+
+    /**
+     * Returns the SolveResult of the response payload in the given buffer of the given
+     * board, the request id must have been read.
+     *
+     * @param buffer the given ByteBuffer positioned after the request id
+     * @param status the given status flags, must have been read
+     * @param board the given Board object of the request
+     * @return SolveResult object of the response
+     */
+    public static SolveResult getResult(ByteBuffer buffer, byte status, Board board) {
+        HeuristicOptions heuristic = toHeuristic(buffer.get());
+        int length = buffer.get() & 0xFF;
+        int depth = buffer.get() & 0xFF;
+        int nodes = buffer.getInt();
+        double time = buffer.getInt() / 1000000.0;
+        MoveSequence solution = null;
+        boolean solvable = (status & SOLVABLE) != 0;
+        boolean timeout = (status & TIMEOUT) != 0;
+        if (solvable && !timeout) {
+            long[] moves = new long[(length + 31) / 32];
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = buffer.getLong();
+            }
+            solution = new MoveSequence(moves, length);
+        }
+        return SolveResult.valueOf(board, heuristic, solvable, timeout,
+                (status & CANCELLED) != 0, solution, depth, nodes, time);
+    }
+}
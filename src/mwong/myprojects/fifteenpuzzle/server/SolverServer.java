@@ -0,0 +1,538 @@
+package mwong.myprojects.fifteenpuzzle.server;
+
+import mwong.myprojects.fifteenpuzzle.service.DifficultyPredictor;
+import mwong.myprojects.fifteenpuzzle.service.JobListener;
+import mwong.myprojects.fifteenpuzzle.service.SolveJob;
+import mwong.myprojects.fifteenpuzzle.service.SolveService;
+import mwong.myprojects.fifteenpuzzle.service.SolverPool;
+import mwong.myprojects.fifteenpuzzle.service.SolverWarmup;
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceFactory;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
+import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * SolverServer is the remote solver of the binary SolverProtocol over non-blocking
+ * sockets.  One selector thread serves all connections; the requests are predicted and
+ * submitted to the SolveService by the submit workers, the responses are written back
+ * as soon as each search completed.  A connection may pipeline up to 256 requests, the
+ * others are answered busy; the server stops reading a connection while 256 responses
+ * are waiting for it to read.  The running searches of a closed connection are
+ * cancelled.  It listens at the loopback interface unless another host is given.
+ *
+ * <p>Dependencies : ApplicationMode.java, Board.java, DifficultyPredictor.java,
+ *                   HeuristicOptions.java, JobListener.java, ReferenceFactory.java,
+ *                   ReferenceRemote.java, ReferenceServerProperties.java, SolveJob.java,
+ *                   SolveService.java, SolverPool.java, SolverProtocol.java,
+ *                   SolverWarmup.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolverServer {
+    // maximum number of requests in progress of a connection
+    private static final int maxPipeline = 256;
+    private static final int bufferSize = 4096;
+    // maximum number of responses waiting to write before stop reading a connection
+    private static final int maxBacklog = 256;
+    // the mark of a request cancelled before its job submitted
+    private static final long cancelledMark = -2L;
+
+    private final SolveService service;
+    private final String host;
+    private final int port;
+    private final ConcurrentLinkedQueue<Connection> pendingWrites;
+    private final ExecutorService submitter;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile long connections;
+    private volatile long requests;
+    private volatile long bytesIn;
+    private volatile long bytesOut;
+
+    // a client connection, the request ids in progress map to the job ids
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(bufferSize);
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+        private final HashMap<Integer, Long> inProgress = new HashMap<Integer, Long>();
+        private SelectionKey key;
+        private boolean closed;
+        // stop reading until the backlog of responses written, selector thread only
+        private boolean paused;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Initializes SolverServer object with the given solve service and port number, it
+     * listens at the loopback interface.
+     *
+     * @param service the given SolveService to search the requests
+     * @param port the given port number, 0 for any free port
+     */
+    public SolverServer(SolveService service, int port) {
+        this(service, ReferenceServerProperties.getSolverHost(), port);
+    }
+
+    /**
+     * Initializes SolverServer object with the given solve service, host name and port
+     * number.
+     *
+     * @param service the given SolveService to search the requests
+     * @param host the given host name of the interface to listen, null for all
+     * @param port the given port number, 0 for any free port
+     */
+    public SolverServer(SolveService service, String host, int port) {
+        this.service = service;
+        this.host = host;
+        this.port = port;
+        pendingWrites = new ConcurrentLinkedQueue<Connection>();
+        submitter = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable task) {
+                        Thread thread = new Thread(task, "SolverServer-submit");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Open the server socket and start the selector thread.
+     *
+     * @throws IOException if the port is not available
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        if (host == null) {
+            serverChannel.socket().bind(new InetSocketAddress(port));
+        } else {
+            serverChannel.socket().bind(new InetSocketAddress(host, port));
+        }
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "SolverServer-selector");
+        selectorThread.start();
+    }
+
+    /**
+     * Returns the port number the server listens at.
+     *
+     * @return integer of the port number
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // the selector loop, accept the connections, read the requests and write the
+    // responses until shut down
+    private void serve() {
+        while (running) {
+            try {
+                selector.select();
+                Connection conn;
+                while ((conn = pendingWrites.poll()) != null) {
+                    if (conn.key.isValid()) {
+                        conn.key.interestOps(conn.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    conn = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(conn);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(conn);
+                        }
+                    } catch (IOException ex) {
+                        close(conn);
+                    }
+                }
+            } catch (IOException ex) {
+                System.err.println("System error : solver server - " + ex.getMessage());
+            }
+        }
+    }
+
+    // accept the new connection
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection conn = new Connection(channel);
+        conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        connections++;
+    }
+
+    // read the requests of the given connection, a connection sending a broken frame
+    // is closed
+    private void read(Connection conn) throws IOException {
+        int count = conn.channel.read(conn.input);
+        if (count < 0) {
+            close(conn);
+            return;
+        }
+        bytesIn += count;
+        process(conn);
+    }
+
+    // handle the complete requests read of the given connection, stop reading it while
+    // the client does not read its responses
+    private void process(Connection conn) {
+        ByteBuffer input = conn.input;
+        input.flip();
+        while (input.remaining() >= SolverProtocol.HEADER_SIZE) {
+            if (isBacklogged(conn)) {
+                conn.paused = true;
+                conn.key.interestOps(conn.key.interestOps() & ~SelectionKey.OP_READ);
+                break;
+            }
+            int length = input.getShort(input.position()) & 0xFFFF;
+            if (length != SolverProtocol.REQUEST_SIZE) {
+                close(conn);
+                return;
+            }
+            if (input.remaining() < SolverProtocol.HEADER_SIZE + length) {
+                break;
+            }
+            input.position(input.position() + SolverProtocol.HEADER_SIZE);
+            handle(conn, input.getInt(), input.get(), input.get(), input.getLong());
+        }
+        input.compact();
+    }
+
+    // returns the boolean represents the responses waiting to write of the given
+    // connection is over the limit
+    private boolean isBacklogged(Connection conn) {
+        synchronized (conn) {
+            return conn.output.size() >= maxBacklog;
+        }
+    }
+
+    // handle a request of the given connection in the selector thread, a solve request
+    // is passed to the submit workers
+    private void handle(final Connection conn, final int id, byte operation,
+            byte heuristicOrdinal, long packedTiles) {
+        requests++;
+        if (operation == SolverProtocol.OP_PING) {
+            respondStatus(conn, id, (byte) 0);
+            return;
+        } else if (operation == SolverProtocol.OP_CANCEL) {
+            Long jobId;
+            synchronized (conn) {
+                jobId = conn.inProgress.get(id);
+                // not submitted yet, the submit worker cancels it
+                if (jobId != null && jobId < 0) {
+                    conn.inProgress.put(id, cancelledMark);
+                }
+            }
+            if (jobId != null && jobId >= 0) {
+                service.cancel(jobId);
+            }
+            return;
+        } else if (operation != SolverProtocol.OP_SOLVE) {
+            respondStatus(conn, id, SolverProtocol.BAD_REQUEST);
+            return;
+        }
+
+        final HeuristicOptions heuristic;
+        final Board board;
+        try {
+            heuristic = SolverProtocol.toHeuristic(heuristicOrdinal);
+            board = SolverProtocol.toBoard(packedTiles);
+        } catch (IllegalArgumentException ex) {
+            respondStatus(conn, id, SolverProtocol.BAD_REQUEST);
+            return;
+        }
+
+        synchronized (conn) {
+            if (conn.inProgress.size() >= maxPipeline || conn.inProgress.containsKey(id)) {
+                respondStatus(conn, id, SolverProtocol.BUSY);
+                return;
+            }
+            // reserve the id, the job may complete before submit returns
+            conn.inProgress.put(id, -1L);
+        }
+        try {
+            submitter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    submit(conn, id, board, heuristic);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (conn) {
+                conn.inProgress.remove(id);
+            }
+            respondStatus(conn, id, SolverProtocol.BUSY);
+        }
+    }
+
+    // submit the given request of the given connection to the solve service in a submit
+    // worker, the prediction of the service may take a while
+    private void submit(final Connection conn, final int id, Board board,
+            HeuristicOptions heuristic) {
+        synchronized (conn) {
+            if (conn.closed) {
+                return;
+            }
+            Long jobId = conn.inProgress.get(id);
+            if (jobId != null && jobId == cancelledMark) {
+                conn.inProgress.remove(id);
+                return;
+            }
+        }
+        SolveJob job;
+        try {
+            job = service.submit(board, heuristic, new JobListener() {
+                @Override
+                public void jobDone(SolveJob job) {
+                    respond(conn, id, job);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (conn) {
+                conn.inProgress.remove(id);
+            }
+            respondStatus(conn, id, SolverProtocol.BUSY);
+            return;
+        }
+
+        boolean cancel = false;
+        synchronized (conn) {
+            Long jobId = conn.inProgress.get(id);
+            if (conn.closed || jobId != null && jobId == cancelledMark) {
+                cancel = true;
+            } else if (jobId != null) {
+                conn.inProgress.put(id, job.getId());
+            }
+        }
+        if (cancel) {
+            service.cancel(job.getId());
+        }
+    }
+
+    // queue the response of the given completed job
+    private void respond(Connection conn, int id, SolveJob job) {
+        ByteBuffer buffer = ByteBuffer.allocate(SolverProtocol.HEADER_SIZE
+                + SolverProtocol.MAX_RESPONSE_SIZE);
+        SolverProtocol.putResponse(buffer, id, job.getResult());
+        buffer.flip();
+        synchronized (conn) {
+            conn.inProgress.remove(id);
+        }
+        queue(conn, buffer);
+    }
+
+    // queue the response of the given status without result
+    private void respondStatus(Connection conn, int id, byte status) {
+        ByteBuffer buffer = ByteBuffer.allocate(SolverProtocol.HEADER_SIZE
+                + SolverProtocol.MAX_RESPONSE_SIZE);
+        SolverProtocol.putStatus(buffer, id, status);
+        buffer.flip();
+        queue(conn, buffer);
+    }
+
+    // queue the given response buffer of the given connection, the selector thread
+    // will write it
+    private void queue(Connection conn, ByteBuffer buffer) {
+        synchronized (conn) {
+            if (conn.closed) {
+                return;
+            }
+            conn.output.offerLast(buffer);
+        }
+        pendingWrites.offer(conn);
+        selector.wakeup();
+    }
+
+    // write the queued responses of the given connection, all in one system call;
+    // resume reading the connection when half of the backlog written
+    private void write(Connection conn) throws IOException {
+        boolean resume;
+        synchronized (conn) {
+            ByteBuffer[] buffers = conn.output.toArray(new ByteBuffer[conn.output.size()]);
+            bytesOut += conn.channel.write(buffers);
+            while (!conn.output.isEmpty() && !conn.output.peekFirst().hasRemaining()) {
+                conn.output.pollFirst();
+            }
+            resume = conn.paused && conn.output.size() <= maxBacklog / 2;
+            if (resume) {
+                conn.paused = false;
+            }
+            int ops = conn.paused ? 0 : SelectionKey.OP_READ;
+            if (!conn.output.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            conn.key.interestOps(ops);
+        }
+        // the requests read before pausing may be complete already
+        if (resume) {
+            process(conn);
+        }
+    }
+
+    // close the given connection and cancel its searches
+    private void close(Connection conn) {
+        ArrayList<Long> jobIds;
+        synchronized (conn) {
+            if (conn.closed) {
+                return;
+            }
+            conn.closed = true;
+            conn.output.clear();
+            jobIds = new ArrayList<Long>(conn.inProgress.values());
+            conn.inProgress.clear();
+        }
+        conn.key.cancel();
+        try {
+            conn.channel.close();
+        } catch (IOException ex) {
+            // already closed
+        }
+        for (long jobId : jobIds) {
+            if (jobId >= 0) {
+                service.cancel(jobId);
+            }
+        }
+    }
+
+    /**
+     * Returns the summary of the server.
+     *
+     * @return String of the summary of the server
+     */
+    public String summary() {
+        return "Solver server at port " + getPort() + ": " + connections + " connections, "
+                + requests + " requests, " + bytesIn + " bytes in, " + bytesOut
+                + " bytes out";
+    }
+
+    /**
+     * Stop the server, all connections are closed and their searches cancelled.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                close((Connection) key.attachment());
+            }
+        }
+        submitter.shutdown();
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ex) {
+            // do nothing
+        }
+    }
+
+    /**
+     * Start a solver server with the standalone reference collection, the optional
+     * arguments override the default port number and the loopback host name, a host
+     * name of "*" listens at all interfaces.
+     *
+     * @param args optional port number and host name
+     */
+    public static void main(String[] args) {
+        int port = ReferenceServerProperties.getSolverPort();
+        String host = ReferenceServerProperties.getSolverHost();
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                System.out.println("Usage: SolverServer [port [host]]");
+                return;
+            }
+        }
+        if (args.length > 1) {
+            host = args[1];
+            if (host.equals("*")) {
+                host = null;
+            }
+        }
+
+        ReferenceRemote refConnection;
+        try {
+            refConnection = (new ReferenceFactory()).getReferenceLocal(
+                    ApplicationMode.CONSOLE);
+        } catch (IOException ex) {
+            refConnection = null;
+        }
+        SolverPool pool = new SolverPool(refConnection, ApplicationMode.CONSOLE);
+        pool.preload(HeuristicOptions.values());
+        // accept traffic after the solvers run at the steady speed
+        SolverWarmup warmup = new SolverWarmup(pool, HeuristicOptions.values());
+        warmup.warmUp();
+        System.out.println(warmup.summary());
+        SolverServer server = new SolverServer(new SolveService(pool,
+                new DifficultyPredictor(pool)), host, port);
+        try {
+            server.start();
+            System.out.println("Solver server is running at port " + server.getPort());
+        } catch (IOException ex) {
+            System.out.println("Port " + port + " is not available.");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+/**
+ * DifficultyEstimate is the immutable data type of the prediction of a board without
+ * solving it: the best lower bound of the heuristics, the predicted number of moves and
+ * difficulty level, the heuristic expected to solve it fastest with its predicted
+ * number of nodes and the timeout limit for the search.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, PuzzleDifficultyLevel.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public final class DifficultyEstimate {
+    private final Board board;
+    private final int lowerBound;
+    private final boolean referenceHit;
+    private final int moves;
+    private final PuzzleDifficultyLevel level;
+    private final HeuristicOptions heuristic;
+    private final double nodes;
+    private final int timeoutLimit;
+
+    // initializes DifficultyEstimate object with all values
+    DifficultyEstimate(Board board, int lowerBound, boolean referenceHit, int moves,
+            PuzzleDifficultyLevel level, HeuristicOptions heuristic, double nodes,
+            int timeoutLimit) {
+        this.board = board;
+        this.lowerBound = lowerBound;
+        this.referenceHit = referenceHit;
+        this.moves = moves;
+        this.level = level;
+        this.heuristic = heuristic;
+        this.nodes = nodes;
+        this.timeoutLimit = timeoutLimit;
+    }
+
+    /**
+     * Returns the Board object of the prediction.
+     *
+     * @return Board object of the prediction
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the best lower bound of the number of moves of all heuristics used.
+     *
+     * @return integer of the best lower bound of the number of moves
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Returns the boolean represents the lower bound was raised by the reference
+     * collection.
+     *
+     * @return boolean represents the board hits the reference collection
+     */
+    public boolean isReferenceHit() {
+        return referenceHit;
+    }
+
+    /**
+     * Returns the predicted number of moves of the optimal solution.
+     *
+     * @return integer of the predicted number of moves
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Returns the predicted difficulty level, EASY up to 25 moves, MODERATE up to 50
+     * moves, otherwise HARD.
+     *
+     * @return PuzzleDifficultyLevel of the predicted difficulty level
+     */
+    public PuzzleDifficultyLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the heuristic expected to solve the board fastest.
+     *
+     * @return HeuristicOptions of the recommended heuristic
+     */
+    public HeuristicOptions getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Returns the predicted number of nodes of the recommended heuristic.
+     *
+     * @return double value of the predicted number of nodes
+     */
+    public double getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the timeout limit in seconds for the search of the recommended heuristic.
+     *
+     * @return integer of the timeout limit in seconds
+     */
+    public int getTimeoutLimit() {
+        return timeoutLimit;
+    }
+
+    /**
+     * Returns the String of the prediction.
+     *
+     * @return String of the prediction
+     */
+    @Override
+    public String toString() {
+        return String.format("%s ~%d moves (lower bound %d%s), %s ~%.0f nodes, timeout %ds",
+                level, moves, lowerBound, referenceHit ? " reference" : "", heuristic, nodes,
+                timeoutLimit);
+    }
+}
@@ -0,0 +1,356 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolutionStore;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * DifficultyPredictor predicts the number of moves of the optimal solution and the
+ * number of nodes of each heuristic without solving the board.  The features are the
+ * estimates of the heuristics ready in the solver pool on the board and its symmetry
+ * board, and the advanced estimate of the reference collection.  The number of moves
+ * is the best lower bound plus a gap linear to it, rounded to the parity of the
+ * manhattan distance.  The number of nodes of a heuristic grows exponentially with the
+ * gap between the number of moves and its estimate.  Both models start with the
+ * typical values of the 15 puzzle, and are calibrated with least squares against the
+ * solved boards of the solution store and the search results.
+ *
+ * <p>Dependencies : Board.java, DifficultyEstimate.java, HeuristicOptions.java,
+ *                   PuzzleDifficultyLevel.java, SmartSolver.java, SolutionStore.java,
+ *                   SolveResult.java, SolverPool.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class DifficultyPredictor {
+    private static final HeuristicOptions[] features = {HeuristicOptions.MDLC,
+        HeuristicOptions.WD, HeuristicOptions.PD555, HeuristicOptions.PD663,
+        HeuristicOptions.PD78};
+    private static final HeuristicOptions[] choices = {HeuristicOptions.MDLC,
+        HeuristicOptions.WD, HeuristicOptions.WDMD, HeuristicOptions.PD555,
+        HeuristicOptions.PD663, HeuristicOptions.PD78};
+    // relative time of one node of each heuristic, manhattan distance is 1
+    private static final double[] nodeCost = {1.0, 1.2, 1.5, 1.8, 2.5, 2.5, 2.5};
+    // minimum number of samples to calibrate a model
+    private static final int minSamples = 10;
+    private static final int minTimeout = 1;
+    private static final int maxTimeout = 300;
+    // timeout limit as multiple of the predicted search time
+    private static final double timeoutFactor = 4.0;
+
+    private final SolverPool pool;
+    private double gapBase;
+    private double gapSlope;
+    private final double[] nodeBase;
+    private final double[] nodeSlope;
+    private double nodeRate;
+    private double meanError;
+    private int samples;
+
+    /**
+     * Initializes DifficultyPredictor object with the given solver pool and the
+     * typical values of the 15 puzzle.
+     *
+     * @param pool the given SolverPool shared with other services
+     */
+    public DifficultyPredictor(SolverPool pool) {
+        this.pool = pool;
+        gapBase = 2.0;
+        gapSlope = 0.1;
+        int size = HeuristicOptions.values().length;
+        nodeBase = new double[size];
+        nodeSlope = new double[size];
+        for (int i = 0; i < size; i++) {
+            nodeBase[i] = 1.0;
+            // branching factor of the 15 puzzle is about 2.13
+            nodeSlope[i] = Math.log10(2.13);
+        }
+        nodeRate = 2000000;
+        meanError = -1;
+    }
+
+    /**
+     * Returns the DifficultyEstimate of the given board.
+     *
+     * @param board the given Board object
+     * @return DifficultyEstimate of the given board
+     */
+    public DifficultyEstimate predict(Board board) {
+        if (!board.isSolvable()) {
+            throw new IllegalArgumentException("Board is not solvable");
+        }
+        EnumMap<HeuristicOptions, Integer> estimates = estimates(board);
+        int lowerBound = maxEstimate(estimates);
+        int reference = referenceEstimate(board);
+        boolean referenceHit = reference > lowerBound;
+        lowerBound = Math.max(lowerBound, reference);
+
+        int moves;
+        synchronized (this) {
+            moves = lowerBound + (int) Math.round(gapBase + gapSlope * lowerBound);
+        }
+        moves = Math.max(moves, lowerBound);
+        // every move changes the parity of manhattan distance
+        if ((moves - estimates.get(HeuristicOptions.MDLC)) % 2 != 0) {
+            moves++;
+        }
+
+        HeuristicOptions best = HeuristicOptions.MDLC;
+        double bestNodes = 0;
+        double bestTime = Double.MAX_VALUE;
+        for (HeuristicOptions heuristic : choices) {
+            Integer estimate = estimates.get(heuristic);
+            if (estimate == null) {
+                continue;
+            }
+            double nodes = predictNodes(heuristic, moves - estimate);
+            double time = nodes * nodeCost[heuristic.ordinal()];
+            if (time < bestTime) {
+                best = heuristic;
+                bestNodes = nodes;
+                bestTime = time;
+            }
+        }
+
+        int timeout;
+        synchronized (this) {
+            timeout = (int) Math.ceil(timeoutFactor * bestTime / nodeRate);
+        }
+        timeout = Math.max(minTimeout, Math.min(maxTimeout, timeout));
+        return new DifficultyEstimate(board, lowerBound, referenceHit, moves, level(moves),
+                best, bestNodes, timeout);
+    }
+
+    // returns the difficulty level of the given number of moves, the same ranges of
+    // the puzzle pool
+    private static PuzzleDifficultyLevel level(int moves) {
+        if (moves <= 25) {
+            return PuzzleDifficultyLevel.EASY;
+        } else if (moves <= 50) {
+            return PuzzleDifficultyLevel.MODERATE;
+        }
+        return PuzzleDifficultyLevel.HARD;
+    }
+
+    // returns the predicted number of nodes of the given heuristic and gap
+    private synchronized double predictNodes(HeuristicOptions heuristic, int gap) {
+        int idx = heuristic.ordinal();
+        return Math.pow(10, nodeBase[idx] + nodeSlope[idx] * Math.max(gap, 0));
+    }
+
+    // returns the estimates of the ready heuristics of the given board, the maximum
+    // of the board and its symmetry board; walking distance + manhattan distance is
+    // the maximum of both
+    private EnumMap<HeuristicOptions, Integer> estimates(Board board) {
+        Board symmetry = new Board(board.getTilesSym());
+        EnumMap<HeuristicOptions, Integer> estimates =
+                new EnumMap<HeuristicOptions, Integer>(HeuristicOptions.class);
+        for (HeuristicOptions heuristic : features) {
+            if (!pool.isReady(heuristic)) {
+                continue;
+            }
+            SmartSolver solver = pool.acquire(heuristic);
+            try {
+                estimates.put(heuristic, Math.max(solver.heuristicStandard(board),
+                        solver.heuristicStandard(symmetry)));
+            } finally {
+                pool.release(solver);
+            }
+        }
+        Integer wd = estimates.get(HeuristicOptions.WD);
+        if (wd != null && pool.isReady(HeuristicOptions.WDMD)) {
+            estimates.put(HeuristicOptions.WDMD,
+                    Math.max(wd, estimates.get(HeuristicOptions.MDLC)));
+        }
+        return estimates;
+    }
+
+    // returns the maximum of the given estimates of the heuristics
+    private static int maxEstimate(EnumMap<HeuristicOptions, Integer> estimates) {
+        int max = 0;
+        for (int estimate : estimates.values()) {
+            max = Math.max(max, estimate);
+        }
+        return max;
+    }
+
+    // returns the advanced estimate of the reference collection of the given board,
+    // 0 if not available; the version setting of the solver is restored
+    private int referenceEstimate(Board board) {
+        SmartSolver solver = pool.acquire(pool.bestReady());
+        boolean advanced = solver.isFlagAdvancedVersion();
+        try {
+            if (!solver.versionSwitch(true)) {
+                return 0;
+            }
+            return solver.heuristicAdvanced(board);
+        } finally {
+            solver.versionSwitch(advanced);
+            pool.release(solver);
+        }
+    }
+
+    /**
+     * Calibrate the number of moves with the solved boards of the given solution store,
+     * up to the given number of boards.
+     *
+     * @param store the given SolutionStore object
+     * @param max the given maximum number of boards
+     * @return boolean represents the model has been calibrated
+     */
+    public boolean calibrate(SolutionStore store, int max) {
+        return calibrateMoves(store.sample(max));
+    }
+
+    /**
+     * Calibrate the number of moves with the given boards and their number of moves of
+     * the optimal solution.  The lower bound of each board includes the advanced
+     * estimate, the same as predict.  It requires minimum 10 boards.
+     *
+     * @param corpus the given Map of boards and their number of moves
+     * @return boolean represents the model has been calibrated
+     */
+    public boolean calibrateMoves(Map<Board, Integer> corpus) {
+        if (corpus.size() < minSamples) {
+            return false;
+        }
+        int count = corpus.size();
+        double[] lowerBounds = new double[count];
+        double[] gaps = new double[count];
+        int idx = 0;
+        for (Map.Entry<Board, Integer> entry : corpus.entrySet()) {
+            Board board = entry.getKey();
+            int lowerBound = Math.max(maxEstimate(estimates(board)), referenceEstimate(board));
+            lowerBounds[idx] = lowerBound;
+            gaps[idx] = entry.getValue() - lowerBound;
+            idx++;
+        }
+        double[] line = leastSquares(lowerBounds, gaps);
+
+        double error = 0;
+        for (int i = 0; i < count; i++) {
+            error += Math.abs(gaps[i] - Math.round(line[0] + line[1] * lowerBounds[i]));
+        }
+        synchronized (this) {
+            gapBase = line[0];
+            gapSlope = line[1];
+            meanError = error / count;
+            samples = count;
+        }
+        return true;
+    }
+
+    /**
+     * Calibrate the number of nodes and the search speed of each heuristic with the
+     * given search results.  A heuristic requires minimum 10 results to calibrate.
+     *
+     * @param results the given Collection of SolveResult of completed searches
+     */
+    public void calibrateNodes(Collection<SolveResult> results) {
+        EnumMap<HeuristicOptions, double[][]> data =
+                new EnumMap<HeuristicOptions, double[][]>(HeuristicOptions.class);
+        EnumMap<HeuristicOptions, Integer> counts =
+                new EnumMap<HeuristicOptions, Integer>(HeuristicOptions.class);
+        double totalNodes = 0;
+        double totalTime = 0;
+        for (SolveResult result : results) {
+            if (!result.isSolved()) {
+                continue;
+            }
+            HeuristicOptions heuristic = result.getHeuristic();
+            Integer estimate = estimates(result.getBoard()).get(heuristic);
+            if (estimate == null) {
+                continue;
+            }
+            double[][] points = data.get(heuristic);
+            if (points == null) {
+                points = new double[2][results.size()];
+                data.put(heuristic, points);
+                counts.put(heuristic, 0);
+            }
+            int idx = counts.get(heuristic);
+            points[0][idx] = Math.max(result.moves() - estimate, 0);
+            points[1][idx] = Math.log10(result.getSearchNodeCount() + 1);
+            counts.put(heuristic, idx + 1);
+            // too short to time the speed
+            if (result.getSearchTime() >= 0.1) {
+                totalNodes += result.getSearchNodeCount() * nodeCost[heuristic.ordinal()];
+                totalTime += result.getSearchTime();
+            }
+        }
+
+        synchronized (this) {
+            for (Map.Entry<HeuristicOptions, double[][]> entry : data.entrySet()) {
+                int count = counts.get(entry.getKey());
+                if (count < minSamples) {
+                    continue;
+                }
+                double[] line = leastSquares(Arrays.copyOf(entry.getValue()[0], count),
+                        Arrays.copyOf(entry.getValue()[1], count));
+                nodeBase[entry.getKey().ordinal()] = line[0];
+                nodeSlope[entry.getKey().ordinal()] = line[1];
+            }
+            if (totalTime > 0) {
+                nodeRate = totalNodes / totalTime;
+            }
+        }
+    }
+
+    // returns the intercept and slope of the least squares line of the given points,
+    // slope 0 if all x are the same
+    private static double[] leastSquares(double[] x, double[] y) {
+        int count = x.length;
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < count; i++) {
+            sumX += x[i];
+            sumY += y[i];
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        double sxx = 0;
+        double sxy = 0;
+        for (int i = 0; i < count; i++) {
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+        }
+        double slope = 0;
+        if (sxx > 0) {
+            slope = sxy / sxx;
+        }
+        return new double[] {meanY - slope * meanX, slope};
+    }
+
+    /**
+     * Returns the mean absolute error in moves of the last calibration, -1 if not
+     * calibrated.
+     *
+     * @return double value of the mean absolute error in moves
+     */
+    public synchronized double getMeanError() {
+        return meanError;
+    }
+
+    /**
+     * Returns the summary of the models.
+     *
+     * @return String of the summary of the models
+     */
+    public synchronized String summary() {
+        String calibration = "not calibrated";
+        if (samples > 0) {
+            calibration = String.format("calibrated with %d boards, mean error %.2f moves",
+                    samples, meanError);
+        }
+        return String.format("Difficulty predictor: moves = lower bound + %.2f + %.3f x "
+                + "lower bound, %s; %.0f nodes per second.", gapBase, gapSlope, calibration,
+                nodeRate);
+    }
+}
@@ -0,0 +1,282 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.util.ArrayDeque;
+
+/**
+ * InteractiveSolver keeps the optimal solution of the board of a player while the
+ * player moves, so the remaining solution and the hint after each move are found with
+ * little or no search.  A move along the known solution leaves the rest of it optimal.
+ * A move off it changes the optimal number of moves by one, up or down; the known
+ * solution with the move undone is one move longer, so only a bounded search for a
+ * solution two moves shorter is needed, usually settled by the heuristic estimate
+ * alone.  A move back to an earlier board restores its solution.
+ *
+ * <p>The searches borrow the strongest ready solver from the SolverPool.
+ *
+ * <p>Dependencies : Board.java, Direction.java, MoveSequence.java, SmartSolver.java,
+ *                   SolveResult.java, SolverPool.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class InteractiveSolver {
+    // number of earlier boards kept to restore their solution
+    private static final int historySize = 100;
+
+    private final SolverPool pool;
+    private final ArrayDeque<State> history;
+    private State current;
+    private int timeoutLimit;
+    private int instant;
+    private int bounded;
+    private int full;
+    private long nodes;
+
+    // a board with a solution of it, optimal or one verification away; the solution
+    // is null if unknown
+    private static final class State {
+        private final Board board;
+        private final MoveSequence solution;
+        private final boolean optimal;
+
+        private State(Board board, MoveSequence solution, boolean optimal) {
+            this.board = board;
+            this.solution = solution;
+            this.optimal = optimal;
+        }
+    }
+
+    /**
+     * Initializes InteractiveSolver object with the given solver pool and the default
+     * timeout limit.
+     *
+     * @param pool the given SolverPool shared with other services
+     */
+    public InteractiveSolver(SolverPool pool) {
+        this.pool = pool;
+        history = new ArrayDeque<State>();
+        timeoutLimit = SolverProperties.getTimeoutLimit();
+    }
+
+    /**
+     * Start with the given board, its solution is unknown.
+     *
+     * @param board the given Board object
+     */
+    public synchronized void start(Board board) {
+        start(board, null);
+    }
+
+    /**
+     * Start with the given board and its known optimal solution, e.g. of a graded
+     * puzzle.
+     *
+     * @param board the given Board object
+     * @param solution the given MoveSequence of the optimal solution, or null if unknown
+     */
+    public synchronized void start(Board board, MoveSequence solution) {
+        if (solution != null && !solution.verify(board)) {
+            throw new IllegalArgumentException("Solution does not solve the board");
+        }
+        history.clear();
+        current = new State(board, solution, solution != null);
+    }
+
+    /**
+     * Set the timeout limit of the searches in seconds, 0 for no limit.
+     *
+     * @param seconds the given timeout limit in seconds, 0 for no limit
+     */
+    public synchronized void setTimeoutLimit(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid timeout limit " + seconds);
+        }
+        timeoutLimit = seconds;
+    }
+
+    /**
+     * Returns the current board.
+     *
+     * @return Board object of the current board
+     */
+    public synchronized Board getBoard() {
+        checkStarted();
+        return current.board;
+    }
+
+    // throws IllegalStateException if no board started
+    private void checkStarted() {
+        if (current == null) {
+            throw new IllegalStateException("No board started");
+        }
+    }
+
+    /**
+     * Move the blank tile of the current board in the given direction, returns the new
+     * board.  The solution of the new board is derived from the current one without
+     * search.
+     *
+     * @param dir the given Direction to move the blank tile
+     * @return Board object after the move
+     * @throws IllegalArgumentException if the move is not valid
+     */
+    public synchronized Board move(Direction dir) {
+        checkStarted();
+        if (dir == Direction.NONE || !current.board.getValidMoves()[dir.getValue()]) {
+            throw new IllegalArgumentException("Invalid move " + dir);
+        }
+        Board next = current.board.shift(dir);
+
+        // back to the last board, restore its solution
+        State last = history.peekLast();
+        if (last != null && last.board.equals(next)) {
+            history.pollLast();
+            current = last;
+            return next;
+        }
+
+        history.offerLast(current);
+        if (history.size() > historySize) {
+            history.pollFirst();
+        }
+        MoveSequence solution = current.solution;
+        if (solution == null) {
+            current = new State(next, null, false);
+        } else if (solution.length() > 0 && solution.get(0) == dir) {
+            // along the solution, the rest of an optimal solution is optimal
+            current = new State(next, suffix(solution), current.optimal);
+        } else {
+            // off the solution, undo the move then follow it
+            current = new State(next, prepend(dir.oppositeDirection(), solution), false);
+        }
+        return next;
+    }
+
+    // returns the MoveSequence without the first move of the given one
+    private static MoveSequence suffix(MoveSequence solution) {
+        return new MoveSequence(solution.toArray(), 1, solution.length() - 1);
+    }
+
+    // returns the MoveSequence of the given move followed by the given one
+    private static MoveSequence prepend(Direction dir, MoveSequence solution) {
+        Direction[] moves = new Direction[solution.length() + 1];
+        moves[0] = dir;
+        System.arraycopy(solution.toArray(), 0, moves, 1, solution.length());
+        return new MoveSequence(moves, 0, moves.length);
+    }
+
+    /**
+     * Returns the optimal solution of the current board.  It is known at once if the
+     * player moved along the solution, a bounded search if off it, or a full search
+     * if the solution was never known.
+     *
+     * @return MoveSequence of the optimal solution, or null if timeout or not solvable
+     */
+    public synchronized MoveSequence solution() {
+        checkStarted();
+        if (!current.board.isSolvable()) {
+            return null;
+        }
+        if (current.solution == null) {
+            SolveResult result = search(current.board, -1);
+            if (result.isSolved()) {
+                full++;
+                current = new State(current.board, result.getSolution(), true);
+            }
+        } else if (!current.optimal) {
+            verify();
+        } else {
+            instant++;
+        }
+        if (current.solution == null || !current.optimal) {
+            return null;
+        }
+        return current.solution;
+    }
+
+    // verify the known solution of the current board is optimal, or replace it with a
+    // shorter one found by a bounded search
+    private void verify() {
+        // every move changes the parity, a shorter solution is 2 moves shorter
+        int maxLimit = current.solution.length() - 2;
+        SmartSolver solver = pool.acquire(pool.bestReady());
+        int estimate;
+        try {
+            estimate = solver.heuristic(current.board);
+        } finally {
+            pool.release(solver);
+        }
+        if (estimate > maxLimit) {
+            instant++;
+            current = new State(current.board, current.solution, true);
+            return;
+        }
+
+        SolveResult result = search(current.board, maxLimit);
+        if (result.isTimeout()) {
+            return;
+        }
+        bounded++;
+        if (result.isSolved()) {
+            current = new State(current.board, result.getSolution(), true);
+        } else {
+            current = new State(current.board, current.solution, true);
+        }
+    }
+
+    // returns the SolveResult of the given board by the strongest ready solver within
+    // the given maximum number of moves, -1 for no maximum
+    private SolveResult search(Board board, int maxLimit) {
+        SmartSolver solver = pool.acquire(pool.bestReady());
+        try {
+            solver.versionSwitch(true);
+            solver.timeoutSwitch(timeoutLimit > 0);
+            if (timeoutLimit > 0) {
+                solver.setTimeoutLimit(timeoutLimit);
+            }
+            if (maxLimit < 0) {
+                solver.findOptimalPath(board);
+            } else {
+                solver.findOptimalPathWithin(board, maxLimit);
+            }
+            nodes += Math.max(0, solver.searchNodeCount());
+            return SolveResult.of(board, solver);
+        } finally {
+            solver.setTimeoutLimit(SolverProperties.getTimeoutLimit());
+            pool.release(solver);
+        }
+    }
+
+    /**
+     * Returns the next move of the optimal solution of the current board.
+     *
+     * @return Direction of the next optimal move, Direction.NONE if the board is the
+     *         goal, or null if timeout or not solvable
+     */
+    public synchronized Direction hint() {
+        MoveSequence solution = solution();
+        if (solution == null) {
+            return null;
+        }
+        if (solution.length() == 0) {
+            return Direction.NONE;
+        }
+        return solution.get(0);
+    }
+
+    /**
+     * Returns the summary of the solutions served.
+     *
+     * @return String of the summary of the solutions served
+     */
+    public synchronized String summary() {
+        return "Interactive solver: " + instant + " instant, " + bounded + " bounded search, "
+                + full + " full search, " + nodes + " nodes";
+    }
+}
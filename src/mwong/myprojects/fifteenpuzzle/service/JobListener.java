@@ -0,0 +1,20 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+/**
+ * JobListener is the interface to receive the completed SolveJob of the SolveService
+ * as soon as each job completed or cancelled.  It is called in the front end threads,
+ * not the search workers, so a slow listener does not hold up the searches.
+ *
+ * <p>Dependencies : SolveJob.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public interface JobListener {
+    /**
+     * Receive the given job completed or cancelled.
+     *
+     * @param job the given SolveJob object
+     */
+    void jobDone(SolveJob job);
+}
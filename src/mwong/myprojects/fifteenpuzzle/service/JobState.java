@@ -0,0 +1,34 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+/**
+ * JobState the state of a SolveJob in the SolveService.
+ * <li>{@link #QUEUED}</li>
+ * <li>{@link #RUNNING}</li>
+ * <li>{@link #COMPLETED}</li>
+ * <li>{@link #CANCELLED}</li>
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+
+public enum JobState {
+    /**
+     * Waiting in the job queue.
+     */
+    QUEUED,
+
+    /**
+     * Searching by a worker.
+     */
+    RUNNING,
+
+    /**
+     * Search completed, solved or timeout.
+     */
+    COMPLETED,
+
+    /**
+     * Cancelled before the search completed.
+     */
+    CANCELLED;
+}
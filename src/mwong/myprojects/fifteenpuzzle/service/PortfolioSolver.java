@@ -0,0 +1,360 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * PortfolioSolver races the solvers of several heuristics on the same board in separate
+ * threads.  All heuristics are admissible, so the first solver completed has the
+ * optimal solution; the others are cancelled at once.  It records the winning heuristic
+ * of each difficulty band, the band of a board is its manhattan distance with linear
+ * conflict estimate in tens of moves.  After the learning races of a band, it starts
+ * only the heuristics which have won a fair share of the races of the band.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, SmartSolver.java,
+ *                   SolveResult.java, SolverPool.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class PortfolioSolver {
+    private static final HeuristicOptions[] defaultCandidates = {HeuristicOptions.WDMD,
+        HeuristicOptions.PD663, HeuristicOptions.PD78};
+    // number of races of a band which start all candidates
+    private static final int learningRaces = 10;
+    // minimum percentage of wins in a band to be started after learning
+    private static final int minWinShare = 10;
+    private static final int bandWidth = 10;
+    private static final int maxBands = 9;
+
+    private final SolverPool pool;
+    private final HeuristicOptions[] candidates;
+    private final ExecutorService executor;
+    private final int[] races;
+    private final ArrayList<EnumMap<HeuristicOptions, Integer>> wins;
+    private int timeoutLimit;
+
+    // the solvers of one board, the first completed one wins; all of them are held
+    // until the last search ended
+    private static final class Race {
+        private final Board board;
+        private final ArrayList<SmartSolver> runners = new ArrayList<SmartSolver>();
+        private final HashSet<SmartSolver> running = new HashSet<SmartSolver>();
+        private SolveResult result;
+        private SolveResult lastResult;
+        private int remaining;
+
+        private Race(Board board) {
+            this.board = board;
+        }
+    }
+
+    /**
+     * Initializes PortfolioSolver object with the given solver pool, racing the default
+     * candidates walking distance + manhattan distance, pattern database 6-6-3 and 7-8.
+     *
+     * @param pool the given SolverPool shared with other services
+     */
+    public PortfolioSolver(SolverPool pool) {
+        this(pool, defaultCandidates);
+    }
+
+    /**
+     * Initializes PortfolioSolver object with the given solver pool and candidate
+     * heuristics.
+     *
+     * @param pool the given SolverPool shared with other services
+     * @param candidates the given HeuristicOptions to race
+     */
+    public PortfolioSolver(SolverPool pool, HeuristicOptions... candidates) {
+        if (candidates.length == 0) {
+            throw new IllegalArgumentException("No candidate heuristic");
+        }
+        this.pool = pool;
+        this.candidates = candidates.clone();
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "PortfolioSolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        races = new int[maxBands];
+        wins = new ArrayList<EnumMap<HeuristicOptions, Integer>>(maxBands);
+        for (int band = 0; band < maxBands; band++) {
+            wins.add(new EnumMap<HeuristicOptions, Integer>(HeuristicOptions.class));
+        }
+        timeoutLimit = 0;
+    }
+
+    /**
+     * Set the timeout limit of each race in seconds, 0 for no limit.
+     *
+     * @param seconds the given timeout limit in seconds, 0 for no limit
+     */
+    public synchronized void setTimeoutLimit(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid timeout limit " + seconds);
+        }
+        timeoutLimit = seconds;
+    }
+
+    /**
+     * Returns the SolveResult of the given board by the first completed solver of the
+     * learned heuristics of its difficulty band.
+     *
+     * @param board the given Board object
+     * @return SolveResult of the winning solver, or timeout if none completed
+     * @throws InterruptedException if the thread is interrupted while waiting, all
+     *         solvers will be cancelled
+     */
+    public SolveResult solve(Board board) throws InterruptedException {
+        return solve(board, select(getBand(board)));
+    }
+
+    /**
+     * Returns the SolveResult of the given board by the first completed solver of the
+     * learned heuristics of its difficulty band, with the given timeout limit.
+     *
+     * @param board the given Board object
+     * @param seconds the given timeout limit in seconds, 0 for no limit
+     * @return SolveResult of the winning solver, or timeout if none completed
+     * @throws InterruptedException if the thread is interrupted while waiting, all
+     *         solvers will be cancelled
+     */
+    public SolveResult solve(Board board, int seconds) throws InterruptedException {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Invalid timeout limit " + seconds);
+        }
+        return race(board, seconds, select(getBand(board)));
+    }
+
+    /**
+     * Returns the SolveResult of the given board by the first completed solver of the
+     * given heuristics, the others will be cancelled.
+     *
+     * @param board the given Board object
+     * @param heuristics the given HeuristicOptions to race
+     * @return SolveResult of the winning solver, or timeout if none completed
+     * @throws InterruptedException if the thread is interrupted while waiting, all
+     *         solvers will be cancelled
+     */
+    public SolveResult solve(Board board, HeuristicOptions... heuristics)
+            throws InterruptedException {
+        int limit;
+        synchronized (this) {
+            limit = timeoutLimit;
+        }
+        return race(board, limit, heuristics);
+    }
+
+    // returns the SolveResult of the given board by the first completed solver of the
+    // given heuristics with the given timeout limit, 0 for no limit
+    private SolveResult race(Board board, int limit, HeuristicOptions... heuristics)
+            throws InterruptedException {
+        if (heuristics.length == 0) {
+            throw new IllegalArgumentException("No heuristic to race");
+        }
+        if (!board.isSolvable()) {
+            return SolveResult.insolvable(board, heuristics[0]);
+        }
+
+        final Race race = new Race(board);
+        for (HeuristicOptions heuristic : heuristics) {
+            SmartSolver solver = pool.acquire(heuristic);
+            solver.versionSwitch(true);
+            solver.timeoutSwitch(limit > 0);
+            if (limit > 0) {
+                solver.setTimeoutLimit(limit);
+            }
+            race.runners.add(solver);
+        }
+        race.remaining = race.runners.size();
+        race.running.addAll(race.runners);
+        for (final SmartSolver solver : race.runners) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runSearch(race, solver);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // shut down, the solver ends without search
+                finish(race, solver, null);
+            }
+        }
+
+        synchronized (race) {
+            try {
+                while (race.result == null && race.remaining > 0) {
+                    race.wait();
+                }
+            } catch (InterruptedException ex) {
+                cancelAll(race);
+                throw ex;
+            }
+            if (race.result != null) {
+                return race.result;
+            } else if (race.lastResult != null) {
+                return race.lastResult;
+            }
+            return SolveResult.cancelled(board, heuristics[0]);
+        }
+    }
+
+    // run the search of the given solver, the first completed one cancels the others
+    private void runSearch(Race race, SmartSolver solver) {
+        SolveResult outcome = null;
+        try {
+            solver.findOptimalPath(race.board);
+            outcome = SolveResult.of(race.board, solver);
+        } catch (RuntimeException ex) {
+            System.err.println("System error : portfolio solver "
+                    + solver.getHeuristicOptions() + " failed - " + ex.getMessage());
+        }
+        finish(race, solver, outcome);
+    }
+
+    // record the given outcome of the given solver of the race, the winner cancels the
+    // others; the solvers return to the pool together after the last search ended, so
+    // a cancel of this race never reaches a solver lent to another request
+    private void finish(Race race, SmartSolver solver, SolveResult outcome) {
+        boolean isWinner = false;
+        boolean isLast;
+        synchronized (race) {
+            race.running.remove(solver);
+            race.remaining--;
+            if (outcome != null) {
+                if (race.result == null && outcome.isSolved()) {
+                    race.result = outcome;
+                    isWinner = true;
+                } else if (race.lastResult == null) {
+                    race.lastResult = outcome;
+                }
+            }
+            isLast = race.remaining == 0;
+            race.notifyAll();
+        }
+        if (isWinner) {
+            cancelAll(race);
+            record(getBand(race.board), outcome.getHeuristic());
+        }
+        if (isLast) {
+            for (SmartSolver runner : race.runners) {
+                pool.release(runner);
+            }
+        }
+    }
+
+    // cancel the searches of the given race still running
+    private void cancelAll(Race race) {
+        synchronized (race) {
+            for (SmartSolver solver : race.running) {
+                solver.cancelSearch();
+            }
+        }
+    }
+
+    /**
+     * Returns the difficulty band of the given board, the manhattan distance with
+     * linear conflict estimate in tens of moves.
+     *
+     * @param board the given Board object
+     * @return integer of the difficulty band of the given board
+     */
+    public int getBand(Board board) {
+        SmartSolver solver = pool.acquire(HeuristicOptions.MDLC);
+        try {
+            int estimate = solver.heuristicStandard(board);
+            return Math.max(0, Math.min(maxBands - 1, estimate / bandWidth));
+        } finally {
+            pool.release(solver);
+        }
+    }
+
+    // returns the heuristics to race of the given band, all candidates while learning,
+    // otherwise the candidates won at least the minimum share of the band
+    private synchronized HeuristicOptions[] select(int band) {
+        if (races[band] < learningRaces) {
+            return candidates.clone();
+        }
+        ArrayList<HeuristicOptions> selected = new ArrayList<HeuristicOptions>();
+        HeuristicOptions best = candidates[0];
+        int bestWins = -1;
+        for (HeuristicOptions heuristic : candidates) {
+            int count = getWins(band, heuristic);
+            if (count * 100 >= races[band] * minWinShare) {
+                selected.add(heuristic);
+            }
+            if (count > bestWins) {
+                bestWins = count;
+                best = heuristic;
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.add(best);
+        }
+        return selected.toArray(new HeuristicOptions[selected.size()]);
+    }
+
+    // record the winning heuristic of the given band
+    private synchronized void record(int band, HeuristicOptions heuristic) {
+        races[band]++;
+        wins.get(band).put(heuristic, getWins(band, heuristic) + 1);
+    }
+
+    /**
+     * Returns the number of races won by the given heuristic in the given band.
+     *
+     * @param band the given difficulty band
+     * @param heuristic the given HeuristicOptions
+     * @return integer of the number of races won
+     */
+    public synchronized int getWins(int band, HeuristicOptions heuristic) {
+        Integer count = wins.get(band).get(heuristic);
+        if (count == null) {
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the summary of the winning heuristics of each band.
+     *
+     * @return String of the summary of the races
+     */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("Portfolio races:");
+        for (int band = 0; band < maxBands; band++) {
+            if (races[band] == 0) {
+                continue;
+            }
+            sb.append("\n  estimate ").append(band * bandWidth).append("-")
+                    .append(band * bandWidth + bandWidth - 1).append(" : ")
+                    .append(races[band]).append(" races,");
+            for (HeuristicOptions heuristic : candidates) {
+                sb.append(" ").append(heuristic).append(" ")
+                        .append(getWins(band, heuristic));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stop the racing threads, the searches in progress will continue to complete.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
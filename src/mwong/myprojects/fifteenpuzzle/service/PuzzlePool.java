@@ -0,0 +1,348 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+/**
+ * PuzzlePool keeps the pre-graded puzzles of easy, moderate and hard level, so the GUI
+ * gets a new puzzle of a level at once with its optimal solution already known.  One
+ * background worker of each level refills it up to the capacity, and the puzzles are
+ * saved in a data file to survive restart.  If a level is empty, the puzzle will be
+ * generated in the calling thread.  With a DifficultyPredictor, the candidates
+ * predicted of other level are skipped without solving.
+ *
+ * <p>A level has its own range of moves: easy up to 25 moves, moderate 26 to 50 moves
+ * and hard over 50 moves or not solved within the timeout limit (unknown length).
+ *
+ * <p>Dependencies : Board.java, DifficultyPredictor.java, HeuristicOptions.java,
+ *                   PuzzleDifficultyLevel.java, SmartSolver.java, SolveResult.java,
+ *                   SolverConstants.java, SolverPool.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class PuzzlePool {
+    private static final PuzzleDifficultyLevel[] levels = {PuzzleDifficultyLevel.EASY,
+        PuzzleDifficultyLevel.MODERATE, PuzzleDifficultyLevel.HARD};
+    // timeout limit in seconds to grade a puzzle of the GUI
+    private static final int gradeTimeoutLimit = 1;
+    private static final boolean onSwitch = SolverConstants.isOnSwitch();
+    // maximum number of boards skipped in a row by prediction
+    private static final int maxSkipped = 50;
+
+    private final SolverPool solvers;
+    private final HeuristicOptions grader;
+    private final int capacity;
+    private final String filepath;
+    private final EnumMap<PuzzleDifficultyLevel, ArrayDeque<SolveResult>> puzzles;
+    private final Object saveLock = new Object();
+    private final ArrayList<Thread> workers;
+    private DifficultyPredictor predictor;
+    private volatile boolean running;
+    private long served;
+    private long generated;
+
+    /**
+     * Initializes PuzzlePool object with the given solver pool, the heuristic to grade
+     * the puzzles, the number of puzzles kept of each level and the data file.  The
+     * saved puzzles are loaded from the data file if exists.
+     *
+     * @param solvers the given SolverPool of the solvers to grade the puzzles
+     * @param grader the given HeuristicOptions to grade the puzzles, usually PD78
+     * @param capacity the given number of puzzles kept of each level, 0 for none
+     * @param filepath the given file path of the data file, or null if not saved
+     */
+    public PuzzlePool(SolverPool solvers, HeuristicOptions grader, int capacity,
+            String filepath) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid puzzle pool size " + capacity);
+        }
+        this.solvers = solvers;
+        this.grader = grader;
+        this.capacity = capacity;
+        this.filepath = filepath;
+        puzzles = new EnumMap<PuzzleDifficultyLevel, ArrayDeque<SolveResult>>(
+                PuzzleDifficultyLevel.class);
+        for (PuzzleDifficultyLevel level : levels) {
+            puzzles.put(level, new ArrayDeque<SolveResult>());
+        }
+        workers = new ArrayList<Thread>();
+        loadFile();
+    }
+
+    /**
+     * Returns the puzzle of the given level.  Take one from the pool if available,
+     * otherwise generate one in the calling thread.
+     *
+     * @param level the given PuzzleDifficultyLevel, EASY, MODERATE or HARD
+     * @return SolveResult of the puzzle, the board and its optimal solution
+     */
+    public SolveResult take(PuzzleDifficultyLevel level) {
+        ArrayDeque<SolveResult> queue = queue(level);
+        SolveResult puzzle;
+        synchronized (this) {
+            puzzle = queue.pollFirst();
+            served++;
+            // wake up the worker to refill
+            notifyAll();
+        }
+        if (puzzle == null) {
+            return generate(level, false);
+        }
+        saveFile();
+        return puzzle;
+    }
+
+    // returns the queue of puzzles of the given level
+    private ArrayDeque<SolveResult> queue(PuzzleDifficultyLevel level) {
+        ArrayDeque<SolveResult> queue = puzzles.get(level);
+        if (queue == null) {
+            throw new IllegalArgumentException("Invalid difficulty level " + level);
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the number of puzzles of the given level in the pool.
+     *
+     * @param level the given PuzzleDifficultyLevel
+     * @return integer of the number of puzzles of the given level
+     */
+    public synchronized int size(PuzzleDifficultyLevel level) {
+        return queue(level).size();
+    }
+
+    /**
+     * Returns the number of puzzles kept of each level.
+     *
+     * @return integer of the number of puzzles kept of each level
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Set the DifficultyPredictor to screen the candidate boards, the boards predicted
+     * of other level will not be solved; null to solve all candidates.
+     *
+     * @param predictor the given DifficultyPredictor object, or null
+     */
+    public synchronized void setPredictor(DifficultyPredictor predictor) {
+        this.predictor = predictor;
+    }
+
+    // returns the DifficultyPredictor object to screen the candidate boards, or null
+    private synchronized DifficultyPredictor getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Start one background worker of each level to refill the pool.
+     */
+    public synchronized void start() {
+        if (running || capacity == 0) {
+            return;
+        }
+        running = true;
+        for (final PuzzleDifficultyLevel level : levels) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    refill(level);
+                }
+            }, "PuzzlePool-" + level);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Stop the background workers, the puzzles in the pool remain in the data file.
+     */
+    public void shutdown() {
+        ArrayList<Thread> current;
+        synchronized (this) {
+            running = false;
+            current = new ArrayList<Thread>(workers);
+            workers.clear();
+            notifyAll();
+        }
+        for (Thread worker : current) {
+            worker.interrupt();
+        }
+    }
+
+    // refill the puzzles of the given level, wait while the level is full
+    private void refill(PuzzleDifficultyLevel level) {
+        ArrayDeque<SolveResult> queue = queue(level);
+        while (running) {
+            try {
+                synchronized (this) {
+                    while (running && queue.size() >= capacity) {
+                        wait();
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                SolveResult puzzle = generate(level, true);
+                synchronized (this) {
+                    queue.offerLast(puzzle);
+                }
+                saveFile();
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                System.err.println("System error : puzzle pool refill failed - "
+                        + ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    // generate a puzzle of the given level with a solver of the solver pool, a
+    // background worker allows a longer search for the length of a hard puzzle
+    private SolveResult generate(PuzzleDifficultyLevel level, boolean isBackground) {
+        HeuristicOptions heuristic = grader;
+        // an easy puzzle is solved at once by any heuristic, no need to wait for the
+        // grader loading
+        if (level == PuzzleDifficultyLevel.EASY && !solvers.isReady(grader)) {
+            heuristic = solvers.bestReady();
+        }
+        SmartSolver solver = solvers.acquire(heuristic);
+        try {
+            solver.versionSwitch(!onSwitch);
+            solver.timeoutSwitch(level != PuzzleDifficultyLevel.EASY);
+            if (isBackground && level == PuzzleDifficultyLevel.HARD) {
+                solver.setTimeoutLimit(SolverProperties.getTimeoutLimit());
+            } else {
+                solver.setTimeoutLimit(gradeTimeoutLimit);
+            }
+
+            DifficultyPredictor currentPredictor = getPredictor();
+            int skipped = 0;
+            while (true) {
+                Board board = new Board(level);
+                // skip the boards predicted of other level without solving
+                if (currentPredictor != null && skipped < maxSkipped
+                        && currentPredictor.predict(board).getLevel() != level) {
+                    skipped++;
+                    continue;
+                }
+                skipped = 0;
+                solver.findOptimalPath(board);
+                if (isLevel(level, solver)) {
+                    synchronized (this) {
+                        generated++;
+                    }
+                    return SolveResult.of(board, solver);
+                }
+            }
+        } finally {
+            solver.versionSwitch(onSwitch);
+            solver.setTimeoutLimit(SolverProperties.getTimeoutLimit());
+            solvers.release(solver);
+        }
+    }
+
+    // returns the boolean represents the last search of the given solver is a puzzle
+    // of the given level
+    private static boolean isLevel(PuzzleDifficultyLevel level, SmartSolver solver) {
+        int moves = solver.moves();
+        switch (level) {
+            case EASY:
+                return !solver.isSearchTimeout() && moves <= 25;
+            case MODERATE:
+                return !solver.isSearchTimeout() && moves > 25 && moves <= 50;
+            default:
+                return solver.isSearchTimeout() || moves > 50;
+        }
+    }
+
+    // load the saved puzzles from the data file
+    @SuppressWarnings("unchecked")
+    private void loadFile() {
+        if (filepath == null || !(new File(filepath)).exists()) {
+            return;
+        }
+        try (FileInputStream fin = new FileInputStream(filepath);
+                ObjectInputStream in = new ObjectInputStream(fin)) {
+            EnumMap<PuzzleDifficultyLevel, ArrayList<SolveResult>> saved =
+                    (EnumMap<PuzzleDifficultyLevel, ArrayList<SolveResult>>) in.readObject();
+            for (PuzzleDifficultyLevel level : levels) {
+                ArrayList<SolveResult> list = saved.get(level);
+                if (list == null) {
+                    continue;
+                }
+                for (SolveResult puzzle : list) {
+                    if (puzzles.get(level).size() < capacity) {
+                        puzzles.get(level).offerLast(puzzle);
+                    }
+                }
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            System.err.println("System error : unable to load puzzle pool, regenerate.");
+        }
+    }
+
+    // save the puzzles to the data file, write to a temp file first, so a failure
+    // never leaves a broken copy
+    private void saveFile() {
+        if (filepath == null) {
+            return;
+        }
+        synchronized (saveLock) {
+            EnumMap<PuzzleDifficultyLevel, ArrayList<SolveResult>> snapshot =
+                    new EnumMap<PuzzleDifficultyLevel, ArrayList<SolveResult>>(
+                            PuzzleDifficultyLevel.class);
+            synchronized (this) {
+                for (PuzzleDifficultyLevel level : levels) {
+                    snapshot.put(level, new ArrayList<SolveResult>(puzzles.get(level)));
+                }
+            }
+
+            File parent = (new File(filepath)).getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            String tempFile = filepath + "temp";
+            try (FileOutputStream fout = new FileOutputStream(tempFile);
+                    ObjectOutputStream out = new ObjectOutputStream(fout)) {
+                out.writeObject(snapshot);
+            } catch (IOException ex) {
+                System.err.println("System error : unable to save puzzle pool.");
+                return;
+            }
+            (new File(filepath)).delete();
+            (new File(tempFile)).renameTo(new File(filepath));
+        }
+    }
+
+    /**
+     * Returns the summary of the puzzles in the pool.
+     *
+     * @return String of the summary of the pool
+     */
+    public synchronized String summary() {
+        return "Puzzle pool: easy " + puzzles.get(PuzzleDifficultyLevel.EASY).size()
+                + ", moderate " + puzzles.get(PuzzleDifficultyLevel.MODERATE).size()
+                + ", hard " + puzzles.get(PuzzleDifficultyLevel.HARD).size() + " of "
+                + capacity + "; " + served + " served, " + generated + " generated.";
+    }
+}
@@ -0,0 +1,321 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SearchListener;
+import mwong.myprojects.fifteenpuzzle.solver.SolutionCache;
+import mwong.myprojects.fifteenpuzzle.solver.Solver;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * SolveCoalescer runs one search for the concurrent requests of the same board with the
+ * same heuristic and timeout limit, so a request never gets a timeout shorter than its
+ * own.  The first request searches with its own solver, the others wait for the search
+ * and share its result; a board and its symmetry board count as the same board.  The
+ * progress of the search is passed to the listeners of all requests waiting for it.
+ * Each request is identified by its solver, a request can leave by cancel or thread
+ * interrupt.  The search will be cancelled only when all requests have left, a new
+ * request of the same board starts a new search instead of joining it.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, SearchListener.java,
+ *                   SolutionCache.java, SolveResult.java, Solver.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolveCoalescer {
+    private final HashMap<Key, Flight> flights = new HashMap<Key, Flight>();
+    private final IdentityHashMap<Solver, Flight> members =
+            new IdentityHashMap<Solver, Flight>();
+    private long searches;
+    private long joined;
+
+    // the canonical board, heuristic and timeout limit of a search, 0 for no timeout
+    private static final class Key {
+        private final long board;
+        private final HeuristicOptions heuristic;
+        private final int timeoutLimit;
+
+        private Key(long board, HeuristicOptions heuristic, int timeoutLimit) {
+            this.board = board;
+            this.heuristic = heuristic;
+            this.timeoutLimit = timeoutLimit;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((int) (board ^ (board >>> 32)) * 31 + heuristic.hashCode()) * 31
+                    + timeoutLimit;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return board == that.board && heuristic == that.heuristic
+                    && timeoutLimit == that.timeoutLimit;
+        }
+    }
+
+    // the search in progress and the requests waiting for it with their listeners, it
+    // passes the progress of the search to the listeners
+    private static final class Flight implements SearchListener {
+        private final Key key;
+        private final Solver searcher;
+        private final IdentityHashMap<Solver, SearchListener> waiting =
+                new IdentityHashMap<Solver, SearchListener>();
+        // the listeners of the waiting requests, replaced on join and leave
+        private volatile SearchListener[] listeners = new SearchListener[0];
+        private SolveResult result;
+        // completed or cancelled, no request may join or leave, guarded by coalescer
+        private boolean closed;
+
+        private Flight(Key key, Solver searcher) {
+            this.key = key;
+            this.searcher = searcher;
+        }
+
+        // rebuild the listeners of the waiting requests, the caller holds the coalescer
+        private void updateListeners() {
+            int count = 0;
+            SearchListener[] list = new SearchListener[waiting.size()];
+            for (SearchListener listener : waiting.values()) {
+                if (listener != null) {
+                    list[count++] = listener;
+                }
+            }
+            listeners = Arrays.copyOf(list, count);
+        }
+
+        @Override
+        public void iterationStarted(int limit, int nodes, double elapsed) {
+            for (SearchListener listener : listeners) {
+                listener.iterationStarted(limit, nodes, elapsed);
+            }
+        }
+
+        @Override
+        public void iterationFinished(int limit, int nodes, double elapsed) {
+            for (SearchListener listener : listeners) {
+                listener.iterationFinished(limit, nodes, elapsed);
+            }
+        }
+
+        @Override
+        public void heartbeat(int limit, int nodes, double elapsed) {
+            for (SearchListener listener : listeners) {
+                listener.heartbeat(limit, nodes, elapsed);
+            }
+        }
+    }
+
+    /**
+     * Returns the SolveResult of the given board using the heuristic and timeout
+     * setting of the given solver.  If the same search is in progress, wait for it and
+     * returns its result; otherwise search with the given solver.  The given listener
+     * receives the progress of the search either way, it replaces the listener of the
+     * given solver.  The given solver must not be shared with other threads during
+     * the call.
+     *
+     * @param solver the given Solver object of the request
+     * @param board the given Board object
+     * @param listener the given SearchListener of the request, or null
+     * @return SolveResult of the given board, cancelled if the request left
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public SolveResult solve(Solver solver, Board board, SearchListener listener)
+            throws InterruptedException {
+        HeuristicOptions heuristic = solver.getHeuristicOptions();
+        int timeoutLimit = 0;
+        if (solver.isFlagTimeout()) {
+            timeoutLimit = solver.getSearchTimeoutLimit();
+        }
+        Key key = new Key(SolutionCache.canonicalKey(board), heuristic, timeoutLimit);
+        Flight flight;
+        boolean isSearcher = false;
+        synchronized (this) {
+            if (members.containsKey(solver)) {
+                throw new IllegalStateException("Solver is in use by other request");
+            }
+            flight = flights.get(key);
+            if (flight == null) {
+                flight = new Flight(key, solver);
+                flights.put(key, flight);
+                isSearcher = true;
+                searches++;
+            } else {
+                joined++;
+            }
+            flight.waiting.put(solver, listener);
+            flight.updateListeners();
+            members.put(solver, flight);
+        }
+
+        if (isSearcher) {
+            solver.setSearchListener(flight);
+            return search(flight, solver, board);
+        }
+        return await(flight, solver, board);
+    }
+
+    // run the search of the given flight, and pass the result to all waiting requests
+    private SolveResult search(Flight flight, Solver solver, Board board) {
+        SolveResult result;
+        try {
+            solver.findOptimalPath(board);
+            result = SolveResult.of(board, solver);
+        } catch (RuntimeException ex) {
+            finish(flight, SolveResult.cancelled(board, solver.getHeuristicOptions()));
+            throw ex;
+        }
+        if (!finish(flight, result)) {
+            return SolveResult.cancelled(board, result.getHeuristic());
+        }
+        return result;
+    }
+
+    // remove the given flight and wake up all waiting requests with the given result,
+    // returns the boolean represents the searcher's request has not left
+    private boolean finish(Flight flight, SolveResult result) {
+        boolean isWaiting;
+        synchronized (this) {
+            close(flight);
+            isWaiting = flight.waiting.containsKey(flight.searcher);
+            for (Solver member : flight.waiting.keySet()) {
+                members.remove(member);
+            }
+            members.remove(flight.searcher);
+        }
+        synchronized (flight) {
+            flight.result = result;
+            flight.notifyAll();
+        }
+        return isWaiting;
+    }
+
+    // wait for the search of the given flight, returns its result for the given board
+    private SolveResult await(Flight flight, Solver solver, Board board)
+            throws InterruptedException {
+        synchronized (flight) {
+            try {
+                while (flight.result == null && isWaiting(flight, solver)) {
+                    flight.wait();
+                }
+            } catch (InterruptedException ex) {
+                leave(flight, solver);
+                throw ex;
+            }
+            if (flight.result == null) {
+                return SolveResult.cancelled(board, flight.key.heuristic);
+            }
+            return flight.result.forBoard(board);
+        }
+    }
+
+    // returns the boolean represents the given solver is waiting for the given flight
+    private boolean isWaiting(Flight flight, Solver solver) {
+        synchronized (this) {
+            return flight.waiting.containsKey(solver);
+        }
+    }
+
+    /**
+     * Cancel the request of the given solver.  The request returns a cancelled result,
+     * the search continues for the other requests of the same board.
+     *
+     * @param solver the given Solver object of the request
+     * @return boolean represents the request was in progress
+     */
+    public boolean cancel(Solver solver) {
+        Flight flight;
+        synchronized (this) {
+            flight = members.get(solver);
+        }
+        if (flight == null) {
+            return false;
+        }
+        leave(flight, solver);
+        return true;
+    }
+
+    // remove the given solver from the given flight, cancel the search if no request
+    // is waiting
+    private void leave(Flight flight, Solver solver) {
+        boolean isEmpty;
+        synchronized (this) {
+            // the search has completed, the solver may be in use of next search
+            if (flight.closed || !flight.waiting.containsKey(solver)) {
+                return;
+            }
+            flight.waiting.remove(solver);
+            flight.updateListeners();
+            if (solver != flight.searcher) {
+                members.remove(solver);
+            }
+            isEmpty = flight.waiting.isEmpty();
+            // the search is doomed, the next request of the board must not join it
+            if (isEmpty) {
+                close(flight);
+            }
+        }
+        if (isEmpty) {
+            flight.searcher.cancelSearch();
+        }
+        synchronized (flight) {
+            flight.notifyAll();
+        }
+    }
+
+    // mark the given flight closed and remove it from the searches in progress, a new
+    // flight of the same key may have replaced it
+    private void close(Flight flight) {
+        flight.closed = true;
+        if (flights.get(flight.key) == flight) {
+            flights.remove(flight.key);
+        }
+    }
+
+    /**
+     * Returns the number of searches in progress.
+     *
+     * @return integer of the number of searches in progress
+     */
+    public synchronized int countInProgress() {
+        return flights.size();
+    }
+
+    /**
+     * Returns the summary of the searches started and the requests joined other
+     * searches.
+     *
+     * @return String of the summary of the coalescing
+     */
+    public synchronized String summary() {
+        return "Solve requests: " + searches + " searches, " + joined
+                + " requests shared a search in progress.";
+    }
+
+    /**
+     * Returns the number of requests waiting for the searches of the given board and
+     * heuristic of any timeout limit, 0 if no search in progress.
+     *
+     * @param board the given Board object
+     * @param heuristic the given HeuristicOptions
+     * @return integer of the number of requests waiting
+     */
+    public synchronized int countWaiting(Board board, HeuristicOptions heuristic) {
+        long canonical = SolutionCache.canonicalKey(board);
+        int count = 0;
+        for (Flight flight : flights.values()) {
+            if (flight.key.board == canonical && flight.key.heuristic == heuristic) {
+                count += flight.waiting.size();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,305 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SearchListener;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+/**
+ * SolveJob is a solve request of the SolveService: the board, the heuristic and timeout
+ * limit to search, the predicted number of nodes to schedule it, and the state and
+ * result.  The client polls or waits for the result with it, and polls the progress of
+ * the search while it is running.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, JobListener.java, JobState.java,
+ *                   SearchListener.java, SmartSolver.java, SolveCoalescer.java,
+ *                   SolveResult.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public final class SolveJob {
+    private final long id;
+    private final Board board;
+    private final HeuristicOptions heuristic;
+    private final int timeoutLimit;
+    private final double predictedNodes;
+    private final JobListener listener;
+    private final SearchListener searchListener;
+    private final long submitTime;
+    private long startTime;
+    private long endTime;
+    private JobState state;
+    private boolean done;
+    private SolveResult result;
+    private SmartSolver solver;
+    private SolveCoalescer coalescer;
+    private int searchLimit;
+    private int searchNodes;
+
+    // initializes SolveJob object with all request values
+    SolveJob(long id, Board board, HeuristicOptions heuristic, int timeoutLimit,
+            double predictedNodes, JobListener listener, SearchListener searchListener) {
+        this.id = id;
+        this.board = board;
+        this.heuristic = heuristic;
+        this.timeoutLimit = timeoutLimit;
+        this.predictedNodes = predictedNodes;
+        this.listener = listener;
+        this.searchListener = searchListener;
+        submitTime = System.nanoTime();
+        state = JobState.QUEUED;
+    }
+
+    /**
+     * Returns the id of the job.
+     *
+     * @return long value of the id of the job
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the Board object of the job.
+     *
+     * @return Board object of the job
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the heuristic of the search.
+     *
+     * @return HeuristicOptions of the search
+     */
+    public HeuristicOptions getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Returns the timeout limit of the search in seconds.
+     *
+     * @return integer of the timeout limit in seconds
+     */
+    public int getTimeoutLimit() {
+        return timeoutLimit;
+    }
+
+    /**
+     * Returns the predicted number of nodes of the search, the shorter jobs run first.
+     *
+     * @return double value of the predicted number of nodes
+     */
+    public double getPredictedNodes() {
+        return predictedNodes;
+    }
+
+    /**
+     * Returns the state of the job.
+     *
+     * @return JobState of the job
+     */
+    public synchronized JobState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the boolean represents the job has completed or cancelled with its result,
+     * a cancelled running job is done when its search stopped.
+     *
+     * @return boolean represents the job has completed or cancelled
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the SolveResult of the job, or null if not completed.
+     *
+     * @return SolveResult of the job, or null if not completed
+     */
+    public synchronized SolveResult getResult() {
+        return result;
+    }
+
+    /**
+     * Wait up to the given milliseconds for the job done, returns its result.
+     *
+     * @param millis the given maximum time to wait in milliseconds, 0 to wait forever
+     * @return SolveResult of the job, or null if not completed within the time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized SolveResult await(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (!done) {
+            if (millis == 0) {
+                wait();
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the threshold of the search iteration in progress or last finished, 0
+     * if not started.
+     *
+     * @return integer of the threshold of the search iteration
+     */
+    public synchronized int getSearchLimit() {
+        return searchLimit;
+    }
+
+    /**
+     * Returns the number of nodes searched so far, the final count once done.
+     *
+     * @return integer of the number of nodes searched so far
+     */
+    public synchronized int getSearchNodes() {
+        if (result != null && result.getSearchNodeCount() > 0) {
+            return result.getSearchNodeCount();
+        }
+        return searchNodes;
+    }
+
+    /**
+     * Returns the time in seconds waiting in the queue.
+     *
+     * @return double value of the waiting time in seconds
+     */
+    public synchronized double getWaitTime() {
+        long end = startTime;
+        if (end == 0) {
+            end = System.nanoTime();
+        }
+        return (end - submitTime) / 1000000000.0;
+    }
+
+    /**
+     * Returns the time in seconds from submit to done, or to now if not done.
+     *
+     * @return double value of the turnaround time in seconds
+     */
+    public synchronized double getTurnaroundTime() {
+        long end = endTime;
+        if (end == 0) {
+            end = System.nanoTime();
+        }
+        return (end - submitTime) / 1000000000.0;
+    }
+
+    // returns the time in nanoseconds when the job was submitted
+    long getSubmitTime() {
+        return submitTime;
+    }
+
+    // returns the JobListener of the job, or null
+    JobListener getListener() {
+        return listener;
+    }
+
+    // returns the SearchListener for the solver of the job, it records the progress
+    // and passes it on to the search listener of the client if any
+    SearchListener progressListener() {
+        return new SearchListener() {
+            @Override
+            public void iterationStarted(int limit, int nodes, double elapsed) {
+                progress(limit, nodes);
+                if (searchListener != null) {
+                    searchListener.iterationStarted(limit, nodes, elapsed);
+                }
+            }
+
+            @Override
+            public void iterationFinished(int limit, int nodes, double elapsed) {
+                progress(limit, nodes);
+                if (searchListener != null) {
+                    searchListener.iterationFinished(limit, nodes, elapsed);
+                }
+            }
+
+            @Override
+            public void heartbeat(int limit, int nodes, double elapsed) {
+                progress(limit, nodes);
+                if (searchListener != null) {
+                    searchListener.heartbeat(limit, nodes, elapsed);
+                }
+            }
+        };
+    }
+
+    // record the given progress of the search
+    private synchronized void progress(int limit, int nodes) {
+        searchLimit = limit;
+        searchNodes = nodes;
+    }
+
+    // mark the job running with the given solver searching by the given coalescer,
+    // returns false if it was cancelled
+    synchronized boolean start(SmartSolver solver, SolveCoalescer coalescer) {
+        if (state != JobState.QUEUED) {
+            return false;
+        }
+        state = JobState.RUNNING;
+        this.solver = solver;
+        this.coalescer = coalescer;
+        startTime = System.nanoTime();
+        return true;
+    }
+
+    // mark the job completed with the given result, the search of a cancelled job
+    // ends as cancelled
+    synchronized void complete(SolveResult result) {
+        if (state == JobState.RUNNING) {
+            state = JobState.COMPLETED;
+        }
+        this.result = result;
+        done = true;
+        solver = null;
+        coalescer = null;
+        endTime = System.nanoTime();
+        notifyAll();
+    }
+
+    // cancel the job, returns false if already done; a queued job is done at once,
+    // a running job leaves its search, the search is cancelled if no other job shares it
+    synchronized boolean cancel() {
+        if (state == JobState.QUEUED) {
+            state = JobState.CANCELLED;
+            result = SolveResult.cancelled(board, heuristic);
+            done = true;
+            endTime = System.nanoTime();
+            notifyAll();
+            return true;
+        } else if (state == JobState.RUNNING) {
+            state = JobState.CANCELLED;
+            // not joined the search yet, or the search has completed
+            if (solver != null && !coalescer.cancel(solver)) {
+                solver.cancelSearch();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the String of the job.
+     *
+     * @return String of the job
+     */
+    @Override
+    public synchronized String toString() {
+        String outcome = state.toString();
+        if (result != null) {
+            outcome = result.toString();
+        }
+        return "Job " + id + " (" + heuristic + ") " + outcome;
+    }
+}
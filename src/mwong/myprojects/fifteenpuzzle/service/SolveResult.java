@@ -0,0 +1,252 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.Solver;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.io.Serializable;
+
+/**
+ * SolveResult is the immutable data type of the outcome of one search: the board, the
+ * heuristic used, the search status, the optimal solution in MoveSequence and the
+ * search statistics.  It keeps the outcome after the solver moves on to the next
+ * board, so it can be passed to other threads or clients.
+ *
+ * <p>Dependencies : Board.java, HeuristicOptions.java, MoveSequence.java, Solver.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public final class SolveResult implements Serializable {
+    private static final long serialVersionUID = 17195273121L;
+
+    private final Board board;
+    private final HeuristicOptions heuristic;
+    private final boolean solvable;
+    private final boolean timeout;
+    private final boolean cancelled;
+    private final MoveSequence solution;
+    private final int searchDepth;
+    private final int searchNodeCount;
+    private final double searchTime;
+
+    // initializes SolveResult object with all values
+    private SolveResult(Board board, HeuristicOptions heuristic, boolean solvable,
+            boolean timeout, boolean cancelled, MoveSequence solution, int searchDepth,
+            int searchNodeCount, double searchTime) {
+        this.board = board;
+        this.heuristic = heuristic;
+        this.solvable = solvable;
+        this.timeout = timeout;
+        this.cancelled = cancelled;
+        this.solution = solution;
+        this.searchDepth = searchDepth;
+        this.searchNodeCount = searchNodeCount;
+        this.searchTime = searchTime;
+    }
+
+    /**
+     * Returns the SolveResult object of the last search of the given solver.
+     *
+     * @param board the given Board object of the last search
+     * @param solver the given Solver object
+     * @return SolveResult object of the last search of the given solver
+     */
+    public static SolveResult of(Board board, Solver solver) {
+        return new SolveResult(board, solver.getHeuristicOptions(), board.isSolvable(),
+                solver.isSearchTimeout(), solver.isSearchCancelled(),
+                solver.solutionSequence(), solver.searchDepth(), solver.searchNodeCount(),
+                solver.searchTime());
+    }
+
+    /**
+     * Returns the SolveResult object of a cancelled request of the given board.
+     *
+     * @param board the given Board object
+     * @param heuristic the given HeuristicOptions of the request
+     * @return SolveResult object of a cancelled request
+     */
+    public static SolveResult cancelled(Board board, HeuristicOptions heuristic) {
+        return new SolveResult(board, heuristic, board.isSolvable(), true, true, null, 0,
+                0, 0.0);
+    }
+
+    /**
+     * Returns the SolveResult object of the given insolvable board.
+     *
+     * @param board the given Board object, not solvable
+     * @param heuristic the given HeuristicOptions of the request
+     * @return SolveResult object of an insolvable board
+     */
+    public static SolveResult insolvable(Board board, HeuristicOptions heuristic) {
+        return new SolveResult(board, heuristic, false, false, false, null, 0, 0, 0.0);
+    }
+
+    /**
+     * Returns the SolveResult object of the given values, to rebuild a result received
+     * from a remote solver.
+     *
+     * @param board the given Board object of the search
+     * @param heuristic the given HeuristicOptions of the search
+     * @param solvable the given boolean represents the board is solvable
+     * @param timeout the given boolean represents the search is timeout
+     * @param cancelled the given boolean represents the search is cancelled
+     * @param solution the given MoveSequence of the solution, or null if not solved
+     * @param searchDepth the given search depth when the search terminated
+     * @param searchNodeCount the given number of nodes generated
+     * @param searchTime the given search time in seconds
+     * @return SolveResult object of the given values
+     */
+    public static SolveResult valueOf(Board board, HeuristicOptions heuristic,
+            boolean solvable, boolean timeout, boolean cancelled, MoveSequence solution,
+            int searchDepth, int searchNodeCount, double searchTime) {
+        return new SolveResult(board, heuristic, solvable, timeout, cancelled, solution,
+                searchDepth, searchNodeCount, searchTime);
+    }
+
+    /**
+     * Returns the SolveResult object of the given board, the given board is the same
+     * or the symmetry board of this result.  The solution of the symmetry board is the
+     * symmetry moves.
+     *
+     * @param other the given Board object, same or symmetry board of this result
+     * @return SolveResult object of the given board
+     */
+    public SolveResult forBoard(Board other) {
+        if (board.equals(other)) {
+            return this;
+        }
+        MoveSequence moves = solution;
+        if (moves != null) {
+            moves = moves.symmetry();
+        }
+        return new SolveResult(other, heuristic, solvable, timeout, cancelled, moves,
+                searchDepth, searchNodeCount, searchTime);
+    }
+
+    /**
+     * Returns the Board object of the search.
+     *
+     * @return Board object of the search
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the HeuristicOptions used by the search.
+     *
+     * @return HeuristicOptions used by the search
+     */
+    public HeuristicOptions getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Returns the boolean represents the board is solvable.
+     *
+     * @return boolean represents the board is solvable
+     */
+    public boolean isSolvable() {
+        return solvable;
+    }
+
+    /**
+     * Returns the boolean represents the optimal solution has been found.
+     *
+     * @return boolean represents the optimal solution has been found
+     */
+    public boolean isSolved() {
+        return solvable && !timeout && solution != null;
+    }
+
+    /**
+     * Returns the boolean represents the search has timeout or cancelled.
+     *
+     * @return boolean represents the search has timeout or cancelled
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the boolean represents the search has been cancelled.
+     *
+     * @return boolean represents the search has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of moves of the optimal solution, -1 if not solved.
+     *
+     * @return integer of the number of moves, -1 if not solved
+     */
+    public int moves() {
+        if (!isSolved()) {
+            return -1;
+        }
+        return solution.length();
+    }
+
+    /**
+     * Returns the MoveSequence of the optimal solution, null if not solved.
+     *
+     * @return MoveSequence of the optimal solution, null if not solved
+     */
+    public MoveSequence getSolution() {
+        return solution;
+    }
+
+    /**
+     * Returns the search depth when the search terminated.
+     *
+     * @return integer of the search depth
+     */
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * Returns the number of nodes generated by the search.
+     *
+     * @return integer of the number of nodes generated
+     */
+    public int getSearchNodeCount() {
+        return searchNodeCount;
+    }
+
+    /**
+     * Returns the search time in seconds.
+     *
+     * @return double value of the search time in seconds
+     */
+    public double getSearchTime() {
+        return searchTime;
+    }
+
+    /**
+     * Returns the String of the search outcome.
+     *
+     * @return String of the search outcome
+     */
+    @Override
+    public String toString() {
+        if (!solvable) {
+            return "Insolvable puzzle, no solution.";
+        }
+        if (cancelled) {
+            return "Search cancelled, no solution.";
+        }
+        if (timeout) {
+            return "Search timeout, no solution.";
+        }
+        if (solution == null) {
+            return "No solution within the maximum number of moves.";
+        }
+        return solution.length() + " moves " + solution + " (" + heuristic + ", "
+                + searchTime + "s, " + searchNodeCount + " nodes)";
+    }
+}
@@ -0,0 +1,528 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SearchListener;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * SolveService is the local asynchronous solve service.  The client submits a board and
+ * gets a SolveJob at once, then polls, waits, cancels, or receives the completed jobs
+ * by a JobListener or a stream.  The jobs wait in a bounded queue, a new job is rejected
+ * when the queue is full.  A fixed number of workers search the jobs, the job of the
+ * fewest predicted nodes first; a job waited over the aging limit runs next, so a long
+ * job is never starved.  The listeners are called by the front end threads, not the
+ * search workers.  The progress of a running job is polled from its SolveJob, or
+ * received by a SearchListener.
+ *
+ * <p>Each job is searched by a solver of the SolverPool with the heuristic and timeout
+ * limit recommended by the DifficultyPredictor, unless the client requests a heuristic.
+ * The running jobs of the same board, heuristic and timeout limit share one search by
+ * SolveCoalescer, each job receives its progress.
+ *
+ * <p>Dependencies : Board.java, DifficultyEstimate.java, DifficultyPredictor.java,
+ *                   HeuristicOptions.java, JobListener.java, JobState.java,
+ *                   SearchListener.java, SmartSolver.java, SolveCoalescer.java,
+ *                   SolveJob.java, SolveResult.java, SolverConstants.java,
+ *                   SolverPool.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolveService {
+    private static final boolean onSwitch = SolverConstants.isOnSwitch();
+    // seconds a job waits before it runs next regardless of the predicted nodes
+    private static final int agingLimit = 10;
+    // number of finished jobs kept for poll
+    private static final int historySize = 1000;
+    // number of solved results to calibrate the predictor
+    private static final int calibrateSize = 200;
+    private static final int calibrateInterval = 50;
+
+    private final SolverPool pool;
+    private final DifficultyPredictor predictor;
+    private final SolveCoalescer coalescer;
+    private final int capacity;
+    private final PriorityQueue<SolveJob> queue;
+    private final ArrayDeque<SolveJob> arrivals;
+    private final LinkedHashMap<Long, SolveJob> jobs;
+    private final ArrayDeque<SolveResult> recent;
+    private final ArrayList<Thread> workers;
+    private final ExecutorService frontEnd;
+    private volatile boolean running;
+    private long nextId;
+    private long submitted;
+    private long rejected;
+    private long completed;
+    private long cancelled;
+    private long timeout;
+    private long aged;
+    private double totalTurnaround;
+
+    /**
+     * Initializes SolveService object with the given solver pool and predictor, one
+     * worker of each processor and the default queue size.
+     *
+     * @param pool the given SolverPool shared with other services
+     * @param predictor the given DifficultyPredictor to schedule the jobs, or null
+     *        to run the jobs in order with the strongest ready heuristic
+     */
+    public SolveService(SolverPool pool, DifficultyPredictor predictor) {
+        this(pool, predictor, Runtime.getRuntime().availableProcessors(),
+                SolverProperties.getServiceQueueSize());
+    }
+
+    /**
+     * Initializes SolveService object with the given solver pool, predictor, number of
+     * workers and queue size.
+     *
+     * @param pool the given SolverPool shared with other services
+     * @param predictor the given DifficultyPredictor to schedule the jobs, or null
+     *        to run the jobs in order with the strongest ready heuristic
+     * @param workerCount the given number of search workers
+     * @param capacity the given maximum number of jobs waiting in the queue
+     */
+    public SolveService(SolverPool pool, DifficultyPredictor predictor, int workerCount,
+            int capacity) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid number of workers " + workerCount);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid queue size " + capacity);
+        }
+        this.pool = pool;
+        this.predictor = predictor;
+        this.capacity = capacity;
+        coalescer = new SolveCoalescer();
+        queue = new PriorityQueue<SolveJob>(16, new Comparator<SolveJob>() {
+            @Override
+            public int compare(SolveJob job1, SolveJob job2) {
+                int diff = Double.compare(job1.getPredictedNodes(), job2.getPredictedNodes());
+                if (diff != 0) {
+                    return diff;
+                }
+                return Long.compare(job1.getId(), job2.getId());
+            }
+        });
+        arrivals = new ArrayDeque<SolveJob>();
+        jobs = new LinkedHashMap<Long, SolveJob>() {
+            private static final long serialVersionUID = 1L;
+
+            // the unfinished jobs are kept even over the history size
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SolveJob> eldest) {
+                return size() > historySize && eldest.getValue().isDone();
+            }
+        };
+        recent = new ArrayDeque<SolveResult>();
+        frontEnd = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "SolveService-frontend");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        running = true;
+        workers = new ArrayList<Thread>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "SolveService-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Submit the given board with the recommended heuristic, returns the SolveJob at once.
+     *
+     * @param board the given Board object
+     * @return SolveJob of the given board
+     * @throws RejectedExecutionException if the queue is full or the service is shut down
+     */
+    public SolveJob submit(Board board) {
+        return submit(board, null, null);
+    }
+
+    /**
+     * Submit the given board with the given heuristic, returns the SolveJob at once.  The
+     * given listener receives the job when it is done.
+     *
+     * @param board the given Board object
+     * @param heuristic the given HeuristicOptions, or null for the recommended heuristic
+     * @param listener the given JobListener, or null
+     * @return SolveJob of the given board
+     * @throws RejectedExecutionException if the queue is full or the service is shut down
+     */
+    public SolveJob submit(Board board, HeuristicOptions heuristic, JobListener listener) {
+        return submit(board, heuristic, listener, null);
+    }
+
+    /**
+     * Submit the given board with the given heuristic, returns the SolveJob at once.  The
+     * given search listener receives the progress of the search while the job is
+     * running, called in the search worker; the given listener receives the job when it
+     * is done.
+     *
+     * @param board the given Board object
+     * @param heuristic the given HeuristicOptions, or null for the recommended heuristic
+     * @param listener the given JobListener, or null
+     * @param searchListener the given SearchListener, or null
+     * @return SolveJob of the given board
+     * @throws RejectedExecutionException if the queue is full or the service is shut down
+     */
+    public SolveJob submit(Board board, HeuristicOptions heuristic, JobListener listener,
+            SearchListener searchListener) {
+        ArrayList<Board> boards = new ArrayList<Board>(1);
+        boards.add(board);
+        return submitAll(boards, heuristic, listener, searchListener).get(0);
+    }
+
+    /**
+     * Submit all given boards with the recommended heuristic, the given listener
+     * receives each job as soon as it is done.  The boards are admitted all or none.
+     *
+     * @param boards the given Collection of Board objects
+     * @param listener the given JobListener, or null
+     * @return List of SolveJob of the given boards in the same order
+     * @throws RejectedExecutionException if the queue has no room for all boards or the
+     *         service is shut down
+     */
+    public List<SolveJob> solveAll(Collection<Board> boards, JobListener listener) {
+        return submitAll(boards, null, listener, null);
+    }
+
+    /**
+     * Submit all given boards with the recommended heuristic, returns the stream of
+     * jobs in the order they are done.  The boards are admitted all or none.
+     *
+     * @param boards the given Collection of Board objects
+     * @return BlockingQueue of SolveJob receives each job as soon as it is done
+     * @throws RejectedExecutionException if the queue has no room for all boards or the
+     *         service is shut down
+     */
+    public BlockingQueue<SolveJob> stream(Collection<Board> boards) {
+        final LinkedBlockingQueue<SolveJob> stream = new LinkedBlockingQueue<SolveJob>();
+        submitAll(boards, null, new JobListener() {
+            @Override
+            public void jobDone(SolveJob job) {
+                stream.offer(job);
+            }
+        }, null);
+        return stream;
+    }
+
+    // predict and admit the given boards all or none, the insolvable boards are done
+    // at once without queuing
+    private List<SolveJob> submitAll(Collection<Board> boards, HeuristicOptions heuristic,
+            JobListener listener, SearchListener searchListener) {
+        if (!running) {
+            throw new RejectedExecutionException("Solve service is shut down");
+        }
+        // predict before locking, it may take a while
+        ArrayList<DifficultyEstimate> estimates = new ArrayList<DifficultyEstimate>();
+        for (Board board : boards) {
+            if (predictor != null && board.isSolvable()) {
+                estimates.add(predictor.predict(board));
+            } else {
+                estimates.add(null);
+            }
+        }
+
+        ArrayList<SolveJob> batch = new ArrayList<SolveJob>(boards.size());
+        ArrayList<SolveJob> insolvable = new ArrayList<SolveJob>();
+        synchronized (this) {
+            int count = 0;
+            for (Board board : boards) {
+                if (board.isSolvable()) {
+                    count++;
+                }
+            }
+            if (!running || queue.size() + count > capacity) {
+                rejected += boards.size();
+                throw new RejectedExecutionException("Solve service queue is full, "
+                        + queue.size() + " of " + capacity + " jobs waiting");
+            }
+
+            int idx = 0;
+            for (Board board : boards) {
+                SolveJob job = createJob(board, heuristic, estimates.get(idx++), listener,
+                        searchListener);
+                jobs.put(job.getId(), job);
+                submitted++;
+                if (board.isSolvable()) {
+                    queue.offer(job);
+                    arrivals.offerLast(job);
+                } else {
+                    insolvable.add(job);
+                }
+                batch.add(job);
+            }
+            notifyAll();
+        }
+
+        for (SolveJob job : insolvable) {
+            job.start(null, null);
+            job.complete(SolveResult.insolvable(job.getBoard(), job.getHeuristic()));
+            finish(job);
+        }
+        return batch;
+    }
+
+    // returns a new SolveJob of the given board, the heuristic, timeout and priority
+    // are taken from the estimate if any
+    private SolveJob createJob(Board board, HeuristicOptions heuristic,
+            DifficultyEstimate estimate, JobListener listener,
+            SearchListener searchListener) {
+        double nodes = 0;
+        int limit = SolverProperties.getTimeoutLimit();
+        HeuristicOptions selected = heuristic;
+        if (estimate != null) {
+            nodes = estimate.getNodes();
+            if (selected == null) {
+                selected = estimate.getHeuristic();
+                limit = estimate.getTimeoutLimit();
+            }
+        }
+        if (selected == null) {
+            selected = pool.bestReady();
+        }
+        return new SolveJob(nextId++, board, selected, limit, nodes, listener,
+                searchListener);
+    }
+
+    /**
+     * Returns the SolveJob of the given id, or null if unknown or expired from the
+     * history.
+     *
+     * @param id the given id of the job
+     * @return SolveJob of the given id, or null
+     */
+    public synchronized SolveJob poll(long id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancel the job of the given id, a waiting job is removed from the queue and a
+     * running search is cancelled.
+     *
+     * @param id the given id of the job
+     * @return boolean represents the job is cancelled, false if unknown or already done
+     */
+    public boolean cancel(long id) {
+        SolveJob job;
+        synchronized (this) {
+            job = jobs.get(id);
+            if (job == null || !job.cancel()) {
+                return false;
+            }
+            queue.remove(job);
+            arrivals.remove(job);
+            cancelled++;
+        }
+        // a running job is finished by its worker when the search stopped
+        if (job.isDone()) {
+            finish(job);
+        }
+        return true;
+    }
+
+    // returns the next job to run, the oldest job if it waited over the aging limit,
+    // otherwise the job of the fewest predicted nodes; null if shut down
+    private synchronized SolveJob take() throws InterruptedException {
+        while (running && queue.isEmpty()) {
+            wait();
+        }
+        if (!running) {
+            return null;
+        }
+        SolveJob job = arrivals.peekFirst();
+        if (System.nanoTime() - job.getSubmitTime() > agingLimit * 1000000000L) {
+            if (job != queue.peek()) {
+                aged++;
+            }
+            arrivals.pollFirst();
+            queue.remove(job);
+        } else {
+            job = queue.poll();
+            arrivals.remove(job);
+        }
+        return job;
+    }
+
+    // search the jobs until shut down
+    private void work() {
+        while (running) {
+            SolveJob job;
+            try {
+                job = take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (job == null) {
+                return;
+            }
+
+            SmartSolver solver = pool.acquire(job.getHeuristic());
+            try {
+                if (!job.start(solver, coalescer)) {
+                    continue;
+                }
+                solver.versionSwitch(onSwitch);
+                solver.timeoutSwitch(onSwitch);
+                solver.setTimeoutLimit(job.getTimeoutLimit());
+                SolveResult result;
+                try {
+                    result = coalescer.solve(solver, job.getBoard(), job.progressListener());
+                } catch (InterruptedException ex) {
+                    result = SolveResult.cancelled(job.getBoard(), job.getHeuristic());
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException ex) {
+                    System.err.println("System error : solve service job " + job.getId()
+                            + " failed - " + ex.getMessage());
+                    result = SolveResult.cancelled(job.getBoard(), job.getHeuristic());
+                }
+                job.complete(result);
+            } finally {
+                solver.setTimeoutLimit(SolverProperties.getTimeoutLimit());
+                pool.release(solver);
+            }
+            record(job);
+            finish(job);
+        }
+    }
+
+    // record the statistics of the given finished job, calibrate the predictor with
+    // the recent solved results
+    private void record(SolveJob job) {
+        SolveResult result = job.getResult();
+        ArrayList<SolveResult> samples = null;
+        synchronized (this) {
+            if (job.getState() != JobState.COMPLETED) {
+                return;
+            }
+            completed++;
+            totalTurnaround += job.getTurnaroundTime();
+            if (result.isTimeout()) {
+                timeout++;
+            }
+            if (predictor != null && result.isSolved()) {
+                recent.offerLast(result);
+                if (recent.size() > calibrateSize) {
+                    recent.pollFirst();
+                }
+                if (completed % calibrateInterval == 0) {
+                    samples = new ArrayList<SolveResult>(recent);
+                }
+            }
+        }
+        if (samples != null) {
+            predictor.calibrateNodes(samples);
+        }
+    }
+
+    // pass the given finished job to its listener in the front end threads
+    private void finish(final SolveJob job) {
+        final JobListener listener = job.getListener();
+        if (listener == null) {
+            return;
+        }
+        try {
+            frontEnd.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        listener.jobDone(job);
+                    } catch (RuntimeException ex) {
+                        System.err.println("System error : job listener failed - "
+                                + ex.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // shut down, no more notification
+        }
+    }
+
+    /**
+     * Returns the number of jobs waiting in the queue.
+     *
+     * @return integer of the number of jobs waiting in the queue
+     */
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the maximum number of jobs waiting in the queue.
+     *
+     * @return integer of the maximum number of jobs waiting in the queue
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the summary of the jobs of the service.
+     *
+     * @return String of the summary of the service
+     */
+    public synchronized String summary() {
+        double average = 0;
+        if (completed > 0) {
+            average = totalTurnaround / completed;
+        }
+        return String.format("Solve service: %d workers, %d of %d waiting; %d submitted, "
+                + "%d rejected, %d completed (%d timeout), %d cancelled, %d aged; "
+                + "average turnaround %.3fs\n%s", workers.size(), queue.size(), capacity,
+                submitted, rejected, completed, timeout, cancelled, aged, average,
+                coalescer.summary());
+    }
+
+    /**
+     * Stop the service, all waiting jobs and running searches are cancelled.
+     */
+    public void shutdown() {
+        ArrayList<SolveJob> unfinished;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            unfinished = new ArrayList<SolveJob>();
+            for (SolveJob job : jobs.values()) {
+                if (!job.isDone()) {
+                    unfinished.add(job);
+                }
+            }
+            notifyAll();
+        }
+        for (SolveJob job : unfinished) {
+            cancel(job.getId());
+        }
+        frontEnd.shutdown();
+    }
+}
@@ -0,0 +1,332 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverMd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdbWd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverWd;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverWdMd;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
+import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
+import mwong.myprojects.fifteenpuzzle.solver.components.PatternOptions;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+
+/**
+ * SolverPool keeps the idle solvers of each heuristic for the concurrent searches.  The
+ * first solver of a heuristic loads the data files, the others are copies sharing its
+ * tables with their own search state, so a new solver is cheap.  A solver is used by one
+ * thread between acquire and release; the pool creates a new copy when all solvers of
+ * the heuristic are in use, and keeps up to the number of processors idle solvers.
+ * Every solver is acquired with the same baseline setting, the setting changed by the
+ * last borrower is restored on release.
+ * The heuristics can be preloaded in parallel background threads, bestReady tells the
+ * strongest one loaded so far.
+ *
+ * <p>Dependencies : HeuristicOptions.java, PatternOptions.java, ReferenceRemote.java,
+ *                   SmartSolver.java, SmartSolverMd.java, SmartSolverPdb.java,
+ *                   SmartSolverPdbWd.java, SmartSolverWd.java, SmartSolverWdMd.java,
+ *                   SolverConstants.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolverPool {
+    private static final HeuristicOptions[] strength = {HeuristicOptions.PD78,
+        HeuristicOptions.PD663, HeuristicOptions.PD555, HeuristicOptions.WDMD,
+        HeuristicOptions.WD, HeuristicOptions.MDLC};
+
+    private final ReferenceRemote refConnection;
+    private final ApplicationMode appMode;
+    private final int maxIdle;
+    private final EnumMap<HeuristicOptions, SmartSolver> prototypes;
+    private final EnumMap<HeuristicOptions, Object> loadLocks;
+    private final EnumMap<HeuristicOptions, ArrayDeque<SmartSolver>> idleSolvers;
+    private final IdentityHashMap<SmartSolver, HeuristicOptions> inUse;
+    private int created;
+
+    /**
+     * Initializes SolverPool object with the given reference connection and
+     * application mode.
+     *
+     * @param refConnection the given ReferenceRemote connection object, may be null
+     * @param appMode the given applicationMode for GUI or CONSOLE
+     */
+    public SolverPool(ReferenceRemote refConnection, ApplicationMode appMode) {
+        this(refConnection, appMode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes SolverPool object with the given reference connection, application
+     * mode and maximum number of idle solvers of each heuristic.
+     *
+     * @param refConnection the given ReferenceRemote connection object, may be null
+     * @param appMode the given applicationMode for GUI or CONSOLE
+     * @param maxIdle the given maximum number of idle solvers of each heuristic
+     */
+    public SolverPool(ReferenceRemote refConnection, ApplicationMode appMode, int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("Invalid pool size " + maxIdle);
+        }
+        this.refConnection = refConnection;
+        this.appMode = appMode;
+        this.maxIdle = maxIdle;
+        prototypes = new EnumMap<HeuristicOptions, SmartSolver>(HeuristicOptions.class);
+        idleSolvers = new EnumMap<HeuristicOptions, ArrayDeque<SmartSolver>>(
+                HeuristicOptions.class);
+        loadLocks = new EnumMap<HeuristicOptions, Object>(HeuristicOptions.class);
+        for (HeuristicOptions heuristic : HeuristicOptions.values()) {
+            idleSolvers.put(heuristic, new ArrayDeque<SmartSolver>());
+            loadLocks.put(heuristic, new Object());
+        }
+        inUse = new IdentityHashMap<SmartSolver, HeuristicOptions>();
+    }
+
+    /**
+     * Returns a solver of the given heuristic for the use of the calling thread until
+     * it is released.  The first call of a heuristic loads its data files.
+     *
+     * @param heuristic the given HeuristicOptions
+     * @return SmartSolver object of the given heuristic
+     */
+    public SmartSolver acquire(HeuristicOptions heuristic) {
+        SmartSolver solver;
+        synchronized (this) {
+            solver = idleSolvers.get(heuristic).pollFirst();
+        }
+        if (solver == null) {
+            solver = create(heuristic);
+        }
+        if (heuristic == HeuristicOptions.MD || heuristic == HeuristicOptions.MDLC) {
+            ((SmartSolverMd) solver).linearConflictSwitch(heuristic == HeuristicOptions.MDLC);
+        }
+        synchronized (this) {
+            inUse.put(solver, heuristic);
+        }
+        return solver;
+    }
+
+    /**
+     * Returns the given solver of acquire back to the pool.  The solver must not be
+     * used after release.
+     *
+     * @param solver the given SmartSolver object
+     */
+    public void release(SmartSolver solver) {
+        synchronized (this) {
+            HeuristicOptions heuristic = inUse.remove(solver);
+            if (heuristic == null) {
+                throw new IllegalArgumentException("Solver is not in use of this pool");
+            }
+            reset(solver);
+            ArrayDeque<SmartSolver> idle = idleSolvers.get(heuristic);
+            if (idle.size() < maxIdle) {
+                idle.offerFirst(solver);
+            }
+        }
+    }
+
+    // create a new solver of the given heuristic, a copy of the first solver of
+    // the heuristic for pattern database
+    private SmartSolver create(HeuristicOptions heuristic) {
+        SmartSolver prototype = prototype(heuristic);
+        SmartSolver solver;
+        switch (heuristic) {
+            case MD:
+            case MDLC:
+                solver = new SmartSolverMd(heuristic == HeuristicOptions.MDLC,
+                        refConnection);
+                break;
+            case WD:
+                solver = new SmartSolverWd(refConnection, appMode);
+                break;
+            case WDMD:
+                solver = new SmartSolverWdMd(refConnection, appMode);
+                break;
+            case PD555:
+            case PD663:
+                solver = new SmartSolverPdbWd((SmartSolverPdbWd) prototype, refConnection);
+                break;
+            case PD78:
+                solver = new SmartSolverPdb((SmartSolverPdb) prototype, refConnection);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid heuristic " + heuristic);
+        }
+        reset(solver);
+        synchronized (this) {
+            created++;
+        }
+        return solver;
+    }
+
+    // restore the baseline setting of the pool, the next borrower must not inherit the
+    // setting or report to the listener of the last one
+    private void reset(SmartSolver solver) {
+        solver.messageSwitch(false);
+        solver.timeoutSwitch(SolverConstants.isOnSwitch());
+        solver.setTimeoutLimit(SolverProperties.getTimeoutLimit());
+        solver.solutionStoreSwitch(SolverProperties.isSolutionStore());
+        solver.solutionCacheSwitch(SolverProperties.getCacheSize() > 0);
+        solver.versionSwitch(SolverConstants.isTagAdvanced());
+        solver.setSearchListener(null);
+    }
+
+    // returns the first solver of the given heuristic which holds the tables, it loads
+    // the data files once; the heuristics load in parallel, each with its own lock
+    private SmartSolver prototype(HeuristicOptions heuristic) {
+        synchronized (loadLocks.get(heuristic)) {
+            SmartSolver prototype;
+            synchronized (prototypes) {
+                prototype = prototypes.get(heuristic);
+            }
+            if (prototype != null) {
+                return prototype;
+            }
+            switch (heuristic) {
+                case MD:
+                case MDLC:
+                    prototype = new SmartSolverMd(heuristic == HeuristicOptions.MDLC,
+                            refConnection);
+                    break;
+                case WD:
+                    prototype = new SmartSolverWd(refConnection, appMode);
+                    break;
+                case WDMD:
+                    prototype = new SmartSolverWdMd(refConnection, appMode);
+                    break;
+                case PD555:
+                    prototype = new SmartSolverPdbWd(PatternOptions.Pattern_555,
+                            refConnection, appMode);
+                    break;
+                case PD663:
+                    prototype = new SmartSolverPdbWd(PatternOptions.Pattern_663,
+                            refConnection, appMode);
+                    break;
+                case PD78:
+                    prototype = loadSolverPdb78();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid heuristic " + heuristic);
+            }
+            synchronized (prototypes) {
+                prototypes.put(heuristic, prototype);
+            }
+            return prototype;
+        }
+    }
+
+    /**
+     * Load the data files of the given heuristics in parallel background threads, the
+     * solvers of a heuristic are available at once when its loading completed.
+     *
+     * @param heuristics the given HeuristicOptions to load
+     */
+    public void preload(HeuristicOptions... heuristics) {
+        for (final HeuristicOptions heuristic : heuristics) {
+            if (isReady(heuristic)) {
+                continue;
+            }
+            Thread loader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        prototype(heuristic);
+                    } catch (RuntimeException ex) {
+                        System.err.println("System error : unable to load " + heuristic
+                                + " - " + ex.getMessage());
+                    }
+                }
+            }, "SolverPool-" + heuristic);
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    /**
+     * Returns the boolean represents the data files of the given heuristic have been
+     * loaded, acquire a solver of it will not wait.  Manhattan distance is always ready.
+     *
+     * @param heuristic the given HeuristicOptions
+     * @return boolean represents the given heuristic is ready
+     */
+    public boolean isReady(HeuristicOptions heuristic) {
+        if (heuristic == HeuristicOptions.MD || heuristic == HeuristicOptions.MDLC) {
+            return true;
+        }
+        synchronized (prototypes) {
+            return prototypes.containsKey(heuristic);
+        }
+    }
+
+    /**
+     * Returns the strongest heuristic which is ready, in the order of pattern database
+     * 7-8, 6-6-3, 5-5-5, walking distance + manhattan distance, walking distance and
+     * manhattan distance with linear conflict.  It upgrades as the stronger heuristics
+     * complete loading.
+     *
+     * @return HeuristicOptions of the strongest heuristic ready
+     */
+    public HeuristicOptions bestReady() {
+        for (HeuristicOptions heuristic : strength) {
+            if (isReady(heuristic)) {
+                return heuristic;
+            }
+        }
+        return HeuristicOptions.MDLC;
+    }
+
+    // returns the 78 pattern solver of the reference connection if it has loaded one,
+    // otherwise load the pattern database
+    private SmartSolverPdb loadSolverPdb78() {
+        try {
+            if (refConnection != null && refConnection.getSolver() != null) {
+                return refConnection.getSolver();
+            }
+        } catch (RemoteException ex) {
+            // do nothing
+        }
+        return new SmartSolverPdb(PatternOptions.Pattern_78, refConnection, appMode);
+    }
+
+    /**
+     * Returns the number of solvers created by the pool.
+     *
+     * @return integer of the number of solvers created
+     */
+    public synchronized int countCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the number of solvers in use.
+     *
+     * @return integer of the number of solvers in use
+     */
+    public synchronized int countInUse() {
+        return inUse.size();
+    }
+
+    /**
+     * Returns the summary of the solvers in use and idle of each heuristic.
+     *
+     * @return String of the summary of the pool
+     */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("Solver pool: " + created + " solvers created, "
+                + inUse.size() + " in use.");
+        for (HeuristicOptions heuristic : HeuristicOptions.values()) {
+            int idle = idleSolvers.get(heuristic).size();
+            if (idle > 0) {
+                sb.append(" ").append(heuristic).append(" idle ").append(idle).append(".");
+            }
+        }
+        return sb.toString();
+    }
+}
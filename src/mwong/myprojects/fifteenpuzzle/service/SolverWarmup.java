@@ -0,0 +1,287 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+
+import java.util.EnumMap;
+import java.util.Random;
+
+/**
+ * SolverWarmup runs a fixed corpus of short solves through the solver of each given
+ * heuristic before the server accepts traffic, so the depth first searches have been
+ * compiled by the JIT compiler and the first requests run at the steady speed.  The
+ * corpus is searched in rounds by both the standard and advanced version; a heuristic
+ * is warm when the node rate of a round is within 10 percent of the round before.  It
+ * is ready when all given heuristics are warm, or the time budget exhausted; a
+ * heuristic not loaded within the budget is warmed up by the requests instead.
+ *
+ * <p>Dependencies : Board.java, Direction.java, HeuristicOptions.java, SmartSolver.java,
+ *                   SolverConstants.java, SolverPool.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolverWarmup {
+    private static final int corpusSize = 24;
+    private static final int corpusMoves = 44;
+    private static final long corpusSeed = 15;
+    private static final int minRounds = 3;
+    private static final double stableRange = 0.1;
+    private static final Board[] corpus = createCorpus();
+
+    private final SolverPool pool;
+    private final HeuristicOptions[] heuristics;
+    private final int timeLimit;
+    private final EnumMap<HeuristicOptions, Integer> rounds;
+    private final EnumMap<HeuristicOptions, Double> rates;
+    private final EnumMap<HeuristicOptions, Boolean> warm;
+    private boolean started;
+    private boolean ready;
+    private boolean exhausted;
+    private double warmupTime;
+
+    /**
+     * Initializes SolverWarmup object with the given solver pool, heuristics and the
+     * default time budget.
+     *
+     * @param pool the given SolverPool shared with the services
+     * @param heuristics the given HeuristicOptions to warm up
+     */
+    public SolverWarmup(SolverPool pool, HeuristicOptions... heuristics) {
+        this(pool, SolverProperties.getWarmupTimeLimit(), heuristics);
+    }
+
+    /**
+     * Initializes SolverWarmup object with the given solver pool, time budget in seconds
+     * and heuristics.
+     *
+     * @param pool the given SolverPool shared with the services
+     * @param timeLimit the given time budget in seconds, 0 for no warm up
+     * @param heuristics the given HeuristicOptions to warm up
+     */
+    public SolverWarmup(SolverPool pool, int timeLimit, HeuristicOptions... heuristics) {
+        if (timeLimit < 0) {
+            throw new IllegalArgumentException("Invalid time limit " + timeLimit);
+        }
+        this.pool = pool;
+        this.timeLimit = timeLimit;
+        this.heuristics = heuristics.clone();
+        rounds = new EnumMap<HeuristicOptions, Integer>(HeuristicOptions.class);
+        rates = new EnumMap<HeuristicOptions, Double>(HeuristicOptions.class);
+        warm = new EnumMap<HeuristicOptions, Boolean>(HeuristicOptions.class);
+        for (HeuristicOptions heuristic : heuristics) {
+            rounds.put(heuristic, 0);
+            rates.put(heuristic, 0.0);
+            warm.put(heuristic, false);
+        }
+    }
+
+    // returns the fixed corpus of boards, each a random walk from the goal state
+    // without moving back, they solve within tens of thousands of nodes by the
+    // pattern databases and a few hundred thousands by manhattan distance
+    private static Board[] createCorpus() {
+        Random random = new Random(corpusSeed);
+        Direction[] directions = {Direction.RIGHT, Direction.DOWN, Direction.LEFT,
+            Direction.UP};
+        Board[] boards = new Board[corpusSize];
+        for (int i = 0; i < corpusSize; i++) {
+            Board board = SolverConstants.getGoalBoard();
+            Direction last = Direction.NONE;
+            for (int count = 0; count < corpusMoves; count++) {
+                boolean[] valid = board.getValidMoves();
+                Direction dir;
+                do {
+                    dir = directions[random.nextInt(directions.length)];
+                } while (!valid[dir.getValue()] || dir == last.oppositeDirection());
+                board = board.shift(dir);
+                last = dir;
+            }
+            boards[i] = board;
+        }
+        return boards;
+    }
+
+    /**
+     * Start the warm up in a background thread, it prints the summary when ready.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+                System.out.println(summary());
+            }
+        }, "SolverWarmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run the warm up until all heuristics are warm or the time budget exhausted, wait
+     * for the heuristics still loading within the budget.
+     */
+    public void warmUp() {
+        synchronized (this) {
+            started = true;
+        }
+        long startTime = System.nanoTime();
+        long deadline = startTime + timeLimit * 1000000000L;
+        boolean pending = true;
+        try {
+            while (pending && System.nanoTime() < deadline) {
+                pending = false;
+                boolean searched = false;
+                for (HeuristicOptions heuristic : heuristics) {
+                    if (isWarm(heuristic)) {
+                        continue;
+                    }
+                    pending = true;
+                    if (pool.isReady(heuristic)) {
+                        searched = true;
+                        if (!round(heuristic, deadline)) {
+                            break;
+                        }
+                    }
+                }
+                // all remaining heuristics are loading, check again later
+                if (pending && !searched) {
+                    Thread.sleep(100);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // mark ready at once
+        }
+
+        synchronized (this) {
+            exhausted = pending;
+            warmupTime = (System.nanoTime() - startTime) / 1000000000.0;
+            ready = true;
+            notifyAll();
+        }
+    }
+
+    // search the corpus once by the solver of the given heuristic and update its node
+    // rate, returns false if the deadline reached before the round completed
+    private boolean round(HeuristicOptions heuristic, long deadline) {
+        SmartSolver solver = pool.acquire(heuristic);
+        boolean cacheOn = solver.isFlagSolutionCache();
+        boolean storeOn = solver.isFlagSolutionStore();
+        boolean timeoutOn = solver.isFlagTimeout();
+        int timeoutLimit = solver.getSearchTimeoutLimit();
+        boolean advanced = solver.isFlagAdvancedVersion();
+        long nodes = 0;
+        long time = 0;
+        try {
+            solver.solutionCacheSwitch(false);
+            solver.solutionStoreSwitch(false);
+            solver.timeoutSwitch(true);
+            solver.setTimeoutLimit(1);
+            for (int i = 0; i < corpus.length; i++) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                solver.versionSwitch(i % 2 == 0);
+                long start = System.nanoTime();
+                solver.findOptimalPath(corpus[i]);
+                time += System.nanoTime() - start;
+                nodes += Math.max(0, solver.searchNodeCount());
+            }
+        } finally {
+            // restore the setting of the solver before the round
+            solver.solutionCacheSwitch(cacheOn);
+            solver.solutionStoreSwitch(storeOn);
+            solver.timeoutSwitch(timeoutOn);
+            solver.setTimeoutLimit(timeoutLimit);
+            solver.versionSwitch(advanced);
+            pool.release(solver);
+        }
+
+        double rate = nodes * 1000000000.0 / Math.max(1, time);
+        synchronized (this) {
+            int count = rounds.get(heuristic) + 1;
+            double last = rates.get(heuristic);
+            rounds.put(heuristic, count);
+            rates.put(heuristic, rate);
+            if (count >= minRounds && Math.abs(rate - last) <= last * stableRange) {
+                warm.put(heuristic, true);
+            }
+        }
+        return true;
+    }
+
+    // returns the boolean represents the given heuristic is warm
+    private synchronized boolean isWarm(HeuristicOptions heuristic) {
+        return warm.get(heuristic);
+    }
+
+    /**
+     * Returns the boolean represents the warm up has completed or the time budget
+     * exhausted, the server is ready for traffic.
+     *
+     * @return boolean represents the warm up is done
+     */
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Wait up to the given milliseconds for the warm up done.
+     *
+     * @param millis the given maximum time to wait in milliseconds, 0 to wait forever
+     * @return boolean represents the warm up is done
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized boolean await(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (!ready) {
+            if (millis == 0) {
+                wait();
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Returns the summary of the node rate and the number of rounds of each heuristic.
+     *
+     * @return String of the summary of the warm up
+     */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("Solver warm-up: ");
+        if (!ready) {
+            sb.append("in progress.");
+        } else if (timeLimit == 0) {
+            sb.append("off.");
+        } else if (exhausted) {
+            sb.append("ready after time budget " + timeLimit + "s exhausted.");
+        } else {
+            sb.append(String.format("ready in %.1fs.", warmupTime));
+        }
+        for (HeuristicOptions heuristic : heuristics) {
+            int count = rounds.get(heuristic);
+            sb.append(" ").append(heuristic).append(" ");
+            if (count == 0) {
+                sb.append("not warmed up.");
+            } else {
+                sb.append(String.format("%.1fM nodes/s after %d rounds%s.",
+                        rates.get(heuristic) / 1000000.0, count,
+                        warm.get(heuristic) ? "" : ", not stable"));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -90,6 +90,16 @@ public abstract class AbstractSmartSolver extends AbstractSolver implements Smar
         }
     }
 
+    /**
+     * Returns the boolean value represent advanced version in use.
+     *
+     * @return boolean value represent advanced version
+     */
+    @Override
+    public final boolean isFlagAdvancedVersion() {
+        return flagAdvancedVersion;
+    }
+
     /**
      * Set the ReferenceRemote connection with the given connection.
      *
@@ -100,8 +110,13 @@ public abstract class AbstractSmartSolver extends AbstractSolver implements Smar
         activeSmartSolver = false;
         flagAdvancedVersion = tagStandard;
         this.refConnection = null;
+        // no reference collection, standard version only
+        if (refConnection == null) {
+            extra = new SmartSolverExtra();
+            return;
+        }
         try {
-            if (refConnection != null && refConnection.getActiveMap() == null) {
+            if (refConnection.getVersion() < 0) {
                 System.out.println("Attention: Reference board collection unavailable."
                         + " Advanced estimate will use standard estimate.");
             } else {
@@ -173,8 +188,7 @@ public abstract class AbstractSmartSolver extends AbstractSolver implements Smar
 
         AdvancedRecord record = null;
         try {
-            record = extra.advancedContains(board, isSearch,
-                    refConnection.getActiveMap());
+            record = refConnection.lookupExact(board);
         } catch (RemoteException ex) {
             System.err.println("\n" + this.getClass().getSimpleName() + " - Connection lost."
                     + "  Remaining process resume to standard version.");
@@ -187,7 +201,7 @@ public abstract class AbstractSmartSolver extends AbstractSolver implements Smar
 
         if (record != null) {
             priorityAdvanced = record.getEstimate();
-            if (record.hasPartialMoves()) {
+            if (isSearch && record.hasPartialMoves()) {
                 solutionMove = record.getPartialMoves();
             }
         }
@@ -202,8 +216,7 @@ public abstract class AbstractSmartSolver extends AbstractSolver implements Smar
         }
 
         try {
-            priorityAdvanced = extra.advancedEstimate(board, priorityAdvanced, refCutoff,
-                    refConnection.getActiveMap());
+            priorityAdvanced = refConnection.advancedEstimate(board, priorityAdvanced);
         } catch (RemoteException ex) {
             System.err.println("\n" + this.getClass().getSimpleName() + " - Connection lost."
                     + "  Remaining process resume to standard version.");
@@ -4,6 +4,7 @@ import java.util.Arrays;
 
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
 import mwong.myprojects.fifteenpuzzle.utilities.Stopwatch;
 
 
@@ -11,13 +12,16 @@ import mwong.myprojects.fifteenpuzzle.utilities.Stopwatch;
  * AbstractSolver is the abstract class extends Solver Interface of 15 puzzle that
  * has the following variables and methods.
  *
- * <p>Dependencies : Board.java, Direction.java, Solver.java, Stopwatch.java
+ * <p>Dependencies : Board.java, Direction.java, SearchListener.java, Solver.java,
+ *                   Stopwatch.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
  */
 public abstract class AbstractSolver implements Solver {
     // constants
+    // number of nodes between the checks of heartbeat, minus 1
+    protected static final int heartbeatMask = (1 << 16) - 1;
     protected final int puzzleSize;
     protected final int rowSize;
     protected final int maxMoves;
@@ -35,7 +39,10 @@ public abstract class AbstractSolver implements Solver {
     // solver setting
     protected boolean flagTimeout;
     protected boolean flagMessage;
+    protected boolean flagSolutionStore;
+    protected boolean flagSolutionCache;
     protected int searchTimeoutLimit;
+    protected int searchMaxLimit;
     protected HeuristicOptions inUseHeuristic;
     // board related
     protected byte[] tiles;
@@ -54,8 +61,17 @@ public abstract class AbstractSolver implements Solver {
     protected double searchTime;
     protected boolean solved;
     protected boolean timeout;
+    protected volatile boolean cancelled;
     protected boolean terminated;
     protected Direction[] solutionMove;
+    // the listener set from other thread, and the one in use of the search in progress
+    private volatile SearchListener searchListener;
+    protected SearchListener activeListener;
+    private int listenerLimit;
+    private double lastHeartbeat;
+    // the search in progress, guarded by searchLock for awaitSearch of other thread
+    private final Object searchLock = new Object();
+    private boolean searching;
 
     protected AbstractSolver() {
         // load the constants
@@ -77,7 +93,10 @@ public abstract class AbstractSolver implements Solver {
         lastBoard = goalBoard;
         flagMessage = onSwitch;
         flagTimeout = onSwitch;
+        flagSolutionStore = SolverProperties.isSolutionStore();
+        flagSolutionCache = SolverProperties.getCacheSize() > 0;
         searchTimeoutLimit = defaultTimeoutLimit;
+        searchMaxLimit = maxMoves;
     }
 
     // ----- solver settings -----
@@ -112,6 +131,45 @@ public abstract class AbstractSolver implements Solver {
         flagTimeout = flag;
     }
 
+    /**
+     * Set the solution store feature with the given flag.
+     *
+     * @param flag the boolean represent the ON/OFF solution store feature
+     */
+    @Override
+    public final void solutionStoreSwitch(boolean flag) {
+        flagSolutionStore = flag;
+    }
+
+    /**
+     * Set the solution cache feature with the given flag.
+     *
+     * @param flag the boolean represent the ON/OFF solution cache feature
+     */
+    @Override
+    public final void solutionCacheSwitch(boolean flag) {
+        flagSolutionCache = flag;
+    }
+
+    /**
+     * Stop the search in progress from other thread, the search ends as timeout.
+     */
+    @Override
+    public final void cancelSearch() {
+        cancelled = true;
+    }
+
+    /**
+     * Set the listener to receive the progress of the searches, null to remove it.  It
+     * takes effect from the next search.
+     *
+     * @param listener the given SearchListener, or null
+     */
+    @Override
+    public final void setSearchListener(SearchListener listener) {
+        searchListener = listener;
+    }
+
     /**
      * Set the timeout limit with the given value in seconds.
      *
@@ -122,6 +180,33 @@ public abstract class AbstractSolver implements Solver {
         searchTimeoutLimit = seconds;
     }
 
+    /**
+     * Wait up to the given milliseconds for the search in progress of other thread to
+     * return, the solver is free for other use when it returns true.
+     *
+     * @param millis the given maximum time to wait in milliseconds, 0 to wait forever
+     * @return boolean represents no search in progress
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    @Override
+    public final boolean awaitSearch(long millis) throws InterruptedException {
+        synchronized (searchLock) {
+            long deadline = System.currentTimeMillis() + millis;
+            while (searching) {
+                if (millis == 0) {
+                    searchLock.wait();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    searchLock.wait(remaining);
+                }
+            }
+            return !searching;
+        }
+    }
+
     // ----- solver information lookup -----
 
     /**
@@ -142,6 +227,26 @@ public abstract class AbstractSolver implements Solver {
         return flagTimeout;
     }
 
+    /**
+     * Returns the boolean value represent solution store feature in use.
+     *
+     * @return boolean value represent solution store feature
+     */
+    @Override
+    public final boolean isFlagSolutionStore() {
+        return flagSolutionStore;
+    }
+
+    /**
+     * Returns the boolean value represent solution cache feature in use.
+     *
+     * @return boolean value represent solution cache feature
+     */
+    @Override
+    public final boolean isFlagSolutionCache() {
+        return flagSolutionCache;
+    }
+
     /**
      * Returns the integer of timeout limit in use.
      *
@@ -159,6 +264,7 @@ public abstract class AbstractSolver implements Solver {
         isSolvable = true;
         solved = false;
         timeout = false;
+        cancelled = false;
         terminated = false;
         searchTime = 0.0;
         searchDepth = 0;
@@ -174,7 +280,8 @@ public abstract class AbstractSolver implements Solver {
         lastBoard = board;
         zeroX = board.getZeroX();
         zeroY = board.getZeroY();
-        tiles = board.getTiles();
+        // search on a copy, the board may be read by other threads during the search
+        tiles = board.getTiles().clone();
         priorityGoal = 0;
     }
 
@@ -186,10 +293,41 @@ public abstract class AbstractSolver implements Solver {
      */
     @Override
     public final void findOptimalPath(Board board) {
+        findOptimalPathWithin(board, maxMoves);
+    }
+
+    /**
+     * Find the optimal path to goal state if the given board is solvable and its
+     * optimal solution is within the given maximum number of moves.  Otherwise the
+     * search ends without solution and without timeout, moves returns -1.
+     *
+     * @param board the initial puzzle Board object to solve
+     * @param maxLimit the given maximum number of moves to search
+     */
+    @Override
+    public final void findOptimalPathWithin(Board board, int maxLimit) {
         if (board == null) {
             throw new IllegalArgumentException("Board is null");
         }
+        if (maxLimit < 0 || maxLimit > maxMoves) {
+            throw new IllegalArgumentException("Invalid maximum number of moves " + maxLimit);
+        }
 
+        synchronized (searchLock) {
+            searching = true;
+        }
+        try {
+            searchOptimalPath(board, maxLimit);
+        } finally {
+            synchronized (searchLock) {
+                searching = false;
+                searchLock.notifyAll();
+            }
+        }
+    }
+
+    // find the optimal path of the given board within the given maximum number of moves
+    private void searchOptimalPath(Board board, int maxLimit) {
         stopwatch = new Stopwatch();
         stopwatch.stop();
         stopwatch.reset();
@@ -199,13 +337,26 @@ public abstract class AbstractSolver implements Solver {
             if (board.isGoal()) {
                 solved = true;
                 terminated = true;
-            } else {
+            } else if (!lookupSolution(board, maxLimit)) {
                 stopwatch.start();
                 setLastDepthSummary(board);
                 limit = heuristic(board);
                 assert limit > 0 : "Board must be solvable and is not the goal state.";
-                idaStar(limit);
-                assert checkGoal(board) : "Not end at goal state.";
+                // the estimate over the maximum proves no solution within it
+                if (limit <= maxLimit) {
+                    searchMaxLimit = maxLimit;
+                    activeListener = searchListener;
+                    listenerLimit = limit;
+                    lastHeartbeat = 0;
+                    try {
+                        idaStar(limit);
+                    } finally {
+                        searchMaxLimit = maxMoves;
+                        activeListener = null;
+                    }
+                    assert checkGoal(board) : "Not end at goal state.";
+                    storeSolution(board);
+                }
             }
         } else {
             isSolvable = false;
@@ -214,6 +365,67 @@ public abstract class AbstractSolver implements Solver {
         stopwatch = null;
     }
 
+    // returns the boolean represents the given board is resolved by the solution cache
+    // or the solution store: its solution is restored if within the given maximum
+    // number of moves, otherwise the optimal solution proves no solution within it
+    private boolean lookupSolution(Board board, int maxLimit) {
+        SolutionCache cache = null;
+        if (flagSolutionCache) {
+            cache = SolutionCache.getInstance();
+        }
+        MoveSequence moves = null;
+        String source = "solution cache";
+        if (cache != null) {
+            moves = cache.get(board);
+        }
+        if (moves == null && flagSolutionStore) {
+            SolutionStore store = SolutionStore.getInstance();
+            if (store != null) {
+                moves = store.get(board);
+                source = "solution store";
+                if (moves != null && cache != null) {
+                    cache.put(board, moves);
+                }
+            }
+        }
+        if (moves == null) {
+            return false;
+        }
+        if (moves.length() > maxLimit) {
+            return true;
+        }
+
+        steps = (byte) moves.length();
+        searchDepth = steps;
+        System.arraycopy(moves.toSolution(steps), 1, solutionMove, 1, steps);
+        solved = true;
+        terminated = true;
+        if (flagMessage) {
+            System.out.println("Solution restored from " + source + ".");
+        }
+        return true;
+    }
+
+    // keep the solution of the given board in the solution cache and solution store
+    private void storeSolution(Board board) {
+        if (!solved || timeout || (!flagSolutionCache && !flagSolutionStore)) {
+            return;
+        }
+        MoveSequence moves = MoveSequence.fromSolution(solutionMove, steps);
+        if (flagSolutionCache) {
+            SolutionCache cache = SolutionCache.getInstance();
+            if (cache != null) {
+                cache.put(board, moves);
+            }
+        }
+        if (flagSolutionStore) {
+            SolutionStore store = SolutionStore.getInstance();
+            if (store != null) {
+                store.put(board, moves);
+            }
+        }
+    }
+
     // initialize lastDepthSummary from the given board object
     protected final void setLastDepthSummary(Board board) {
         lastDepthSummary = new int[4 * 2];
@@ -230,6 +442,54 @@ public abstract class AbstractSolver implements Solver {
     // solve the puzzle using interactive deepening A* algorithm
     protected abstract void idaStar(int limit);
 
+    // notify the listener the iteration of the given threshold started
+    protected final void notifyIterationStarted(int limit, int nodes) {
+        listenerLimit = limit;
+        if (activeListener != null) {
+            try {
+                activeListener.iterationStarted(limit, nodes, stopwatch.currentTime());
+            } catch (RuntimeException ex) {
+                listenerFailed(ex);
+            }
+        }
+    }
+
+    // notify the listener the iteration of the given threshold finished
+    protected final void notifyIterationFinished(int limit, int nodes) {
+        if (activeListener != null) {
+            try {
+                activeListener.iterationFinished(limit, nodes, stopwatch.currentTime());
+            } catch (RuntimeException ex) {
+                listenerFailed(ex);
+            }
+        }
+    }
+
+    // notify the listener the heartbeat if a second passed since the last one, the
+    // caller checks activeListener every few thousand nodes to keep it off the hot path
+    protected final void notifyHeartbeat(int nodes) {
+        if (activeListener == null) {
+            return;
+        }
+        double elapsed = stopwatch.currentTime();
+        if (elapsed - lastHeartbeat < 1.0) {
+            return;
+        }
+        lastHeartbeat = elapsed;
+        try {
+            activeListener.heartbeat(listenerLimit, nodes, elapsed);
+        } catch (RuntimeException ex) {
+            listenerFailed(ex);
+        }
+    }
+
+    // stop notifying a failed listener for the rest of the search, e.g. the py4j
+    // front end has gone
+    private void listenerFailed(RuntimeException ex) {
+        System.err.println("System error : search listener failed - " + ex.getMessage());
+        activeListener = null;
+    }
+
     // maximum allow 5 continues clockwise turn.
     protected boolean isValidClockwise(int swirlKey) {
         return (swirlKey & 0x07FF) != 0x0155;
@@ -283,6 +543,16 @@ public abstract class AbstractSolver implements Solver {
         return timeout;
     }
 
+    /**
+     * Returns the boolean value represent the search has been cancelled.
+     *
+     * @return boolean value represent the search has been cancelled
+     */
+    @Override
+    public final boolean isSearchCancelled() {
+        return timeout && cancelled;
+    }
+
     /**
      * Returns the integer value of search depth when the search terminated.
      *
@@ -329,7 +599,7 @@ public abstract class AbstractSolver implements Solver {
         if (!isSolvable) {
             return -1;
         }
-        if (timeout) {
+        if (timeout || !solved) {
             return -1;
         }
         return steps;
@@ -345,12 +615,29 @@ public abstract class AbstractSolver implements Solver {
         if (!isSolvable) {
             return null;
         }
-        if (timeout) {
+        if (timeout || !solved) {
             return null;
         }
         return solutionMove;
     }
 
+    /**
+     * Returns the MoveSequence of the moves to the goal state, packed in 2 bits
+     * per move.
+     *
+     * @return MoveSequence of the moves to the goal state
+     */
+    @Override
+    public final MoveSequence solutionSequence() {
+        if (!isSolvable) {
+            return null;
+        }
+        if (timeout || !solved) {
+            return null;
+        }
+        return MoveSequence.fromSolution(solutionMove, steps);
+    }
+
     /**
      * Returns the String of Directions of each move to the goal state.
      *
@@ -364,17 +651,20 @@ public abstract class AbstractSolver implements Solver {
         if (timeout) {
             return "Search timeout, no solution.";
         }
-        String str = "";
+        if (!solved) {
+            return "No solution within the maximum number of moves.";
+        }
+        StringBuilder sb = new StringBuilder(steps * 12 + 8);
         for (int i = 1; i <= steps; i++) {
             if (i < 10) {
-                str += " ";
+                sb.append(' ');
             }
-            str += i + " : " + solutionMove[i] + " ";
+            sb.append(i).append(" : ").append(solutionMove[i]).append(' ');
             if (i % 10 == 0 && steps > i) {
-                str += "\n";
+                sb.append('\n');
             }
         }
-        return str + "\n";
+        return sb.append('\n').toString();
     }
 
     /**
@@ -390,13 +680,16 @@ public abstract class AbstractSolver implements Solver {
         if (timeout) {
             return "Search timeout, no solution.";
         }
-        String str = "";
+        if (!solved) {
+            return "No solution within the maximum number of moves.";
+        }
+        StringBuilder sb = new StringBuilder(steps * 5 + 1);
         for (int i = 1; i <= steps; i++) {
             if (i < 10) {
-                str += " ";
+                sb.append(' ');
             }
-            str += i + ":" + solutionMove[i].toString().charAt(0) + " ";
+            sb.append(i).append(':').append(solutionMove[i].toString().charAt(0)).append(' ');
         }
-        return str + "\n";
+        return sb.append('\n').toString();
     }
 }
\ No newline at end of file
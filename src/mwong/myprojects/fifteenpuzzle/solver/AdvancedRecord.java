@@ -1,18 +1,24 @@
 package mwong.myprojects.fifteenpuzzle.solver;
 
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.io.Serializable;
 
 /**
  * AdvancedRecord is the data type store the number of moves and partial solution.
+ * The partial solution is kept in MoveSequence (2 bits per move) to keep the record
+ * small when it is passed from the reference server.
  *
- * <p>Dependencies : Direction.java
+ * <p>Dependencies : Direction.java, MoveSequence.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
  */
-public class AdvancedRecord {
+public class AdvancedRecord implements Serializable {
+    private static final long serialVersionUID = 17195273122L;
     private byte estimate;
-    private Direction[] partialMoves;
+    private MoveSequence partialMoves;
     private boolean hasPartialMoves;
 
     AdvancedRecord(byte estimate) {
@@ -21,7 +27,7 @@ public class AdvancedRecord {
         partialMoves = null;
     }
 
-    AdvancedRecord(byte estimate, Direction[] partialMoves) {
+    AdvancedRecord(byte estimate, MoveSequence partialMoves) {
         this.estimate = estimate;
         hasPartialMoves = true;
         this.partialMoves = partialMoves;
@@ -42,7 +48,7 @@ public class AdvancedRecord {
      * @return Directions array of partial solution
      */
     final Direction[] getPartialMoves() {
-        return partialMoves;
+        return partialMoves.toSolution(estimate);
     }
 
     /**
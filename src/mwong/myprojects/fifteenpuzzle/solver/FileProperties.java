@@ -18,6 +18,12 @@ public class FileProperties {
     private static String pdbDefault =  "_default";
     private static String pdbOption =  "_option";
     private static String referenceCollection =  "reference_accumulator";
+    private static String referenceReplica =  "reference_replica";
+    private static String referenceShared =  "reference_shared";
+    private static String referenceUsage =  "reference_usage";
+    private static String solutionStore =  "solution_store";
+    private static String solutionIndex =  "solution_index";
+    private static String puzzlePool =  "puzzle_pool";
     private static String extension = "db";
 
     static {
@@ -29,6 +35,12 @@ public class FileProperties {
         pdbDefault =  "_default";
         pdbOption =  "_option";
         referenceCollection =  "reference_accumulator";
+        referenceReplica =  "reference_replica";
+        referenceShared =  "reference_shared";
+        referenceUsage =  "reference_usage";
+        solutionStore =  "solution_store";
+        solutionIndex =  "solution_index";
+        puzzlePool =  "puzzle_pool";
 
         if (PropertiesCache.getInstance().containsKey("directory")) {
             directory = PropertiesCache.getInstance().getProperty("directory");
@@ -61,6 +73,30 @@ public class FileProperties {
         if (PropertiesCache.getInstance().containsKey("fileRefCollection")) {
             referenceCollection = PropertiesCache.getInstance().getProperty("fileRefCollection");
         }
+
+        if (PropertiesCache.getInstance().containsKey("fileRefReplica")) {
+            referenceReplica = PropertiesCache.getInstance().getProperty("fileRefReplica");
+        }
+
+        if (PropertiesCache.getInstance().containsKey("fileRefShared")) {
+            referenceShared = PropertiesCache.getInstance().getProperty("fileRefShared");
+        }
+
+        if (PropertiesCache.getInstance().containsKey("fileRefUsage")) {
+            referenceUsage = PropertiesCache.getInstance().getProperty("fileRefUsage");
+        }
+
+        if (PropertiesCache.getInstance().containsKey("fileSolutionStore")) {
+            solutionStore = PropertiesCache.getInstance().getProperty("fileSolutionStore");
+        }
+
+        if (PropertiesCache.getInstance().containsKey("fileSolutionIndex")) {
+            solutionIndex = PropertiesCache.getInstance().getProperty("fileSolutionIndex");
+        }
+
+        if (PropertiesCache.getInstance().containsKey("filePuzzlePool")) {
+            puzzlePool = PropertiesCache.getInstance().getProperty("filePuzzlePool");
+        }
     }
 
     public static final String getDirectory() {
@@ -96,5 +132,36 @@ public class FileProperties {
     public static final String getFilepathReference() {
         return directory + SEPERATOR + referenceCollection + "." +  extension;
     }
-}
 
+    public static final String getFilepathReference(int shard) {
+        return directory + SEPERATOR + referenceCollection + "_shard" + shard + "." +  extension;
+    }
+
+    public static final String getFilepathReplica() {
+        return directory + SEPERATOR + referenceReplica + "." +  extension;
+    }
+
+    public static final String getFilepathShared() {
+        return directory + SEPERATOR + referenceShared + "." +  extension;
+    }
+
+    public static final String getFilepathUsage() {
+        return directory + SEPERATOR + referenceUsage + "." +  extension;
+    }
+
+    public static final String getFilepathUsage(int shard) {
+        return directory + SEPERATOR + referenceUsage + "_shard" + shard + "." +  extension;
+    }
+
+    public static final String getFilepathSolution() {
+        return directory + SEPERATOR + solutionStore + "." +  extension;
+    }
+
+    public static final String getFilepathSolutionIndex() {
+        return directory + SEPERATOR + solutionIndex + "." +  extension;
+    }
+
+    public static final String getFilepathPuzzlePool() {
+        return directory + SEPERATOR + puzzlePool + "." +  extension;
+    }
+}
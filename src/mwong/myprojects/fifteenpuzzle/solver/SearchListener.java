@@ -0,0 +1,46 @@
+package mwong.myprojects.fifteenpuzzle.solver;
+
+/**
+ * SearchListener is the interface to receive the progress of a running search of a
+ * solver: each iteration of IDA* started and finished with its threshold, and a
+ * heartbeat about once a second in between.  The number of nodes is the total of the
+ * search so far and the elapsed time is in seconds since the search started.
+ *
+ * <p>It is called in the search thread, a listener must return quickly.  To give up
+ * a hopeless search, call cancelSearch of the solver from any thread, the search ends
+ * as timeout.  A py4j front end may implement it in Python with the callback server.
+ *
+ * <p>Dependencies : none
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public interface SearchListener {
+    /**
+     * Receive the iteration of the given threshold started.
+     *
+     * @param limit the given threshold of the iteration
+     * @param nodes the given number of nodes searched so far
+     * @param elapsed the given elapsed time in seconds
+     */
+    void iterationStarted(int limit, int nodes, double elapsed);
+
+    /**
+     * Receive the iteration of the given threshold finished, solved or not, or ended
+     * by timeout.
+     *
+     * @param limit the given threshold of the iteration
+     * @param nodes the given number of nodes searched so far
+     * @param elapsed the given elapsed time in seconds
+     */
+    void iterationFinished(int limit, int nodes, double elapsed);
+
+    /**
+     * Receive the heartbeat of the iteration of the given threshold in progress.
+     *
+     * @param limit the given threshold of the iteration
+     * @param nodes the given number of nodes searched so far
+     * @param elapsed the given elapsed time in seconds
+     */
+    void heartbeat(int limit, int nodes, double elapsed);
+}
@@ -21,6 +21,13 @@ public interface SmartSolver extends Solver {
      */
     boolean versionSwitch(boolean flag);
 
+    /**
+     * Returns the boolean represents the advanced version is in use.
+     *
+     * @return the boolean represents the advanced version is in use
+     */
+    boolean isFlagAdvancedVersion();
+
     /**
      * Set the ReferenceRemote connection with the given connection.
      *
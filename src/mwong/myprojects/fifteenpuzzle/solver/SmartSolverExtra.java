@@ -2,15 +2,15 @@ package mwong.myprojects.fifteenpuzzle.solver;
 
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceBoard;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceMoves;
+import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceStore;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
 import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleConstants;
 import mwong.myprojects.fifteenpuzzle.solver.standard.SolverMd;
 import mwong.myprojects.fifteenpuzzle.utilities.Stopwatch;
 
 import java.rmi.RemoteException;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * SmartSolverExtra has the add on functions for advanced version.  It return the
@@ -18,8 +18,9 @@ import java.util.Map.Entry;
  * It use Manhattan distance to calculate the advanced estimate from the collection
  * of reference boards.
  *
- * <p>Dependencies : Board.java, Direction.java, PuzzleConstants.java, ReferenceBoard.java,
- *                   ReferenceMoves.java, SolverMD.java, Stopwatch.java
+ * <p>Dependencies : Board.java, Direction.java, MoveSequence.java, PuzzleConstants.java,
+ *                   ReferenceBoard.java, ReferenceMoves.java, ReferenceStore.java,
+ *                   SolverMD.java, Stopwatch.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -27,6 +28,7 @@ import java.util.Map.Entry;
 public class SmartSolverExtra extends SolverMd {
     private boolean symmetry;
     private int numPartialMoves;
+    private long lastReferenceKey;
 
     public SmartSolverExtra() {
         symmetry = SolverConstants.isSymmetry();
@@ -46,6 +48,16 @@ public class SmartSolverExtra extends SolverMd {
         }
     }
 
+    /**
+     * Returns the packed key of the reference board used by the last lookup or raised
+     * the last advanced estimate, 0 if none.
+     *
+     * @return long value of the packed key of the reference board last used
+     */
+    public long lastReferenceKey() {
+        return lastReferenceKey;
+    }
+
     /**
      * Returns the AdvancedRecord object if the given board is one of the reference board.
      * It carries the reference estimate and partial solutions for searching if exists.
@@ -53,11 +65,12 @@ public class SmartSolverExtra extends SolverMd {
      *
      * @param board the given board object
      * @param inSearch the boolean value represent the usage for search or review.
-     * @param refMap the given reference collection in HashMap.
+     * @param refMap the given reference collection in ReferenceStore.
      * @return AdvancedRecord object if the given board is one of the reference board.
      */
     public final AdvancedRecord advancedContains(Board board, boolean inSearch,
-            Map<ReferenceBoard, ReferenceMoves> refMap) {
+            ReferenceStore refMap) {
+        lastReferenceKey = 0;
         if (refMap == null || refMap.size() == 0) {
             return null;
         }
@@ -75,6 +88,7 @@ public class SmartSolverExtra extends SolverMd {
         if (refMap.containsKey(checkBoard)) {
             ReferenceMoves advMoves = refMap.get(checkBoard);
             final byte steps = advMoves.getEstimate(lookupKey);
+            lastReferenceKey = checkBoard.packedKey();
 
             if (inSearch && advMoves.hasInitialMoves(lookupKey)) {
                 Direction[] solutionMove = new Direction[steps + 1];
@@ -90,7 +104,8 @@ public class SmartSolverExtra extends SolverMd {
                     assert checkVaildMoves(board, solutionMove, numPartialMoves) :
                         "Incorrect initial moves";
                 }
-                return new AdvancedRecord(steps, solutionMove);
+                return new AdvancedRecord(steps,
+                        new MoveSequence(solutionMove, 1, numPartialMoves));
             }
             return new AdvancedRecord(steps);
         } else if (refMap.containsKey(checkBoardSym)) {
@@ -101,6 +116,7 @@ public class SmartSolverExtra extends SolverMd {
                 lookupKey = 1;
             }
             final byte steps = advMoves.getEstimate(lookupKey);
+            lastReferenceKey = checkBoardSym.packedKey();
 
             if (inSearch && advMoves.hasInitialMoves(lookupKey)) {
                 Direction[] solutionMove = new Direction[steps + 1];
@@ -109,7 +125,8 @@ public class SmartSolverExtra extends SolverMd {
                         solutionMove, 1, numPartialMoves);
                 assert checkVaildMoves(board, solutionMove, numPartialMoves) :
                     "Incorrect initial moves (group 0 or 2 symmetry)";
-                return new AdvancedRecord(steps, solutionMove);
+                return new AdvancedRecord(steps,
+                    new MoveSequence(solutionMove, 1, numPartialMoves));
             }
             return new AdvancedRecord(steps);
         }
@@ -121,12 +138,11 @@ public class SmartSolverExtra extends SolverMd {
      * partial solutions stored.
      *
      * @param board the given board object
-     * @param refMap the given reference collection in HashMap.
+     * @param refMap the given reference collection in ReferenceStore.
      * @return boolean value if the given board is a reference board with partial solutions
      *         stored in reference collection.
      */
-    public final boolean hasPartialSolution(Board board, Map<ReferenceBoard,
-            ReferenceMoves> refMap) {
+    public final boolean hasPartialSolution(Board board, ReferenceStore refMap) {
         if (refMap == null || refMap.size() == 0) {
             return false;
         }
@@ -177,22 +193,46 @@ public class SmartSolverExtra extends SolverMd {
         return true;
     }
 
+    /**
+     * Returns the best estimate of the given reference collection with the default
+     * reference cutoff.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given puzzle.
+     * @param refMap the given reference collection in ReferenceStore.
+     * @return byte value of the best estimate from the reference collection
+     * @throws RemoteException throw exception when connection lost
+     */
+    public byte advancedEstimate(Board board, byte estimate, ReferenceStore refMap)
+            throws RemoteException {
+        if (refMap == null || refMap.size() == 0) {
+            lastReferenceKey = 0;
+            return estimate;
+        }
+        return advancedEstimate(board, estimate, SolverConstants.getReferenceCutoff(), refMap);
+    }
+
     /**
      * Returns the best estimate of the given reference collection.
      *
      * @param board the given board object
      * @param estimate the current estimate of the given puzzle.
      * @param refCutoff the given cutoff range from goal state or to reference board.
-     * @param refMap the given reference collection in HashMap.
+     * @param refMap the given reference collection in ReferenceStore.
      * @return AdvancedRecord object if the given board is one of the reference board.
      */
     byte advancedEstimate(Board board, byte estimate, int refCutoff,
-            Map<ReferenceBoard, ReferenceMoves> refMap) throws RemoteException {
+            ReferenceStore refMap) throws RemoteException {
         final int rowSize = SolverConstants.getRowSize();
+        final byte[] tiles = board.getTiles();
+        lastReferenceKey = 0;
 
-        for (Entry<ReferenceBoard, ReferenceMoves> entry
-                : refMap.entrySet()) {
-            byte[] transTiles = entry.getKey().transformer(board.getTiles());
+        for (int slot = 0; slot < refMap.capacity(); slot++) {
+            if (!refMap.isOccupied(slot)) {
+                continue;
+            }
+            final byte refEstimate = refMap.getEstimate(slot);
+            byte[] transTiles = refMap.transformer(slot, tiles);
             byte[] transTilesSym = PuzzleConstants.tiles2sym(transTiles);
 
             int transPriority = 0;
@@ -222,15 +262,15 @@ public class SmartSolverExtra extends SolverMd {
             if (transPriority > refCutoff) {
                 continue;
             }
-            if (entry.getValue().getEstimate() - transPriority <= estimate) {
+            if (refEstimate - transPriority <= estimate) {
                 continue;
             }
 
             Board temp = new Board(transTiles);
             stopwatch = new Stopwatch();
-            if (advancedDistance(temp, transPriority,
-                    entry.getValue().getEstimate() - estimate)) {
-                estimate = (byte) (entry.getValue().getEstimate() - steps);
+            if (advancedDistance(temp, transPriority, refEstimate - estimate)) {
+                estimate = (byte) (refEstimate - steps);
+                lastReferenceKey = refMap.getBoard(slot).packedKey();
             }
         }
         return estimate;
@@ -0,0 +1,197 @@
+package mwong.myprojects.fifteenpuzzle.solver;
+
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SolutionCache keeps the optimal solutions of the recent solved boards in memory,
+ * shared by all solvers in the application.  It holds up to the configured number of
+ * boards and removes the least recently used one when it is full.  A board and its
+ * symmetry board share one entry under the smaller packed board, the solution of the
+ * other is the symmetry moves.
+ *
+ * <p>Dependencies : Board.java, MoveSequence.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolutionCache {
+    private static SolutionCache instance;
+
+    private final LinkedHashMap<Long, MoveSequence> cache;
+    private final int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Returns the SolutionCache object shared by all solvers, or null if the solution
+     * cache is off.
+     *
+     * @return SolutionCache object, or null if the solution cache is off
+     */
+    public static synchronized SolutionCache getInstance() {
+        if (instance == null && SolverProperties.getCacheSize() > 0) {
+            instance = new SolutionCache(SolverProperties.getCacheSize());
+        }
+        return instance;
+    }
+
+    /**
+     * Initializes the SolutionCache object of the given capacity.
+     *
+     * @param capacity the given maximum number of boards
+     */
+    public SolutionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid cache size " + capacity);
+        }
+        this.capacity = capacity;
+        cache = new LinkedHashMap<Long, MoveSequence>(16, 0.75f, true) {
+            private static final long serialVersionUID = 17195273121L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MoveSequence> eldest) {
+                if (size() > SolutionCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the packed board of the given board or its symmetry board, whichever is
+     * smaller.  A board and its symmetry board have the same canonical key.
+     *
+     * @param board the given Board object
+     * @return long value of the canonical key
+     */
+    public static long canonicalKey(Board board) {
+        return Math.min(MoveSequence.packTiles(board.getTiles()),
+                MoveSequence.packTiles(board.getTilesSym()));
+    }
+
+    /**
+     * Returns the boolean represents the canonical key of the given board is its
+     * symmetry board, the solution of the key board is the symmetry moves.
+     *
+     * @param board the given Board object
+     * @return boolean represents the canonical key is the symmetry board
+     */
+    public static boolean isSymmetryKey(Board board) {
+        return MoveSequence.packTiles(board.getTilesSym())
+                < MoveSequence.packTiles(board.getTiles());
+    }
+
+    /**
+     * Returns the MoveSequence of the optimal solution of the given board, or null if
+     * the board is not in the cache.
+     *
+     * @param board the given Board object
+     * @return MoveSequence of the optimal solution, or null if not in the cache
+     */
+    public MoveSequence get(Board board) {
+        MoveSequence moves;
+        synchronized (this) {
+            moves = cache.get(canonicalKey(board));
+            if (moves == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        if (isSymmetryKey(board)) {
+            return moves.symmetry();
+        }
+        return moves;
+    }
+
+    /**
+     * Add the given optimal solution of the given board to the cache.
+     *
+     * @param board the given Board object
+     * @param moves the given MoveSequence of the optimal solution
+     */
+    public void put(Board board, MoveSequence moves) {
+        if (isSymmetryKey(board)) {
+            moves = moves.symmetry();
+        }
+        long key = canonicalKey(board);
+        synchronized (this) {
+            cache.put(key, moves);
+        }
+    }
+
+    /**
+     * Returns the number of boards in the cache.
+     *
+     * @return integer of the number of boards in the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the maximum number of boards in the cache.
+     *
+     * @return integer of the maximum number of boards in the cache
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups found in the cache.
+     *
+     * @return long value of the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups not found in the cache.
+     *
+     * @return long value of the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of boards removed when the cache is full.
+     *
+     * @return long value of the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the ratio of lookups found in the cache, 0 if no lookup.
+     *
+     * @return double value of the hit ratio between 0 and 1
+     */
+    public synchronized double getHitRatio() {
+        if (hits + misses == 0) {
+            return 0;
+        }
+        return hits / (double) (hits + misses);
+    }
+
+    /**
+     * Returns the summary of the cache statistics.
+     *
+     * @return String of the summary of the cache statistics
+     */
+    public synchronized String summary() {
+        return String.format("Solution cache: %d of %d boards, %d hits, %d misses "
+                + "(hit ratio %.1f%%), %d evictions.", cache.size(), capacity, hits, misses,
+                getHitRatio() * 100, evictions);
+    }
+}
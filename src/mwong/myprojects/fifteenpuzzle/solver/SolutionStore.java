@@ -0,0 +1,387 @@
+package mwong.myprojects.fifteenpuzzle.solver;
+
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.LinkedHashMap;
+
+/**
+ * SolutionStore keeps the optimal solutions of solved boards across restarts.  The
+ * solutions are appended to a data file (packed board, number of moves and the moves
+ * in MoveSequence), and a memory-mapped hash index maps the packed board to the offset
+ * of its record.  A board and its symmetry board share one record under the smaller
+ * packed board, the moves of the other are the symmetry moves.
+ *
+ * <p>The data file is the master copy, the index will be rebuilt from it if it is
+ * missing, damaged or behind, and an incomplete record at the end of the data file
+ * will be truncated.  Only one process can open the store at a time, the others run
+ * without it.
+ *
+ * <p>Dependencies : Board.java, FileProperties.java, MoveSequence.java,
+ *                   SolutionCache.java, SolverProperties.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolutionStore {
+    private static final int MAGIC = 0x534F4C53;
+    private static final int headerSize = 24;
+    private static final int slotSize = 16;
+    private static final int initialCapacity = 4096;
+    private static final int recordHeader = 9;
+    private static final int maxMoves = SolverConstants.getMaxMoves();
+    private static SolutionStore instance;
+    private static boolean unavailable;
+
+    private final String dataPath;
+    private final String indexPath;
+    private final RandomAccessFile dataFile;
+    private final FileChannel dataChannel;
+    private final FileLock lock;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int size;
+    private long dataLength;
+
+    /**
+     * Returns the SolutionStore object of the data files in the default directory, or
+     * null if the solution store is off or not available.
+     *
+     * @return SolutionStore object, or null if not available
+     */
+    public static synchronized SolutionStore getInstance() {
+        if (instance != null || unavailable) {
+            return instance;
+        }
+        if (!SolverProperties.isSolutionStore()) {
+            unavailable = true;
+            return null;
+        }
+        try {
+            instance = new SolutionStore(FileProperties.getFilepathSolution(),
+                    FileProperties.getFilepathSolutionIndex());
+        } catch (IOException ex) {
+            System.err.println("System error : solution store not available - "
+                    + ex.getMessage());
+            unavailable = true;
+        }
+        return instance;
+    }
+
+    /**
+     * Initializes the SolutionStore object of the given data file and index file.
+     *
+     * @param dataPath the given file path of the data file
+     * @param indexPath the given file path of the index file
+     * @throws IOException if the files are not accessible or in use by other process
+     */
+    public SolutionStore(String dataPath, String indexPath) throws IOException {
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+        File parent = (new File(dataPath)).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        dataFile = new RandomAccessFile(dataPath, "rw");
+        dataChannel = dataFile.getChannel();
+        lock = dataChannel.tryLock();
+        if (lock == null) {
+            dataFile.close();
+            throw new IOException(dataPath + " is in use by other process");
+        }
+        if (!openIndex()) {
+            index = createIndex(initialCapacity);
+            capacity = initialCapacity;
+            size = 0;
+            dataLength = 0;
+        }
+        recoverTail();
+    }
+
+    // open the existing index file, returns false if it is missing or damaged
+    private boolean openIndex() throws IOException {
+        File file = new File(indexPath);
+        if (!file.exists() || file.length() < headerSize) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(indexPath, "rw")) {
+            index = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        capacity = index.getInt(4);
+        size = index.getInt(8);
+        dataLength = index.getLong(16);
+        if (index.getInt(0) != MAGIC || capacity <= 0 || Integer.bitCount(capacity) != 1
+                || index.capacity() != headerSize + (long) capacity * slotSize
+                || size < 0 || dataLength < 0 || dataLength > dataChannel.size()) {
+            index = null;
+            return false;
+        }
+        return true;
+    }
+
+    // create an empty index file of the given capacity, it writes to a temp file
+    // first and replace the index file when completed
+    private MappedByteBuffer createIndex(int newCapacity) throws IOException {
+        String tempFile = indexPath + "temp";
+        MappedByteBuffer newIndex;
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+            raf.setLength(0);
+            newIndex = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    headerSize + (long) newCapacity * slotSize);
+        }
+        newIndex.putInt(0, MAGIC);
+        newIndex.putInt(4, newCapacity);
+        newIndex.putInt(8, 0);
+        newIndex.putLong(16, 0);
+        newIndex.force();
+
+        (new File(indexPath)).delete();
+        if (!(new File(tempFile)).renameTo(new File(indexPath))) {
+            throw new IOException("Unable to replace " + indexPath);
+        }
+        return newIndex;
+    }
+
+    // double the capacity of the index, rehash all entries into a new index file
+    private void grow() throws IOException {
+        MappedByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        index = createIndex(oldCapacity * 2);
+        capacity = oldCapacity * 2;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int position = headerSize + slot * slotSize;
+            long key = oldIndex.getLong(position);
+            if (key != 0) {
+                int newPosition = (int) (-findSlot(key) - 1);
+                index.putLong(newPosition + 8, oldIndex.getLong(position + 8));
+                index.putLong(newPosition, key);
+            }
+        }
+        saveHeader();
+    }
+
+    // index the records of the data file after the indexed length, an incomplete
+    // record at the end of file will be truncated
+    private void recoverTail() throws IOException {
+        long fileLength = dataChannel.size();
+        ByteBuffer header = ByteBuffer.allocate(recordHeader);
+        while (dataLength + recordHeader <= fileLength) {
+            header.clear();
+            readFully(header, dataLength);
+            long key = header.getLong(0);
+            int steps = header.get(8);
+            long length = recordLength(steps);
+            if (key == 0 || steps <= 0 || steps > maxMoves
+                    || dataLength + length > fileLength) {
+                break;
+            }
+            if (findSlot(key) < 0) {
+                insert(key, dataLength);
+            }
+            dataLength += length;
+        }
+        if (dataLength < fileLength) {
+            dataChannel.truncate(dataLength);
+        }
+        saveHeader();
+    }
+
+    // returns the number of bytes of the record of the given number of moves
+    private static int recordLength(int steps) {
+        return recordHeader + (steps + 31) / 32 * 8;
+    }
+
+    // read the given buffer fully from the given position of the data file
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Data file error - " + dataPath);
+            }
+        }
+    }
+
+    // write the size and indexed data length to the index header
+    private void saveHeader() {
+        index.putInt(8, size);
+        index.putLong(16, dataLength);
+    }
+
+    // returns the slot position of the given key, or the negative value of the
+    // position of the empty slot to insert minus one if not exists
+    private long findSlot(long key) {
+        int mask = capacity - 1;
+        int slot = (int) (mix(key) & mask);
+        while (true) {
+            long position = headerSize + (long) slot * slotSize;
+            long stored = index.getLong((int) position);
+            if (stored == key) {
+                return position;
+            }
+            if (stored == 0) {
+                return -position - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // returns the hash value of the given key
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // add the given key and record offset to the index, grow the index if it is
+    // over half full
+    private void insert(long key, long offset) throws IOException {
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        int position = (int) (-findSlot(key) - 1);
+        index.putLong(position + 8, offset);
+        index.putLong(position, key);
+        size++;
+    }
+
+    /**
+     * Returns the MoveSequence of the optimal solution of the given board, or null if
+     * the board has not been stored.
+     *
+     * @param board the given Board object
+     * @return MoveSequence of the optimal solution, or null if not stored
+     */
+    public synchronized MoveSequence get(Board board) {
+        long key = SolutionCache.canonicalKey(board);
+        boolean isSymmetry = SolutionCache.isSymmetryKey(board);
+
+        long position = findSlot(key);
+        if (position < 0) {
+            return null;
+        }
+        try {
+            long offset = index.getLong((int) position + 8);
+            ByteBuffer header = ByteBuffer.allocate(recordHeader);
+            readFully(header, offset);
+            int steps = header.get(8);
+            if (header.getLong(0) != key || steps <= 0 || steps > maxMoves) {
+                return null;
+            }
+            ByteBuffer words = ByteBuffer.allocate(recordLength(steps) - recordHeader);
+            readFully(words, offset + recordHeader);
+            long[] packed = new long[words.capacity() / 8];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = words.getLong(i * 8);
+            }
+
+            MoveSequence moves = new MoveSequence(packed, steps);
+            if (isSymmetry) {
+                moves = moves.symmetry();
+            }
+            if (!moves.verify(board)) {
+                return null;
+            }
+            return moves;
+        } catch (IOException ex) {
+            System.err.println("System error : unable to read solution store - "
+                    + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store the given optimal solution of the given board if it has not been stored.
+     *
+     * @param board the given Board object
+     * @param moves the given MoveSequence of the optimal solution
+     */
+    public synchronized void put(Board board, MoveSequence moves) {
+        if (moves.length() == 0 || moves.length() > maxMoves) {
+            return;
+        }
+        long key = SolutionCache.canonicalKey(board);
+        if (SolutionCache.isSymmetryKey(board)) {
+            moves = moves.symmetry();
+        }
+        if (findSlot(key) >= 0) {
+            return;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordLength(moves.length()));
+        record.putLong(key);                                //  8
+        record.put((byte) moves.length());                  //  1
+        for (long word : moves.getPacked()) {               //  8 per 32 moves
+            record.putLong(word);
+        }
+        record.flip();
+        try {
+            long offset = dataLength;
+            while (record.hasRemaining()) {
+                dataChannel.write(record, offset + record.position());
+            }
+            dataLength += record.capacity();
+            insert(key, offset);
+            saveHeader();
+        } catch (IOException ex) {
+            System.err.println("System error : unable to update solution store - "
+                    + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the boards stored with their number of moves of the optimal solution, up
+     * to the given number of boards in the order stored.  It is the corpus of solved
+     * boards to calibrate the estimates.
+     *
+     * @param max the given maximum number of boards
+     * @return LinkedHashMap of the boards and their number of moves
+     */
+    public synchronized LinkedHashMap<Board, Integer> sample(int max) {
+        LinkedHashMap<Board, Integer> boards = new LinkedHashMap<Board, Integer>();
+        ByteBuffer header = ByteBuffer.allocate(recordHeader);
+        long offset = 0;
+        try {
+            while (boards.size() < max && offset + recordHeader <= dataLength) {
+                header.clear();
+                readFully(header, offset);
+                int steps = header.get(8);
+                boards.put(new Board(MoveSequence.unpackTiles(header.getLong(0))), steps);
+                offset += recordLength(steps);
+            }
+        } catch (IOException ex) {
+            System.err.println("System error : unable to read solution store - "
+                    + ex.getMessage());
+        }
+        return boards;
+    }
+
+    /**
+     * Returns the number of boards stored.
+     *
+     * @return integer of the number of boards stored
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Close the data file and release the lock.
+     */
+    public synchronized void close() {
+        try {
+            index.force();
+            lock.release();
+            dataFile.close();
+        } catch (IOException ex) {
+            // do nothing
+        }
+    }
+}
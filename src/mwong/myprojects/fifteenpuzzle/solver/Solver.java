@@ -2,12 +2,13 @@ package mwong.myprojects.fifteenpuzzle.solver;
 
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
 
 /**
  * SolverStandard is the interface class that has the basic methods of any
  * 15 puzzle solver.
  *
- * <p>Dependencies : Board.java, Direction.java
+ * <p>Dependencies : Board.java, Direction.java, SearchListener.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -40,6 +41,32 @@ public interface Solver {
      */
     void timeoutSwitch(boolean flag);
 
+    /**
+     * Set the solution store feature with the given flag.
+     *
+     * @param flag the boolean represent the ON/OFF solution store feature
+     */
+    void solutionStoreSwitch(boolean flag);
+
+    /**
+     * Set the solution cache feature with the given flag.
+     *
+     * @param flag the boolean represent the ON/OFF solution cache feature
+     */
+    void solutionCacheSwitch(boolean flag);
+
+    /**
+     * Stop the search in progress from other thread, the search ends as timeout.
+     */
+    void cancelSearch();
+
+    /**
+     * Set the listener to receive the progress of the searches, null to remove it.
+     *
+     * @param listener the given SearchListener, or null
+     */
+    void setSearchListener(SearchListener listener);
+
     /**
      * Set the timeout limit with the given value in seconds.
      *
@@ -47,6 +74,16 @@ public interface Solver {
      */
     void setTimeoutLimit(int seconds);
 
+    /**
+     * Wait up to the given milliseconds for the search in progress of other thread to
+     * return.
+     *
+     * @param millis the given maximum time to wait in milliseconds, 0 to wait forever
+     * @return boolean represents no search in progress
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean awaitSearch(long millis) throws InterruptedException;
+
     /**
      * Returns the boolean represents the timeout feature is in use.
      *
@@ -54,6 +91,20 @@ public interface Solver {
      */
     boolean isFlagTimeout();
 
+    /**
+     * Returns the boolean represents the solution store feature is in use.
+     *
+     * @return the boolean represents the solution store feature is in use
+     */
+    boolean isFlagSolutionStore();
+
+    /**
+     * Returns the boolean represents the solution cache feature is in use.
+     *
+     * @return the boolean represents the solution cache feature is in use
+     */
+    boolean isFlagSolutionCache();
+
     /**
      * Returns integer of timeout setting.
      *
@@ -77,6 +128,15 @@ public interface Solver {
      */
     void findOptimalPath(Board board);
 
+    /**
+     * Find the optimal path to goal state if the given board is solvable and its
+     * optimal solution is within the given maximum number of moves.
+     *
+     * @param board the initial puzzle Board object to solve
+     * @param maxLimit the given maximum number of moves to search
+     */
+    void findOptimalPathWithin(Board board, int maxLimit);
+
     // ----- search results -----
 
     /**
@@ -86,6 +146,13 @@ public interface Solver {
      */
     boolean isSearchTimeout();
 
+    /**
+     * Returns the boolean value represents the search has been cancelled.
+     *
+     * @return boolean value represents the search has been cancelled
+     */
+    boolean isSearchCancelled();
+
     /**
      * Returns the integer value of search depth when the search terminated.
      *
@@ -121,6 +188,14 @@ public interface Solver {
      */
     Direction[] solution();
 
+    /**
+     * Returns the MoveSequence of the moves to the goal state, packed in 2 bits
+     * per move.
+     *
+     * @return MoveSequence of the moves to the goal state
+     */
+    MoveSequence solutionSequence();
+
     /**
      * Returns the String Directions of each move to the goal state.
      *
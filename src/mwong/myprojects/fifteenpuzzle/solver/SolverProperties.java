@@ -14,10 +14,20 @@ import mwong.myprojects.fifteenpuzzle.solver.components.PatternOptions;
 public class SolverProperties {
     private static PatternOptions defaultPattern;
     private static int defaultTimeoutLimit;
+    private static boolean solutionStore;
+    private static int cacheSize;
+    private static int puzzlePoolSize;
+    private static int serviceQueueSize;
+    private static int warmupTimeLimit;
 
     static {
         defaultPattern = PatternOptions.Pattern_663;
         defaultTimeoutLimit = 10;
+        solutionStore = false;
+        cacheSize = 0;
+        puzzlePoolSize = 0;
+        serviceQueueSize = 1000;
+        warmupTimeLimit = 30;
 
         if (PropertiesCache.getInstance().containsKey("solverPatternIndex")) {
             try {
@@ -52,6 +62,91 @@ public class SolverProperties {
                         + " restore to system default 10 seconds.");
             }
         }
+
+        if (PropertiesCache.getInstance().containsKey("solverSolutionStore")) {
+            try {
+                int value = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "solverSolutionStore"));
+                if (value == 0 || value == 1) {
+                    solutionStore = (value == 1);
+                } else {
+                    System.err.println("Invalid solution store setting " + value
+                            + ", allow 0 (off) or 1 (on) only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration solution store is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
+
+        if (PropertiesCache.getInstance().containsKey("solverCacheSize")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "solverCacheSize"));
+                if (size == 0 || (size >= 100 && size <= 1000000)) {
+                    cacheSize = size;
+                } else {
+                    System.err.println("Invalid solution cache size setting " + size
+                            + ", allow 0 (off) or minimum 100 to maximum 1000000 only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration solution cache size is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
+
+        if (PropertiesCache.getInstance().containsKey("solverPuzzlePoolSize")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "solverPuzzlePoolSize"));
+                if (size >= 0 && size <= 100) {
+                    puzzlePoolSize = size;
+                } else {
+                    System.err.println("Invalid puzzle pool size setting " + size
+                            + ", allow 0 (off) or minimum 1 to maximum 100 only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration puzzle pool size is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
+
+        if (PropertiesCache.getInstance().containsKey("solverServiceQueueSize")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "solverServiceQueueSize"));
+                if (size >= 10 && size <= 100000) {
+                    serviceQueueSize = size;
+                } else {
+                    System.err.println("Invalid solve service queue size setting " + size
+                            + ", allow minimum 10 to maximum 100000 only."
+                            + " Restore to system default 1000.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration solve service queue size is not an iteger,"
+                        + " restore to system default 1000.");
+            }
+        }
+
+        if (PropertiesCache.getInstance().containsKey("solverWarmupTimeLimit")) {
+            try {
+                int limit = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "solverWarmupTimeLimit"));
+                if (limit >= 0 && limit <= 600) {
+                    warmupTimeLimit = limit;
+                } else {
+                    System.err.println("Invalid warm-up time limit setting " + limit
+                            + ", allow 0 (off) or minimum 1 to maximum 600 only."
+                            + " Restore to system default 30.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration warm-up time limit is not an iteger,"
+                        + " restore to system default 30.");
+            }
+        }
     }
 
     /**
@@ -71,4 +166,51 @@ public class SolverProperties {
     public static final int getTimeoutLimit() {
         return defaultTimeoutLimit;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the boolean represents the solvers keep the solved boards in the
+     * solution store.
+     *
+     * @return boolean represents the solution store is on
+     */
+    public static final boolean isSolutionStore() {
+        return solutionStore;
+    }
+
+    /**
+     * Returns the maximum number of boards in the solution cache, 0 if off.
+     *
+     * @return integer of the maximum number of boards in the solution cache
+     */
+    public static final int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the number of pre-graded puzzles kept for each difficulty level, 0 if off.
+     *
+     * @return integer of the number of puzzles kept for each difficulty level
+     */
+    public static final int getPuzzlePoolSize() {
+        return puzzlePoolSize;
+    }
+
+    /**
+     * Returns the maximum number of jobs waiting in the queue of the solve service.
+     *
+     * @return integer of the maximum number of jobs waiting in the queue
+     */
+    public static final int getServiceQueueSize() {
+        return serviceQueueSize;
+    }
+
+    /**
+     * Returns the time budget in seconds of the warm up before the servers accept
+     * traffic, 0 if off.
+     *
+     * @return integer of the time budget of the warm up in seconds
+     */
+    public static final int getWarmupTimeLimit() {
+        return warmupTimeLimit;
+    }
+}
@@ -60,8 +60,8 @@ public class SmartSolverMd extends SolverMd {
         } else if (isSearch) {
             zeroX = board.getZeroX();
             zeroY = board.getZeroY();
-            tiles = board.getTiles();
-            tilesSym = board.getTilesSym();
+            tiles = board.getTiles().clone();
+            tilesSym = board.getTilesSym().clone();
             setLastDepthSummary(board);
         }
 
@@ -160,11 +160,13 @@ public class SmartSolverMd extends SolverMd {
         setLastDepthSummary(dupSolution[numPartialMoves]);
 
         idaCount = numPartialMoves;
+        notifyIterationStarted(limit, 0);
         if (flagMessage) {
             System.out.print("ida limit " + limit);
         }
         dfsStartingOrder(zeroX, zeroY, limit - numPartialMoves + 1, priorityGoal);
         searchNodeCount = idaCount;
+        notifyIterationFinished(limit, searchNodeCount);
         afterAdvancedSearch(limit, dupSolution);
     }
 }
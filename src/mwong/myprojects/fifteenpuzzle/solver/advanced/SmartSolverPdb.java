@@ -1,5 +1,6 @@
 package mwong.myprojects.fifteenpuzzle.solver.advanced;
 
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
 import mwong.myprojects.fifteenpuzzle.solver.SolverProperties;
 import mwong.myprojects.fifteenpuzzle.solver.ai.ReferenceRemote;
 import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
@@ -92,6 +93,17 @@ public class SmartSolverPdb extends SmartSolverPdbBase implements Serializable {
         setReferenceConnection(refConnection);
     }
 
+    /**
+     * Initializes SmartSolverPdb object with a given SmartSolverPdb object.  The pattern
+     * database is shared with the given solver, only the search state is separated.
+     *
+     * @param copySolver an instance of SmartSolverPdb
+     * @param refConnection the given ReferenceRemote connection object
+     */
+    public SmartSolverPdb(SmartSolverPdb copySolver, ReferenceRemote refConnection) {
+        super(copySolver, refConnection);
+    }
+
     /**
      * Returns the boolean value of the given board is a reference board with partial solution.
      *
@@ -104,7 +116,8 @@ public class SmartSolverPdb extends SmartSolverPdbBase implements Serializable {
         }
 
         try {
-            return extra.hasPartialSolution(board, refConnection.getActiveMap());
+            AdvancedRecord record = refConnection.lookupExact(board);
+            return record != null && record.hasPartialMoves();
         } catch (RemoteException ex) {
             System.err.println("\n" + this.getClass().getSimpleName()
                     + " - Remote connection lost."
@@ -139,11 +152,13 @@ public class SmartSolverPdb extends SmartSolverPdbBase implements Serializable {
         setLastDepthSummary(dupSolution[numPartialMoves]);
 
         idaCount = numPartialMoves;
+        notifyIterationStarted(limit, 0);
         if (flagMessage) {
             System.out.print("ida limit " + limit);
         }
         dfsStartingOrder(zeroX, zeroY, limit - numPartialMoves + 1, pdValReg, pdValSym);
         searchNodeCount = idaCount;
+        notifyIterationFinished(limit, searchNodeCount);
         afterAdvancedSearch(limit, dupSolution);
     }
 }
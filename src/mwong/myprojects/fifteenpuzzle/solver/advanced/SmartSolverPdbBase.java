@@ -54,7 +54,7 @@ public class SmartSolverPdbBase extends SolverPdb {
     public SmartSolverPdbBase(SolverPdb copySolver, ReferenceRemote refConnection) {
         super(copySolver);
         try {
-            if (refConnection == null || refConnection.getActiveMap() == null) {
+            if (refConnection == null || refConnection.getVersion() < 0) {
                 System.out.println("Attention: Referece board collection unavailable."
                         + " Advanced estimate will use standard estimate.");
             } else {
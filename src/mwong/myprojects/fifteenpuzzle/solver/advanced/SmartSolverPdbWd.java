@@ -73,6 +73,18 @@ public class SmartSolverPdbWd extends SolverPdbWd {
         setReferenceConnection(refConnection);
     }
 
+    /**
+     * Initializes SmartSolverPdbWd object with a given SmartSolverPdbWd object.  The pattern
+     * database is shared with the given solver, only the search state is separated.
+     *
+     * @param copySolver an instance of SmartSolverPdbWd
+     * @param refConnection the given ReferenceRemote connection object
+     */
+    public SmartSolverPdbWd(SmartSolverPdbWd copySolver, ReferenceRemote refConnection) {
+        super(copySolver);
+        setReferenceConnection(refConnection);
+    }
+
     /**
      * Print solver description.
      */
@@ -199,12 +211,14 @@ public class SmartSolverPdbWd extends SolverPdbWd {
         setLastDepthSummary(dupSolution[numPartialMoves]);
 
         idaCount = numPartialMoves;
+        notifyIterationStarted(limit, 0);
         if (flagMessage) {
             System.out.print("ida limit " + limit);
         }
 
         dfsStartingOrder(zeroX, zeroY, limit - numPartialMoves + 1, regVal, symVal);
         searchNodeCount = idaCount;
+        notifyIterationFinished(limit, searchNodeCount);
         afterAdvancedSearch(limit, dupSolution);
     }
 }
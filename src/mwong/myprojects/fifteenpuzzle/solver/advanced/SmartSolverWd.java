@@ -166,12 +166,14 @@ public class SmartSolverWd extends SolverWd {
         setLastDepthSummary(dupSolution[numPartialMoves]);
 
         idaCount = numPartialMoves;
+        notifyIterationStarted(limit, 0);
         if (flagMessage) {
             System.out.print("ida limit " + limit);
         }
         dfsStartingOrder(zeroX, zeroY, limit - numPartialMoves + 1, wdIdxH, wdIdxV,
                 wdValueH, wdValueV);
         searchNodeCount = idaCount;
+        notifyIterationFinished(limit, searchNodeCount);
         afterAdvancedSearch(limit, dupSolution);
     }
 }
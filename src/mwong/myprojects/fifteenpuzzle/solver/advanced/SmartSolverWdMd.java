@@ -181,12 +181,14 @@ public class SmartSolverWdMd extends SolverWdMd {
         setLastDepthSummary(dupSolution[numPartialMoves]);
 
         idaCount = numPartialMoves;
+        notifyIterationStarted(limit, 0);
         if (flagMessage) {
             System.out.print("ida limit " + limit);
         }
         dfsStartingOrder(zeroX, zeroY, limit - numPartialMoves + 1, mdlcValue,
                 wdIdxH, wdIdxV, wdValueH, wdValueV);
         searchNodeCount = idaCount;
+        notifyIterationFinished(limit, searchNodeCount);
         afterAdvancedSearch(limit, dupSolution);
     }
 }
@@ -1,8 +1,10 @@
 package mwong.myprojects.fifteenpuzzle.solver.ai;
 
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
 import mwong.myprojects.fifteenpuzzle.solver.FileProperties;
 import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
 import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolverExtra;
 import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
@@ -17,19 +19,54 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ReferenceAccumulator implements Reference interface of the reference collections.
  * It has full features of load the storage, add or remove a board, change setting,
  * reset the collection, etc.
  *
+ * <p>All updates are merged into the working collection under a single lock.  Readers
+ * use an immutable snapshot of the collection; a new snapshot is published when the
+ * collection has been changed since the last one, so the solvers never see a
+ * partial update.  A snapshot shares the table chunks with the working collection,
+ * an update copies only the chunk it changes.  Recent changes are kept in a change
+ * log, so the clients can catch up by version without download the whole collection.
+ *
+ * <p>A sharded deployment runs one ReferenceAccumulator per server process, each one
+ * holds the reference boards of its own shard in a separate file.  The collections
+ * learned on other nodes can be merged from their files, once or periodically.
+ *
+ * <p>With the shared store setting, all processes on the same host work on one
+ * memory-mapped ReferenceSharedStore instead of their own collection; the updates are
+ * merged into it under the file lock, the readers use a snapshot of it which follows
+ * the changes of all processes by version.
+ *
+ * <p>The usage of each reference board is recorded in ReferenceUsage and saved beside
+ * the collection file, the hits of the replicas are sent with their synchronization.
+ * With the capacity setting, the reference boards of least benefit are evicted when the
+ * collection grows over it; the file is rewritten without them once a minute.
+ *
+ * <p>With the mine cpu share setting, ReferenceMiner solves generated hard boards
+ * during idle time and adds them as the users' boards.
+ *
+ * <p>The administrator may change the cutoff setting, reload or compact the collection
+ * while it is in use.  A new collection is built aside and replace the working one
+ * under the update lock; the searches in progress continue with the old snapshot.
+ *
  * <p>Dependencies : Board.java, Direction.java, FileProperties.java, HeuristicOptions.java,
  *                   PatternOptions.java, Reference.java, ReferenceBoard.java,
- *                   ReferenceConstants.java, ReferenceMoves.java, ReferenceProperties.java,
- *                   SmartSolver.java, SmartSolverpdb.java
+ *                   ReferenceChangeLog.java, ReferenceConstants.java, ReferenceDelta.java,
+ *                   ReferenceMerger.java, ReferenceMiner.java, ReferenceMoves.java,
+ *                   ReferencePartition.java, ReferenceProperties.java,
+ *                   ReferenceSharedStore.java, ReferenceStore.java, ReferenceUsage.java,
+ *                   SmartSolver.java, SmartSolverExtra.java, SmartSolverpdb.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -37,17 +74,42 @@ import java.util.Map.Entry;
 public class ReferenceAccumulator implements Reference {
     private final String directory;
     private final String filepath;
+    private final String usagePath;
     private final String coreSolverClassName;
     private final HeuristicOptions coreHeuristic;
     private final boolean symmetry;
     private final boolean onSwitch;
     private final boolean offSwitch;
     private final ApplicationMode appMode;
-
-    private HashMap<ReferenceBoard, ReferenceMoves> referenceMap;
-    private HashMap<ReferenceBoard, ReferenceMoves> defaultMap;
-    private int cutoffSetting;
-    private double cutoffLimit;
+    private final ReferencePartition partition;
+
+    private final Object updateLock = new Object();
+    private final ReferenceChangeLog changeLog = new ReferenceChangeLog(4096, 0);
+    private final ThreadLocal<SmartSolverExtra> localExtra = new ThreadLocal<SmartSolverExtra>() {
+        @Override
+        protected SmartSolverExtra initialValue() {
+            return new SmartSolverExtra();
+        }
+    };
+
+    private ReferenceStore referenceMap;
+    private volatile ReferenceStore snapshot;
+    private volatile boolean stale = true;
+    // the file still holds the evicted boards, rewrite it with the next usage save
+    private volatile boolean refreshPending = false;
+    private volatile ReferenceSharedStore shared;
+    private ReferenceSharedStore sharedFollowed;
+    private ReferenceStore sharedMirror;
+    private long sharedLogCount;
+    private ReferenceStore defaultMap;
+    private final ReferenceVerifier verifier;
+    private final ReferenceMiner miner;
+    private final HashMap<String, Long> mergedSources = new HashMap<String, Long>();
+    private final ReferenceUsage usage = new ReferenceUsage();
+    private ScheduledExecutorService replicator;
+    private ScheduledExecutorService usageSaver;
+    private volatile int cutoffSetting;
+    private volatile double cutoffLimit;
     private boolean fileReady = false;
     private SmartSolverPdb localSolver = null;
 
@@ -69,8 +131,29 @@ public class ReferenceAccumulator implements Reference {
      * @throws RemoteException throw exception when connection lost
      */
     public ReferenceAccumulator(ApplicationMode appMode) throws RemoteException {
+        this(appMode, ReferencePartition.whole());
+    }
+
+    /**
+     * Initializes ReferenceAccumulator object of the given shard of the collection.
+     * Load the stored collection of the shard from file.  Use default setting of the
+     * shard if not available.
+     *
+     * @param appMode the given application mode for Gui or Console.
+     * @param partition the given ReferencePartition object of the shard
+     * @throws RemoteException throw exception when connection lost
+     */
+    public ReferenceAccumulator(ApplicationMode appMode, ReferencePartition partition)
+            throws RemoteException {
         directory = FileProperties.getDirectory();
-        filepath = FileProperties.getFilepathReference();
+        if (partition.isWhole()) {
+            filepath = FileProperties.getFilepathReference();
+            usagePath = FileProperties.getFilepathUsage();
+        } else {
+            filepath = FileProperties.getFilepathReference(partition.getIndex());
+            usagePath = FileProperties.getFilepathUsage(partition.getIndex());
+        }
+        this.partition = partition;
         coreSolverClassName = ReferenceConstants.getCoreSolverClassName();
         coreHeuristic = ReferenceConstants.getCoreHeuristic();
         symmetry = ReferenceConstants.isSymmetry();
@@ -79,21 +162,298 @@ public class ReferenceAccumulator implements Reference {
         this.appMode = appMode;
 
         try {
-            referenceMap = new HashMap<ReferenceBoard, ReferenceMoves>();
             loadFile();
         } catch (IOException ex) {
             reset();
         }
 
-        updateData(createSolver());
+        if (ReferenceProperties.isSharedStore() && partition.isWhole()) {
+            openShared();
+        }
         refreshFile();
+        loadUsage();
+        verifier = new ReferenceVerifier(this);
+        verifier.start();
+        verifier.submitAll(getActiveMap());
+        startReplication();
+        miner = new ReferenceMiner(this);
+        if (ReferenceProperties.getMineCpuShare() > 0 && partition.isWhole()) {
+            miner.start();
+        }
+    }
+
+    // load the usage statistics of the collection, save them every minute if changed
+    // and rewrite the file if any board evicted
+    private void loadUsage() {
+        try {
+            usage.load(usagePath);
+        } catch (IOException ex) {
+            // no usage statistics yet, start from now
+        }
+        usage.retain(getActiveMap());
+        usageSaver = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "ReferenceUsage");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        usageSaver.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                saveUsage();
+                if (refreshPending) {
+                    refreshPending = false;
+                    refreshFile();
+                }
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    // save the usage statistics of the collection to file
+    void saveUsage() {
+        try {
+            usage.save(usagePath);
+        } catch (IOException ex) {
+            System.err.println("System error : unable to save file " + usagePath);
+        }
+    }
+
+    /**
+     * Returns the usage statistics of the reference boards.
+     *
+     * @return ReferenceUsage object of the usage statistics
+     */
+    public ReferenceUsage getUsage() {
+        return usage;
+    }
+
+    // switch the working collection to the shared reference collection of the processes
+    // on the same host, fill it with the loaded collection if it is new; keep the own
+    // collection if the shared file is not available
+    private void openShared() {
+        ReferenceSharedStore sharedMap;
+        try {
+            sharedMap = ReferenceSharedStore.open(FileProperties.getFilepathShared(),
+                    cutoffSetting);
+        } catch (IOException ex) {
+            System.err.println("System error : unable to open shared reference collection - "
+                    + ex.getMessage());
+            return;
+        }
+
+        if (sharedMap.size() == 0) {
+            for (int slot = 0; slot < referenceMap.capacity(); slot++) {
+                if (referenceMap.isOccupied(slot)) {
+                    sharedMap.put(referenceMap.getBoard(slot), referenceMap.getMoves(slot));
+                }
+            }
+            sharedMap = sharedMap.latest();
+        } else {
+            cutoffSetting = sharedMap.getCutoffSetting();
+            int cutoffBuffer = ReferenceProperties.getCutoffBuffer();
+            cutoffLimit = cutoffSetting * ((100 - cutoffBuffer) / 100.0);
+        }
+
+        synchronized (updateLock) {
+            referenceMap = sharedMap;
+            shared = sharedMap;
+            stale = true;
+            changeLog.reset(sharedMap.getVersion());
+        }
+    }
+
+    // returns the shared reference collection of the current file, the working
+    // collection follows it when it has been moved to a larger file
+    private ReferenceSharedStore followShared() {
+        synchronized (updateLock) {
+            ReferenceSharedStore current = shared.latest();
+            if (current != shared) {
+                shared = current;
+                referenceMap = current;
+            }
+            return current;
+        }
+    }
+
+    // start merging the reference collection files of other nodes periodically
+    private void startReplication() {
+        int interval = ReferenceProperties.getMergeInterval();
+        if (interval == 0 || ReferenceProperties.getMergeSources().length == 0) {
+            return;
+        }
+        replicator = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "ReferenceReplication");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        replicator.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                mergeSources();
+            }
+        }, 0, interval, TimeUnit.MINUTES);
+    }
+
+    // merge the reference collection files of other nodes that changed since the last
+    // merge, returns the number of reference boards changed
+    int mergeSources() {
+        int changed = 0;
+        for (String source : ReferenceProperties.getMergeSources()) {
+            File sourceFile = new File(source);
+            if (!sourceFile.exists()
+                    || sourceFile.getAbsoluteFile().equals(new File(filepath).getAbsoluteFile())) {
+                continue;
+            }
+            long modified = sourceFile.lastModified();
+            Long lastMerged = mergedSources.get(source);
+            if (lastMerged != null && lastMerged == modified) {
+                continue;
+            }
+            try {
+                changed += importFile(source);
+                mergedSources.put(source, modified);
+            } catch (IOException ex) {
+                System.err.println("System error : unable to merge " + source + " - "
+                        + ex.getMessage());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Merge the reference boards of the given reference collection file into the
+     * collection with the max moves rules.  A reference board duplicates its symmetry
+     * reference board in the collection will be merged into it.  The file will be
+     * compacted if any reference board changed.
+     *
+     * @param importPath the given file path of the reference collection to import
+     * @return integer of the number of reference boards changed
+     * @throws IOException if the file is not readable or not a reference collection
+     */
+    public int importFile(String importPath) throws IOException {
+        ReferenceMerger merger = new ReferenceMerger();
+        merger.addFile(importPath);
+        ReferenceStore incoming = merger.getResult();
+        int changed = 0;
+
+        for (int slot = 0; slot < incoming.capacity(); slot++) {
+            if (!incoming.isOccupied(slot)) {
+                continue;
+            }
+            ReferenceBoard advBoard = incoming.getBoard(slot);
+            ReferenceMoves advMoves = incoming.getMoves(slot);
+            if (!partition.owns(advBoard)) {
+                continue;
+            }
+
+            ReferenceStore activeMap = getActiveMap();
+            ReferenceMoves current = activeMap.get(advBoard);
+            if (current == null && advMoves.isCornerOnly()) {
+                ReferenceBoard symBoard = ReferenceMerger.symmetryBoard(advBoard);
+                if (symBoard != null && activeMap.containsKey(symBoard)) {
+                    advBoard = symBoard;
+                    current = activeMap.get(symBoard);
+                    long before = current.packMoves();
+                    current.mergeCorner(advMoves);
+                    if (current.packMoves() == before) {
+                        continue;
+                    }
+                    advMoves = current;
+                }
+            } else if (current != null) {
+                long before = current.packMoves();
+                long beforeInit = current.packInitMoves();
+                current.updateMoves(advMoves.moves, advMoves.initMoves, advMoves.status);
+                if (current.packMoves() == before && current.packInitMoves() == beforeInit) {
+                    continue;
+                }
+            }
+
+            advMoves = store(advBoard, advMoves);
+            verifier.submit(advBoard, advMoves, 0);
+            changed++;
+        }
+
+        if (changed > 0) {
+            refreshFile();
+        }
+        return changed;
+    }
+
+    /**
+     * Save a compacted copy of the collection to the given file path, it can be
+     * merged by the other nodes.
+     *
+     * @param exportPath the given file path of the copy
+     * @throws IOException if unable to write the file
+     */
+    public void exportFile(String exportPath) throws IOException {
+        ReferenceMerger.writeFile(exportPath, cutoffSetting, getActiveMap());
+    }
+
+    /**
+     * Reload the collection from file, e.g. after the file has been replaced by a merged
+     * copy.  The updates wait until the reload completed, the searches in progress
+     * continue with the old snapshot.
+     *
+     * @return integer of the number of reference boards loaded
+     * @throws IOException if the file is not readable, the collection remains unchanged
+     */
+    public int reloadFile() throws IOException {
+        if (shared != null) {
+            throw new IllegalStateException("Shared reference collection is always up to date.");
+        }
+        synchronized (updateLock) {
+            loadFile();
+        }
+        ReferenceStore activeMap = getActiveMap();
+        usage.retain(activeMap);
+        verifier.submitAll(activeMap);
+        return activeMap.size();
+    }
+
+    /**
+     * Rebuild the collection in a new table of the exact size, merge the symmetry
+     * reference boards that duplicate each other, replace the working collection and
+     * save a compacted file.  The searches in progress continue with the old snapshot.
+     *
+     * @return integer of the number of reference boards merged into their symmetry board
+     */
+    public int compact() {
+        if (shared != null) {
+            throw new IllegalStateException("Shared reference collection cannot be compacted.");
+        }
+        int removed;
+        synchronized (updateLock) {
+            ReferenceStore rebuilt = new ReferenceStore(referenceMap.size());
+            for (int slot = 0; slot < referenceMap.capacity(); slot++) {
+                if (referenceMap.isOccupied(slot)) {
+                    rebuilt.put(referenceMap.getBoard(slot), referenceMap.getMoves(slot));
+                }
+            }
+            removed = ReferenceMerger.removeSymmetry(rebuilt);
+            replaceMap(rebuilt);
+            refreshFile();
+        }
+        usage.retain(getActiveMap());
+        return removed;
     }
 
     // load the default set
     void loadDefault() {
-        defaultMap = new HashMap<ReferenceBoard, ReferenceMoves>();
+        defaultMap = new ReferenceStore();
         for (byte[][] preset : ReferenceProperties.getDefaultBoards()) {
             ReferenceBoard advBoard = new ReferenceBoard(new Board(preset[0]));
+            if (!partition.owns(advBoard)) {
+                continue;
+            }
             ReferenceMoves advMoves = new ReferenceMoves(preset[1][0], preset[1][1]);
             defaultMap.put(advBoard, advMoves);
         }
@@ -113,23 +473,262 @@ public class ReferenceAccumulator implements Reference {
         cutoffLimit = cutoffSetting * ((100 - cutoffBuffer) / 100.0);
 
         loadDefault();
-        referenceMap = new HashMap<ReferenceBoard, ReferenceMoves>();
-        for (Entry<ReferenceBoard, ReferenceMoves> entry : defaultMap.entrySet()) {
-            referenceMap.put(entry.getKey(), entry.getValue());
-        }
+        replaceMap(defaultMap.copy());
         clearDefault();
     }
 
+    // replace the working collection with the given collection, the version continue
+    // from the current collection and the change log restart from it
+    private void replaceMap(ReferenceStore newMap) {
+        synchronized (updateLock) {
+            if (referenceMap != null) {
+                newMap.setVersion(Math.max(newMap.getVersion(), referenceMap.getVersion() + 1));
+            }
+            referenceMap = newMap;
+            stale = true;
+            changeLog.reset(newMap.getVersion());
+        }
+    }
+
     /**
-     * Returns a HashMap of collection of reference boards.
+     * Returns a ReferenceStore of collection of reference boards.  It is an
+     * immutable snapshot of the collection, consistent for the whole search.
+     * With the shared store, it is a snapshot of the shared collection, a new one is
+     * published when any process has changed it.
      *
-     * @return HashMap of collection of reference boards
+     * @return ReferenceStore of collection of reference boards
      */
-    public final HashMap<ReferenceBoard, ReferenceMoves> getActiveMap() {
-        if (referenceMap == null) {
-            reset();
+    public final ReferenceStore getActiveMap() {
+        ReferenceSharedStore sharedMap = shared;
+        ReferenceStore current = snapshot;
+        if (current != null && !stale && (sharedMap == null
+                || (sharedMap.isCurrent() && sharedMap.getVersion() == current.getVersion()))) {
+            return current;
+        }
+        synchronized (updateLock) {
+            if (referenceMap == null) {
+                reset();
+            }
+            if (shared != null) {
+                snapshotShared();
+            } else if (stale) {
+                snapshot = referenceMap.copy();
+                stale = false;
+            }
+            return snapshot;
+        }
+    }
+
+    // publish a new snapshot of the shared reference collection, the caller holds the
+    // update lock; the mirror is refreshed with the boards changed since its last
+    // refresh by the change log of the file, it is rebuilt by a scan of the whole file
+    // when the collection has been moved to a larger file
+    private void snapshotShared() {
+        ReferenceSharedStore current = followShared();
+        if (sharedMirror != null && sharedFollowed == current && !stale
+                && current.getVersion() == sharedMirror.getVersion()) {
+            return;
+        }
+        if (sharedFollowed != current) {
+            sharedMirror = new ReferenceStore(current.size());
+            sharedLogCount = -1;
+        }
+        long count = current.refresh(sharedMirror, sharedLogCount);
+        if (count >= 0) {
+            sharedLogCount = count;
+            sharedFollowed = current;
+            snapshot = sharedMirror.copy();
+            stale = false;
+        } else if (snapshot == null) {
+            snapshot = sharedMirror.copy();
+        }
+    }
+
+    /**
+     * Returns the version of the collection of reference boards.
+     *
+     * @return long value of the version of the collection
+     */
+    public long getVersion() {
+        return getActiveMap().getVersion();
+    }
+
+    /**
+     * Returns the changes of the collection since the given version.  If the changes
+     * are no longer in the change log, it carries the full collection instead.  The
+     * change log of the shared store misses the changes of the other processes, it
+     * carries the full collection whenever the version has changed.
+     *
+     * @param sinceVersion the version of the collection held by the caller
+     * @return ReferenceDelta object of the changes since the given version
+     */
+    public ReferenceDelta getChanges(long sinceVersion) {
+        ReferenceStore activeMap = getActiveMap();
+        long version = activeMap.getVersion();
+        long[] changed = null;
+        if (sinceVersion >= 0 && sinceVersion <= version) {
+            if (shared == null) {
+                changed = changeLog.changedSince(sinceVersion, version);
+            } else if (sinceVersion == version) {
+                changed = new long[0];
+            }
+        }
+        if (changed == null) {
+            return new ReferenceDelta(activeMap);
+        }
+
+        ReferenceStore updated = new ReferenceStore(changed.length);
+        long[] removed = new long[changed.length];
+        int countRemoved = 0;
+        for (long key : changed) {
+            ReferenceBoard advBoard = new ReferenceBoard(key);
+            ReferenceMoves advMoves = activeMap.get(advBoard);
+            if (advMoves == null) {
+                removed[countRemoved++] = key;
+            } else {
+                updated.put(advBoard, advMoves);
+            }
+        }
+        return new ReferenceDelta(sinceVersion, version, updated,
+                Arrays.copyOf(removed, countRemoved));
+    }
+
+    /**
+     * Returns the AdvancedRecord object if the given board is one of the reference
+     * board, it carries the reference estimate and partial solutions if exists.
+     * Otherwise return null.
+     *
+     * @param board the given board object
+     * @return AdvancedRecord object if the given board is one of the reference board
+     */
+    public AdvancedRecord lookupExact(Board board) {
+        SmartSolverExtra extra = localExtra.get();
+        AdvancedRecord record = extra.advancedContains(board, true, getActiveMap());
+        if (record != null) {
+            usage.recordHit(extra.lastReferenceKey(), 0, System.currentTimeMillis());
+        }
+        return record;
+    }
+
+    /**
+     * Returns the best estimate of the given board from the collection of reference
+     * boards, or the given estimate if no better one.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given board
+     * @return byte value of the best estimate of the given board
+     */
+    public byte advancedEstimate(Board board, byte estimate) {
+        try {
+            SmartSolverExtra extra = localExtra.get();
+            byte result = extra.advancedEstimate(board, estimate, getActiveMap());
+            if (result > estimate) {
+                usage.recordHit(extra.lastReferenceKey(), result - estimate,
+                        System.currentTimeMillis());
+            }
+            return result;
+        } catch (RemoteException ex) {
+            return estimate;
+        }
+    }
+
+    /**
+     * Record the usage of the reference boards of the given packed keys served by a
+     * replica: the number of hits and the total moves of estimates raised of each.
+     *
+     * @param keys the given packed keys of the reference boards
+     * @param hits the given number of hits of each reference board
+     * @param uplifts the given total moves of estimates raised of each reference board
+     */
+    public void recordUsage(long[] keys, int[] hits, long[] uplifts) {
+        ReferenceStore activeMap = getActiveMap();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < keys.length; i++) {
+            // the replica may not have followed the evicted boards yet
+            if (activeMap.containsKey(keys[i])) {
+                usage.recordHits(keys[i], hits[i], uplifts[i], now);
+            }
+        }
+    }
+
+    // merge the given moves of the reference board into the working collection and
+    // append the merged record to file, readers will pick up the change with the
+    // next snapshot; returns the merged moves.  The shared store merges again with
+    // the latest moves of all processes, it is the file itself.
+    ReferenceMoves store(ReferenceBoard advBoard, ReferenceMoves advMoves) {
+        synchronized (updateLock) {
+            if (shared != null) {
+                followShared();
+            }
+            ReferenceMoves current = referenceMap.get(advBoard);
+            if (current != null) {
+                current.updateMoves(advMoves.moves, advMoves.initMoves, advMoves.status);
+                advMoves = current;
+            } else {
+                usage.recordAdd(advBoard.packedKey(), System.currentTimeMillis());
+            }
+            referenceMap.put(advBoard, advMoves);
+            stale = true;
+            if (shared != null) {
+                ReferenceMoves merged = followShared().get(advBoard);
+                if (merged != null) {
+                    advMoves = merged;
+                }
+            } else {
+                add2file(advBoard, advMoves);
+            }
+            changeLog.record(referenceMap.getVersion(), advBoard.packedKey());
+            if (current == null) {
+                evict(advBoard);
+            }
+            return advMoves;
         }
-        return referenceMap;
+    }
+
+    // evict the reference boards of the lowest benefit score until the collection is
+    // within the capacity setting, except the default reference boards and the given
+    // reference board just added; the file is rewritten later if any board evicted
+    private void evict(ReferenceBoard keepBoard) {
+        int limit = ReferenceProperties.getCapacity();
+        if (limit == 0 || referenceMap.size() <= limit) {
+            return;
+        }
+        if (defaultMap == null) {
+            loadDefault();
+        }
+        // the boards added by the other processes of the shared store have no usage
+        if (usage.size() < referenceMap.size()) {
+            usage.retain(referenceMap);
+        }
+
+        long keepKey = keepBoard.packedKey();
+        int evicted = 0;
+        while (referenceMap.size() > limit) {
+            long victim = usage.lowest(keepKey, defaultMap);
+            if (victim == 0) {
+                break;
+            }
+            usage.remove(victim);
+            // removed by other process of the shared store
+            if (referenceMap.remove(victim) == null) {
+                continue;
+            }
+            changeLog.record(referenceMap.getVersion(), victim);
+            evicted++;
+        }
+
+        if (evicted > 0) {
+            stale = true;
+            refreshPending = true;
+        }
+    }
+
+    // returns the local SmartSolverPdb object, create it if not exists
+    synchronized SmartSolverPdb getLocalSolver() {
+        if (localSolver == null) {
+            localSolver = createSolver();
+        }
+        return localSolver;
     }
 
     /**
@@ -159,6 +758,7 @@ public class ReferenceAccumulator implements Reference {
         cutoffSetting = buffer.getInt();
         int cutoffBuffer = ReferenceProperties.getCutoffBuffer();
         cutoffLimit = cutoffSetting * ((100 - cutoffBuffer) / 100.0);
+        ReferenceStore loadMap = new ReferenceStore((int) ((inChannel.size() - 4) / 34));
 
         while (buffer.remaining() >= 34) {
             ReferenceBoard advBoard = null;
@@ -177,12 +777,13 @@ public class ReferenceAccumulator implements Reference {
                 initMoves[i] = buffer.getShort();
             }
             byte status = buffer.get();
-            if (referenceMap.containsKey(advBoard)) {
-                ReferenceMoves advMoves = referenceMap.get(advBoard);
+            if (loadMap.containsKey(advBoard)) {
+                ReferenceMoves advMoves = loadMap.get(advBoard);
                 advMoves.updateMoves(moves, initMoves, status);
+                loadMap.put(advBoard, advMoves);
             } else {
                 ReferenceMoves advMoves = new ReferenceMoves(moves, initMoves, status);
-                referenceMap.put(advBoard, advMoves);
+                loadMap.put(advBoard, advMoves);
             }
         }
 
@@ -191,6 +792,7 @@ public class ReferenceAccumulator implements Reference {
             throw new IOException("Data file error - advanced_accumulator.db");
         }
         fin.close();
+        replaceMap(loadMap);
         fileReady = true;
     }
 
@@ -294,7 +896,7 @@ public class ReferenceAccumulator implements Reference {
     /**
      * Returns the local SmartSolverPdb for Gui application only. Otherwise, return null.
      */
-    public SmartSolverPdb getSolver() {
+    public synchronized SmartSolverPdb getSolver() {
         if (appMode == ApplicationMode.GUI && validateSolver(localSolver)) {
             return localSolver;
         }
@@ -320,23 +922,10 @@ public class ReferenceAccumulator implements Reference {
         return true;
     }
 
-    // verify the given solver is using pattern database 7-8, scan the full
-    // collection, if the reference board is not verified, verify it now.
-    void updateData(SmartSolver inSolver) throws RemoteException {
-        SmartSolver solver = inSolver;
-        if (!validateSolver(inSolver)) {
-            solver = createSolver();
-        }
-
-        if (solver == null) {
-            return;
-        }
-        updateAll((SmartSolverPdb) solver);
-    }
-
     /**
      * Verify the given solver is using pattern database 7-8, scan the full
-     * collection, if the reference board is not verified, verify it now.
+     * collection, queue the reference boards not verified for background
+     * verification.
      *
      * @param inSolver the SolverInterface object in use
      * @throws RemoteException throw exception when connection lost
@@ -345,48 +934,17 @@ public class ReferenceAccumulator implements Reference {
         if (!validateSolver(inSolver)) {
             return;
         }
-        updateAll((SmartSolverPdb) inSolver);
+        verifier.submitAll(getActiveMap());
     }
 
     /**
-     * Verify the given solver is using pattern database 7-8, scan the full
-     * collection, if the reference board is not verified, verify it now.
+     * Scan the full collection, queue the reference boards not verified for
+     * background verification.
      *
      * @throws RemoteException throw exception when connection lost
      */
     public void updatePending() throws RemoteException {
-        if (localSolver == null) {
-            localSolver = createSolver();
-        }
-        if (localSolver == null) {
-            return;
-        }
-        updateAll(localSolver);
-    }
-
-    // scan the full collection, if the reference board is not verified, verify it now.
-    private void updateAll(SmartSolverPdb solverPdb78) throws RemoteException {
-        assert solverPdb78 instanceof SmartSolverPdb : "updateAll without SmartSolverPD object";
-        final boolean backupAdvPriority = solverPdb78.getInUseVersionFlag();
-        final boolean backupMessageFlag = solverPdb78.getMessageFlag();
-        final boolean backupTimeoutFlag = solverPdb78.getTimeoutFlag();
-        solverPdb78.timeoutSwitch(offSwitch);
-        solverPdb78.messageSwitch(offSwitch);
-        solverPdb78.versionSwitch(onSwitch);
-
-        for (Entry<ReferenceBoard, ReferenceMoves> entry : referenceMap.entrySet()) {
-            ReferenceMoves advMoves = entry.getValue();
-            if (advMoves.isCompleted()) {
-                continue;
-            }
-            ReferenceBoard advBoard = entry.getKey();
-            advMoves.updateSolutions(advBoard, solverPdb78);
-            add2file(advBoard, advMoves);
-        }
-
-        solverPdb78.versionSwitch(backupAdvPriority);
-        solverPdb78.messageSwitch(backupMessageFlag);
-        solverPdb78.timeoutSwitch(backupTimeoutFlag);
+        verifier.submitAll(getActiveMap());
     }
 
     /**
@@ -434,11 +992,12 @@ public class ReferenceAccumulator implements Reference {
         solverPdb78.versionSwitch(onSwitch);
 
         ReferenceBoard advBoard = new ReferenceBoard(board);
+        ReferenceStore activeMap = getActiveMap();
         byte lookup = ReferenceConstants.getReferenceLookup(board.getZero1d());
         int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
 
-        if (referenceMap.containsKey(advBoard)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoard);
+        if (activeMap.containsKey(advBoard)) {
+            ReferenceMoves advMoves = activeMap.get(advBoard);
             if (group == 3) {
                 advMoves.updateSolution(lookup, solverPdb78.moves(), solution, symmetry);
             } else {
@@ -447,7 +1006,8 @@ public class ReferenceAccumulator implements Reference {
             if (bypass && !advMoves.isCompleted()) {
                 advMoves.updateSolutions(advBoard, solverPdb78);
             }
-            add2file(advBoard, advMoves);
+            advMoves = store(advBoard, advMoves);
+            verifier.submit(advBoard, advMoves, 0);
 
             inSolver.versionSwitch(backupAdvPriority);
             inSolver.messageSwitch(backupMessageFlag);
@@ -460,8 +1020,8 @@ public class ReferenceAccumulator implements Reference {
             advBoardSym = new ReferenceBoard(new Board(board.getTilesSym()));
         }
 
-        if (referenceMap.containsKey(advBoardSym)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoardSym);
+        if (activeMap.containsKey(advBoardSym)) {
+            ReferenceMoves advMoves = activeMap.get(advBoardSym);
             if (lookup == 1) {
                 lookup = 3;
             } else if (lookup == 3) {
@@ -471,7 +1031,8 @@ public class ReferenceAccumulator implements Reference {
             if (bypass && !advMoves.isCompleted()) {
                 advMoves.updateSolutions(advBoardSym, solverPdb78);
             }
-            add2file(advBoardSym, advMoves);
+            advMoves = store(advBoardSym, advMoves);
+            verifier.submit(advBoardSym, advMoves, 0);
 
             inSolver.versionSwitch(backupAdvPriority);
             inSolver.messageSwitch(backupMessageFlag);
@@ -488,8 +1049,8 @@ public class ReferenceAccumulator implements Reference {
         if (bypass && !advMoves.isCompleted()) {
             advMoves.updateSolutions(advBoard, solverPdb78);
         }
-        referenceMap.put(advBoard, advMoves);
-        add2file(advBoard, advMoves);
+        advMoves = store(advBoard, advMoves);
+        verifier.submit(advBoard, advMoves, 0);
 
         inSolver.versionSwitch(backupAdvPriority);
         inSolver.messageSwitch(backupMessageFlag);
@@ -511,25 +1072,25 @@ public class ReferenceAccumulator implements Reference {
         if (referenceMap == null) {
             return false;
         }
-        if (localSolver == null) {
-            localSolver = createSolver();
-        }
-        if (localSolver == null) {
+        SmartSolverPdb solver = getLocalSolver();
+        if (solver == null) {
             return false;
         }
 
         ReferenceBoard advBoard = new ReferenceBoard(board);
+        ReferenceStore activeMap = getActiveMap();
         byte lookup = ReferenceConstants.getReferenceLookup(board.getZero1d());
         int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
 
-        if (referenceMap.containsKey(advBoard)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoard);
+        if (activeMap.containsKey(advBoard)) {
+            ReferenceMoves advMoves = activeMap.get(advBoard);
             if (group == 3) {
                 advMoves.updateSolution(lookup, steps, solution, symmetry);
             } else {
                 advMoves.updateSolution(lookup, steps, solution, !symmetry);
             }
-            add2file(advBoard, advMoves);
+            advMoves = store(advBoard, advMoves);
+            verifier.submit(advBoard, advMoves, 0);
             return true;
         }
 
@@ -538,15 +1099,16 @@ public class ReferenceAccumulator implements Reference {
             advBoardSym = new ReferenceBoard(new Board(board.getTilesSym()));
         }
 
-        if (referenceMap.containsKey(advBoardSym)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoardSym);
+        if (activeMap.containsKey(advBoardSym)) {
+            ReferenceMoves advMoves = activeMap.get(advBoardSym);
             if (lookup == 1) {
                 lookup = 3;
             } else if (lookup == 3) {
                 lookup = 1;
             }
             advMoves.updateSolution(lookup, steps, solution, symmetry);
-            add2file(advBoardSym, advMoves);
+            advMoves = store(advBoardSym, advMoves);
+            verifier.submit(advBoardSym, advMoves, 0);
             return true;
         }
 
@@ -556,8 +1118,8 @@ public class ReferenceAccumulator implements Reference {
         } else {
             advMoves.updateSolution(lookup, steps, solution, !symmetry);
         }
-        referenceMap.put(advBoard, advMoves);
-        add2file(advBoard, advMoves);
+        advMoves = store(advBoard, advMoves);
+        verifier.submit(advBoard, advMoves, 0);
         return true;
     }
 
@@ -569,10 +1131,10 @@ public class ReferenceAccumulator implements Reference {
 
     /**
      * If the solver is SolverPD object and last search board in activeMap
-     * that need to verify; verify the full set and return true.
+     * that need to verify; queue it for background verification and return true.
      *
      * @param inSolver the given SolverIntegerface
-     * @return boolean if last search board in activeMap has been verified.
+     * @return boolean if last search board in activeMap
      * @throws RemoteException throw exception when connection lost
      */
     public boolean updateLastSearch(SmartSolver inSolver) throws RemoteException {
@@ -583,88 +1145,34 @@ public class ReferenceAccumulator implements Reference {
         if (!validateSolver(inSolver)) {
             return false;
         }
-
-        SmartSolverPdb solverPdb78 = (SmartSolverPdb) inSolver;
-
-        final boolean backupAdvPriority = solverPdb78.getInUseVersionFlag();
-        final boolean backupMessageFlag = solverPdb78.getMessageFlag();
-        final boolean backupTimeoutFlag = solverPdb78.getTimeoutFlag();
-        solverPdb78.timeoutSwitch(offSwitch);
-        solverPdb78.messageSwitch(offSwitch);
-        solverPdb78.versionSwitch(onSwitch);
-
-        Board board = solverPdb78.lastSearchBoard();
-        ReferenceBoard advBoard = new ReferenceBoard(board);
-        int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
-
-        if (referenceMap.containsKey(advBoard)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoard);
-            if (!advMoves.isCompleted()) {
-                System.out.println("System update, please wait.");
-                advMoves.updateSolutions(advBoard, solverPdb78);
-                add2file(advBoard, advMoves);
-            }
-
-            inSolver.versionSwitch(backupAdvPriority);
-            inSolver.messageSwitch(backupMessageFlag);
-            inSolver.timeoutSwitch(backupTimeoutFlag);
-            return true;
-        }
-
-        ReferenceBoard advBoardSym = null;
-        if (group == 0 || group == 2) {
-            advBoardSym = new ReferenceBoard(new Board(board.getTilesSym()));
-        }
-
-        if (referenceMap.containsKey(advBoardSym)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoardSym);
-            if (!advMoves.isCompleted()) {
-                System.out.println("System update, please wait.");
-                advMoves.updateSolutions(advBoardSym, solverPdb78);
-                add2file(advBoardSym, advMoves);
-            }
-
-            inSolver.versionSwitch(backupAdvPriority);
-            inSolver.messageSwitch(backupMessageFlag);
-            inSolver.timeoutSwitch(backupTimeoutFlag);
-            return true;
-        }
-
-        inSolver.versionSwitch(backupAdvPriority);
-        inSolver.messageSwitch(backupMessageFlag);
-        inSolver.timeoutSwitch(backupTimeoutFlag);
-        return false;
+        return queueLastSearch(((SmartSolverPdb) inSolver).lastSearchBoard());
     }
 
     /**
      * If the solver is SolverPD object and last search board in activeMap
-     * that need to verify; verify the full set and return true.
+     * that need to verify; queue it for background verification and return true.
      *
      * @param board the given Board object
-     * @return boolean if last search board in activeMap has been verified.
+     * @return boolean if last search board in activeMap
      * @throws RemoteException throw exception when connection lost
      */
     public boolean updateLastSearch(Board board) throws RemoteException {
         if (referenceMap == null) {
             return false;
         }
-        if (localSolver == null) {
-            localSolver = createSolver();
-        }
-        if (localSolver == null) {
-            return false;
-        }
+        return queueLastSearch(board);
+    }
 
+    // if the given board in activeMap, queue it with high priority for background
+    // verification and return true
+    private boolean queueLastSearch(Board board) {
         ReferenceBoard advBoard = new ReferenceBoard(board);
+        ReferenceStore activeMap = getActiveMap();
         int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
 
-        if (referenceMap.containsKey(advBoard)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoard);
-            if (!advMoves.isCompleted()) {
-                System.out.println("System update, please wait.");
-                advMoves.updateSolutions(advBoard, localSolver);
-                add2file(advBoard, advMoves);
-            }
+        if (activeMap.containsKey(advBoard)) {
+            verifier.submit(advBoard, activeMap.get(advBoard),
+                    ReferenceVerifier.PRIORITY_RECENT);
             return true;
         }
 
@@ -673,13 +1181,9 @@ public class ReferenceAccumulator implements Reference {
             advBoardSym = new ReferenceBoard(new Board(board.getTilesSym()));
         }
 
-        if (referenceMap.containsKey(advBoardSym)) {
-            ReferenceMoves advMoves = referenceMap.get(advBoardSym);
-            if (!advMoves.isCompleted()) {
-                System.out.println("System update, please wait.");
-                advMoves.updateSolutions(advBoardSym, localSolver);
-                add2file(advBoardSym, advMoves);
-            }
+        if (activeMap.containsKey(advBoardSym)) {
+            verifier.submit(advBoardSym, activeMap.get(advBoardSym),
+                    ReferenceVerifier.PRIORITY_RECENT);
             return true;
         }
         return false;
@@ -701,52 +1205,107 @@ public class ReferenceAccumulator implements Reference {
             return;
         }
 
-        if (referenceMap.containsKey(advBoard)) {
-            referenceMap.remove(advBoard);
+        synchronized (updateLock) {
+            if (shared != null) {
+                followShared();
+            }
+            if (referenceMap.remove(advBoard) != null) {
+                usage.remove(advBoard.packedKey());
+                stale = true;
+                changeLog.record(referenceMap.getVersion(), advBoard.packedKey());
+            }
         }
     }
 
+    /**
+     * Returns the current status of reference boards collection.
+     *
+     * @return String of the current status of reference boards collection
+     */
+    public String getStatus() {
+        StringBuilder status = new StringBuilder();
+        status.append("Data file size: " + (new File(filepath).length())
+                + " saved at " + new Date((new File(filepath)).lastModified()) + "\n");
+        status.append("Boards takes over " + cutoffSetting + "s will store in file.\n");
+        status.append(getActiveMap().size() + " of boards stored in data file, version "
+                + getVersion() + ".\n");
+        status.append("The cutoff limit with buffer: " + cutoffLimit + "\n");
+        if (miner.isRunning()) {
+            status.append("Mining hard boards: " + miner.countSolved() + " solved, "
+                    + miner.countLearned() + " added to collection.\n");
+        }
+        status.append(usage.summary());
+        return status.toString();
+    }
+
     // print the current status of reference boards collection.
     void printStatus() {
-        System.out.println("Data file size: " + (new File(filepath).length())
-                + " saved at " + new Date((new File(filepath)).lastModified()));
-        System.out.println("Boards takes over " + cutoffSetting + "s will store in file.");
-        System.out.println(referenceMap.size() + " of boards stored in data file.");
-        System.out.println("The cutoff limit with buffer: " + cutoffLimit + "\n");
+        System.out.println(getStatus() + "\n");
+    }
+
+    // print the usage statistics of all reference boards.
+    void printUsage() {
+        int count = 1;
+        ReferenceStore activeMap = getActiveMap();
+        for (int slot = 0; slot < activeMap.capacity(); slot++) {
+            if (activeMap.isOccupied(slot)) {
+                ReferenceBoard advBoard = activeMap.getBoard(slot);
+                System.out.println(count++ + " : " + usage.getHits(advBoard) + " hits, "
+                        + usage.getUplift(advBoard) + " moves raised, score "
+                        + String.format("%.3f", usage.getScore(advBoard)));
+                System.out.println(advBoard);
+            }
+        }
+        System.out.println(usage.summary() + "\n");
     }
 
     // print all reference boards and it's components.
     void printAllBoards() {
         int count = 1;
-        for (Entry<ReferenceBoard, ReferenceMoves> entry : referenceMap.entrySet()) {
-            System.out.println(count++ + " : ");
-            System.out.println(entry.getKey());
-            System.out.println(entry.getValue());
+        ReferenceStore activeMap = getActiveMap();
+        for (int slot = 0; slot < activeMap.capacity(); slot++) {
+            if (activeMap.isOccupied(slot)) {
+                System.out.println(count++ + " : ");
+                System.out.println(activeMap.getBoard(slot));
+                System.out.println(activeMap.getMoves(slot));
+            }
         }
         System.out.println();
     }
 
-    // change the cutoff setting with the given integer in second, range from 1 to 10 and
-    // save a new copy if stand alone or off network
-    void setCutoffArchive(int cutoff) {
+    /**
+     * Change the cutoff setting with the given integer in second, range from 1 to 10 and
+     * save a new copy of file.  It applies to the next boards, existing reference boards
+     * remain as is.
+     *
+     * @param cutoff the given cutoff setting in second
+     * @return boolean represents the cutoff setting has been changed
+     */
+    public boolean setCutoffArchive(int cutoff) {
         if (cutoff < 1) {
             System.out.println(cutoff + " below minimum cutoff limit 1.0s - stop and no change");
-            return;
+            return false;
         } else if (cutoff > 10) {
             System.out.println(cutoff + " above maximum cutoff limit 10.0s - stop and no change");
-            return;
+            return false;
         } else if (cutoff == cutoffSetting) {
             System.out.println("Same cutoff limit - no change.");
-            return;
+            return false;
         }
 
-        cutoffSetting = cutoff;
         int cutoffBuffer = ReferenceProperties.getCutoffBuffer();
-        cutoffLimit = cutoffSetting * ((100 - cutoffBuffer) / 100.0);
+        synchronized (updateLock) {
+            cutoffSetting = cutoff;
+            cutoffLimit = cutoffSetting * ((100 - cutoffBuffer) / 100.0);
+        }
 
         System.out.println("Cutoff archive limit changed to " + cutoffSetting
                 + " seconds, existing archive boards will remain as is.");
+        if (shared != null) {
+            shared.setCutoffSetting(cutoff);
+        }
         refreshFile();
+        return true;
     }
 
     // create the new file for storing the reference collection.
@@ -780,19 +1339,25 @@ public class ReferenceAccumulator implements Reference {
         }
     }
 
-    // save all reference board in a new copy
-    synchronized void refreshFile() {
-        String tempFile = createFile();
-        if (tempFile == null) {
-            return;
-        }
+    // save all reference board in a new copy, hold the update lock so no update
+    // will be appended to the old file during the refresh
+    void refreshFile() {
+        synchronized (updateLock) {
+            String tempFile = createFile();
+            if (tempFile == null) {
+                return;
+            }
 
-        for (Entry<ReferenceBoard, ReferenceMoves> entry : referenceMap.entrySet()) {
-            add2file(entry.getKey(), entry.getValue(), tempFile);
-        }
+            for (int slot = 0; slot < referenceMap.capacity(); slot++) {
+                if (referenceMap.isOccupied(slot)) {
+                    add2file(referenceMap.getBoard(slot), referenceMap.getMoves(slot),
+                            tempFile);
+                }
+            }
 
-        fileReady = false;
-        (new File(tempFile)).renameTo(new File(filepath));
-        fileReady = true;
+            fileReady = false;
+            (new File(tempFile)).renameTo(new File(filepath));
+            fileReady = true;
+        }
     }
 }
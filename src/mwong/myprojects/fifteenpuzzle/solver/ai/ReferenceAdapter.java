@@ -1,5 +1,6 @@
 package mwong.myprojects.fifteenpuzzle.solver.ai;
 
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
 import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
@@ -7,7 +8,6 @@ import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
 
 import java.rmi.RemoteException;
-import java.util.HashMap;
 
 /**
  * ReferenceAdapter implements ReferenceRemote interface.  This class applied adapter pattern on
@@ -34,6 +34,12 @@ public class ReferenceAdapter implements ReferenceRemote {
         refObject = new ReferenceAccumulator(appMode);
     }
 
+    // initialize the ReferenceAdapter object of the given shard of the collection
+    public ReferenceAdapter(ApplicationMode appMode, ReferencePartition partition)
+            throws RemoteException {
+        refObject = new ReferenceAccumulator(appMode, partition);
+    }
+
     // initialize the ReferenceAdapter object with the given ReferenceAccumulator object
     public ReferenceAdapter(ReferenceAccumulator refAccumulator) throws RemoteException {
         refObject = refAccumulator;
@@ -44,14 +50,68 @@ public class ReferenceAdapter implements ReferenceRemote {
     }
 
     /**
-     * Returns a HashMap of collection of reference boards.
+     * Returns a ReferenceStore of collection of reference boards.
      *
-     * @return HashMap of collection of reference boards
+     * @return ReferenceStore of collection of reference boards
      */
-    public HashMap<ReferenceBoard, ReferenceMoves> getActiveMap() {
+    public ReferenceStore getActiveMap() {
         return refObject.getActiveMap();
     }
 
+    /**
+     * Returns the version of the collection of reference boards.
+     *
+     * @return long value of the version of the collection
+     */
+    public long getVersion() {
+        return refObject.getVersion();
+    }
+
+    /**
+     * Returns the changes of the collection since the given version.
+     *
+     * @param sinceVersion the version of the collection held by the caller
+     * @return ReferenceDelta object of the changes since the given version
+     */
+    public ReferenceDelta getChanges(long sinceVersion) {
+        return refObject.getChanges(sinceVersion);
+    }
+
+    /**
+     * Returns the AdvancedRecord object if the given board is one of the reference
+     * board.  Otherwise return null.
+     *
+     * @param board the given board object
+     * @return AdvancedRecord object if the given board is one of the reference board
+     */
+    public AdvancedRecord lookupExact(Board board) {
+        return refObject.lookupExact(board);
+    }
+
+    /**
+     * Returns the best estimate of the given board from the collection of reference
+     * boards.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given board
+     * @return byte value of the best estimate of the given board
+     */
+    public byte advancedEstimate(Board board, byte estimate) {
+        return refObject.advancedEstimate(board, estimate);
+    }
+
+    /**
+     * Record the usage of the reference boards of the given packed keys served by a
+     * replica: the number of hits and the total moves of estimates raised of each.
+     *
+     * @param keys the given packed keys of the reference boards
+     * @param hits the given number of hits of each reference board
+     * @param uplifts the given total moves of estimates raised of each reference board
+     */
+    public void recordUsage(long[] keys, int[] hits, long[] uplifts) {
+        refObject.recordUsage(keys, hits, uplifts);
+    }
+
     /**
      * Returns an integer of cutoff setting.
      *
@@ -15,11 +15,11 @@ import java.io.Serializable;
  */
 public class ReferenceBoard implements Serializable {
     private static final long serialVersionUID = 17195273121L;
-    private final int puzzleSize;
-    private final byte[] referenceLookup;
-    private final byte[] referenceGroup;
-    private final byte[] rotate90pos;
-    private final byte[] rotate180pos;
+    private static final int puzzleSize = ReferenceConstants.getPuzzleSize();
+    private static final byte[] referenceLookup = ReferenceConstants.getReferenceLookup();
+    private static final byte[] referenceGroup = ReferenceConstants.getReferenceGroup();
+    private static final byte[] rotate90pos = ReferenceConstants.getRotate90Pos();
+    private static final byte[] rotate180pos = ReferenceConstants.getRotate180Pos();
 
     byte[] tilesTransform;
     int hashcode;
@@ -27,15 +27,6 @@ public class ReferenceBoard implements Serializable {
     int hash2;
     byte group;
 
-    // load all constants.
-    private ReferenceBoard() {
-        puzzleSize = ReferenceConstants.getPuzzleSize();
-        referenceLookup = ReferenceConstants.getReferenceLookup();
-        referenceGroup = ReferenceConstants.getReferenceGroup();
-        rotate90pos = ReferenceConstants.getRotate90Pos();
-        rotate180pos = ReferenceConstants.getRotate180Pos();
-    }
-
     /**
      * Initializes a ReferenceBoard object, take a board object,
      * shift the space to corner, and generate a conversion keys
@@ -44,7 +35,6 @@ public class ReferenceBoard implements Serializable {
      * @param initial the given board object
      */
     public ReferenceBoard(Board initial) {
-        this();
         byte[] tiles = new byte[puzzleSize];
         System.arraycopy(initial.getTiles(), 0, tiles, 0, puzzleSize);
         group = referenceGroup[initial.getZero1d()];
@@ -54,7 +44,6 @@ public class ReferenceBoard implements Serializable {
             System.arraycopy(initial.getTilesSym(), 0, tiles, 0, puzzleSize);
         }
 
-        byte[] tilesRotate = new byte[puzzleSize];
         if (group == 0) {
             if (lookup > 2) {
                 tiles[11] = tiles[10];
@@ -68,7 +57,6 @@ public class ReferenceBoard implements Serializable {
                 tiles[14] = tiles[15];
                 tiles[15] = 0;
             }
-            System.arraycopy(tiles, 0, tilesRotate, 0, puzzleSize);
         } else if (group == 1) {
             if (lookup > 2) {
                 tiles[2] = tiles[6];
@@ -82,9 +70,6 @@ public class ReferenceBoard implements Serializable {
                 tiles[7] = tiles[3];
                 tiles[3] = 0;
             }
-            for (int i = 0; i < puzzleSize; i++) {
-                tilesRotate[i] = tiles[rotate90pos[i]];
-            }
         } else if (group == 2) {
             if (lookup > 2) {
                 tiles[4] = tiles[5];
@@ -98,17 +83,19 @@ public class ReferenceBoard implements Serializable {
                 tiles[1] = tiles[0];
                 tiles[0] = 0;
             }
-            for (int i = 0; i < puzzleSize; i++) {
-                tilesRotate[i] = tiles[rotate180pos[i]];
-            }
         } else {
             throw new IllegalArgumentException("Invalid group : " + group);
         }
+        tilesTransform = createTransform(tiles, group);
+        setHashcode(tiles);
+    }
 
-        tilesTransform = new byte[puzzleSize];
-        for (int i = 1; i < puzzleSize; i++) {
-            tilesTransform[tilesRotate[i - 1]] = (byte) i;
-        }
+    // use by ReferenceStore, initializes a ReferenceBoard object with the 64 bits
+    // packed key of the reference board, restore the group and the conversion key
+    ReferenceBoard(long packedKey) {
+        byte[] tiles = unpack(packedKey);
+        group = getGroup(tiles);
+        tilesTransform = createTransform(tiles, group);
         setHashcode(tiles);
     }
 
@@ -117,7 +104,6 @@ public class ReferenceBoard implements Serializable {
     // conversion key into byte array
     ReferenceBoard(long transformKey, byte group, int hash1, int hash2, int hashcode)
             throws IOException {
-        this();
         tilesTransform = new byte[puzzleSize];
         int pos = puzzleSize;
         boolean[] visited = new boolean[puzzleSize];
@@ -137,27 +123,81 @@ public class ReferenceBoard implements Serializable {
         this.hashcode = hashcode;
     }
 
+    // generate the conversion keys from the tiles with space at the corner of the group
+    private static byte[] createTransform(byte[] tiles, byte group) {
+        byte[] tilesRotate = new byte[puzzleSize];
+        if (group == 0) {
+            System.arraycopy(tiles, 0, tilesRotate, 0, puzzleSize);
+        } else if (group == 1) {
+            for (int i = 0; i < puzzleSize; i++) {
+                tilesRotate[i] = tiles[rotate90pos[i]];
+            }
+        } else if (group == 2) {
+            for (int i = 0; i < puzzleSize; i++) {
+                tilesRotate[i] = tiles[rotate180pos[i]];
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid group : " + group);
+        }
+
+        byte[] transform = new byte[puzzleSize];
+        for (int i = 1; i < puzzleSize; i++) {
+            transform[tilesRotate[i - 1]] = (byte) i;
+        }
+        return transform;
+    }
+
+    // returns the group of the stored tiles, the space is always at the corner
+    private static byte getGroup(byte[] tiles) {
+        if (tiles[15] == 0) {
+            return 0;
+        } else if (tiles[3] == 0) {
+            return 1;
+        } else if (tiles[0] == 0) {
+            return 2;
+        }
+        throw new IllegalArgumentException("Invalid reference board, space not at the corner");
+    }
+
+    // restores the tiles from the 64 bits packed key
+    private static byte[] unpack(long packedKey) {
+        byte[] tiles = new byte[puzzleSize];
+        for (int pos = puzzleSize - 1; pos > -1; pos--) {
+            tiles[pos] = (byte) (packedKey & 0x0F);
+            packedKey >>>= 4;
+        }
+        return tiles;
+    }
+
+    /**
+     * Returns the 64 bits packed key of the reference board, 4 bits per tile.
+     *
+     * @return long value of the packed key of the reference board
+     */
+    public long packedKey() {
+        return ((long) hash1 << 32) | (hash2 & 0xFFFFFFFFL);
+    }
+
     @Override
     public int hashCode() {
-        return hashcode;
+        long mixed = ReferenceStore.mix(packedKey());
+        return (int) (mixed ^ (mixed >>> 32));
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (this.getClass() != obj.getClass()) {
+        if (obj == null || this.getClass() != obj.getClass()) {
             return false;
         }
         ReferenceBoard that = (ReferenceBoard) obj;
-        if (this.hashcode != that.hashcode) {
-            return false;
-        }
         if (this.hash1 == that.hash1 && this.hash2 == that.hash2) {
             return true;
         }
         return false;
     }
 
-    // initializes the hashcode of the object
+    // initializes the hash keys of the object, hashcode remains the legacy value
+    // stored in the data file
     private void setHashcode(byte[] tiles) {
         hashcode = 0;
         for (int i = 0; i < puzzleSize / 2; i++) {
@@ -201,6 +241,12 @@ public class ReferenceBoard implements Serializable {
      * @return a byte array of tiles after transformation
      */
     public byte[] transformer(byte[] blocks) {
+        return transformer(tilesTransform, group, blocks);
+    }
+
+    // returns a byte array of tiles after transform the given blocks with the given
+    // conversion keys and group
+    static byte[] transformer(byte[] tilesTransform, byte group, byte[] blocks) {
         byte[] transTiles = new byte[puzzleSize];
         for (int pos = 0; pos < 16; pos++) {
             transTiles[pos] = tilesTransform[blocks[pos]];
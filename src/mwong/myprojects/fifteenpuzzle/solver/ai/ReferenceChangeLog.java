@@ -0,0 +1,75 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import java.util.Arrays;
+
+/**
+ * ReferenceChangeLog keeps the packed keys of the recently changed reference boards
+ * with the version of the collection after the change in a fixed size ring.  It
+ * allows the clients catch up with the collection by the changed boards only.  Once
+ * the ring wrap around, the clients behind the oldest entry need a full reload.
+ *
+ * <p>Dependencies : none
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+class ReferenceChangeLog {
+    private final long[] versions;
+    private final long[] keys;
+    private int head;
+    private int count;
+    private long floor;
+
+    // initializes ReferenceChangeLog object with the given capacity and the current
+    // version of the collection
+    ReferenceChangeLog(int capacity, long version) {
+        versions = new long[capacity];
+        keys = new long[capacity];
+        reset(version);
+    }
+
+    // clear the log, all changes up to the given version are not covered
+    synchronized void reset(long version) {
+        head = 0;
+        count = 0;
+        floor = version;
+    }
+
+    // record the change of the given packed key with the version after the change
+    synchronized void record(long version, long key) {
+        if (count == versions.length) {
+            floor = versions[head];
+        } else {
+            count++;
+        }
+        versions[head] = version;
+        keys[head] = key;
+        head = (head + 1) % versions.length;
+    }
+
+    // returns the distinct packed keys changed after the given version up to and
+    // include the given upper version, or null if the log no longer covers them
+    synchronized long[] changedSince(long sinceVersion, long upToVersion) {
+        if (sinceVersion < floor) {
+            return null;
+        }
+        long[] changed = new long[count];
+        int size = 0;
+        int pos = (head - count + versions.length) % versions.length;
+        for (int i = 0; i < count; i++) {
+            if (versions[pos] > sinceVersion && versions[pos] <= upToVersion) {
+                changed[size++] = keys[pos];
+            }
+            pos = (pos + 1) % versions.length;
+        }
+        changed = Arrays.copyOf(changed, size);
+        Arrays.sort(changed);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || changed[i] != changed[i - 1]) {
+                changed[distinct++] = changed[i];
+            }
+        }
+        return Arrays.copyOf(changed, distinct);
+    }
+}
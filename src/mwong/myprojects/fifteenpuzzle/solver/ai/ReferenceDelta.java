@@ -0,0 +1,127 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import java.io.Serializable;
+
+/**
+ * ReferenceDelta is the data type of the changes of the reference collection between
+ * two versions.  It carries the changed reference boards and the packed keys of the
+ * removed reference boards, or the full collection if the changes are no longer
+ * available.
+ *
+ * <p>Dependencies : ReferenceBoard.java, ReferenceStore.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceDelta implements Serializable {
+    private static final long serialVersionUID = 17195273121L;
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean fullReload;
+    private final ReferenceStore updated;
+    private final long[] removed;
+
+    // initializes ReferenceDelta object with the changes between the given versions
+    ReferenceDelta(long fromVersion, long toVersion, ReferenceStore updated, long[] removed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        fullReload = false;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    // initializes ReferenceDelta object with the full collection
+    ReferenceDelta(ReferenceStore activeMap) {
+        fromVersion = -1;
+        toVersion = activeMap.getVersion();
+        fullReload = true;
+        updated = activeMap;
+        removed = new long[0];
+    }
+
+    /**
+     * Returns the version of the collection the changes start from.
+     *
+     * @return long value of the version the changes start from
+     */
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    /**
+     * Returns the version of the collection after the changes.
+     *
+     * @return long value of the version after the changes
+     */
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    /**
+     * Returns the boolean represents it carries the full collection.
+     *
+     * @return boolean represents it carries the full collection
+     */
+    public boolean isFullReload() {
+        return fullReload;
+    }
+
+    /**
+     * Returns the ReferenceStore of the changed reference boards, or the full
+     * collection if it is a full reload.
+     *
+     * @return ReferenceStore of the changed reference boards
+     */
+    public ReferenceStore getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns the packed keys of the removed reference boards.
+     *
+     * @return long array of the packed keys of the removed reference boards
+     */
+    public long[] getRemoved() {
+        return removed.clone();
+    }
+
+    /**
+     * Returns the number of changed and removed reference boards.
+     *
+     * @return integer of the number of changed and removed reference boards
+     */
+    public int size() {
+        return updated.size() + removed.length;
+    }
+
+    /**
+     * Returns a new ReferenceStore of the given collection after apply the changes.
+     * The given collection remain unchanged.
+     *
+     * @param base the ReferenceStore of the collection at the from version
+     * @return ReferenceStore of the collection at the to version
+     */
+    public ReferenceStore applyTo(ReferenceStore base) {
+        if (fullReload) {
+            return updated;
+        }
+        if (base == null || base.getVersion() != fromVersion) {
+            throw new IllegalArgumentException("Version mismatch, expect " + fromVersion);
+        }
+        if (size() == 0) {
+            return base;
+        }
+
+        ReferenceStore result = base.copy();
+        for (long key : removed) {
+            result.remove(new ReferenceBoard(key));
+        }
+        for (int slot = 0; slot < updated.capacity(); slot++) {
+            if (updated.isOccupied(slot)) {
+                result.put(updated.getBoard(slot), updated.getMoves(slot));
+            }
+        }
+        result.setVersion(toVersion);
+        return result;
+    }
+}
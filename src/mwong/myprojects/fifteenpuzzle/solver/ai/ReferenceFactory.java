@@ -11,7 +11,8 @@ import java.rmi.RemoteException;
 /**
  * ReferenceFactory provides the choice of network connection of the client applications.
  * It returns an instance of the reference collection.  getReferenceLocal returns the local
- * instance and getReferenceServer returns the network instance.
+ * instance, getReferenceServer returns the network instance and getReferenceReplica returns
+ * the local replica of the network instance.
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
@@ -35,22 +36,61 @@ public class ReferenceFactory {
     }
 
     /**
-     * A network Reference connection will be returned.
+     * A network Reference connection will be returned.  If remoteShards lists more
+     * than one endpoint, a router of all shards will be returned.
      */
     public ReferenceRemote getReferenceServer() throws RemoteException, IOException {
         String rmiServiceName
                 = PropertiesRemote.getInstance().getProperty("remoteServiceName");
+
+        if (PropertiesRemote.getInstance().containsKey("remoteShards")) {
+            String[] endpoints
+                    = PropertiesRemote.getInstance().getProperty("remoteShards").split(",");
+            if (endpoints.length > 1) {
+                ReferenceRemote[] shards = new ReferenceRemote[endpoints.length];
+                for (int i = 0; i < endpoints.length; i++) {
+                    String endpoint = endpoints[i].trim();
+                    int split = endpoint.lastIndexOf(':');
+                    if (split < 0) {
+                        throw new RemoteException("Invalid shard endpoint " + endpoint);
+                    }
+                    try {
+                        shards[i] = lookup(endpoint.substring(0, split),
+                                Integer.parseInt(endpoint.substring(split + 1)), rmiServiceName);
+                    } catch (NumberFormatException ex) {
+                        throw new RemoteException("Invalid shard endpoint " + endpoint);
+                    }
+                }
+                refObj = new ReferenceRouter(shards);
+                return refObj;
+            }
+        }
+
         String rmiHost
                 = PropertiesRemote.getInstance().getProperty("remoteHost");
         int rmiPort
                 = Integer.parseInt(PropertiesRemote.getInstance().getProperty("remotePort"));
-        String lookupString = "rmi://" + rmiHost + ":" + rmiPort + "/" + rmiServiceName;
+        refObj = lookup(rmiHost, rmiPort, rmiServiceName);
+        return refObj;
+    }
 
+    // returns the remote connection of the given host, port and service name
+    private ReferenceRemote lookup(String rmiHost, int rmiPort, String rmiServiceName)
+            throws RemoteException, IOException {
+        String lookupString = "rmi://" + rmiHost + ":" + rmiPort + "/" + rmiServiceName;
         try {
-            refObj = (ReferenceRemote) Naming.lookup(lookupString);
-            return refObj;
+            return (ReferenceRemote) Naming.lookup(lookupString);
         } catch (NotBoundException nbex) {
             throw new RemoteException(nbex.toString());
         }
     }
+
+    /**
+     * A local replica of the network Reference connection will be returned.  It
+     * serves all lookups locally and synchronizes with the server in background.
+     */
+    public ReferenceRemote getReferenceReplica() throws IOException {
+        refObj = new ReferenceReplica();
+        return refObj;
+    }
 }
@@ -0,0 +1,301 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ReferenceMerger combines the reference collections learned on different nodes.  It
+ * reads several reference collection files, merges the same reference board with the
+ * max moves rules of ReferenceMoves, removes the symmetry reference boards that carry
+ * no extra information, and writes a compacted file with one record per board.
+ *
+ * <p>Usage : ReferenceMerger output_file input_file [input_file ...]
+ *
+ * <p>Dependencies : Board.java, ReferenceBoard.java, ReferenceMoves.java,
+ *                   ReferenceProperties.java, ReferenceStore.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceMerger {
+    private static final int recordSize = 34;
+
+    private final ReferenceStore merged;
+    private int cutoffSetting;
+
+    /**
+     * Initializes an empty ReferenceMerger object.
+     */
+    public ReferenceMerger() {
+        merged = new ReferenceStore();
+        cutoffSetting = -1;
+    }
+
+    /**
+     * Returns the cutoff setting of the first merged file, or -1 if none.
+     *
+     * @return integer of the cutoff setting
+     */
+    public int getCutoffSetting() {
+        return cutoffSetting;
+    }
+
+    /**
+     * Returns the ReferenceStore of the merged reference boards.
+     *
+     * @return ReferenceStore of the merged reference boards
+     */
+    public ReferenceStore getResult() {
+        return merged;
+    }
+
+    /**
+     * Merge all reference boards of the given reference collection file.  An incomplete
+     * record at the end of file (the file is being appended) will be ignored.
+     *
+     * @param filepath the given file path of the reference collection
+     * @return integer of the number of records read
+     * @throws IOException if the file is not readable or not a reference collection
+     */
+    public int addFile(String filepath) throws IOException {
+        int count = 0;
+        try (FileInputStream fin = new FileInputStream(filepath);
+                FileChannel inChannel = fin.getChannel()) {
+            ByteBuffer buffer = inChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    inChannel.size());
+            int cutoff = buffer.getInt();
+            if (cutoffSetting < 0) {
+                cutoffSetting = cutoff;
+            }
+
+            while (buffer.remaining() >= recordSize) {
+                long transformKey = buffer.getLong();
+                byte group = buffer.get();
+                int hash1 = buffer.getInt();
+                int hash2 = buffer.getInt();
+                int hashcode = buffer.getInt();
+                ReferenceBoard advBoard = new ReferenceBoard(transformKey, group, hash1,
+                        hash2, hashcode);
+
+                byte[] moves = new byte[4];
+                buffer.get(moves);
+                short[] initMoves = new short[4];
+                for (int i = 0; i < 4; i++) {
+                    initMoves[i] = buffer.getShort();
+                }
+                byte status = buffer.get();
+                add(advBoard, new ReferenceMoves(moves, initMoves, status));
+                count++;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException ex) {
+            throw new IOException("Data file error - " + filepath);
+        }
+        return count;
+    }
+
+    /**
+     * Merge all reference boards of the given ReferenceStore.
+     *
+     * @param refMap the given ReferenceStore of reference boards
+     */
+    public void addStore(ReferenceStore refMap) {
+        for (int slot = 0; slot < refMap.capacity(); slot++) {
+            if (refMap.isOccupied(slot)) {
+                add(refMap.getBoard(slot), refMap.getMoves(slot));
+            }
+        }
+    }
+
+    // merge the given reference board with the max moves rules
+    void add(ReferenceBoard advBoard, ReferenceMoves advMoves) {
+        ReferenceMoves current = merged.get(advBoard);
+        if (current != null) {
+            current.updateMoves(advMoves.moves, advMoves.initMoves, advMoves.status);
+            advMoves = current;
+        }
+        merged.put(advBoard, advMoves);
+    }
+
+    /**
+     * Remove the reference boards that duplicate their symmetry reference board.  A
+     * pair is merged if one of them has no verified lookup key other than the corner
+     * position, the one with more information (or the smaller packed key) remains.
+     *
+     * @return integer of the number of reference boards removed
+     */
+    public int removeSymmetry() {
+        return removeSymmetry(merged);
+    }
+
+    // remove the reference boards of the given ReferenceStore that duplicate their
+    // symmetry reference board, returns the number of reference boards removed
+    static int removeSymmetry(ReferenceStore refMap) {
+        long[] keys = new long[refMap.size()];
+        int count = 0;
+        for (int slot = 0; slot < refMap.capacity(); slot++) {
+            if (refMap.isOccupied(slot)) {
+                keys[count++] = refMap.getBoard(slot).packedKey();
+            }
+        }
+
+        int removed = 0;
+        for (long key : keys) {
+            ReferenceBoard advBoard = new ReferenceBoard(key);
+            ReferenceBoard symBoard = symmetryBoard(advBoard);
+            if (symBoard == null || !refMap.containsKey(advBoard)
+                    || !refMap.containsKey(symBoard)) {
+                continue;
+            }
+
+            ReferenceMoves advMoves = refMap.get(advBoard);
+            ReferenceMoves symMoves = refMap.get(symBoard);
+            ReferenceBoard keepBoard;
+            ReferenceMoves keepMoves;
+            ReferenceBoard dropBoard;
+            ReferenceMoves dropMoves;
+            if (symMoves.isCornerOnly() && (!advMoves.isCornerOnly()
+                    || key < symBoard.packedKey())) {
+                keepBoard = advBoard;
+                keepMoves = advMoves;
+                dropBoard = symBoard;
+                dropMoves = symMoves;
+            } else if (advMoves.isCornerOnly()) {
+                keepBoard = symBoard;
+                keepMoves = symMoves;
+                dropBoard = advBoard;
+                dropMoves = advMoves;
+            } else {
+                continue;
+            }
+
+            keepMoves.mergeCorner(dropMoves);
+            refMap.put(keepBoard, keepMoves);
+            refMap.remove(dropBoard);
+            removed++;
+        }
+        return removed;
+    }
+
+    // returns the reference board of the symmetry board of the given reference board,
+    // null if the given reference board has no symmetry reference board (group 1) or
+    // it is symmetric itself
+    static ReferenceBoard symmetryBoard(ReferenceBoard advBoard) {
+        if (advBoard.group == 1) {
+            return null;
+        }
+        Board board = new Board(advBoard.getTiles());
+        ReferenceBoard symBoard = new ReferenceBoard(new Board(board.getTilesSym()));
+        if (symBoard.equals(advBoard)) {
+            return null;
+        }
+        return symBoard;
+    }
+
+    /**
+     * Write the merged reference boards to the given file path with the given
+     * cutoff setting, one record per reference board.
+     *
+     * @param filepath the given file path of the output file
+     * @throws IOException if unable to write the file
+     */
+    public void writeFile(String filepath) throws IOException {
+        int cutoff = cutoffSetting;
+        if (cutoff < 0) {
+            cutoff = ReferenceProperties.getDefaultCutoffLimit();
+        }
+        writeFile(filepath, cutoff, merged);
+    }
+
+    /**
+     * Write the given reference boards to the given file path with the given cutoff
+     * setting, one record per reference board.  It writes to a temp file first and
+     * replace the given file when completed.
+     *
+     * @param filepath the given file path of the output file
+     * @param cutoff the given cutoff setting
+     * @param refMap the given ReferenceStore of reference boards
+     * @throws IOException if unable to write the file
+     */
+    public static void writeFile(String filepath, int cutoff, ReferenceStore refMap)
+            throws IOException {
+        File parent = (new File(filepath)).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        String tempFile = filepath + "merge";
+        try (FileOutputStream fout = new FileOutputStream(tempFile);
+                FileChannel outChannel = fout.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 + refMap.size() * recordSize);
+            buffer.putInt(cutoff);
+            for (int slot = 0; slot < refMap.capacity(); slot++) {
+                if (refMap.isOccupied(slot)) {
+                    ReferenceBoard advBoard = refMap.getBoard(slot);
+                    ReferenceMoves advMoves = refMap.getMoves(slot);
+                    long key = 0L;
+                    for (int val : advBoard.tilesTransform) {
+                        key <<= 4;
+                        key |= val;
+                    }
+                    buffer.putLong(key);                        //  8
+                    buffer.put(advBoard.group);                 //  1
+                    buffer.putInt(advBoard.hash1);              //  4
+                    buffer.putInt(advBoard.hash2);              //  4
+                    buffer.putInt(advBoard.hashcode);           //  4
+                    buffer.put(advMoves.moves);                 //  4
+                    for (short move : advMoves.initMoves) {     //  8 (2x4)
+                        buffer.putShort(move);
+                    }
+                    buffer.put(advMoves.status);                //  1
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                outChannel.write(buffer);
+            }
+        }
+        (new File(filepath)).delete();
+        if (!(new File(tempFile)).renameTo(new File(filepath))) {
+            throw new IOException("Unable to replace " + filepath);
+        }
+    }
+
+    /**
+     * Merge the given reference collection files into one compacted file.
+     *
+     * @param args output file path followed by input file paths
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: ReferenceMerger output_file input_file [input_file ...]");
+            return;
+        }
+
+        ReferenceMerger merger = new ReferenceMerger();
+        int records = 0;
+        for (int i = 1; i < args.length; i++) {
+            try {
+                int count = merger.addFile(args[i]);
+                System.out.println(args[i] + " : " + count + " records");
+                records += count;
+            } catch (IOException ex) {
+                System.err.println("System error : unable to read " + args[i] + " - skipped.");
+            }
+        }
+        int removed = merger.removeSymmetry();
+        try {
+            merger.writeFile(args[0]);
+            System.out.println(records + " records merged into " + merger.getResult().size()
+                    + " reference boards (" + removed + " symmetry duplicates removed) - "
+                    + args[0]);
+        } catch (IOException ex) {
+            System.err.println("System error : unable to save file " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
+
+/**
+ * ReferenceMiner looks for hard boards in a background thread during idle time, so
+ * the reference collection learns them before any user solves them.  The candidates
+ * are random walks from the preset hard boards (HARD difficulty level) and random
+ * boards of high estimate in turn.  Each candidate is solved with pattern database
+ * 7-8 and offered to the accumulator, it keeps the board if the search takes over the
+ * cutoff limit.  It works only if the system load leaves a spare core, and sleeps in
+ * proportion to the time of each search to keep within the configured cpu share.
+ *
+ * <p>Dependencies : Board.java, PuzzleDifficultyLevel.java, ReferenceAccumulator.java,
+ *                   ReferenceAdapter.java, ReferenceBoard.java, ReferenceConstants.java,
+ *                   ReferenceProperties.java, ReferenceStore.java, SmartSolverPdb.java,
+ *                   SolverConstants.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+class ReferenceMiner implements Runnable {
+    // minimum estimate of a random board to be a candidate
+    private static final int minEstimate = 52;
+    // maximum random boards generated for one candidate
+    private static final int maxTrials = 1000;
+    // wait time in milliseconds while the system is busy
+    private static final int busyWait = 60000;
+
+    private final ReferenceAccumulator accumulator;
+    private final int cpuShare;
+    private final boolean onSwitch;
+    private final boolean offSwitch;
+    private volatile boolean running;
+    private Thread worker;
+    private SmartSolverPdb solver;
+    private int countCandidates;
+    private volatile int countSolved;
+    private volatile int countLearned;
+
+    // initializes ReferenceMiner object of the given ReferenceAccumulator object
+    ReferenceMiner(ReferenceAccumulator accumulator) {
+        this.accumulator = accumulator;
+        cpuShare = ReferenceProperties.getMineCpuShare();
+        onSwitch = SolverConstants.isOnSwitch();
+        offSwitch = !onSwitch;
+        running = false;
+    }
+
+    // start the background worker thread
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this, "ReferenceMiner");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    // stop the background worker thread
+    void shutdown() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+            worker = null;
+        }
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    // returns the boolean represents the worker thread is running
+    boolean isRunning() {
+        return running;
+    }
+
+    // returns the number of candidates solved
+    int countSolved() {
+        return countSolved;
+    }
+
+    // returns the number of candidates added to the reference collection
+    int countLearned() {
+        return countLearned;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (!isIdle()) {
+                    Thread.sleep(busyWait);
+                    continue;
+                }
+                if (solver == null) {
+                    solver = createSolver();
+                    if (solver == null) {
+                        System.err.println("System error : reference mining stopped - "
+                                + "7-8 pattern database solver unavailable");
+                        running = false;
+                        return;
+                    }
+                }
+
+                Board board = nextCandidate();
+                if (isKnown(board)) {
+                    continue;
+                }
+                long startTime = System.nanoTime();
+                solver.findOptimalPath(board);
+                if (!solver.isSearchTimeout()) {
+                    countSolved++;
+                    if (accumulator.addBoard(solver)) {
+                        countLearned++;
+                    }
+                }
+                throttle(System.nanoTime() - startTime);
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RemoteException | RuntimeException ex) {
+                System.err.println("System error : reference mining failed - "
+                        + ex.getMessage());
+            }
+        }
+    }
+
+    // returns the boolean represents the system load leaves a spare core, always true
+    // if the system load is not available
+    private boolean isIdle() {
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        if (load < 0) {
+            return true;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        return load <= Math.max(cores - 1, 0.5);
+    }
+
+    // returns the next candidate board, random walk from the preset hard boards and
+    // random board of high estimate in turn
+    private Board nextCandidate() {
+        if (countCandidates++ % 2 == 0) {
+            return new Board(PuzzleDifficultyLevel.HARD);
+        }
+
+        Board best = null;
+        int bestEstimate = -1;
+        for (int trial = 0; trial < maxTrials; trial++) {
+            Board board = new Board();
+            int estimate = solver.heuristicStandard(board);
+            if (estimate >= minEstimate) {
+                return board;
+            }
+            if (estimate > bestEstimate) {
+                bestEstimate = estimate;
+                best = board;
+            }
+        }
+        return best;
+    }
+
+    // returns the boolean represents the given board or its symmetry board is one
+    // of the reference board
+    private boolean isKnown(Board board) {
+        ReferenceStore activeMap = accumulator.getActiveMap();
+        if (activeMap.containsKey(new ReferenceBoard(board))) {
+            return true;
+        }
+        int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
+        if (group == 0 || group == 2) {
+            return activeMap.containsKey(new ReferenceBoard(new Board(board.getTilesSym())));
+        }
+        return false;
+    }
+
+    // create a SmartSolverPdb object share the pattern database with the local solver
+    // of the accumulator
+    private SmartSolverPdb createSolver() throws RemoteException {
+        SmartSolverPdb localSolver = accumulator.getLocalSolver();
+        if (localSolver == null) {
+            return null;
+        }
+        SmartSolverPdb newSolver = new SmartSolverPdb(localSolver,
+                new ReferenceAdapter(accumulator));
+        newSolver.messageSwitch(offSwitch);
+        newSolver.timeoutSwitch(offSwitch);
+        newSolver.versionSwitch(onSwitch);
+        return newSolver;
+    }
+
+    // sleep in proportion to the given busy time to keep within the cpu share
+    private void throttle(long busyNanos) throws InterruptedException {
+        if (cpuShare >= 100) {
+            return;
+        }
+        long sleepMillis = busyNanos * (100 - cpuShare) / cpuShare / 1000000;
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package mwong.myprojects.fifteenpuzzle.solver.ai;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
 import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+import mwong.myprojects.fifteenpuzzle.solver.components.MoveSequence;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
@@ -12,34 +13,26 @@ import java.util.Arrays;
  * ReferenceMoves is the data type that stored number of moves or temporary estimate
  * and partial solution associated with ReferenceBoard object for reference collection.
  *
- * <p>Dependencies : Board.java, Direction.java, ReferenceConstants.java, SmartSolverPdb.java
+ * <p>Dependencies : Board.java, Direction.java, MoveSequence.java, ReferenceConstants.java,
+ *                   SmartSolverPdb.java
  *
  * @author Meisze Wong
  *         www.linkedin.com/pub/macy-wong/46/550/37b/
  */
 public class ReferenceMoves implements Serializable {
     private static final long serialVersionUID = 17195273121L;
-    private final byte[] statusBit;
-    private final byte statusCompleted;
-    private final int numPartialMoves;
-    private final boolean symmetry;
+    private static final byte[] statusBit = ReferenceConstants.getStatusBit();
+    private static final byte statusCompleted = ReferenceConstants.getStatusCompleted();
+    private static final int numPartialMoves = ReferenceConstants.getNumPartialMoves();
+    private static final boolean symmetry = ReferenceConstants.isSymmetry();
 
     byte[] moves;
     short[] initMoves;
     byte status;
 
-    // load all constants.
-    private ReferenceMoves() {
-        statusBit = ReferenceConstants.getStatusBit();
-        statusCompleted = ReferenceConstants.getStatusCompleted();
-        numPartialMoves = ReferenceConstants.getNumPartialMoves();
-        symmetry = ReferenceConstants.isSymmetry();
-    }
-
     // initializes ReferenceMoves object with given zero position with given
     // unverified estimate and no partial solution
     ReferenceMoves(byte zeroPos, byte steps) {
-        this();
         moves = new byte[4];
         initMoves = new short[4];
         status = 0;
@@ -61,7 +54,6 @@ public class ReferenceMoves implements Serializable {
 
     // initializes ReferenceMoves object with stored variables
     ReferenceMoves(byte[] moves, short[] initMoves, byte status) {
-        this();
         this.moves = new byte[4];
         System.arraycopy(moves, 0, this.moves, 0, 4);
         this.initMoves = new short[4];
@@ -69,6 +61,41 @@ public class ReferenceMoves implements Serializable {
         this.status = status;
     }
 
+    // use by ReferenceStore, initializes ReferenceMoves object with the packed
+    // moves and status value, and the packed partial solutions value
+    ReferenceMoves(long packedMoves, long packedInitMoves) {
+        moves = new byte[4];
+        initMoves = new short[4];
+        for (int lookup = 0; lookup < 4; lookup++) {
+            moves[lookup] = (byte) (packedMoves >>> (lookup * 8));
+            initMoves[lookup] = (short) (packedInitMoves >>> (lookup * 16));
+        }
+        status = (byte) (packedMoves >>> 32);
+    }
+
+    // returns the moves of all lookup keys and the status packed into a long value
+    long packMoves() {
+        return packMoves(moves, status);
+    }
+
+    // returns the moves of all lookup keys and the given status packed into a long value
+    static long packMoves(byte[] moves, byte status) {
+        long value = (status & 0xFFL) << 32;
+        for (int lookup = 0; lookup < 4; lookup++) {
+            value |= (moves[lookup] & 0xFFL) << (lookup * 8);
+        }
+        return value;
+    }
+
+    // returns the partial solutions of all lookup keys packed into a long value
+    long packInitMoves() {
+        long value = 0;
+        for (int lookup = 0; lookup < 4; lookup++) {
+            value |= (initMoves[lookup] & 0xFFFFL) << (lookup * 16);
+        }
+        return value;
+    }
+
     // while ReferenceMoves object already exists, update unverified moves and
     // partial solutions only with given values.
     void updateMoves(byte[] steps, short[] initMoves, byte status2) {
@@ -83,6 +110,29 @@ public class ReferenceMoves implements Serializable {
         }
     }
 
+    // returns true if no lookup key other than the corner position (lookup key 0) has
+    // been verified, the other lookup keys carry the temporary estimates only
+    boolean isCornerOnly() {
+        return (status & ~statusBit[0]) == 0;
+    }
+
+    // merge the moves of the corner position of the symmetry reference board, a verified
+    // value always wins; the partial solution is dropped if the moves change, the one of
+    // the symmetry reference board is in symmetry directions
+    void mergeCorner(ReferenceMoves symMoves) {
+        if ((status & statusBit[0]) != 0) {
+            return;
+        }
+        boolean symVerified = (symMoves.status & statusBit[0]) != 0;
+        if (symVerified || moves[0] < symMoves.moves[0]) {
+            if (moves[0] != symMoves.moves[0]) {
+                moves[0] = symMoves.moves[0];
+                initMoves[0] = 0;
+            }
+            status |= symMoves.status & statusBit[0];
+        }
+    }
+
     // update moves and partial solution at the given lookup key
     void updateSolution(byte lookup, byte steps, Direction[] solution, boolean symmetry) {
         status |= statusBit[lookup];
@@ -109,24 +159,68 @@ public class ReferenceMoves implements Serializable {
         status = statusCompleted;
     }
 
+    // verify the given lookup key of the reference board with the given SmartSolverPdb
+    // object, update the moves, partial solution and status bit of the lookup key
+    void updateSolution(ReferenceBoard advBoard, int lookup, SmartSolverPdb solver)
+            throws RemoteException {
+        assert solver != null : "SmartSolverPD is null";
+        byte group = advBoard.group;
+        byte[] blocks = advBoard.getTiles();
+        for (int i = 0; i < lookup; i++) {
+            shiftOne(blocks, group, i);
+        }
+        solver.findOptimalPath(new Board(blocks), moves[lookup]);
+        assert solver.solution() != null : "No solution from updateSolution function";
+        moves[lookup] = solver.moves();
+        initMoves[lookup] = initialMoves2value(solver.solution(), !symmetry);
+        status |= statusBit[lookup];
+    }
+
+    // returns the first lookup key has not been verified, or -1 if completed
+    int nextPendingLookup() {
+        for (int lookup = 0; lookup < 4; lookup++) {
+            if ((status & statusBit[lookup]) == 0) {
+                return lookup;
+            }
+        }
+        return -1;
+    }
+
+    // returns the number of lookup keys have not been verified
+    int countPendingLookups() {
+        int count = 0;
+        for (int lookup = 0; lookup < 4; lookup++) {
+            if ((status & statusBit[lookup]) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     // convert the first 8 directions from the given array into short value
     private short initialMoves2value(Direction[] dir, boolean isSymmetry) {
-        short value = 0;
-        for (int i = numPartialMoves; i > 1; i--) {
-            if (isSymmetry) {
-                value |= dir[i].symmetryDirection().getValue();
-            } else {
-                value |= dir[i].getValue();
-            }
-            value <<= 2;
+        MoveSequence partialMoves = MoveSequence.fromSolution(dir, numPartialMoves);
+        if (isSymmetry) {
+            partialMoves = partialMoves.symmetry();
         }
+        return (short) partialMoves.getPacked()[0];
+    }
 
+    /**
+     * Returns the MoveSequence of the given lookup key.  Restore the solution key
+     * for the first 8 moves in MoveSequence.
+     *
+     * @param lookup the give lookup key of the reference board
+     * @param isSymmetry the type of restored directions
+     * @return the MoveSequence of the given lookup key
+     */
+    public MoveSequence getInitialSequence(int lookup, boolean isSymmetry) {
+        MoveSequence partialMoves = new MoveSequence(new long[] {initMoves[lookup] & 0xFFFFL},
+                numPartialMoves);
         if (isSymmetry) {
-            value |= dir[1].symmetryDirection().getValue();
-        } else {
-            value |= dir[1].getValue();
+            return partialMoves.symmetry();
         }
-        return value;
+        return partialMoves;
     }
 
     /**
@@ -138,20 +232,7 @@ public class ReferenceMoves implements Serializable {
      * @return the Direction arrays of the given lookup key
      */
     public Direction[] getInitialMoves(int lookup, boolean isSymmetry) {
-        short value = initMoves[lookup];
-        Direction[] movesDir = new Direction[numPartialMoves];
-        for (int i = 0; i < numPartialMoves; i++) {
-            int dir = value & 0x03;
-            movesDir[i] = Direction.values()[dir];
-            value >>>= 2;
-        }
-
-        if (isSymmetry) {
-            for (int i = 0; i < numPartialMoves; i++) {
-                movesDir[i] = movesDir[i].symmetryDirection();
-            }
-        }
-        return movesDir;
+        return getInitialSequence(lookup, isSymmetry).toArray();
     }
 
     /**
@@ -0,0 +1,127 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+
+import java.io.Serializable;
+
+/**
+ * ReferencePartition is the data type of the hash partition of the reference collection
+ * across several reference servers.  Each reference board belongs to one shard chosen by
+ * its packed key.  A board may be found as its reference board or its symmetry reference
+ * board, which may belong to another shard, so a lookup may visit up to two shards.
+ *
+ * <p>Dependencies : Board.java, ReferenceBoard.java, ReferenceConstants.java,
+ *                   ReferenceStore.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferencePartition implements Serializable {
+    private static final long serialVersionUID = 17195273121L;
+    private static final ReferencePartition WHOLE = new ReferencePartition(0, 1);
+
+    private final int index;
+    private final int count;
+
+    /**
+     * Initializes a ReferencePartition object of the given shard index and number
+     * of shards.
+     *
+     * @param index the given shard index, start from 0
+     * @param count the given number of shards
+     */
+    public ReferencePartition(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Returns the ReferencePartition object of the whole collection in one server.
+     *
+     * @return ReferencePartition object of the whole collection
+     */
+    public static ReferencePartition whole() {
+        return WHOLE;
+    }
+
+    /**
+     * Returns the shard index of this partition.
+     *
+     * @return integer of the shard index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return integer of the number of shards
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the boolean represents it is the whole collection in one server.
+     *
+     * @return boolean represents it is the whole collection
+     */
+    public boolean isWhole() {
+        return count == 1;
+    }
+
+    /**
+     * Returns the boolean represents the given reference board belongs to this shard.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return boolean represents the given reference board belongs to this shard
+     */
+    public boolean owns(ReferenceBoard advBoard) {
+        return count == 1 || shardOf(advBoard, count) == index;
+    }
+
+    /**
+     * Returns the shard indexes of the given board in the given number of shards, in the
+     * order of lookup: the shard of its reference board, then the shard of its symmetry
+     * reference board if it is different.
+     *
+     * @param board the given Board object
+     * @param count the given number of shards
+     * @return integer array of the shard indexes of the given board
+     */
+    public static int[] shardsOf(Board board, int count) {
+        int shard = shardOf(new ReferenceBoard(board), count);
+        int group = ReferenceConstants.getReferenceGroup(board.getZero1d());
+        if (group == 0 || group == 2) {
+            int shardSym = shardOf(new ReferenceBoard(new Board(board.getTilesSym())), count);
+            if (shardSym != shard) {
+                return new int[] {shard, shardSym};
+            }
+        }
+        return new int[] {shard};
+    }
+
+    /**
+     * Returns the shard index of the given reference board in the given number of shards.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @param count the given number of shards
+     * @return integer of the shard index of the given reference board
+     */
+    public static int shardOf(ReferenceBoard advBoard, int count) {
+        if (count == 1) {
+            return 0;
+        }
+        long mixed = ReferenceStore.mix(advBoard.packedKey());
+        return (int) ((mixed >>> 1) % count);
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + index + " of " + count;
+    }
+}
@@ -49,6 +49,21 @@ public class ReferenceProperties {
     };
     //ReferenceAccumulator
     private static int cutoffBuffer;
+    //ReferenceVerifier
+    private static int verifyCpuShare;
+    private static int verifyQueueSize;
+    //ReferenceReplica
+    private static int syncInterval;
+    private static int uploadQueueSize;
+    //ReferenceAccumulator replication
+    private static int mergeInterval;
+    private static String[] mergeSources;
+    //ReferenceSharedStore
+    private static boolean sharedStore;
+    //ReferenceUsage
+    private static int capacity;
+    //ReferenceMiner
+    private static int mineCpuShare;
 
     static {
         cutoffBuffer = 5;
@@ -68,6 +83,158 @@ public class ReferenceProperties {
                         + " restore to system default 5 (95%).");
             }
         }
+
+        verifyCpuShare = 50;
+        if (PropertiesCache.getInstance().containsKey("referenceVerifyCpuShare")) {
+            try {
+                int share = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceVerifyCpuShare"));
+                if (share >= 10 && share <= 100) {
+                    verifyCpuShare = share;
+                } else {
+                    System.err.println("Invalid reference verify cpu share setting " + share
+                            + ", allow minimum 10 to maximum 100 (percent) only."
+                            + " Restore to system default 50.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference verify cpu share is not an iteger,"
+                        + " restore to system default 50.");
+            }
+        }
+
+        verifyQueueSize = 256;
+        if (PropertiesCache.getInstance().containsKey("referenceVerifyQueueSize")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceVerifyQueueSize"));
+                if (size >= 16 && size <= 4096) {
+                    verifyQueueSize = size;
+                } else {
+                    System.err.println("Invalid reference verify queue size setting " + size
+                            + ", allow minimum 16 to maximum 4096 only."
+                            + " Restore to system default 256.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference verify queue size is not an iteger,"
+                        + " restore to system default 256.");
+            }
+        }
+
+        syncInterval = 30;
+        if (PropertiesCache.getInstance().containsKey("referenceSyncInterval")) {
+            try {
+                int interval = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceSyncInterval"));
+                if (interval >= 5 && interval <= 600) {
+                    syncInterval = interval;
+                } else {
+                    System.err.println("Invalid reference sync interval setting " + interval
+                            + ", allow minimum 5 to maximum 600 (seconds) only."
+                            + " Restore to system default 30.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference sync interval is not an iteger,"
+                        + " restore to system default 30.");
+            }
+        }
+
+        uploadQueueSize = 64;
+        if (PropertiesCache.getInstance().containsKey("referenceUploadQueueSize")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceUploadQueueSize"));
+                if (size >= 8 && size <= 1024) {
+                    uploadQueueSize = size;
+                } else {
+                    System.err.println("Invalid reference upload queue size setting " + size
+                            + ", allow minimum 8 to maximum 1024 only."
+                            + " Restore to system default 64.");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference upload queue size is not an iteger,"
+                        + " restore to system default 64.");
+            }
+        }
+
+        mergeInterval = 0;
+        if (PropertiesCache.getInstance().containsKey("referenceMergeInterval")) {
+            try {
+                int interval = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceMergeInterval"));
+                if (interval >= 0 && interval <= 1440) {
+                    mergeInterval = interval;
+                } else {
+                    System.err.println("Invalid reference merge interval setting " + interval
+                            + ", allow minimum 0 (off) to maximum 1440 (minutes) only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference merge interval is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
+
+        mergeSources = new String[0];
+        if (PropertiesCache.getInstance().containsKey("referenceMergeSources")) {
+            String sources = PropertiesCache.getInstance().getProperty("referenceMergeSources");
+            if (sources.trim().length() > 0) {
+                mergeSources = sources.trim().split("\\s*,\\s*");
+            }
+        }
+
+        sharedStore = false;
+        if (PropertiesCache.getInstance().containsKey("referenceSharedStore")) {
+            try {
+                int shared = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceSharedStore"));
+                if (shared == 0 || shared == 1) {
+                    sharedStore = (shared == 1);
+                } else {
+                    System.err.println("Invalid reference shared store setting " + shared
+                            + ", allow 0 (off) or 1 (on) only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference shared store is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
+
+        capacity = 0;
+        if (PropertiesCache.getInstance().containsKey("referenceCapacity")) {
+            try {
+                int size = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceCapacity"));
+                if (size == 0 || (size >= 100 && size <= 100000)) {
+                    capacity = size;
+                } else {
+                    System.err.println("Invalid reference capacity setting " + size
+                            + ", allow 0 (unlimited) or minimum 100 to maximum 100000 only."
+                            + " Restore to system default 0 (unlimited).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference capacity is not an iteger,"
+                        + " restore to system default 0 (unlimited).");
+            }
+        }
+
+        mineCpuShare = 0;
+        if (PropertiesCache.getInstance().containsKey("referenceMineCpuShare")) {
+            try {
+                int share = Integer.parseInt(PropertiesCache.getInstance().getProperty(
+                        "referenceMineCpuShare"));
+                if (share == 0 || (share >= 10 && share <= 100)) {
+                    mineCpuShare = share;
+                } else {
+                    System.err.println("Invalid reference mine cpu share setting " + share
+                            + ", allow 0 (off) or minimum 10 to maximum 100 (percent) only."
+                            + " Restore to system default 0 (off).");
+                }
+            } catch (NumberFormatException ex) {
+                System.err.println("Configuration reference mine cpu share is not an iteger,"
+                        + " restore to system default 0 (off).");
+            }
+        }
     }
 
     /**
@@ -88,6 +255,95 @@ public class ReferenceProperties {
         return cutoffBuffer;
     }
 
+    /**
+     * Returns the integer value of the percentage of cpu time of the background
+     * verification (default 50%).
+     *
+     * @return integer value of the percentage of cpu time of the background verification
+     */
+    public static final int getVerifyCpuShare() {
+        return verifyCpuShare;
+    }
+
+    /**
+     * Returns the integer value of the maximum number of boards waiting for the
+     * background verification (default 256).
+     *
+     * @return integer value of the maximum number of boards waiting for verification
+     */
+    public static final int getVerifyQueueSize() {
+        return verifyQueueSize;
+    }
+
+    /**
+     * Returns the integer value of the seconds between each synchronization of the
+     * local replica with the server (default 30 seconds).
+     *
+     * @return integer value of the seconds between each synchronization
+     */
+    public static final int getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * Returns the integer value of the maximum number of boards waiting for upload
+     * while the server is not reachable (default 64).
+     *
+     * @return integer value of the maximum number of boards waiting for upload
+     */
+    public static final int getUploadQueueSize() {
+        return uploadQueueSize;
+    }
+
+    /**
+     * Returns the integer value of the minutes between each merge of the reference
+     * collection files of other nodes (default 0, off).
+     *
+     * @return integer value of the minutes between each merge
+     */
+    public static final int getMergeInterval() {
+        return mergeInterval;
+    }
+
+    /**
+     * Returns the file paths of the reference collection files of other nodes to merge.
+     *
+     * @return String array of the file paths to merge
+     */
+    public static final String[] getMergeSources() {
+        return mergeSources.clone();
+    }
+
+    /**
+     * Returns the boolean represents the processes on the same host share one
+     * memory-mapped reference collection (default off).
+     *
+     * @return boolean represents the processes share one reference collection
+     */
+    public static final boolean isSharedStore() {
+        return sharedStore;
+    }
+
+    /**
+     * Returns the integer value of the maximum number of reference boards in the
+     * collection, the boards of least benefit will be evicted (default 0, unlimited).
+     *
+     * @return integer value of the maximum number of reference boards
+     */
+    public static final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the integer value of the percentage of cpu time of the background search
+     * of new hard boards during idle time (default 0, off).
+     *
+     * @return integer value of the percentage of cpu time of the background search
+     */
+    public static final int getMineCpuShare() {
+        return mineCpuShare;
+    }
+
     /**
      * Returns the arrays of selected default reference boards.
      *
@@ -1,5 +1,6 @@
 package mwong.myprojects.fifteenpuzzle.solver.ai;
 
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
 import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
 import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
 import mwong.myprojects.fifteenpuzzle.solver.components.Board;
@@ -7,7 +8,6 @@ import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.util.HashMap;
 
 /**
  * ReferenceRemote is the remote interface of stored board of reference collection.
@@ -20,11 +20,59 @@ import java.util.HashMap;
  */
 public interface ReferenceRemote extends Remote {
     /**
-     * Returns a HashMap of collection of reference boards.
+     * Returns a ReferenceStore of collection of reference boards.
      *
-     * @return HashMap of collection of reference boards
+     * @return ReferenceStore of collection of reference boards
      */
-    HashMap<ReferenceBoard, ReferenceMoves> getActiveMap() throws RemoteException;
+    ReferenceStore getActiveMap() throws RemoteException;
+
+    /**
+     * Returns the version of the collection of reference boards, it increase on
+     * every update.
+     *
+     * @return long value of the version of the collection
+     */
+    long getVersion() throws RemoteException;
+
+    /**
+     * Returns the changes of the collection since the given version.  If the changes
+     * are no longer available, it carries the full collection instead.
+     *
+     * @param sinceVersion the version of the collection held by the caller
+     * @return ReferenceDelta object of the changes since the given version
+     */
+    ReferenceDelta getChanges(long sinceVersion) throws RemoteException;
+
+    /**
+     * Returns the AdvancedRecord object if the given board is one of the reference
+     * board, it carries the reference estimate and partial solutions if exists.
+     * Otherwise return null.
+     *
+     * @param board the given board object
+     * @return AdvancedRecord object if the given board is one of the reference board
+     */
+    AdvancedRecord lookupExact(Board board) throws RemoteException;
+
+    /**
+     * Returns the best estimate of the given board from the collection of reference
+     * boards, or the given estimate if no better one.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given board
+     * @return byte value of the best estimate of the given board
+     */
+    byte advancedEstimate(Board board, byte estimate) throws RemoteException;
+
+    /**
+     * Record the usage of the reference boards of the given packed keys served by a
+     * replica: the number of hits and the total moves of estimates raised of each.
+     *
+     * @param keys the given packed keys of the reference boards
+     * @param hits the given number of hits of each reference board
+     * @param uplifts the given total moves of estimates raised of each reference board
+     * @throws RemoteException throw exception when connection lost
+     */
+    void recordUsage(long[] keys, int[] hits, long[] uplifts) throws RemoteException;
 
     /**
      * Returns an integer of cutoff setting.
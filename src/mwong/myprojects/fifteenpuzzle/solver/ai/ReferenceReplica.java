@@ -0,0 +1,569 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
+import mwong.myprojects.fifteenpuzzle.solver.FileProperties;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolverExtra;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReferenceReplica implements ReferenceRemote interface.  It is a client side copy of
+ * the reference collection of the server.  All lookups are served from the local copy,
+ * so the solvers never wait for the network.  A background thread pulls the changes
+ * from the server by version, and saves the local copy to file, so the next start up
+ * can warm from file even the server is not reachable.  The learned boards are sent
+ * to the server, or queued while the server is not reachable and sent on reconnect.
+ * The hits of the reference boards are counted and sent to the server with each
+ * synchronization, so its eviction knows the usage of the replicas.
+ *
+ * <p>Dependencies : AdvancedRecord.java, Board.java, Direction.java, FileProperties.java,
+ *                   ReferenceDelta.java, ReferenceFactory.java, ReferenceProperties.java,
+ *                   ReferenceRemote.java, ReferenceStore.java, SmartSolver.java,
+ *                   SmartSolverExtra.java, SmartSolverPdb.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceReplica implements ReferenceRemote {
+    private final String directory;
+    private final String filepath;
+    private final int uploadQueueSize;
+    private final ArrayDeque<Upload> uploads;
+    // the number of hits and the moves of estimates raised of each reference board
+    // since the last synchronization
+    private final HashMap<Long, long[]> pendingUsage = new HashMap<Long, long[]>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadLocal<SmartSolverExtra> localExtra = new ThreadLocal<SmartSolverExtra>() {
+        @Override
+        protected SmartSolverExtra initialValue() {
+            return new SmartSolverExtra();
+        }
+    };
+
+    private volatile ReferenceStore replica;
+    private volatile ReferenceRemote server;
+    private volatile int cutoffSetting;
+    private volatile double cutoffLimit;
+    private long savedVersion;
+
+    // learned board waiting for upload, solution is null for last search board
+    private static class Upload {
+        private final Board board;
+        private final byte steps;
+        private final Direction[] solution;
+
+        Upload(Board board, byte steps, Direction[] solution) {
+            this.board = board;
+            this.steps = steps;
+            this.solution = solution;
+        }
+    }
+
+    /**
+     * Initializes ReferenceReplica object.  It warms from the local file, then
+     * connects to the server and start the background synchronization.
+     *
+     * @throws IOException if the server is not reachable and no local file exists
+     */
+    public ReferenceReplica() throws IOException {
+        directory = FileProperties.getDirectory();
+        filepath = FileProperties.getFilepathReplica();
+        uploadQueueSize = ReferenceProperties.getUploadQueueSize();
+        uploads = new ArrayDeque<Upload>();
+        cutoffSetting = ReferenceProperties.getDefaultCutoffLimit();
+        cutoffLimit = cutoffSetting * ((100 - ReferenceProperties.getCutoffBuffer()) / 100.0);
+        savedVersion = -1;
+
+        loadFile();
+        synchronize();
+        if (replica == null) {
+            throw new IOException("Reference server not reachable and no local replica.");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "ReferenceReplica");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        int interval = ReferenceProperties.getSyncInterval();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                synchronize();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the boolean represents the server is reachable at last synchronization.
+     *
+     * @return boolean represents the server is reachable
+     */
+    public boolean isConnected() {
+        return server != null;
+    }
+
+    /**
+     * Stop the background synchronization, the queued boards will not be sent.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // load the local copy of the reference collection from file
+    private void loadFile() {
+        if (!(new File(filepath)).exists()) {
+            return;
+        }
+        try (FileInputStream fin = new FileInputStream(filepath);
+                ObjectInputStream in = new ObjectInputStream(fin)) {
+            cutoffSetting = in.readInt();
+            cutoffLimit = in.readDouble();
+            replica = (ReferenceStore) in.readObject();
+            savedVersion = replica.getVersion();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            System.err.println("System error : unable to load local replica, wait for server.");
+            replica = null;
+        }
+    }
+
+    // save the local copy of the reference collection to file if it has been changed,
+    // write to a temp file first, so a failure never leaves a broken copy
+    private void saveFile(ReferenceStore current) {
+        if (current.getVersion() == savedVersion) {
+            return;
+        }
+        if (!(new File(directory)).exists()) {
+            (new File(directory)).mkdir();
+        }
+        String tempFile = filepath + "temp";
+        try (FileOutputStream fout = new FileOutputStream(tempFile);
+                ObjectOutputStream out = new ObjectOutputStream(fout)) {
+            out.writeInt(cutoffSetting);
+            out.writeDouble(cutoffLimit);
+            out.writeObject(current);
+        } catch (IOException ex) {
+            System.err.println("System error : unable to save local replica.");
+            return;
+        }
+        (new File(filepath)).delete();
+        if ((new File(tempFile)).renameTo(new File(filepath))) {
+            savedVersion = current.getVersion();
+        }
+    }
+
+    // connect to the server, returns null if not reachable
+    private ReferenceRemote connect() {
+        try {
+            ReferenceRemote connection = (new ReferenceFactory()).getReferenceServer();
+            cutoffSetting = connection.getCutoffSetting();
+            cutoffLimit = connection.getCutoffLimit();
+            return connection;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    // send the queued boards, pull the changes from the server and save the local copy;
+    // mark the server not reachable if the connection lost
+    synchronized void synchronize() {
+        ReferenceRemote connection = server;
+        if (connection == null) {
+            connection = connect();
+            if (connection == null) {
+                return;
+            }
+        }
+
+        try {
+            flushUploads(connection);
+            flushUsage(connection);
+            ReferenceStore current = replica;
+            ReferenceDelta delta;
+            if (current == null) {
+                delta = connection.getChanges(-1);
+            } else {
+                delta = connection.getChanges(current.getVersion());
+            }
+            try {
+                current = delta.applyTo(current);
+            } catch (IllegalArgumentException ex) {
+                current = connection.getChanges(-1).applyTo(null);
+            }
+            replica = current;
+            server = connection;
+            saveFile(current);
+        } catch (RemoteException | RuntimeException ex) {
+            server = null;
+        }
+    }
+
+    // send all queued boards to the server, keep the rest if the connection lost
+    private void flushUploads(ReferenceRemote connection) throws RemoteException {
+        while (true) {
+            Upload upload;
+            synchronized (uploads) {
+                upload = uploads.peekFirst();
+            }
+            if (upload == null) {
+                return;
+            }
+            if (upload.solution == null) {
+                connection.updateLastSearch(upload.board);
+            } else {
+                connection.addBoard(upload.board, upload.steps, upload.solution);
+            }
+            // a full queue may have dropped the sent board meanwhile, only remove it if
+            // it is still the head
+            synchronized (uploads) {
+                if (uploads.peekFirst() == upload) {
+                    uploads.pollFirst();
+                }
+            }
+        }
+    }
+
+    // send the usage of the reference boards since the last synchronization, keep them
+    // for the next one if the connection lost
+    private void flushUsage(ReferenceRemote connection) throws RemoteException {
+        long[] keys;
+        int[] hits;
+        long[] uplifts;
+        synchronized (pendingUsage) {
+            if (pendingUsage.isEmpty()) {
+                return;
+            }
+            keys = new long[pendingUsage.size()];
+            hits = new int[keys.length];
+            uplifts = new long[keys.length];
+            int idx = 0;
+            for (Map.Entry<Long, long[]> entry : pendingUsage.entrySet()) {
+                keys[idx] = entry.getKey();
+                hits[idx] = (int) Math.min(Integer.MAX_VALUE, entry.getValue()[0]);
+                uplifts[idx++] = entry.getValue()[1];
+            }
+            pendingUsage.clear();
+        }
+        try {
+            connection.recordUsage(keys, hits, uplifts);
+        } catch (RemoteException ex) {
+            recordUsage(keys, hits, uplifts);
+            throw ex;
+        }
+    }
+
+    // add the given number of hits and moves of estimates raised of the reference board
+    // of the given packed key to the usage since the last synchronization
+    private void addUsage(long key, long hits, long uplift) {
+        if (key == 0) {
+            return;
+        }
+        synchronized (pendingUsage) {
+            long[] counts = pendingUsage.get(key);
+            if (counts == null) {
+                counts = new long[2];
+                pendingUsage.put(key, counts);
+            }
+            counts[0] += hits;
+            counts[1] += uplift;
+        }
+    }
+
+    // queue the given board for upload, drop the oldest one if the queue is full
+    private void queueUpload(Upload upload) {
+        synchronized (uploads) {
+            if (uploads.size() >= uploadQueueSize) {
+                uploads.pollFirst();
+            }
+            uploads.addLast(upload);
+        }
+    }
+
+    // send the given board to the server, or queue it if the server is not reachable
+    private boolean upload(Upload upload) {
+        ReferenceRemote connection = server;
+        if (connection != null) {
+            try {
+                if (upload.solution == null) {
+                    return connection.updateLastSearch(upload.board);
+                }
+                return connection.addBoard(upload.board, upload.steps, upload.solution);
+            } catch (RemoteException ex) {
+                server = null;
+            }
+        }
+        queueUpload(upload);
+        return false;
+    }
+
+    // returns the Upload object of the last search of the given solver if it takes
+    // over the cutoff limit, otherwise return null
+    private Upload learnedBoard(SmartSolver inSolver) {
+        if (!(inSolver instanceof SmartSolverPdb) || inSolver.isSearchTimeout()
+                || inSolver.searchTime() < cutoffLimit) {
+            return null;
+        }
+        try {
+            Board board = ((SmartSolverPdb) inSolver).lastSearchBoard();
+            if (board == null) {
+                return null;
+            }
+            return new Upload(board, inSolver.moves(), inSolver.solution().clone());
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of boards waiting for upload.
+     *
+     * @return integer of the number of boards waiting for upload
+     */
+    public int countPendingUploads() {
+        synchronized (uploads) {
+            return uploads.size();
+        }
+    }
+
+    /**
+     * Returns null, the replica does not hold a solver.
+     *
+     * @return null
+     */
+    public SmartSolverPdb getSolver() {
+        return null;
+    }
+
+    /**
+     * Returns a ReferenceStore of the local copy of the reference collection.
+     *
+     * @return ReferenceStore of collection of reference boards
+     */
+    public ReferenceStore getActiveMap() {
+        return replica;
+    }
+
+    /**
+     * Returns the version of the local copy of the reference collection.
+     *
+     * @return long value of the version of the collection
+     */
+    public long getVersion() {
+        return replica.getVersion();
+    }
+
+    /**
+     * Returns the changes of the local copy since the given version, always
+     * carries the full local copy.
+     *
+     * @param sinceVersion the version of the collection held by the caller
+     * @return ReferenceDelta object of the full local copy
+     */
+    public ReferenceDelta getChanges(long sinceVersion) {
+        return new ReferenceDelta(replica);
+    }
+
+    /**
+     * Returns the AdvancedRecord object if the given board is one of the reference
+     * board.  Otherwise return null.
+     *
+     * @param board the given board object
+     * @return AdvancedRecord object if the given board is one of the reference board
+     */
+    public AdvancedRecord lookupExact(Board board) {
+        SmartSolverExtra extra = localExtra.get();
+        AdvancedRecord record = extra.advancedContains(board, true, replica);
+        if (record != null) {
+            addUsage(extra.lastReferenceKey(), 1, 0);
+        }
+        return record;
+    }
+
+    /**
+     * Returns the best estimate of the given board from the collection of reference
+     * boards, or the given estimate if no better one.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given board
+     * @return byte value of the best estimate of the given board
+     */
+    public byte advancedEstimate(Board board, byte estimate) {
+        try {
+            SmartSolverExtra extra = localExtra.get();
+            byte result = extra.advancedEstimate(board, estimate, replica);
+            if (result > estimate) {
+                addUsage(extra.lastReferenceKey(), 1, result - estimate);
+            }
+            return result;
+        } catch (RemoteException ex) {
+            return estimate;
+        }
+    }
+
+    /**
+     * Add the usage of the reference boards of the given packed keys to the usage
+     * sent to the server with the next synchronization.
+     *
+     * @param keys the given packed keys of the reference boards
+     * @param hits the given number of hits of each reference board
+     * @param uplifts the given total moves of estimates raised of each reference board
+     */
+    public void recordUsage(long[] keys, int[] hits, long[] uplifts) {
+        for (int i = 0; i < keys.length; i++) {
+            addUsage(keys[i], hits[i], uplifts[i]);
+        }
+    }
+
+    /**
+     * Returns an integer of cutoff setting of the server.
+     *
+     * @return integer of cutoff setting
+     */
+    public int getCutoffSetting() {
+        return cutoffSetting;
+    }
+
+    /**
+     * Returns a double of cutoff limit of the server.
+     *
+     * @return double of cutoff limit
+     */
+    public double getCutoffLimit() {
+        return cutoffLimit;
+    }
+
+    /**
+     * Ask the server to verify the pending reference boards, ignore if the server
+     * is not reachable.
+     */
+    public void updatePending() {
+        ReferenceRemote connection = server;
+        if (connection != null) {
+            try {
+                connection.updatePending();
+            } catch (RemoteException ex) {
+                server = null;
+            }
+        }
+    }
+
+    /**
+     * Ask the server to verify the pending reference boards, ignore if the server
+     * is not reachable.
+     *
+     * @param inSolver the SolverInterface object in use
+     */
+    public void updatePending(SmartSolver inSolver) {
+        updatePending();
+    }
+
+    /**
+     * If the given solver using pattern database 7-8, and it takes
+     * over the cutoff limit solve the puzzle with advanced estimate;
+     * send to the server or queue it for upload.
+     *
+     * @param inSolver the SolverInterface object in use
+     */
+    public boolean addBoard(SmartSolver inSolver) {
+        Upload upload = learnedBoard(inSolver);
+        if (upload == null) {
+            return false;
+        }
+        return upload(upload);
+    }
+
+    /**
+     * Send the given board and solution to the server or queue it for upload.
+     *
+     * @param board the given board object
+     * @param steps the byte value of number of moves
+     * @param solution the Direction array of moves
+     */
+    public boolean addBoard(Board board, byte steps, Direction[] solution) {
+        return upload(new Upload(board, steps, solution.clone()));
+    }
+
+    /**
+     * Send the given board and solution to the server or queue it for upload.
+     *
+     * @param board the given board object
+     * @param steps the byte value of number of moves
+     * @param solution the Direction array of moves
+     * @param inSolver the SolverInterface object in use
+     */
+    public boolean addBoard(Board board, byte steps, Direction[] solution, SmartSolver inSolver) {
+        return addBoard(board, steps, solution);
+    }
+
+    /**
+     * Send the last search board of the given solver to the server for verification,
+     * and the solution if it takes over the cutoff limit.
+     *
+     * @param inSolver the given SolverIntegerface
+     * @return boolean if the last search board has been sent to the server
+     */
+    public boolean updateLastSearch(SmartSolver inSolver) {
+        Upload upload = learnedBoard(inSolver);
+        if (upload != null) {
+            return upload(upload);
+        }
+        if (!(inSolver instanceof SmartSolverPdb)) {
+            return false;
+        }
+        try {
+            return updateLastSearch(((SmartSolverPdb) inSolver).lastSearchBoard());
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Send the given board to the server for verification.
+     *
+     * @param board the given Board object
+     * @return boolean if the board has been sent to the server
+     */
+    public boolean updateLastSearch(Board board) {
+        if (board == null) {
+            return false;
+        }
+        return upload(new Upload(board, (byte) 0, null));
+    }
+
+    /**
+     * Send the given board to the server for verification, and the solution if
+     * the given solver takes over the cutoff limit.
+     *
+     * @param board the given Board object
+     * @param inSolver the given SolverIntegerface
+     * @return boolean if the board has been sent to the server
+     */
+    public boolean updateLastSearch(Board board, SmartSolver inSolver) {
+        Upload upload = learnedBoard(inSolver);
+        if (upload != null && upload.board.equals(board)) {
+            return upload(upload);
+        }
+        return updateLastSearch(board);
+    }
+}
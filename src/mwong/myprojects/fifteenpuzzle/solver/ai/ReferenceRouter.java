@@ -0,0 +1,362 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.AdvancedRecord;
+import mwong.myprojects.fifteenpuzzle.solver.SmartSolver;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.Direction;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+
+/**
+ * ReferenceRouter implements ReferenceRemote interface.  It is the client side router of
+ * a sharded reference collection, each shard is served by a separate reference server.
+ * The lookups and updates of a board are sent to the shard of its reference board (or
+ * its symmetry reference board), the estimates are the best of all shards.  It keeps
+ * a copy of each shard by version to provide the full collection and its changes.
+ *
+ * <p>Dependencies : AdvancedRecord.java, Board.java, Direction.java, ReferenceBoard.java,
+ *                   ReferenceDelta.java, ReferencePartition.java, ReferenceRemote.java,
+ *                   ReferenceStore.java, SmartSolver.java, SmartSolverPdb.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceRouter implements ReferenceRemote {
+    private final ReferenceRemote[] shards;
+    private final ReferenceStore[] shardMaps;
+    private ReferenceStore merged;
+
+    /**
+     * Initializes ReferenceRouter object with the given connections of the shards,
+     * in the order of shard index.
+     *
+     * @param shards the given ReferenceRemote connections of the shards
+     */
+    public ReferenceRouter(ReferenceRemote[] shards) {
+        if (shards == null || shards.length == 0) {
+            throw new IllegalArgumentException("No reference shard");
+        }
+        this.shards = shards.clone();
+        shardMaps = new ReferenceStore[shards.length];
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return integer of the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // returns the shard to update the given board, the shard holds its symmetry
+    // reference board if exists, otherwise the shard of its reference board
+    private ReferenceRemote writeShard(Board board) throws RemoteException {
+        int[] shardIndexes = ReferencePartition.shardsOf(board, shards.length);
+        if (shardIndexes.length > 1
+                && shards[shardIndexes[0]].lookupExact(board) == null
+                && shards[shardIndexes[1]].lookupExact(board) != null) {
+            return shards[shardIndexes[1]];
+        }
+        return shards[shardIndexes[0]];
+    }
+
+    // returns the sum of the versions of the shard copies
+    private long sumVersion() {
+        long version = 0;
+        for (ReferenceStore shardMap : shardMaps) {
+            version += shardMap.getVersion();
+        }
+        return version;
+    }
+
+    // pull the changes of each shard and update the shard copies, returns the changes
+    // of all shards, or null if any shard has been reloaded
+    private ReferenceDelta[] refresh() throws RemoteException {
+        ReferenceDelta[] deltas = new ReferenceDelta[shards.length];
+        boolean reload = false;
+        for (int i = 0; i < shards.length; i++) {
+            if (shardMaps[i] == null) {
+                deltas[i] = shards[i].getChanges(-1);
+            } else {
+                deltas[i] = shards[i].getChanges(shardMaps[i].getVersion());
+            }
+            try {
+                shardMaps[i] = deltas[i].applyTo(shardMaps[i]);
+            } catch (IllegalArgumentException ex) {
+                deltas[i] = shards[i].getChanges(-1);
+                shardMaps[i] = deltas[i].applyTo(null);
+            }
+            if (deltas[i].isFullReload()) {
+                reload = true;
+            }
+        }
+        if (reload) {
+            return null;
+        }
+        return deltas;
+    }
+
+    // merge all shard copies into a new ReferenceStore, version is the sum of the
+    // versions of the shards
+    private ReferenceStore mergeShards() {
+        int size = 0;
+        for (ReferenceStore shardMap : shardMaps) {
+            size += shardMap.size();
+        }
+        ReferenceStore result = new ReferenceStore(size);
+        for (ReferenceStore shardMap : shardMaps) {
+            for (int slot = 0; slot < shardMap.capacity(); slot++) {
+                if (shardMap.isOccupied(slot)) {
+                    result.put(shardMap.getBoard(slot), shardMap.getMoves(slot));
+                }
+            }
+        }
+        result.setVersion(sumVersion());
+        return result;
+    }
+
+    /**
+     * Returns null, the router does not hold a solver.
+     *
+     * @return null
+     */
+    public SmartSolverPdb getSolver() {
+        return null;
+    }
+
+    /**
+     * Returns a ReferenceStore of collection of reference boards of all shards.
+     *
+     * @return ReferenceStore of collection of reference boards
+     */
+    public synchronized ReferenceStore getActiveMap() throws RemoteException {
+        if (merged == null) {
+            getChanges(-1);
+        } else {
+            getChanges(merged.getVersion());
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the version of the collection of all shards, the sum of the versions
+     * of the shards.
+     *
+     * @return long value of the version of the collection
+     */
+    public long getVersion() throws RemoteException {
+        long version = 0;
+        for (ReferenceRemote shard : shards) {
+            version += shard.getVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Returns the changes of the collection of all shards since the given version.
+     * If the given version is not the last version pulled by the router, or any shard
+     * has been reloaded, it carries the full collection instead.
+     *
+     * @param sinceVersion the version of the collection held by the caller
+     * @return ReferenceDelta object of the changes since the given version
+     */
+    public synchronized ReferenceDelta getChanges(long sinceVersion) throws RemoteException {
+        boolean followed = merged != null && merged.getVersion() == sinceVersion;
+        ReferenceDelta[] deltas = refresh();
+        long version = sumVersion();
+        if (!followed || deltas == null) {
+            merged = mergeShards();
+            return new ReferenceDelta(merged);
+        }
+
+        int size = 0;
+        int countRemoved = 0;
+        for (ReferenceDelta delta : deltas) {
+            size += delta.getUpdated().size();
+            countRemoved += delta.getRemoved().length;
+        }
+        ReferenceStore updated = new ReferenceStore(size);
+        long[] removed = new long[countRemoved];
+        countRemoved = 0;
+        for (ReferenceDelta delta : deltas) {
+            ReferenceStore shardUpdated = delta.getUpdated();
+            for (int slot = 0; slot < shardUpdated.capacity(); slot++) {
+                if (shardUpdated.isOccupied(slot)) {
+                    updated.put(shardUpdated.getBoard(slot), shardUpdated.getMoves(slot));
+                }
+            }
+            long[] shardRemoved = delta.getRemoved();
+            System.arraycopy(shardRemoved, 0, removed, countRemoved, shardRemoved.length);
+            countRemoved += shardRemoved.length;
+        }
+        Arrays.sort(removed);
+
+        ReferenceDelta result = new ReferenceDelta(sinceVersion, version, updated, removed);
+        merged = result.applyTo(merged);
+        return result;
+    }
+
+    /**
+     * Returns the AdvancedRecord object if the given board is one of the reference
+     * board, look up the shard of its reference board then its symmetry reference
+     * board.  Otherwise return null.
+     *
+     * @param board the given board object
+     * @return AdvancedRecord object if the given board is one of the reference board
+     */
+    public AdvancedRecord lookupExact(Board board) throws RemoteException {
+        for (int shard : ReferencePartition.shardsOf(board, shards.length)) {
+            AdvancedRecord record = shards[shard].lookupExact(board);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the best estimate of the given board from all shards, or the given
+     * estimate if no better one.
+     *
+     * @param board the given board object
+     * @param estimate the current estimate of the given board
+     * @return byte value of the best estimate of the given board
+     */
+    public byte advancedEstimate(Board board, byte estimate) throws RemoteException {
+        for (ReferenceRemote shard : shards) {
+            estimate = shard.advancedEstimate(board, estimate);
+        }
+        return estimate;
+    }
+
+    /**
+     * Send the usage of the reference boards of the given packed keys to their shards:
+     * the number of hits and the total moves of estimates raised of each.
+     *
+     * @param keys the given packed keys of the reference boards
+     * @param hits the given number of hits of each reference board
+     * @param uplifts the given total moves of estimates raised of each reference board
+     */
+    public void recordUsage(long[] keys, int[] hits, long[] uplifts) throws RemoteException {
+        int[] shardOf = new int[keys.length];
+        int[] counts = new int[shards.length];
+        for (int i = 0; i < keys.length; i++) {
+            shardOf[i] = ReferencePartition.shardOf(new ReferenceBoard(keys[i]), shards.length);
+            counts[shardOf[i]]++;
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (counts[shard] == 0) {
+                continue;
+            }
+            long[] shardKeys = new long[counts[shard]];
+            int[] shardHits = new int[counts[shard]];
+            long[] shardUplifts = new long[counts[shard]];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (shardOf[i] == shard) {
+                    shardKeys[count] = keys[i];
+                    shardHits[count] = hits[i];
+                    shardUplifts[count++] = uplifts[i];
+                }
+            }
+            shards[shard].recordUsage(shardKeys, shardHits, shardUplifts);
+        }
+    }
+
+    /**
+     * Returns an integer of cutoff setting of the first shard.
+     *
+     * @return integer of cutoff setting
+     */
+    public int getCutoffSetting() throws RemoteException {
+        return shards[0].getCutoffSetting();
+    }
+
+    /**
+     * Returns a double of cutoff limit of the first shard.
+     *
+     * @return double of cutoff limit
+     */
+    public double getCutoffLimit() throws RemoteException {
+        return shards[0].getCutoffLimit();
+    }
+
+    /**
+     * Ask all shards to verify their pending reference boards.
+     */
+    public void updatePending() throws RemoteException {
+        for (ReferenceRemote shard : shards) {
+            shard.updatePending();
+        }
+    }
+
+    /**
+     * Ask all shards to verify their pending reference boards.
+     *
+     * @param inSolver the SolverInterface object in use
+     */
+    public void updatePending(SmartSolver inSolver) throws RemoteException {
+        updatePending();
+    }
+
+    @Override
+    public boolean addBoard(SmartSolver inSolver) throws RemoteException {
+        // should not be call by remote version
+        return false;
+    }
+
+    /**
+     * Send the given board and solution to its shard.
+     *
+     * @param board the given board object
+     * @param steps the byte value of number of moves
+     * @param solution the Direction array of moves
+     */
+    public boolean addBoard(Board board, byte steps, Direction[] solution)
+            throws RemoteException {
+        return writeShard(board).addBoard(board, steps, solution);
+    }
+
+    /**
+     * Send the given board and solution to its shard.
+     *
+     * @param board the given board object
+     * @param steps the byte value of number of moves
+     * @param solution the Direction array of moves
+     * @param inSolver the SolverInterface object in use
+     */
+    public boolean addBoard(Board board, byte steps, Direction[] solution, SmartSolver inSolver)
+            throws RemoteException {
+        return addBoard(board, steps, solution);
+    }
+
+    @Override
+    public boolean updateLastSearch(SmartSolver inSolver) throws RemoteException {
+        // should not be call by remote version
+        return false;
+    }
+
+    /**
+     * Send the given board to its shard for verification.
+     *
+     * @param board the given Board object
+     * @return boolean if last search board in activeMap has been verified.
+     */
+    public boolean updateLastSearch(Board board) throws RemoteException {
+        return writeShard(board).updateLastSearch(board);
+    }
+
+    /**
+     * Send the given board to its shard for verification.
+     *
+     * @param board the given Board object
+     * @param inSolver the given SolverIntegerface
+     * @return boolean if last search board in activeMap has been verified.
+     */
+    public boolean updateLastSearch(Board board, SmartSolver inSolver) throws RemoteException {
+        return updateLastSearch(board);
+    }
+}
@@ -0,0 +1,510 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * ReferenceSharedStore extends ReferenceStore.  It is the reference collection shared by
+ * all processes on the same host, stored in a memory-mapped file with the same slot
+ * layout of ReferenceStore.  A board learned by one process is visible to the others
+ * as soon as it is written.  The readers of each process use a ReferenceStore snapshot
+ * of it, refresh reads the file under the file lock when the version has changed, so
+ * they never see a board in the middle of an update.  Each update logs its slot in a
+ * ring of the last 1024 changes in the header, refresh reads only the slots changed
+ * since the last one; it scans the whole table if more changes have been made since
+ * then, and for a new snapshot.
+ *
+ * <p>Updates are merged with the max moves rules under the file lock, one writer at a
+ * time across all processes.  A slot never moves once it has been taken: the conversion
+ * key and moves are written before the board key, a removed board keeps its key with a
+ * removed flag.  So a reader never sees a slot of half written board.  When the table
+ * is half full, the writer copies it into a new file of double size and replaces the
+ * file, the old file is marked as superseded; every process switch to the new file
+ * with latest(), the old mapping remains readable until no one use it.
+ *
+ * <p>Dependencies : ReferenceBoard.java, ReferenceMoves.java, ReferenceStore.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceSharedStore extends ReferenceStore {
+    private static final long serialVersionUID = 17195273121L;
+    private static final int magicNumber = 0x5253484C;
+    private static final int initialCapacity = 4096;
+    private static final int logSize = 1024;
+    private static final int offsetLog = 40;
+    private static final int headerSize = offsetLog + logSize * 4;
+    private static final int slotBytes = 32;
+    private static final int offsetCapacity = 4;
+    private static final int offsetCutoff = 8;
+    private static final int offsetSize = 12;
+    private static final int offsetUsed = 16;
+    private static final int offsetSuperseded = 20;
+    private static final int offsetVersion = 24;
+    private static final int offsetLogCount = 32;
+    private static final int offsetMoves = 8;
+    private static final int offsetInitMoves = 16;
+    private static final int offsetTransform = 24;
+    private static final long removedFlag = 1L << 63;
+    // one writer per process, file locks of the same file can not overlap in a process
+    private static final Object writeLock = new Object();
+
+    private final transient String filepath;
+    private final transient FileChannel channel;
+    private final transient MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private transient ReferenceSharedStore next;
+
+    // initializes ReferenceSharedStore object of the given opened file and its mapping
+    private ReferenceSharedStore(String filepath, FileChannel channel, MappedByteBuffer buffer) {
+        this.filepath = filepath;
+        this.channel = channel;
+        this.buffer = buffer;
+        capacity = buffer.getInt(offsetCapacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Opens the shared reference collection of the given file path, create an empty
+     * one with the given cutoff setting if not exists.
+     *
+     * @param filepath the given file path of the shared reference collection
+     * @param cutoffSetting the cutoff setting of a new shared reference collection
+     * @return ReferenceSharedStore object of the shared reference collection
+     * @throws IOException if the file is not accessible or not a shared reference collection
+     */
+    public static ReferenceSharedStore open(String filepath, int cutoffSetting)
+            throws IOException {
+        File parent = (new File(filepath)).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        synchronized (writeLock) {
+            RandomAccessFile file = new RandomAccessFile(filepath, "rw");
+            FileChannel fileChannel = file.getChannel();
+            try {
+                MappedByteBuffer mapped;
+                FileLock lock = fileChannel.lock();
+                try {
+                    if (fileChannel.size() == 0) {
+                        file.setLength(headerSize + (long) initialCapacity * slotBytes);
+                        mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                fileChannel.size());
+                        mapped.putInt(offsetCapacity, initialCapacity);
+                        mapped.putInt(offsetCutoff, cutoffSetting);
+                        mapped.putInt(0, magicNumber);
+                    } else {
+                        mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                fileChannel.size());
+                    }
+                } finally {
+                    lock.release();
+                }
+
+                int cap = mapped.getInt(offsetCapacity);
+                if (mapped.capacity() < headerSize || mapped.getInt(0) != magicNumber
+                        || cap < 1 || Integer.bitCount(cap) != 1
+                        || mapped.capacity() < headerSize + (long) cap * slotBytes) {
+                    throw new IOException("Data file error - " + filepath);
+                }
+                return new ReferenceSharedStore(filepath, fileChannel, mapped);
+            } catch (IOException ex) {
+                fileChannel.close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Returns the ReferenceSharedStore object of the current file.  It is this object
+     * unless the table has been moved to a larger file by any process.
+     *
+     * @return ReferenceSharedStore object of the current file
+     */
+    public synchronized ReferenceSharedStore latest() {
+        if (isCurrent()) {
+            return this;
+        }
+        if (next == null) {
+            try {
+                next = open(filepath, getCutoffSetting());
+            } catch (IOException ex) {
+                System.err.println("System error : unable to reopen " + filepath
+                        + " - " + ex.getMessage());
+                return this;
+            }
+        }
+        return next.latest();
+    }
+
+    /**
+     * Returns the boolean represents this object maps the current file.
+     *
+     * @return boolean represents this object maps the current file
+     */
+    public boolean isCurrent() {
+        return buffer.getInt(offsetSuperseded) == 0;
+    }
+
+    /**
+     * Returns the cutoff setting stored with the shared reference collection.
+     *
+     * @return integer of the cutoff setting
+     */
+    public int getCutoffSetting() {
+        return buffer.getInt(offsetCutoff);
+    }
+
+    // store the given cutoff setting with the shared reference collection
+    void setCutoffSetting(int cutoff) {
+        synchronized (writeLock) {
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    buffer.putInt(offsetCutoff, cutoff);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                System.err.println("System error : write file error - " + filepath);
+            }
+        }
+        if (!isCurrent()) {
+            latest().setCutoffSetting(cutoff);
+        }
+    }
+
+    // returns the copy of the shared reference collection in a ReferenceStore
+    @Override
+    ReferenceStore copy() {
+        ReferenceStore refMap = new ReferenceStore(size());
+        refresh(refMap, -1);
+        return refMap;
+    }
+
+    // update the given ReferenceStore to the reference boards of this file under the
+    // shared file lock, so no writer is in the middle of an update.  The given count
+    // of changes is the one of the last refresh of the store from this file, -1 for a
+    // new store; it reads the changed slots of the log only, or all slots if the log
+    // does not cover them.  Returns the count of changes to pass to the next refresh,
+    // or -1 if the file is not accessible.
+    long refresh(ReferenceStore refMap, long sinceCount) {
+        long count;
+        synchronized (writeLock) {
+            try {
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    count = buffer.getLong(offsetLogCount);
+                    if (sinceCount < 0 || sinceCount > count || count - sinceCount > logSize) {
+                        for (int slot = 0; slot < capacity; slot++) {
+                            refreshSlot(refMap, slot);
+                        }
+                    } else {
+                        for (long change = sinceCount; change < count; change++) {
+                            refreshSlot(refMap, buffer.getInt(offsetLog
+                                    + (int) (change % logSize) * 4));
+                        }
+                    }
+                    refMap.setVersion(getVersion());
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                System.err.println("System error : read file error - " + filepath);
+                return -1;
+            }
+        }
+        return count;
+    }
+
+    // update the reference board of the given slot in the given ReferenceStore, the
+    // caller holds the file lock
+    private void refreshSlot(ReferenceStore refMap, int slot) {
+        int base = base(slot);
+        long key = buffer.getLong(base);
+        if (key == 0) {
+            return;
+        }
+        long moves = buffer.getLong(base + offsetMoves);
+        if ((moves & removedFlag) != 0) {
+            refMap.remove(key);
+        } else {
+            refMap.update(key, moves, buffer.getLong(base + offsetInitMoves),
+                    buffer.getLong(base + offsetTransform));
+        }
+    }
+
+    // append the given changed slot to the log of changes, the caller holds the
+    // file lock
+    private void logChange(int slot) {
+        long count = buffer.getLong(offsetLogCount);
+        buffer.putInt(offsetLog + (int) (count % logSize) * 4, slot);
+        buffer.putLong(offsetLogCount, count + 1);
+    }
+
+    // send a copy of the shared reference collection to the remote clients
+    private Object writeReplace() {
+        return copy();
+    }
+
+    // merge the given packed values of a reference board into the shared file with the
+    // max moves rules under the file lock, the same as put; the conversion key is
+    // restored from the board
+    @Override
+    void update(long key, long moves, long initMoves, long transformKey) {
+        put(new ReferenceBoard(key), new ReferenceMoves(moves, initMoves));
+    }
+
+    @Override
+    void setVersion(long version) {
+        // version is maintained by the writers of the shared file
+    }
+
+    // returns the file offset of the given slot
+    private static int base(int slot) {
+        return headerSize + slot * slotBytes;
+    }
+
+    // returns the slot of the given key, or the empty slot it should be placed
+    private int findSlot(long key) {
+        int slot = (int) mix(key) & mask;
+        while (true) {
+            long stored = buffer.getLong(base(slot));
+            if (stored == 0 || stored == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public int size() {
+        return buffer.getInt(offsetSize);
+    }
+
+    @Override
+    public long getVersion() {
+        return buffer.getLong(offsetVersion);
+    }
+
+    @Override
+    boolean containsKey(long key) {
+        return isOccupied(findSlot(key));
+    }
+
+    @Override
+    public ReferenceMoves get(ReferenceBoard advBoard) {
+        if (advBoard == null) {
+            return null;
+        }
+        int slot = findSlot(advBoard.packedKey());
+        if (!isOccupied(slot)) {
+            return null;
+        }
+        return getMoves(slot);
+    }
+
+    // merge the given reference board and moves into the shared file with the max moves
+    // rules under the file lock, move to a larger file if the table is half full
+    @Override
+    void put(ReferenceBoard advBoard, ReferenceMoves advMoves) {
+        boolean moved = false;
+        synchronized (writeLock) {
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    if (isCurrent()) {
+                        int slot = findSlot(advBoard.packedKey());
+                        if (buffer.getLong(base(slot)) == 0
+                                && (buffer.getInt(offsetUsed) + 1) * 2 > capacity) {
+                            grow();
+                            moved = true;
+                        } else {
+                            write(slot, advBoard, advMoves);
+                        }
+                    } else {
+                        moved = true;
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                System.err.println("System error : write file error - " + filepath);
+                return;
+            }
+        }
+        if (moved) {
+            ReferenceSharedStore current = latest();
+            if (current != this) {
+                current.put(advBoard, advMoves);
+            }
+        }
+    }
+
+    // merge the given reference board and moves into the given slot, the caller holds
+    // the file lock; the readers check the partial solutions before and after the
+    // moves, they are cleared during the update
+    private void write(int slot, ReferenceBoard advBoard, ReferenceMoves advMoves) {
+        int base = base(slot);
+        long key = advBoard.packedKey();
+        long stored = buffer.getLong(base);
+        long movesValue = buffer.getLong(base + offsetMoves);
+        if (stored == key && (movesValue & removedFlag) == 0) {
+            ReferenceMoves current = new ReferenceMoves(movesValue,
+                    buffer.getLong(base + offsetInitMoves));
+            current.updateMoves(advMoves.moves, advMoves.initMoves, advMoves.status);
+            advMoves = current;
+        }
+
+        buffer.putLong(base + offsetInitMoves, 0);
+        buffer.putLong(base + offsetTransform, packTransform(advBoard.tilesTransform));
+        buffer.putLong(base + offsetMoves, advMoves.packMoves());
+        buffer.putLong(base + offsetInitMoves, advMoves.packInitMoves());
+        if (stored == 0) {
+            buffer.putLong(base, key);
+            buffer.putInt(offsetUsed, buffer.getInt(offsetUsed) + 1);
+        }
+        if (stored == 0 || (movesValue & removedFlag) != 0) {
+            buffer.putInt(offsetSize, buffer.getInt(offsetSize) + 1);
+        }
+        logChange(slot);
+        buffer.putLong(offsetVersion, buffer.getLong(offsetVersion) + 1);
+    }
+
+    // copy all reference boards into a new file of double size, replace the file and
+    // mark this file as superseded, the caller holds the file lock
+    private void grow() throws IOException {
+        int newCapacity = capacity << 1;
+        int newMask = newCapacity - 1;
+        String tempFile = filepath + "grow";
+        int size = 0;
+        try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+                FileChannel tempChannel = file.getChannel()) {
+            file.setLength(0);
+            file.setLength(headerSize + (long) newCapacity * slotBytes);
+            MappedByteBuffer mapped = tempChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    tempChannel.size());
+            for (int slot = 0; slot < capacity; slot++) {
+                if (!isOccupied(slot)) {
+                    continue;
+                }
+                int base = base(slot);
+                long key = buffer.getLong(base);
+                int newSlot = (int) mix(key) & newMask;
+                while (mapped.getLong(base(newSlot)) != 0) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                int newBase = base(newSlot);
+                mapped.putLong(newBase + offsetMoves, buffer.getLong(base + offsetMoves));
+                mapped.putLong(newBase + offsetInitMoves,
+                        buffer.getLong(base + offsetInitMoves));
+                mapped.putLong(newBase + offsetTransform,
+                        buffer.getLong(base + offsetTransform));
+                mapped.putLong(newBase, key);
+                size++;
+            }
+            mapped.putInt(offsetCapacity, newCapacity);
+            mapped.putInt(offsetCutoff, getCutoffSetting());
+            mapped.putInt(offsetSize, size);
+            mapped.putInt(offsetUsed, size);
+            mapped.putLong(offsetVersion, getVersion() + 1);
+            mapped.putInt(0, magicNumber);
+            mapped.force();
+        }
+
+        if (!(new File(tempFile)).renameTo(new File(filepath))) {
+            (new File(tempFile)).delete();
+            throw new IOException("Unable to replace " + filepath);
+        }
+        buffer.putInt(offsetSuperseded, 1);
+    }
+
+    // mark the reference board of the given packed key as removed, the slot keeps the
+    // board key, return the stored moves or null if not exists
+    @Override
+    ReferenceMoves remove(long key) {
+        ReferenceMoves advMoves = null;
+        boolean moved = false;
+        synchronized (writeLock) {
+            try {
+                FileLock lock = channel.lock();
+                try {
+                    if (isCurrent()) {
+                        int slot = findSlot(key);
+                        if (isOccupied(slot)) {
+                            advMoves = getMoves(slot);
+                            int base = base(slot);
+                            buffer.putLong(base + offsetMoves,
+                                    buffer.getLong(base + offsetMoves) | removedFlag);
+                            buffer.putInt(offsetSize, buffer.getInt(offsetSize) - 1);
+                            logChange(slot);
+                            buffer.putLong(offsetVersion, buffer.getLong(offsetVersion) + 1);
+                        }
+                    } else {
+                        moved = true;
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                System.err.println("System error : write file error - " + filepath);
+                return null;
+            }
+        }
+        if (moved) {
+            ReferenceSharedStore current = latest();
+            if (current != this) {
+                return current.remove(key);
+            }
+        }
+        return advMoves;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    // a slot holds a reference board once its key has been written, until removed
+    @Override
+    public boolean isOccupied(int slot) {
+        int base = base(slot);
+        return buffer.getLong(base) != 0
+                && (buffer.getLong(base + offsetMoves) & removedFlag) == 0;
+    }
+
+    @Override
+    public byte getEstimate(int slot) {
+        return (byte) buffer.getLong(base(slot) + offsetMoves);
+    }
+
+    @Override
+    public byte[] transformer(int slot, byte[] blocks) {
+        int base = base(slot);
+        return transformer(buffer.getLong(base), buffer.getLong(base + offsetTransform),
+                blocks);
+    }
+
+    @Override
+    public ReferenceBoard getBoard(int slot) {
+        return new ReferenceBoard(buffer.getLong(base(slot)));
+    }
+
+    // the partial solutions are ignored if they are changed while reading the moves
+    @Override
+    public ReferenceMoves getMoves(int slot) {
+        int base = base(slot);
+        long initMoves = buffer.getLong(base + offsetInitMoves);
+        long moves = buffer.getLong(base + offsetMoves) & ~removedFlag;
+        if (buffer.getLong(base + offsetInitMoves) != initMoves) {
+            initMoves = 0;
+        }
+        return new ReferenceMoves(moves, initMoves);
+    }
+}
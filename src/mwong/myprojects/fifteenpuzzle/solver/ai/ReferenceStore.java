@@ -0,0 +1,375 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * ReferenceStore is the compact storage of the reference collection.  Each reference
+ * board is stored as a 64 bits packed key (4 bits per tile) in a long array table
+ * with open addressing and linear probing.  Each slot holds 4 long values: the packed
+ * board key, the packed moves with status, the packed partial solutions and the
+ * packed conversion key.  A packed board key of 0 represents an empty slot.
+ *
+ * <p>The table is split into chunks of 1024 slots.  A copy shares all chunks with the
+ * store it copied from; a chunk is copied before the first update of either store, so
+ * a snapshot costs the chunk references and each update after it copies one chunk
+ * instead of the whole table.
+ *
+ * <p>Dependencies : ReferenceBoard.java, ReferenceMoves.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceStore implements Serializable {
+    private static final long serialVersionUID = 17195273122L;
+    private static final int slotSize = 4;
+    private static final int offsetMoves = 1;
+    private static final int offsetInitMoves = 2;
+    private static final int offsetTransform = 3;
+    private static final int minCapacity = 16;
+    private static final int chunkShift = 10;
+    private static final int chunkMask = (1 << chunkShift) - 1;
+
+    private long[][] chunks;
+    private boolean[] shared;
+    private int capacity;
+    private int mask;
+    private int size;
+    private long version;
+
+    /**
+     * Initializes an empty ReferenceStore object.
+     */
+    public ReferenceStore() {
+        this(minCapacity);
+    }
+
+    /**
+     * Initializes an empty ReferenceStore object with enough slots for the given
+     * expected number of reference boards.
+     *
+     * @param expectedSize the expected number of reference boards
+     */
+    public ReferenceStore(int expectedSize) {
+        int cap = minCapacity;
+        while (cap < expectedSize * 2) {
+            cap <<= 1;
+        }
+        allocate(cap);
+    }
+
+    // initializes a ReferenceStore object as a copy of the given ReferenceStore object,
+    // both stores share the chunks until they update them
+    private ReferenceStore(ReferenceStore source) {
+        chunks = source.chunks.clone();
+        shared = new boolean[chunks.length];
+        Arrays.fill(shared, true);
+        Arrays.fill(source.shared, true);
+        capacity = source.capacity;
+        mask = source.mask;
+        size = source.size;
+        version = source.version;
+    }
+
+    // returns a copy of the store, use for publish a snapshot to readers; it costs the
+    // chunk references, the chunks are copied on update
+    ReferenceStore copy() {
+        return new ReferenceStore(this);
+    }
+
+    // set the version of the store, use when the store replace or follow another store
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    // allocate the table with the given capacity, must be power of 2
+    private void allocate(int cap) {
+        capacity = cap;
+        mask = cap - 1;
+        int chunkSlots = Math.min(cap, 1 << chunkShift);
+        chunks = new long[cap / chunkSlots][chunkSlots * slotSize];
+        shared = new boolean[chunks.length];
+        size = 0;
+    }
+
+    // returns the value of the given slot and field
+    private long read(int slot, int field) {
+        return chunks[slot >>> chunkShift][(slot & chunkMask) * slotSize + field];
+    }
+
+    // set the value of the given slot and field, copy the chunk first if it is shared
+    // with a copy of the store
+    private void write(int slot, int field, long value) {
+        int index = slot >>> chunkShift;
+        if (shared[index]) {
+            chunks[index] = chunks[index].clone();
+            shared[index] = false;
+        }
+        chunks[index][(slot & chunkMask) * slotSize + field] = value;
+    }
+
+    /**
+     * Returns the 64 bits mixed value of the given key.  It spreads the
+     * packed tiles evenly across all bits (murmur3 finalizer).
+     *
+     * @param key the given 64 bits key
+     * @return long value of the mixed key
+     */
+    public static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // returns the slot of the given key, or the empty slot it should be placed
+    private int findSlot(long key) {
+        int slot = (int) mix(key) & mask;
+        while (true) {
+            long stored = read(slot, 0);
+            if (stored == 0 || stored == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the number of reference boards in the store.
+     *
+     * @return integer of the number of reference boards
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the version of the store, it increase on every update.
+     *
+     * @return long value of the version of the store
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the boolean represents the given reference board is stored.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return boolean represents the given reference board is stored
+     */
+    public boolean containsKey(ReferenceBoard advBoard) {
+        if (advBoard == null) {
+            return false;
+        }
+        return containsKey(advBoard.packedKey());
+    }
+
+    // returns the boolean represents the reference board of the given packed key is stored
+    boolean containsKey(long key) {
+        return read(findSlot(key), 0) != 0;
+    }
+
+    /**
+     * Returns a copy of ReferenceMoves object of the given reference board,
+     * or null if not exists.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return ReferenceMoves object of the given reference board
+     */
+    public ReferenceMoves get(ReferenceBoard advBoard) {
+        if (advBoard == null) {
+            return null;
+        }
+        int slot = findSlot(advBoard.packedKey());
+        if (read(slot, 0) == 0) {
+            return null;
+        }
+        return getMoves(slot);
+    }
+
+    // store the given reference board and moves, replace the existing value
+    // existing entries never change slot, new entries may trigger a resize
+    void put(ReferenceBoard advBoard, ReferenceMoves advMoves) {
+        put(advBoard.packedKey(), advMoves.packMoves(), advMoves.packInitMoves(),
+                packTransform(advBoard.tilesTransform));
+    }
+
+    // store the given packed values of a reference board if they differ from the stored
+    // ones, use for follow the shared reference collection; the unchanged boards are not
+    // written, so their chunks remain shared with the snapshots
+    void update(long key, long moves, long initMoves, long transformKey) {
+        int slot = findSlot(key);
+        if (read(slot, 0) == key && read(slot, offsetMoves) == moves
+                && read(slot, offsetInitMoves) == initMoves) {
+            return;
+        }
+        put(key, moves, initMoves, transformKey);
+    }
+
+    // store the given packed values of a reference board, replace the existing value
+    private void put(long key, long moves, long initMoves, long transformKey) {
+        int slot = findSlot(key);
+        if (read(slot, 0) == 0) {
+            if ((size + 1) * 2 > capacity) {
+                resize(capacity << 1);
+                slot = findSlot(key);
+            }
+            size++;
+        }
+        write(slot, 0, key);
+        write(slot, offsetMoves, moves);
+        write(slot, offsetInitMoves, initMoves);
+        write(slot, offsetTransform, transformKey);
+        version++;
+    }
+
+    // remove the given reference board, return the stored moves or null if not exists
+    ReferenceMoves remove(ReferenceBoard advBoard) {
+        if (advBoard == null) {
+            return null;
+        }
+        return remove(advBoard.packedKey());
+    }
+
+    // remove the reference board of the given packed key, return the stored moves or
+    // null if not exists
+    ReferenceMoves remove(long key) {
+        int slot = findSlot(key);
+        if (read(slot, 0) == 0) {
+            return null;
+        }
+        ReferenceMoves advMoves = getMoves(slot);
+
+        // backward shift the following entries of the same cluster
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (read(next, 0) != 0) {
+            int home = (int) mix(read(next, 0)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                for (int field = 0; field < slotSize; field++) {
+                    write(hole, field, read(next, field));
+                }
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        for (int field = 0; field < slotSize; field++) {
+            write(hole, field, 0);
+        }
+        size--;
+        version++;
+        return advMoves;
+    }
+
+    // double the table size and rehash all entries into new chunks
+    private void resize(int newCapacity) {
+        long[][] oldChunks = chunks;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long[] oldChunk = oldChunks[slot >>> chunkShift];
+            int oldBase = (slot & chunkMask) * slotSize;
+            if (oldChunk[oldBase] != 0) {
+                int newSlot = findSlot(oldChunk[oldBase]);
+                System.arraycopy(oldChunk, oldBase, chunks[newSlot >>> chunkShift],
+                        (newSlot & chunkMask) * slotSize, slotSize);
+                size++;
+            }
+        }
+    }
+
+    // pack the conversion key into long value, 4 bits per tile
+    static long packTransform(byte[] tilesTransform) {
+        long value = 0L;
+        for (int val : tilesTransform) {
+            value <<= 4;
+            value |= val;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of slots of the store.  Use with isOccupied to iterate
+     * all reference boards without creating objects.
+     *
+     * @return integer of the number of slots
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the boolean represents the given slot holds a reference board.
+     *
+     * @param slot the given slot number
+     * @return boolean represents the given slot holds a reference board
+     */
+    public boolean isOccupied(int slot) {
+        return read(slot, 0) != 0;
+    }
+
+    /**
+     * Returns the byte of estimate of the reference board at the given slot.
+     *
+     * @param slot the given slot number
+     * @return byte of estimate of the reference board at the given slot
+     */
+    public byte getEstimate(int slot) {
+        return (byte) read(slot, offsetMoves);
+    }
+
+    /**
+     * Returns a byte array of tiles after transform the given blocks which use
+     * the reference board at the given slot as the goal state.
+     *
+     * @param slot the given slot number
+     * @param blocks a byte array of original tiles
+     * @return a byte array of tiles after transformation
+     */
+    public byte[] transformer(int slot, byte[] blocks) {
+        return transformer(read(slot, 0), read(slot, offsetTransform), blocks);
+    }
+
+    // returns a byte array of tiles after transform the given blocks which use the
+    // reference board of the given packed key and packed conversion key as the goal state
+    static byte[] transformer(long key, long transformKey, byte[] blocks) {
+        byte group;
+        if ((key & 0x0F) == 0) {
+            group = 0;
+        } else if (((key >>> 48) & 0x0F) == 0) {
+            group = 1;
+        } else {
+            group = 2;
+        }
+
+        byte[] tilesTransform = new byte[blocks.length];
+        for (int pos = blocks.length - 1; pos > -1; pos--) {
+            tilesTransform[pos] = (byte) (transformKey & 0x0F);
+            transformKey >>>= 4;
+        }
+        return ReferenceBoard.transformer(tilesTransform, group, blocks);
+    }
+
+    /**
+     * Returns the ReferenceBoard object at the given slot.
+     *
+     * @param slot the given slot number
+     * @return ReferenceBoard object at the given slot
+     */
+    public ReferenceBoard getBoard(int slot) {
+        return new ReferenceBoard(read(slot, 0));
+    }
+
+    /**
+     * Returns a copy of ReferenceMoves object at the given slot.
+     *
+     * @param slot the given slot number
+     * @return ReferenceMoves object at the given slot
+     */
+    public ReferenceMoves getMoves(int slot) {
+        return new ReferenceMoves(read(slot, offsetMoves), read(slot, offsetInitMoves));
+    }
+}
@@ -0,0 +1,314 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * ReferenceUsage keeps the usage statistics of each reference board: the number of
+ * hits (exact lookups and raised estimates), the total moves of estimates raised and
+ * a benefit score with aging.  Each hit adds to the score, the score halves every
+ * 7 days without hit.  Every reference board takes the same storage, so the score is
+ * also the benefit per byte; the reference board of the lowest score will be evicted
+ * first when the collection is over the capacity setting.  All scores age alike, so the
+ * records are kept in the order of score, it changes only on a hit; the reference board
+ * of the lowest score is found without scanning the collection.
+ *
+ * <p>Dependencies : ReferenceStore.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class ReferenceUsage {
+    private static final long halfLife = 7L * 24 * 60 * 60 * 1000;
+    private static final double newBoardScore = 1.0;
+
+    private static final double log2 = Math.log(2);
+
+    private final HashMap<Long, Record> records = new HashMap<Long, Record>();
+    // the records in the order of score, lowest first
+    private final TreeSet<Record> order = new TreeSet<Record>(new Comparator<Record>() {
+        @Override
+        public int compare(Record record1, Record record2) {
+            int diff = Double.compare(record1.rank, record2.rank);
+            if (diff != 0) {
+                return diff;
+            }
+            return Long.compare(record1.key, record2.key);
+        }
+    });
+    private boolean changed = false;
+
+    // usage statistics of a reference board
+    private static class Record {
+        private final long key;
+        private int hits;
+        private long uplift;
+        private double score;
+        private long updated;
+        // the score in log 2 aged back to time 0, compare the scores at any time
+        private double rank = Double.NEGATIVE_INFINITY;
+
+        private Record(long key) {
+            this.key = key;
+        }
+
+        // update the rank after the score changed
+        private void rerank() {
+            if (score > 0) {
+                rank = Math.log(score) / log2 + updated / (double) halfLife;
+            } else {
+                rank = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        // returns the score at the given time after aging
+        private double scoreAt(long now) {
+            if (now <= updated) {
+                return score;
+            }
+            return score * Math.pow(0.5, (now - updated) / (double) halfLife);
+        }
+
+        // add the given value to the score at the given time
+        private void addScore(double value, long now) {
+            score = scoreAt(now) + value;
+            updated = Math.max(updated, now);
+        }
+    }
+
+    // returns the record of the given packed key, create it if not exists
+    private Record getRecord(long key) {
+        Record record = records.get(key);
+        if (record == null) {
+            record = new Record(key);
+            records.put(key, record);
+            order.add(record);
+        }
+        return record;
+    }
+
+    // add the given value to the score of the given record at the given time, and
+    // move it to the new order
+    private void addScore(Record record, double value, long now) {
+        order.remove(record);
+        record.addScore(value, now);
+        record.rerank();
+        order.add(record);
+    }
+
+    // give a new reference board the score of one hit, so it will not be evicted
+    // before it has a chance to be used
+    synchronized void recordAdd(long key, long now) {
+        Record record = getRecord(key);
+        if (record.hits == 0 && record.score < newBoardScore) {
+            order.remove(record);
+            record.score = newBoardScore;
+            record.updated = now;
+            record.rerank();
+            order.add(record);
+        }
+        changed = true;
+    }
+
+    // record a hit of the reference board of the given packed key, the given value is
+    // the moves of estimate it raised, 0 for exact lookup
+    synchronized void recordHit(long key, int uplift, long now) {
+        if (key == 0) {
+            return;
+        }
+        recordHits(key, 1, uplift, now);
+    }
+
+    // record the given number of hits of the reference board of the given packed key,
+    // the given value is the total moves of estimates they raised
+    synchronized void recordHits(long key, int hits, long uplift, long now) {
+        if (key == 0 || hits <= 0) {
+            return;
+        }
+        Record record = getRecord(key);
+        record.hits += hits;
+        record.uplift += uplift;
+        addScore(record, hits + uplift, now);
+        changed = true;
+    }
+
+    // remove the usage statistics of the given packed key
+    synchronized void remove(long key) {
+        Record record = records.remove(key);
+        if (record != null) {
+            order.remove(record);
+            changed = true;
+        }
+    }
+
+    // returns the packed key of the reference board of the lowest score, except the
+    // given packed key and the reference boards of the given collection; 0 if none
+    synchronized long lowest(long keepKey, ReferenceStore excluded) {
+        for (Record record : order) {
+            if (record.key != keepKey && !excluded.containsKey(record.key)) {
+                return record.key;
+            }
+        }
+        return 0;
+    }
+
+    // returns the number of reference boards with usage statistics
+    synchronized int size() {
+        return records.size();
+    }
+
+    // returns the score of the given packed key at the given time, 0 if no record
+    synchronized double getScore(long key, long now) {
+        Record record = records.get(key);
+        if (record == null) {
+            return 0;
+        }
+        return record.scoreAt(now);
+    }
+
+    /**
+     * Returns the number of hits of the given reference board.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return integer of the number of hits
+     */
+    public synchronized int getHits(ReferenceBoard advBoard) {
+        Record record = records.get(advBoard.packedKey());
+        if (record == null) {
+            return 0;
+        }
+        return record.hits;
+    }
+
+    /**
+     * Returns the total moves of estimates raised by the given reference board.  Each
+     * 2 moves skip one iteration of the IDA* search.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return long value of the total moves of estimates raised
+     */
+    public synchronized long getUplift(ReferenceBoard advBoard) {
+        Record record = records.get(advBoard.packedKey());
+        if (record == null) {
+            return 0;
+        }
+        return record.uplift;
+    }
+
+    /**
+     * Returns the benefit score of the given reference board at current time.
+     *
+     * @param advBoard the given ReferenceBoard object
+     * @return double value of the benefit score
+     */
+    public double getScore(ReferenceBoard advBoard) {
+        return getScore(advBoard.packedKey(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the summary of the usage statistics of all reference boards.
+     *
+     * @return String of the summary of the usage statistics
+     */
+    public synchronized String summary() {
+        long hits = 0;
+        long uplift = 0;
+        int unused = 0;
+        for (Record record : records.values()) {
+            hits += record.hits;
+            uplift += record.uplift;
+            if (record.hits == 0) {
+                unused++;
+            }
+        }
+        return "Usage of " + records.size() + " boards: " + hits + " hits, " + uplift
+                + " moves of estimates raised (" + uplift / 2 + " IDA* iterations saved), "
+                + unused + " boards never used.";
+    }
+
+    // remove the usage statistics of the boards not in the given collection, the boards
+    // of the collection without usage statistics start with zero score
+    synchronized void retain(ReferenceStore refMap) {
+        HashMap<Long, Record> kept = new HashMap<Long, Record>();
+        int added = 0;
+        for (int slot = 0; slot < refMap.capacity(); slot++) {
+            if (refMap.isOccupied(slot)) {
+                long key = refMap.getBoard(slot).packedKey();
+                Record record = records.get(key);
+                if (record == null) {
+                    record = new Record(key);
+                    added++;
+                }
+                kept.put(key, record);
+            }
+        }
+        if (added > 0 || kept.size() != records.size()) {
+            records.clear();
+            records.putAll(kept);
+            order.clear();
+            order.addAll(kept.values());
+            changed = true;
+        }
+    }
+
+    // load the usage statistics from the given file path
+    synchronized void load(String filepath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(filepath)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Record record = new Record(in.readLong());
+                record.hits = in.readInt();
+                record.uplift = in.readLong();
+                record.score = in.readDouble();
+                record.updated = in.readLong();
+                record.rerank();
+                Record replaced = records.put(record.key, record);
+                if (replaced != null) {
+                    order.remove(replaced);
+                }
+                order.add(record);
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Data file error - " + filepath);
+        }
+        changed = false;
+    }
+
+    // save the usage statistics to the given file path if changed since last save,
+    // write to a temp file first and replace the file when completed
+    synchronized void save(String filepath) throws IOException {
+        if (!changed) {
+            return;
+        }
+        String tempFile = filepath + "temp";
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)))) {
+            out.writeInt(records.size());
+            for (Map.Entry<Long, Record> entry : records.entrySet()) {
+                Record record = entry.getValue();
+                out.writeLong(entry.getKey());          //  8
+                out.writeInt(record.hits);              //  4
+                out.writeLong(record.uplift);           //  8
+                out.writeDouble(record.score);          //  8
+                out.writeLong(record.updated);          //  8
+            }
+        }
+        (new File(filepath)).delete();
+        if (!(new File(tempFile)).renameTo(new File(filepath))) {
+            throw new IOException("Unable to replace " + filepath);
+        }
+        changed = false;
+    }
+}
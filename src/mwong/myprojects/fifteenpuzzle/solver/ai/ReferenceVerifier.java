@@ -0,0 +1,272 @@
+package mwong.myprojects.fifteenpuzzle.solver.ai;
+
+import mwong.myprojects.fifteenpuzzle.solver.SolverConstants;
+import mwong.myprojects.fifteenpuzzle.solver.advanced.SmartSolverPdb;
+
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * ReferenceVerifier verifies the pending reference boards in a background thread, so
+ * the interactive solves never wait for the learning work.  The waiting boards are
+ * kept in a bounded priority queue, the board with the most expected benefit (highest
+ * estimate times number of unverified lookup keys) goes first.  Each lookup key is
+ * verified and saved separately; after each one the worker sleeps in proportion to
+ * the time it took to keep within the configured cpu share.  If the pattern database
+ * 7-8 cannot be loaded, e.g. out of memory, it retries after a minute, doubling the
+ * wait up to an hour.
+ *
+ * <p>Dependencies : ReferenceAccumulator.java, ReferenceBoard.java, ReferenceMoves.java,
+ *                   ReferenceProperties.java, ReferenceStore.java, SmartSolverPdb.java,
+ *                   SolverConstants.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+class ReferenceVerifier implements Runnable {
+    // extra benefit for the board the user just solved, it is likely to be solved again
+    static final int PRIORITY_RECENT = 1000;
+    // wait in milliseconds before retry to create the solver
+    private static final long minRetryDelay = 60000;
+    private static final long maxRetryDelay = 3600000;
+
+    private final ReferenceAccumulator accumulator;
+    private final int queueSize;
+    private final int cpuShare;
+    private final boolean onSwitch;
+    private final boolean offSwitch;
+    private final PriorityQueue<Task> queue;
+    private final HashSet<Long> queued;
+    private long sequence;
+    private boolean overflow;
+    private volatile boolean running;
+    private Thread worker;
+    private SmartSolverPdb solver;
+    private long retryDelay;
+
+    // pending reference board with its expected benefit
+    private static class Task implements Comparable<Task> {
+        private final ReferenceBoard advBoard;
+        private final int benefit;
+        private final long sequence;
+
+        Task(ReferenceBoard advBoard, int benefit, long sequence) {
+            this.advBoard = advBoard;
+            this.benefit = benefit;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task that) {
+            if (this.benefit != that.benefit) {
+                return that.benefit - this.benefit;
+            }
+            return Long.compare(this.sequence, that.sequence);
+        }
+    }
+
+    // initializes ReferenceVerifier object of the given ReferenceAccumulator object
+    ReferenceVerifier(ReferenceAccumulator accumulator) {
+        this.accumulator = accumulator;
+        queueSize = ReferenceProperties.getVerifyQueueSize();
+        cpuShare = ReferenceProperties.getVerifyCpuShare();
+        onSwitch = SolverConstants.isOnSwitch();
+        offSwitch = !onSwitch;
+        queue = new PriorityQueue<Task>();
+        queued = new HashSet<Long>();
+        running = false;
+        retryDelay = minRetryDelay;
+    }
+
+    // start the background worker thread
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this, "ReferenceVerifier");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    // stop the background worker thread, the remaining boards stay unverified
+    // in the collection and will be queued again on next start
+    void shutdown() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            queue.clear();
+            queued.clear();
+            current = worker;
+            worker = null;
+            notifyAll();
+        }
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    // queue the given reference board with the given extra benefit, returns false if
+    // the board has been verified or the queue is full of boards with higher benefit
+    synchronized boolean submit(ReferenceBoard advBoard, ReferenceMoves advMoves, int extra) {
+        if (advMoves == null || advMoves.isCompleted()) {
+            return false;
+        }
+        long key = advBoard.packedKey();
+        int benefit = advMoves.getEstimate() * advMoves.countPendingLookups() + extra;
+        if (queued.contains(key)) {
+            if (extra == 0) {
+                return true;
+            }
+            removeQueued(key);
+        }
+
+        if (queue.size() >= queueSize) {
+            Task lowest = null;
+            for (Task task : queue) {
+                if (lowest == null || task.compareTo(lowest) > 0) {
+                    lowest = task;
+                }
+            }
+            overflow = true;
+            if (lowest.benefit >= benefit) {
+                return false;
+            }
+            queue.remove(lowest);
+            queued.remove(lowest.advBoard.packedKey());
+        }
+
+        queue.add(new Task(advBoard, benefit, sequence++));
+        queued.add(key);
+        notifyAll();
+        return true;
+    }
+
+    // queue all unverified reference boards of the given collection
+    void submitAll(ReferenceStore activeMap) {
+        for (int slot = 0; slot < activeMap.capacity(); slot++) {
+            if (activeMap.isOccupied(slot)) {
+                submit(activeMap.getBoard(slot), activeMap.getMoves(slot), 0);
+            }
+        }
+    }
+
+    // remove the queued task of the given packed key
+    private void removeQueued(long key) {
+        Iterator<Task> iter = queue.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().advBoard.packedKey() == key) {
+                iter.remove();
+                break;
+            }
+        }
+        queued.remove(key);
+    }
+
+    // returns the number of boards waiting for verification
+    synchronized int countPending() {
+        return queue.size();
+    }
+
+    // wait and return the next task, null if the worker has been stopped
+    private synchronized Task nextTask() throws InterruptedException {
+        while (running && queue.isEmpty()) {
+            if (overflow) {
+                overflow = false;
+                submitAll(accumulator.getActiveMap());
+                continue;
+            }
+            wait();
+        }
+        if (!running) {
+            return null;
+        }
+        return queue.peek();
+    }
+
+    // remove the completed task from the queue
+    private synchronized void completeTask(Task task) {
+        if (queue.remove(task)) {
+            queued.remove(task.advBoard.packedKey());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Task task = nextTask();
+                if (task == null) {
+                    return;
+                }
+                if (solver == null) {
+                    solver = createSolver();
+                    if (solver == null) {
+                        System.err.println("System error : reference verification paused for "
+                                + retryDelay / 1000 + " seconds - "
+                                + "7-8 pattern database solver unavailable");
+                        Thread.sleep(retryDelay);
+                        retryDelay = Math.min(retryDelay * 2, maxRetryDelay);
+                        continue;
+                    }
+                    retryDelay = minRetryDelay;
+                }
+
+                long startTime = System.nanoTime();
+                boolean done = verifyNext(task.advBoard);
+                if (done) {
+                    completeTask(task);
+                }
+                throttle(System.nanoTime() - startTime);
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RemoteException | RuntimeException ex) {
+                System.err.println("System error : reference verification failed - "
+                        + ex.getMessage());
+            }
+        }
+    }
+
+    // verify the next unverified lookup key of the given reference board and save
+    // the result, returns true if the reference board has been fully verified
+    private boolean verifyNext(ReferenceBoard advBoard) throws RemoteException {
+        ReferenceMoves advMoves = accumulator.getActiveMap().get(advBoard);
+        if (advMoves == null || advMoves.isCompleted()) {
+            return true;
+        }
+
+        int lookup = advMoves.nextPendingLookup();
+        advMoves.updateSolution(advBoard, lookup, solver);
+        advMoves = accumulator.store(advBoard, advMoves);
+        return advMoves.isCompleted();
+    }
+
+    // create a SmartSolverPdb object share the pattern database with the local solver
+    // of the accumulator
+    private SmartSolverPdb createSolver() throws RemoteException {
+        SmartSolverPdb localSolver = accumulator.getLocalSolver();
+        if (localSolver == null) {
+            return null;
+        }
+        SmartSolverPdb newSolver = new SmartSolverPdb(localSolver,
+                new ReferenceAdapter(accumulator));
+        newSolver.messageSwitch(offSwitch);
+        newSolver.timeoutSwitch(offSwitch);
+        newSolver.versionSwitch(onSwitch);
+        return newSolver;
+    }
+
+    // sleep in proportion to the given busy time to keep within the cpu share
+    private void throttle(long busyNanos) throws InterruptedException {
+        if (cpuShare >= 100) {
+            return;
+        }
+        long sleepMillis = busyNanos * (100 - cpuShare) / cpuShare / 1000000;
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+    }
+}
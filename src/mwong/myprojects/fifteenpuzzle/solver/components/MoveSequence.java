@@ -0,0 +1,367 @@
+package mwong.myprojects.fifteenpuzzle.solver.components;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * MoveSequence is the data type of a sequence of moves packed in 2 bits per move,
+ * 32 moves per long value.  The move i is stored at bits (i % 32) * 2 of the long
+ * value i / 32 with the value of Direction (RIGHT 0, DOWN 1, LEFT 2, UP 3), the same
+ * encoding of the partial solution of ReferenceMoves.  An 80 moves solution takes
+ * 3 long values instead of an array of 81 Directions.  It can be applied to a Board
+ * object or a board packed in 4 bits per tile without creating any Board objects.
+ *
+ * <p>Dependencies : Board.java, Direction.java, PuzzleConstants.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public final class MoveSequence implements Serializable {
+    private static final long serialVersionUID = 17195273121L;
+    private static final byte SIZE = PuzzleConstants.getSize();
+    private static final byte ROW_SIZE = PuzzleConstants.getRowSize();
+    private static final long GOAL_PACKED = 0x123456789ABCDEF0L;
+    private static final Direction[] directions = {Direction.RIGHT, Direction.DOWN,
+        Direction.LEFT, Direction.UP};
+    private static final String letters = "RDLU";
+
+    private final long[] packed;
+    private final int length;
+
+    /**
+     * Initializes a MoveSequence object of the given Direction array from the given
+     * offset with the given number of moves.
+     *
+     * @param moves the given Direction array
+     * @param offset the given index of the first move
+     * @param length the given number of moves
+     */
+    public MoveSequence(Direction[] moves, int offset, int length) {
+        if (length < 0 || offset < 0 || offset + length > moves.length) {
+            throw new IllegalArgumentException("Invalid number of moves " + length);
+        }
+        this.length = length;
+        packed = new long[(length + 31) / 32];
+        for (int i = 0; i < length; i++) {
+            int value = moves[offset + i].getValue();
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid move " + moves[offset + i]
+                        + " at " + i);
+            }
+            packed[i >>> 5] |= (long) value << ((i & 0x1F) << 1);
+        }
+    }
+
+    /**
+     * Initializes a MoveSequence object of the given packed long values with the
+     * given number of moves.
+     *
+     * @param packed the given long array of packed moves
+     * @param length the given number of moves
+     */
+    public MoveSequence(long[] packed, int length) {
+        if (length < 0 || packed.length < (length + 31) / 32) {
+            throw new IllegalArgumentException("Invalid number of moves " + length);
+        }
+        this.length = length;
+        this.packed = Arrays.copyOf(packed, (length + 31) / 32);
+        int rest = length & 0x1F;
+        if (rest > 0) {
+            this.packed[this.packed.length - 1] &= (1L << (rest << 1)) - 1;
+        }
+    }
+
+    /**
+     * Returns the MoveSequence object of the given solution of a solver, the moves
+     * start from index 1 (index 0 is Direction.NONE).
+     *
+     * @param solution the given Direction array of solution
+     * @param steps the given number of moves of the solution
+     * @return MoveSequence object of the given solution
+     */
+    public static MoveSequence fromSolution(Direction[] solution, int steps) {
+        return new MoveSequence(solution, 1, steps);
+    }
+
+    /**
+     * Returns the MoveSequence object of the given String of move letters
+     * (R, D, L, U), the format of toString.
+     *
+     * @param moves the given String of move letters
+     * @return MoveSequence object of the given String
+     */
+    public static MoveSequence valueOf(String moves) {
+        int count = moves.length();
+        long[] packed = new long[(count + 31) / 32];
+        for (int i = 0; i < count; i++) {
+            int value = letters.indexOf(Character.toUpperCase(moves.charAt(i)));
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid move " + moves.charAt(i)
+                        + " at " + i);
+            }
+            packed[i >>> 5] |= (long) value << ((i & 0x1F) << 1);
+        }
+        return new MoveSequence(packed, count);
+    }
+
+    /**
+     * Returns the number of moves.
+     *
+     * @return integer of the number of moves
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the Direction of the move at the given index.
+     *
+     * @param index the given index of the move, start from 0
+     * @return Direction of the move at the given index
+     */
+    public Direction get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + length);
+        }
+        return directions[value(index)];
+    }
+
+    // returns the direction value of the move at the given index
+    private int value(int index) {
+        return (int) (packed[index >>> 5] >>> ((index & 0x1F) << 1)) & 0x03;
+    }
+
+    /**
+     * Returns the copy of packed long values of the moves.
+     *
+     * @return long array of packed moves
+     */
+    public long[] getPacked() {
+        return packed.clone();
+    }
+
+    /**
+     * Returns the Direction array of the moves.
+     *
+     * @return Direction array of the moves
+     */
+    public Direction[] toArray() {
+        Direction[] moves = new Direction[length];
+        for (int i = 0; i < length; i++) {
+            moves[i] = directions[value(i)];
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the Direction array in the format of the solution of a solver with
+     * the given number of steps, the moves start from index 1 and index 0 is
+     * Direction.NONE.  The moves after the sequence are left null.
+     *
+     * @param steps the given number of steps of the solution
+     * @return Direction array in the format of the solution of a solver
+     */
+    public Direction[] toSolution(int steps) {
+        Direction[] solution = new Direction[Math.max(steps, length) + 1];
+        solution[0] = Direction.NONE;
+        for (int i = 0; i < length; i++) {
+            solution[i + 1] = directions[value(i)];
+        }
+        return solution;
+    }
+
+    /**
+     * Returns the MoveSequence object of the symmetry moves (RIGHT and DOWN, LEFT and
+     * UP exchanged), the solution of the symmetry board.
+     *
+     * @return MoveSequence object of the symmetry moves
+     */
+    public MoveSequence symmetry() {
+        long[] symPacked = new long[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            // symmetry of each 2 bits value is value xor 1
+            symPacked[i] = packed[i] ^ 0x5555555555555555L;
+        }
+        return new MoveSequence(symPacked, length);
+    }
+
+    /**
+     * Returns the MoveSequence object of the first given number of moves.
+     *
+     * @param count the given number of moves
+     * @return MoveSequence object of the first given number of moves
+     */
+    public MoveSequence prefix(int count) {
+        return new MoveSequence(packed, Math.min(count, length));
+    }
+
+    /**
+     * Returns the board after applying all moves to the given board, or null if
+     * any move is not valid.
+     *
+     * @param board the given Board object
+     * @return Board object after all moves, null if any move is not valid
+     */
+    public Board apply(Board board) {
+        long tiles = apply(packTiles(board.getTiles()));
+        if (tiles == -1) {
+            return null;
+        }
+        return new Board(unpackTiles(tiles));
+    }
+
+    /**
+     * Returns the boolean represents the moves bring the given board to the goal
+     * state.
+     *
+     * @param board the given Board object
+     * @return boolean represents the moves bring the given board to the goal state
+     */
+    public boolean verify(Board board) {
+        return verify(packTiles(board.getTiles()));
+    }
+
+    /**
+     * Returns the boolean represents the moves bring the given packed board to the
+     * goal state.
+     *
+     * @param packedTiles the given board packed in 4 bits per tile
+     * @return boolean represents the moves bring the given board to the goal state
+     */
+    public boolean verify(long packedTiles) {
+        return apply(packedTiles) == GOAL_PACKED;
+    }
+
+    /**
+     * Returns the packed board after applying all moves to the given packed board, or
+     * -1 if any move is not valid (no board packs to -1).  The first tile is at the
+     * highest 4 bits.
+     *
+     * @param packedTiles the given board packed in 4 bits per tile
+     * @return long value of the packed board after all moves, -1 if not valid
+     */
+    public long apply(long packedTiles) {
+        int zero = -1;
+        for (int pos = 0; pos < SIZE; pos++) {
+            if (((packedTiles >>> shift(pos)) & 0x0F) == 0) {
+                zero = pos;
+                break;
+            }
+        }
+        if (zero < 0) {
+            return -1;
+        }
+
+        for (int i = 0; i < length; i++) {
+            int next;
+            // same as Board.shift, the space moves in the direction
+            switch (value(i)) {
+                case 0:
+                    if (zero % ROW_SIZE == ROW_SIZE - 1) {
+                        return -1;
+                    }
+                    next = zero + 1;
+                    break;
+                case 1:
+                    if (zero / ROW_SIZE == ROW_SIZE - 1) {
+                        return -1;
+                    }
+                    next = zero + ROW_SIZE;
+                    break;
+                case 2:
+                    if (zero % ROW_SIZE == 0) {
+                        return -1;
+                    }
+                    next = zero - 1;
+                    break;
+                default:
+                    if (zero / ROW_SIZE == 0) {
+                        return -1;
+                    }
+                    next = zero - ROW_SIZE;
+                    break;
+            }
+            long tile = (packedTiles >>> shift(next)) & 0x0F;
+            packedTiles &= ~(0x0FL << shift(next));
+            packedTiles |= tile << shift(zero);
+            zero = next;
+        }
+        return packedTiles;
+    }
+
+    // returns the bit shift of the tile at the given position
+    private static int shift(int pos) {
+        return (SIZE - 1 - pos) << 2;
+    }
+
+    /**
+     * Returns the long value of the given tiles packed in 4 bits per tile, the first
+     * tile is at the highest 4 bits.
+     *
+     * @param tiles the given byte array of 16 tiles
+     * @return long value of the packed tiles
+     */
+    public static long packTiles(byte[] tiles) {
+        long value = 0L;
+        for (int pos = 0; pos < SIZE; pos++) {
+            value = (value << 4) | (tiles[pos] & 0x0F);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the byte array of tiles of the given packed tiles.
+     *
+     * @param packedTiles the given board packed in 4 bits per tile
+     * @return byte array of 16 tiles
+     */
+    public static byte[] unpackTiles(long packedTiles) {
+        byte[] tiles = new byte[SIZE];
+        for (int pos = 0; pos < SIZE; pos++) {
+            tiles[pos] = (byte) ((packedTiles >>> shift(pos)) & 0x0F);
+        }
+        return tiles;
+    }
+
+    /**
+     * Returns the String of move letters (R, D, L, U), one letter per move.
+     *
+     * @return String of move letters
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(letters.charAt(value(i)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns an integer of hash code of this MoveSequence object.
+     *
+     * @return an integer of hash code of this MoveSequence object
+     */
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(packed) + length;
+    }
+
+    /**
+     * Returns true if this MoveSequence is the same as the given object.
+     *
+     * @param obj an object to compare
+     * @return true if this MoveSequence is the same as the given object
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        MoveSequence that = (MoveSequence) obj;
+        return length == that.length && Arrays.equals(packed, that.packed);
+    }
+}
@@ -73,7 +73,7 @@ public class SolverMd extends AbstractSmartSolver {
 
         if (!board.equals(lastBoard)) {
             initialize(board);
-            tilesSym = board.getTilesSym();
+            tilesSym = board.getTilesSym().clone();
             int base = 0;
 
             for (int row = 0; row < rowSize; row++) {
@@ -122,14 +122,16 @@ public class SolverMd extends AbstractSmartSolver {
     // solve the puzzle using interactive deepening A* algorithm
     protected void idaStar(int limit) {
         searchCountBase = 0;
-        while (limit <= maxMoves) {
+        while (limit <= searchMaxLimit) {
             idaCount = 0;
+            notifyIterationStarted(limit, searchCountBase);
             if (flagMessage) {
                 System.out.print("ida limit " + limit);
             }
             dfsStartingOrder(zeroX, zeroY, limit, priorityGoal);
             searchCountBase += idaCount;
             searchNodeCount = searchCountBase;
+            notifyIterationFinished(limit, searchNodeCount);
 
             if (timeout) {
                 if (flagMessage) {
@@ -216,12 +218,15 @@ public class SolverMd extends AbstractSmartSolver {
         if (terminated) {
             return endOfSearch;
         }
-        if (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit) {
+        if (cancelled || (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit)) {
             stopwatch.stop();
             timeout = true;
             terminated = true;
             return endOfSearch;
         }
+        if ((idaCount & heartbeatMask) == 0 && activeListener != null) {
+            notifyHeartbeat(searchCountBase + idaCount);
+        }
         assert stopwatch.isActive() : "stopwatch is not running.";
 
         int zeroPos = orgY * rowSize + orgX;
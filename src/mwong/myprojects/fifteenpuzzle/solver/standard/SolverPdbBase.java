@@ -265,14 +265,16 @@ public class SolverPdbBase extends AbstractSmartSolver {
     protected void idaStar(int limit) {
         // start searching for solution
         searchCountBase = 0;
-        while (limit <= maxMoves) {
+        while (limit <= searchMaxLimit) {
             idaCount = 0;
+            notifyIterationStarted(limit, searchCountBase);
             if (flagMessage) {
                 System.out.print("ida limit " + limit);
             }
             dfsStartingOrder(zeroX, zeroY, limit, pdValReg, pdValSym);
             searchCountBase += idaCount;
             searchNodeCount = searchCountBase;
+            notifyIterationFinished(limit, searchNodeCount);
 
             if (timeout) {
                 if (flagMessage) {
@@ -345,12 +347,15 @@ public class SolverPdbBase extends AbstractSmartSolver {
         if (terminated) {
             return endOfSearch;
         }
-        if (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit) {
+        if (cancelled || (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit)) {
             stopwatch.stop();
             timeout = true;
             terminated = true;
             return endOfSearch;
         }
+        if ((idaCount & heartbeatMask) == 0 && activeListener != null) {
+            notifyHeartbeat(searchCountBase + idaCount);
+        }
         assert stopwatch.isActive() : "stopwatch is not running.";
 
         int zeroPos = orgY * rowSize + orgX;
@@ -89,6 +89,32 @@ public class SolverPdbWd extends SolverWd {
         this(presetPattern, choice, ApplicationMode.CONSOLE);
     }
 
+    /**
+     * Initializes SolverPdbWd object with a given SolverPdbWd object.  The pattern
+     * database is shared with the given solver, only the search state is separated.
+     *
+     * @param copySolver an instance of SolverPdbWd
+     */
+    protected SolverPdbWd(SolverPdbWd copySolver) {
+        super(copySolver.appMode);
+        this.inUseHeuristic = copySolver.inUseHeuristic;
+        this.inUsePtnArray = copySolver.inUsePtnArray;
+        this.patternGroups = copySolver.patternGroups;
+        this.patternFormatSize = copySolver.patternFormatSize;
+        this.patternSet = copySolver.patternSet;
+        this.val2ptnKey = copySolver.val2ptnKey;
+        this.val2ptnOrder = copySolver.val2ptnOrder;
+        this.szGroup = copySolver.szGroup;
+        this.szPdWdKeys = copySolver.szPdWdKeys;
+        this.offsetPdSym = copySolver.offsetPdSym;
+        this.wdKeyIdx = copySolver.wdKeyIdx;
+        this.keys = copySolver.keys;
+        this.formats = copySolver.formats;
+        this.linkFormatMove = copySolver.linkFormatMove;
+        this.rotateKeysByPos = copySolver.rotateKeysByPos;
+        this.maxShiftX2 = copySolver.maxShiftX2;
+    }
+
     private SolverPdbWd(PatternOptions presetPattern, int choice, ApplicationMode appMode) {
         super(appMode);
         loadPdbComponents(presetPattern, choice);
@@ -250,8 +276,9 @@ public class SolverPdbWd extends SolverWd {
     // solve the puzzle using interactive deepening A* algorithm
     protected void idaStar(int limit) {
         searchCountBase = 0;
-        while (limit <= maxMoves) {
+        while (limit <= searchMaxLimit) {
             idaCount = 0;
+            notifyIterationStarted(limit, searchCountBase);
             if (flagMessage) {
                 System.out.print("ida limit " + limit);
             }
@@ -259,6 +286,7 @@ public class SolverPdbWd extends SolverWd {
             dfsStartingOrder(zeroX, zeroY, limit, regVal, symVal);
             searchCountBase += idaCount;
             searchNodeCount = searchCountBase;
+            notifyIterationFinished(limit, searchNodeCount);
 
             if (timeout) {
                 if (flagMessage) {
@@ -343,12 +371,15 @@ public class SolverPdbWd extends SolverWd {
         if (terminated) {
             return endOfSearch;
         }
-        if (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit) {
+        if (cancelled || (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit)) {
             stopwatch.stop();
             timeout = true;
             terminated = true;
             return endOfSearch;
         }
+        if ((idaCount & heartbeatMask) == 0 && activeListener != null) {
+            notifyHeartbeat(searchCountBase + idaCount);
+        }
         assert stopwatch.isActive() : "stopwatch is not running.";
 
         int zeroPos = orgY * rowSize + orgX;
@@ -54,12 +54,15 @@ public class SolverWd extends AbstractSmartSolver {
         super(appMode);
         inUseHeuristic = HeuristicOptions.WD;
         this.appMode = appMode;
-        loadWdComponents();
+        loadWdComponents(appMode);
     }
 
-    // load the walking distance components from the data file
-    // if data file not exists, generate a new set
-    private void loadWdComponents() {
+    // load the walking distance components from the data file once, shared by all
+    // instances; if data file not exists, generate a new set
+    private static synchronized void loadWdComponents(ApplicationMode appMode) {
+        if (wdPattern != null) {
+            return;
+        }
         WalkingDistance wd = new WalkingDistance(appMode);
         wdRowKeys = wd.getRowKeys();
         wdPtnKeys = wd.getPtnKeys();
@@ -84,7 +87,7 @@ public class SolverWd extends AbstractSmartSolver {
 
         if (!board.equals(lastBoard)) {
             initialize(board);
-            tilesSym = board.getTilesSym();
+            tilesSym = board.getTilesSym().clone();
 
             byte[] ctwdh = new byte[puzzleSize];
             byte[] ctwdv = new byte[puzzleSize];
@@ -116,14 +119,16 @@ public class SolverWd extends AbstractSmartSolver {
     // solve the puzzle using interactive deepening A* algorithm
     protected void idaStar(int limit) {
         searchCountBase = 0;
-        while (limit <= maxMoves) {
+        while (limit <= searchMaxLimit) {
             idaCount = 0;
+            notifyIterationStarted(limit, searchCountBase);
             if (flagMessage) {
                 System.out.print("ida limit " + limit);
             }
             dfsStartingOrder(zeroX, zeroY, limit, wdIdxH, wdIdxV, wdValueH, wdValueV);
             searchCountBase += idaCount;
             searchNodeCount = searchCountBase;
+            notifyIterationFinished(limit, searchNodeCount);
 
             if (timeout) {
                 if (flagMessage) {
@@ -220,12 +225,15 @@ public class SolverWd extends AbstractSmartSolver {
         if (terminated) {
             return endOfSearch;
         }
-        if (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit) {
+        if (cancelled || (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit)) {
             stopwatch.stop();
             timeout = true;
             terminated = true;
             return endOfSearch;
         }
+        if ((idaCount & heartbeatMask) == 0 && activeListener != null) {
+            notifyHeartbeat(searchCountBase + idaCount);
+        }
         //assert stopwatch.isActive() : "stopwatch is not running.";
 
         int zeroPos = orgY * rowSize + orgX;
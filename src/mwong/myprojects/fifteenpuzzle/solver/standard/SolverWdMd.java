@@ -108,14 +108,16 @@ public class SolverWdMd extends SolverWd {
     // solve the puzzle using interactive deepening A* algorithm
     protected void idaStar(int limit) {
         searchCountBase = 0;
-        while (limit <= maxMoves) {
+        while (limit <= searchMaxLimit) {
             idaCount = 0;
+            notifyIterationStarted(limit, searchCountBase);
             if (flagMessage) {
                 System.out.print("ida limit " + limit);
             }
             dfsStartingOrder(zeroX, zeroY, limit, mdlcValue, wdIdxH, wdIdxV, wdValueH, wdValueV);
             searchCountBase += idaCount;
             searchNodeCount = searchCountBase;
+            notifyIterationFinished(limit, searchNodeCount);
 
             if (timeout) {
                 if (flagMessage) {
@@ -201,12 +203,15 @@ public class SolverWdMd extends SolverWd {
         if (terminated) {
             return endOfSearch;
         }
-        if (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit) {
+        if (cancelled || (flagTimeout && stopwatch.currentTime() > searchTimeoutLimit)) {
             stopwatch.stop();
             timeout = true;
             terminated = true;
             return endOfSearch;
         }
+        if ((idaCount & heartbeatMask) == 0 && activeListener != null) {
+            notifyHeartbeat(searchCountBase + idaCount);
+        }
         assert stopwatch.isActive() : "stopwatch is not running.";
 
         int zeroPos = orgY * rowSize + orgX;
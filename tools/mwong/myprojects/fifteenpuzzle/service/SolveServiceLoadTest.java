@@ -0,0 +1,154 @@
+package mwong.myprojects.fifteenpuzzle.service;
+
+import mwong.myprojects.fifteenpuzzle.solver.HeuristicOptions;
+import mwong.myprojects.fifteenpuzzle.solver.components.ApplicationMode;
+import mwong.myprojects.fifteenpuzzle.solver.components.Board;
+import mwong.myprojects.fifteenpuzzle.solver.components.PuzzleDifficultyLevel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * SolveServiceLoadTest is the load test of the SolveService on localhost.  A number of
+ * client threads submit random boards of the given level and wait for each result, it
+ * prints the throughput, the percentiles of the turnaround time and the summary of the
+ * service.  It is a tool outside the application sources, compile it with the classes
+ * of the application on the class path.
+ *
+ * <p>Dependencies : ApplicationMode.java, Board.java, DifficultyPredictor.java,
+ *                   HeuristicOptions.java, PuzzleDifficultyLevel.java, SolveJob.java,
+ *                   SolveService.java, SolverPool.java
+ *
+ * @author Meisze Wong
+ *         www.linkedin.com/pub/macy-wong/46/550/37b/
+ */
+public class SolveServiceLoadTest {
+    private final SolveService service;
+    private final PuzzleDifficultyLevel level;
+    private final double[] turnaround;
+    private int count;
+    private int rejected;
+
+    // initializes SolveServiceLoadTest object with the given service, level and total
+    // number of jobs
+    private SolveServiceLoadTest(SolveService service, PuzzleDifficultyLevel level,
+            int total) {
+        this.service = service;
+        this.level = level;
+        turnaround = new double[total];
+    }
+
+    // submit the given number of boards one after another and wait for each result
+    private void client(int jobs) {
+        for (int i = 0; i < jobs; i++) {
+            Board board = new Board(level);
+            try {
+                SolveJob job = service.submit(board);
+                job.await(0);
+                record(job.getTurnaroundTime());
+            } catch (RejectedExecutionException ex) {
+                synchronized (this) {
+                    rejected++;
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    // record the turnaround time of a job
+    private synchronized void record(double seconds) {
+        turnaround[count++] = seconds;
+    }
+
+    // returns the turnaround time of the given percentile
+    private synchronized double percentile(int percent) {
+        if (count == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOf(turnaround, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, count * percent / 100)];
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args number of clients, number of jobs of each client, difficulty level
+     *        (easy, moderate, hard or random) and number of workers
+     */
+    public static void main(String[] args) {
+        int clients = 8;
+        int jobs = 50;
+        PuzzleDifficultyLevel level = PuzzleDifficultyLevel.MODERATE;
+        int workers = Runtime.getRuntime().availableProcessors();
+        try {
+            if (args.length > 0) {
+                clients = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                jobs = Integer.parseInt(args[1]);
+            }
+            if (args.length > 2) {
+                level = PuzzleDifficultyLevel.valueOf(args[2].toUpperCase());
+            }
+            if (args.length > 3) {
+                workers = Integer.parseInt(args[3]);
+            }
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Usage: SolveServiceLoadTest [clients] [jobs_per_client]"
+                    + " [easy|moderate|hard|random] [workers]");
+            return;
+        }
+
+        SolverPool pool = new SolverPool(null, ApplicationMode.CONSOLE);
+        System.out.println("Loading heuristics...");
+        pool.preload(HeuristicOptions.WDMD, HeuristicOptions.PD555, HeuristicOptions.PD663);
+        while (!pool.isReady(HeuristicOptions.PD555) || !pool.isReady(HeuristicOptions.PD663)
+                || !pool.isReady(HeuristicOptions.WDMD)) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+        DifficultyPredictor predictor = new DifficultyPredictor(pool);
+        final SolveService service = new SolveService(pool, predictor, workers,
+                clients * 2);
+        final SolveServiceLoadTest test = new SolveServiceLoadTest(service, level,
+                clients * jobs);
+
+        System.out.println(clients + " clients x " + jobs + " " + level + " boards, "
+                + workers + " workers");
+        long start = System.nanoTime();
+        ArrayList<Thread> threads = new ArrayList<Thread>(clients);
+        final int jobsPerClient = jobs;
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    test.client(jobsPerClient);
+                }
+            }, "LoadTest-client-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1000000000.0;
+
+        System.out.printf("%d jobs in %.3fs, %.1f jobs/s, %d rejected%n", test.count,
+                elapsed, test.count / elapsed, test.rejected);
+        System.out.printf("turnaround p50 %.3fs, p90 %.3fs, p99 %.3fs, max %.3fs%n",
+                test.percentile(50), test.percentile(90), test.percentile(99),
+                test.percentile(100));
+        System.out.println(service.summary());
+        service.shutdown();
+    }
+}